@@ -0,0 +1,84 @@
+package io.collaboration.benchmark;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.helper.DataLoader;
+import io.collaboration.helper.MappedCsvParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of loading a CSV dataset, through the commons-csv based {@link DataLoader#load(String)} and through
+ * {@link MappedCsvParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DataLoaderBenchmark {
+
+    /**
+     * Rows of the generated dataset
+     */
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    /**
+     * Rows per UID
+     */
+    @Param({"1000"})
+    public int length;
+
+    private final DataLoader dataLoader = new DataLoader();
+
+    private Path csv;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = Files.createTempFile("benchmark", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            writer.write("timestamp,x,y,floor,uid\n");
+            for (int uid = 0; uid < rows / length; uid++) {
+                for (EnhancedCoordinate co : Trajectories.walk(String.format("%08x", uid), length, 0.05, 4, 0, uid)) {
+                    writer.write(co.getTimestamp().toInstant() + "," + co.getX() + "," + co.getY() + ","
+                            + co.getFloor() + "," + co.getUid() + "\n");
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public Map<String, List<EnhancedCoordinate>> load() throws IOException {
+        return dataLoader.load(csv.toString());
+    }
+
+    @Benchmark
+    public TrajectoryStore parseMapped() throws IOException {
+        return MappedCsvParser.parse(csv).get();
+    }
+}
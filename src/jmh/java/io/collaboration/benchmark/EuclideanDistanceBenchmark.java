@@ -0,0 +1,73 @@
+package io.collaboration.benchmark;
+
+import io.collaboration.helper.EuclideanDistance2D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single {@link EuclideanDistance2D#getDistance(Double, Double, Double, Double)} evaluation, including the
+ * boxing of its arguments as done by the identifiers working on {@link io.collaboration.api.EnhancedCoordinate}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EuclideanDistanceBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private final Double[] xs = new Double[POINTS];
+
+    private final Double[] ys = new Double[POINTS];
+
+    private final double[] primitiveXs = new double[POINTS];
+
+    private final double[] primitiveYs = new double[POINTS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < POINTS; i++) {
+            primitiveXs[i] = random.nextDouble() * 100;
+            primitiveYs[i] = random.nextDouble() * 100;
+            xs[i] = primitiveXs[i];
+            ys[i] = primitiveYs[i];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void boxed(Blackhole blackhole) {
+        for (int i = 0; i < POINTS; i++) {
+            int j = (i + 1) & (POINTS - 1);
+            blackhole.consume(EuclideanDistance2D.getDistance(xs[i], ys[i], xs[j], ys[j]));
+        }
+    }
+
+    /**
+     * Distance computed from primitive columns, boxed only at the call site
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void primitive(Blackhole blackhole) {
+        for (int i = 0; i < POINTS; i++) {
+            int j = (i + 1) & (POINTS - 1);
+            blackhole.consume(EuclideanDistance2D.getDistance(primitiveXs[i], primitiveYs[i], primitiveXs[j], primitiveYs[j]));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.collaboration.benchmark;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.service.impl.GabrielDelaunayTrajectoryIntersectionIdentifier;
+import org.kynosarges.tektosyne.geometry.LineD;
+import org.kynosarges.tektosyne.geometry.PointD;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of building the Gabriel graph of the union of two trajectories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GabrielGraphBenchmark {
+
+    /**
+     * Samples per trajectory
+     */
+    @Param({"500", "5000"})
+    public int length;
+
+    /**
+     * Samples per square meter
+     */
+    @Param({"0.05", "1"})
+    public double density;
+
+    @Param({"1", "4"})
+    public int floors;
+
+    private final GabrielDelaunayTrajectoryIntersectionIdentifier gabriel = new GabrielDelaunayTrajectoryIntersectionIdentifier();
+
+    private List<EnhancedCoordinate> all;
+
+    private PointD[] sites;
+
+    private double[] xs;
+
+    private double[] ys;
+
+    @Setup
+    public void setUp() {
+        List<List<EnhancedCoordinate>> pair = Trajectories.pair(length, density, floors, true);
+        all = new ArrayList<>(pair.get(0));
+        all.addAll(pair.get(1));
+
+        Set<PointD> distinct = new LinkedHashSet<>();
+        all.forEach(co -> distinct.add(new PointD(co.getX(), co.getY())));
+        sites = distinct.toArray(new PointD[0]);
+        xs = distinct.stream().mapToDouble(p -> p.x).toArray();
+        ys = distinct.stream().mapToDouble(p -> p.y).toArray();
+    }
+
+    @Benchmark
+    public Set<LineD> fromCoordinates() {
+        return gabriel.createGabrielGraph(all);
+    }
+
+    @Benchmark
+    public List<int[]> fromSites() {
+        return gabriel.createGabrielGraph(sites);
+    }
+
+    @Benchmark
+    public int[] fromColumns() {
+        return gabriel.createGabrielGraph(xs, ys);
+    }
+}
@@ -0,0 +1,158 @@
+package io.collaboration.benchmark;
+
+import io.collaboration.api.DwellIntervals;
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.DwellTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.GabrielDelaunayTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.GridTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.KdTreeTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of identifying the intersection of two UIDs, per identifier. Inputs are generated by {@link Trajectories}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentifierBenchmark {
+
+    /**
+     * Samples per trajectory. Single queries are only spread over the cores from 4096 samples on.
+     */
+    @Param({"250", "2000", "20000"})
+    public int length;
+
+    /**
+     * Samples per square meter
+     */
+    @Param({"0.05", "1"})
+    public double density;
+
+    @Param({"1.0", "3.4"})
+    public double spatialEpsilon;
+
+    @Param({"30"})
+    public int temporalEpsilon;
+
+    @Param({"true", "false"})
+    public boolean intersecting;
+
+    @Param({"1", "4"})
+    public int floors;
+
+    private final BruteTrajectoryIntersectionIdentifier brute = new BruteTrajectoryIntersectionIdentifier();
+
+    private final GabrielDelaunayTrajectoryIntersectionIdentifier gabriel = new GabrielDelaunayTrajectoryIntersectionIdentifier();
+
+    private final SweepLineTrajectoryIntersectionIdentifier sweep = new SweepLineTrajectoryIntersectionIdentifier();
+
+    private final GridTrajectoryIntersectionIdentifier grid = new GridTrajectoryIntersectionIdentifier();
+
+    private final DwellTrajectoryIntersectionIdentifier dwell = new DwellTrajectoryIntersectionIdentifier();
+
+    private final KdTreeTrajectoryIntersectionIdentifier kdtree = new KdTreeTrajectoryIntersectionIdentifier();
+
+    private List<EnhancedCoordinate> one;
+
+    private List<EnhancedCoordinate> two;
+
+    private Trajectory trajectoryOne;
+
+    private Trajectory trajectoryTwo;
+
+    private Trajectory dwellsOne;
+
+    private Trajectory dwellsTwo;
+
+    @Setup
+    public void setUp() {
+        List<List<EnhancedCoordinate>> pair = Trajectories.pair(length, density, floors, intersecting);
+        one = pair.get(0);
+        two = pair.get(1);
+        trajectoryOne = Trajectory.of(one);
+        trajectoryTwo = Trajectory.of(two);
+        dwellsOne = trajectoryOne.withDwells(DwellIntervals.of(trajectoryOne, 0.5, 60_000));
+        dwellsTwo = trajectoryTwo.withDwells(DwellIntervals.of(trajectoryTwo, 0.5, 60_000));
+    }
+
+    @Benchmark
+    public Optional<Intersection> brute() {
+        return brute.identify(one, two, spatialEpsilon, temporalEpsilon);
+    }
+
+    @Benchmark
+    public Optional<Intersection> gabriel() {
+        return gabriel.identify(one, two, spatialEpsilon, temporalEpsilon);
+    }
+
+    @Benchmark
+    public Optional<Intersection> sweep() {
+        return sweep.identify(one, two, spatialEpsilon, temporalEpsilon);
+    }
+
+    @Benchmark
+    public Optional<Intersection> grid() {
+        return grid.identify(one, two, spatialEpsilon, temporalEpsilon);
+    }
+
+    /**
+     * Grid identification on trajectories already held in columnar form, as served by the application
+     */
+    @Benchmark
+    public Optional<Intersection> gridOnTrajectories() {
+        return grid.identify(trajectoryOne, trajectoryTwo, spatialEpsilon, temporalEpsilon);
+    }
+
+    /**
+     * Sweep over the dwell intervals the trajectories were collapsed into at load time
+     */
+    @Benchmark
+    public Optional<Intersection> dwellOnTrajectories() {
+        return dwell.identify(dwellsOne, dwellsTwo, spatialEpsilon, temporalEpsilon);
+    }
+
+    /**
+     * Range search over the k-d trees of the second trajectory, built for every query
+     */
+    @Benchmark
+    public Optional<Intersection> kdtreeOnTrajectories() {
+        return kdtree.identify(trajectoryOne, trajectoryTwo, spatialEpsilon, temporalEpsilon);
+    }
+
+    /**
+     * Sweep on trajectories already held in columnar form, spread over the cores
+     */
+    @Benchmark
+    public Optional<Intersection> sweepParallel() {
+        return sweep.identifyParallel(trajectoryOne, trajectoryTwo, spatialEpsilon, temporalEpsilon);
+    }
+
+    /**
+     * Brute force on trajectories already held in columnar form, spread over the cores
+     */
+    @Benchmark
+    public Optional<Intersection> bruteParallel() {
+        return brute.identifyParallel(trajectoryOne, trajectoryTwo, spatialEpsilon, temporalEpsilon);
+    }
+}
@@ -0,0 +1,100 @@
+package io.collaboration.benchmark;
+
+import io.collaboration.api.EnhancedCoordinate;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic benchmark inputs. Each trajectory is a random walk sampled every few seconds over a square area sized
+ * after the requested point density, switching floors every {@link #FLOOR_RUN} samples.
+ */
+final class Trajectories {
+
+    static final String UID_ONE = "de0a13a8";
+
+    static final String UID_TWO = "2f442867";
+
+    private static final long START = Instant.parse("2014-07-19T16:00:00Z").toEpochMilli();
+
+    private static final int SAMPLING_MILLIS = 5_000;
+
+    private static final int FLOOR_RUN = 50;
+
+    private Trajectories() {
+    }
+
+    /**
+     * @param length  Number of samples
+     * @param density Samples per square meter
+     * @return side of the square area the samples are spread over
+     */
+    static double side(int length, double density) {
+        return Math.sqrt(length / density);
+    }
+
+    /**
+     * Create a random walk.
+     *
+     * @param uid     UID owning the samples
+     * @param length  Number of samples
+     * @param density Samples per square meter
+     * @param floors  Number of floors the walk switches between
+     * @param offset  Offset of the area along the x axis
+     * @param seed    Seed of the walk
+     * @return coordinates in chronological order
+     */
+    static List<EnhancedCoordinate> walk(String uid, int length, double density, int floors, double offset, long seed) {
+        Random random = new Random(seed);
+        double side = side(length, density);
+        double step = Math.max(1, side / 20);
+
+        List<EnhancedCoordinate> coordinates = new ArrayList<>(length);
+        double x = random.nextDouble() * side;
+        double y = random.nextDouble() * side;
+        int floor = 1 + random.nextInt(floors);
+        for (int i = 0; i < length; i++) {
+            if (i % FLOOR_RUN == 0) floor = 1 + random.nextInt(floors);
+            x = clamp(x + (random.nextDouble() * 2 - 1) * step, side);
+            y = clamp(y + (random.nextDouble() * 2 - 1) * step, side);
+            long time = START + (long) i * SAMPLING_MILLIS + random.nextInt(SAMPLING_MILLIS);
+            coordinates.add(new EnhancedCoordinate(uid,
+                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneOffset.UTC),
+                    offset + x,
+                    y,
+                    floor));
+        }
+        return coordinates;
+    }
+
+    /**
+     * Create a pair of walks over the same period. Intersecting pairs share an area and meet at the last sample of the
+     * first walk, so that the identifiers have to go through most of the input. Non-intersecting pairs lie in areas
+     * far apart.
+     *
+     * @return the walks of {@link #UID_ONE} and {@link #UID_TWO}
+     */
+    static List<List<EnhancedCoordinate>> pair(int length, double density, int floors, boolean intersecting) {
+        List<EnhancedCoordinate> one = walk(UID_ONE, length, density, floors, 0, 1);
+        double offset = intersecting ? 0 : 10 * side(length, density) + 100;
+        List<EnhancedCoordinate> two = walk(UID_TWO, length, density, floors, offset, 2);
+
+        if (intersecting) {
+            EnhancedCoordinate last = one.get(length - 1);
+            two.set(length - 1, new EnhancedCoordinate(UID_TWO, last.getTimestamp(), last.getX(), last.getY(), last.getFloor()));
+        }
+
+        List<List<EnhancedCoordinate>> pair = new ArrayList<>(2);
+        pair.add(one);
+        pair.add(two);
+        return pair;
+    }
+
+    private static double clamp(double value, double side) {
+        return Math.max(0, Math.min(side, value));
+    }
+}
@@ -1,19 +1,36 @@
 package io.collaboration;
 
 import io.collaboration.api.ConfigurationProperties;
-import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.GeneratorProperties;
 import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
 import io.collaboration.factory.TrajectoryIntersectionIdentifierFactory;
 import io.collaboration.helper.ConfigurationReader;
 import io.collaboration.helper.DataLoader;
+import io.collaboration.helper.Metrics;
+import io.collaboration.helper.TrajectoryGenerator;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import io.collaboration.service.batch.BatchQueryExecutor;
+import io.collaboration.service.batch.QueryServer;
+import io.collaboration.service.cache.IntersectionCache;
+import io.collaboration.service.contact.ContactTracer;
+import io.collaboration.service.join.SpatioTemporalJoin;
+import io.collaboration.service.stream.StreamingIntersectionDetector;
+import io.collaboration.service.stream.StreamingService;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
 
@@ -22,12 +39,43 @@ import java.util.Scanner;
  * application context, retrieve he configuration properties from the user while the only command
  * line argument is the name of the file that contains the CSV data). Afterwards, it invokes the
  * intersection identification method through a trajectory identifiers factory.
+ * <p>
+ * An optional second argument selects a non interactive mode:
+ * <ul>
+ * <li>{@code all-pairs <spatialEpsilon> <temporalEpsilon> <output.csv>} writes the first meeting of every pair of
+ * UIDs in the dataset</li>
+ * <li>{@code batch <queries.csv> <output>} answers a file of queries concurrently, see {@link BatchQueryExecutor}</li>
+ * <li>{@code server} serves queries over HTTP until stopped, see {@link QueryServer}</li>
+ * <li>{@code contacts <uid> <spatialEpsilon> <temporalEpsilon> <output.csv>} writes the first meeting of the given UID
+ * with every other UID in the dataset, see {@link ContactTracer}</li>
+ * <li>{@code stream <spatialEpsilon> <temporalEpsilon> [uidOne:uidTwo ...]} follows the file, or listens on the
+ * local port given as {@code tcp:<port>} instead of the file, printing meetings of the given pairs of UIDs (of all
+ * pairs if none is given) as they happen, see {@link StreamingService}</li>
+ * <li>{@code generate [key=value ...]} writes a synthetic dataset to the file instead of loading it, see
+ * {@link GeneratorProperties} for the available settings</li>
+ * </ul>
  */
 @SpringBootApplication
 public class TrajectoryIntersectionIdentifierApplication implements CommandLineRunner {
 
     private static final Logger LOGGER = Logger.getLogger(TrajectoryIntersectionIdentifierApplication.class);
 
+    private static final String INTERACTIVE = "interactive";
+
+    private static final String ALL_PAIRS = "all-pairs";
+
+    private static final String GENERATE = "generate";
+
+    private static final String BATCH = "batch";
+
+    private static final String CONTACTS = "contacts";
+
+    private static final String SERVER = "server";
+
+    private static final String STREAM = "stream";
+
+    private static final String TCP = "tcp:";
+
     @Autowired
     private DataLoader dataLoader;
 
@@ -37,6 +85,30 @@ public class TrajectoryIntersectionIdentifierApplication implements CommandLineR
     @Autowired
     private TrajectoryIntersectionIdentifierFactory identifierFactoryFactory;
 
+    @Autowired
+    private SpatioTemporalJoin spatioTemporalJoin;
+
+    @Autowired
+    private TrajectoryGenerator trajectoryGenerator;
+
+    @Autowired
+    private BatchQueryExecutor batchQueryExecutor;
+
+    @Autowired
+    private IntersectionCache intersectionCache;
+
+    @Autowired
+    private ContactTracer contactTracer;
+
+    @Autowired
+    private QueryServer queryServer;
+
+    @Autowired
+    private StreamingService streamingService;
+
+    @Autowired
+    private Metrics metrics;
+
     public static void main(String[] args) {
         SpringApplication.run(TrajectoryIntersectionIdentifierApplication.class, args);
     }
@@ -44,7 +116,45 @@ public class TrajectoryIntersectionIdentifierApplication implements CommandLineR
     @Override
     public void run(String... args) throws Exception {
 
-        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(args[0]);
+        String mode = args.length > 1 ? args[1] : INTERACTIVE;
+
+        if (GENERATE.equals(mode)) {
+            generate(args[0], GeneratorProperties.of(Arrays.copyOfRange(args, 2, args.length)));
+            return;
+        }
+
+        if (STREAM.equals(mode)) {
+            stream(args[0], Double.parseDouble(args[2]), Integer.parseInt(args[3]), Arrays.copyOfRange(args, 4, args.length));
+            return;
+        }
+
+        TrajectoryStore data = dataLoader.loadTrajectories(args[0]);
+
+        switch (mode) {
+            case ALL_PAIRS:
+                allPairs(data, Double.parseDouble(args[2]), Integer.parseInt(args[3]), args[4]);
+                break;
+            case BATCH:
+                batch(data, args[2], args[3]);
+                break;
+            case SERVER:
+                int port = queryServer.start(data);
+                System.out.println("Serving queries on http://localhost:" + port + "/identify");
+                break;
+            case CONTACTS:
+                contacts(data, args[2], Double.parseDouble(args[3]), Integer.parseInt(args[4]), args[5]);
+                break;
+            default:
+                interactive(data);
+        }
+    }
+
+    /**
+     * Interactive shell querying one pair of UIDs at a time.
+     *
+     * @param data Trajectories of all UIDs
+     */
+    private void interactive(TrajectoryStore data) throws Exception {
 
         LOGGER.info("Please provide name of algorithm for computation. Available algorithms: " + identifierFactoryFactory.availableIdentifiers());
 
@@ -61,11 +171,16 @@ public class TrajectoryIntersectionIdentifierApplication implements CommandLineR
             LOGGER.debug("Starting computation for trajectory intersection between " + properties.getUIDOne()
                     + " and " + properties.getUIDTwo());
 
-            Optional<Intersection> intersection = identifierFactoryFactory.getIdentifier(properties.getAlgorithm())
-                    .identify(data.get(properties.getUIDOne()),
-                            data.get(properties.getUIDTwo()),
-                            properties.getSpatialEpsilon(),
-                            properties.getTemporalEpsilon());
+            AbstractTrajectoryIntersectionIdentifier identifier = identifierFactoryFactory.getIdentifier(properties.getAlgorithm());
+            Trajectory one = data.get(properties.getUIDOne());
+            Trajectory two = data.get(properties.getUIDTwo());
+
+            Optional<Intersection> intersection = intersectionCache.identify(one,
+                    two,
+                    properties.getSpatialEpsilon(),
+                    properties.getTemporalEpsilon(),
+                    identifier,
+                    () -> identifier.identifyParallel(one, two, properties.getSpatialEpsilon(), properties.getTemporalEpsilon()));
 
             long end = System.currentTimeMillis();
 
@@ -79,6 +194,8 @@ public class TrajectoryIntersectionIdentifierApplication implements CommandLineR
             }
 
             System.out.println("Time of computation: " + (end - start) + " millis");
+            System.out.println(intersectionCache.statistics());
+            if (metrics.isEnabled()) System.out.print(metrics.dump());
 
             System.out.print("Do you wish to continue? (yes / no): ");
             next = scanner.nextLine();
@@ -87,4 +204,149 @@ public class TrajectoryIntersectionIdentifierApplication implements CommandLineR
 
     }
 
+    /**
+     * Find the first meeting of every pair of UIDs in the dataset and write them to a CSV file.
+     *
+     * @param data            Trajectories of all UIDs
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @param output          Fully qualified path of the CSV file to write
+     */
+    private void allPairs(TrajectoryStore data,
+                          double spatialEpsilon,
+                          int temporalEpsilon,
+                          String output) throws IOException {
+
+        long start = System.currentTimeMillis();
+
+        List<Intersection> meetings = spatioTemporalJoin.join(data, spatialEpsilon, temporalEpsilon);
+
+        long end = System.currentTimeMillis();
+
+        write(meetings, output);
+
+        System.out.println(meetings.size() + " pairs of UIDs met. Meetings written to " + output);
+        System.out.println("Time of computation: " + (end - start) + " millis");
+        if (metrics.isEnabled()) System.out.print(metrics.dump());
+    }
+
+    /**
+     * Find the first meeting of a UID with every other UID in the dataset and write them to a CSV file.
+     *
+     * @param data            Trajectories of all UIDs
+     * @param uid             UID under examination
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @param output          Fully qualified path of the CSV file to write
+     */
+    private void contacts(TrajectoryStore data,
+                          String uid,
+                          double spatialEpsilon,
+                          int temporalEpsilon,
+                          String output) throws IOException {
+
+        contactTracer.index(data);
+
+        long start = System.currentTimeMillis();
+
+        List<Intersection> contacts = contactTracer.contacts(data, uid, spatialEpsilon, temporalEpsilon);
+
+        long end = System.currentTimeMillis();
+
+        write(contacts, output);
+
+        System.out.println("UID " + uid + " met " + contacts.size() + " UIDs. Meetings written to " + output);
+        System.out.println("Time of computation: " + (end - start) + " millis");
+    }
+
+    /**
+     * Write meetings to a CSV file, one per line.
+     *
+     * @param meetings Meetings to write
+     * @param output   Fully qualified path of the CSV file to write
+     */
+    private void write(List<Intersection> meetings, String output) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(output)))) {
+            writer.println("uidOne,uidTwo,floor,timestampOne,xOne,yOne,timestampTwo,xTwo,yTwo,distance");
+            for (Intersection meeting : meetings) {
+                writer.println(meeting.getPointOne().getUid() + "," + meeting.getPointTwo().getUid() + ","
+                        + meeting.getPointOne().getFloor() + ","
+                        + meeting.getPointOne().getTimestamp() + "," + meeting.getPointOne().getX() + "," + meeting.getPointOne().getY() + ","
+                        + meeting.getPointTwo().getTimestamp() + "," + meeting.getPointTwo().getX() + "," + meeting.getPointTwo().getY() + ","
+                        + meeting.getEuclideanDistance());
+            }
+        }
+    }
+
+    /**
+     * Answer a file of queries and write their results.
+     *
+     * @param data    Trajectories of all UIDs
+     * @param queries Fully qualified path of the CSV file holding the queries
+     * @param output  Fully qualified path of the CSV or NDJSON file to write
+     */
+    private void batch(TrajectoryStore data, String queries, String output) throws IOException {
+
+        long start = System.currentTimeMillis();
+
+        long count = batchQueryExecutor.execute(data, Paths.get(queries), Paths.get(output));
+
+        long end = System.currentTimeMillis();
+
+        System.out.println(count + " queries answered. Results written to " + output);
+        System.out.println("Time of computation: " + (end - start) + " millis");
+        System.out.println(intersectionCache.statistics());
+        if (metrics.isEnabled()) System.out.print(metrics.dump());
+    }
+
+    /**
+     * Detect meetings on a live feed of coordinates, printing them as they happen until the application is stopped.
+     *
+     * @param source          Fully qualified path of the file to follow, or tcp:port to listen on
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @param pairs           Pairs of UIDs to watch as uidOne:uidTwo, all pairs if empty
+     */
+    private void stream(String source, double spatialEpsilon, int temporalEpsilon, String[] pairs) throws IOException {
+
+        List<String[]> watched = new ArrayList<>();
+        for (String pair : pairs) {
+            String[] uids = pair.split(":");
+            if (uids.length != 2) throw new IllegalArgumentException("Pairs of UIDs are given as uidOne:uidTwo, got " + pair);
+            watched.add(uids);
+        }
+
+        System.out.println("uidOne,uidTwo,floor,timestampOne,xOne,yOne,timestampTwo,xTwo,yTwo,distance,latencyMicros");
+        StreamingIntersectionDetector detector = new StreamingIntersectionDetector(spatialEpsilon, temporalEpsilon, watched,
+                (meeting, latencyNanos) -> System.out.println(meeting.getPointOne().getUid() + "," + meeting.getPointTwo().getUid() + ","
+                        + meeting.getPointOne().getFloor() + ","
+                        + meeting.getPointOne().getTimestamp() + "," + meeting.getPointOne().getX() + "," + meeting.getPointOne().getY() + ","
+                        + meeting.getPointTwo().getTimestamp() + "," + meeting.getPointTwo().getX() + "," + meeting.getPointTwo().getY() + ","
+                        + meeting.getEuclideanDistance() + "," + latencyNanos / 1000));
+
+        if (source.startsWith(TCP)) {
+            streamingService.listen(Integer.parseInt(source.substring(TCP.length())), detector);
+        } else {
+            streamingService.tail(Paths.get(source), detector);
+        }
+    }
+
+    /**
+     * Write a synthetic dataset.
+     *
+     * @param output     Fully qualified path of the CSV file to write
+     * @param properties Settings of the dataset
+     */
+    private void generate(String output, GeneratorProperties properties) throws IOException {
+
+        long start = System.currentTimeMillis();
+
+        long rows = trajectoryGenerator.generate(properties, Paths.get(output));
+
+        long end = System.currentTimeMillis();
+
+        System.out.println(rows + " rows written to " + output);
+        System.out.println("Time of computation: " + (end - start) + " millis");
+    }
+
 }
@@ -7,7 +7,7 @@ package io.collaboration.api;
 public class ConfigurationProperties {
 
     /**
-     * Choose between gabriel or brute as a computation model
+     * Choose between gabriel, brute, sweep or grid as a computation model
      * for the intersection identification.
      */
     private String algorithm;
@@ -0,0 +1,238 @@
+package io.collaboration.api;
+
+import java.util.Arrays;
+
+/**
+ * Columnar representation of the {@link Trajectory} of a single UID as dwell intervals: every run of consecutive
+ * samples recorded on the same floor, within maxSpatialError of the first sample of the run and at most maxGap apart
+ * from each other is collapsed into a single interval (x, y, floor, start, end), standing at the position of the first
+ * sample of the run from the first until the last timestamp of the run. UIDs sitting still for minutes are thus held
+ * as a handful of intervals instead of hundreds of samples.
+ * <p>
+ * Two recorded samples which meet imply intervals whose positions are within spatialEpsilon widened by the spatial
+ * errors and whose time spans are within temporalEpsilon of each other, so comparing intervals never misses a meeting.
+ * Conversely, any instant of an interval is within its temporal error of a recorded sample of the run, so intervals
+ * which meet imply samples within the epsilons widened by the errors of both UIDs, same as for simplified trajectories
+ * (see {@link io.collaboration.helper.TrajectorySimplifier}).
+ */
+public final class DwellIntervals {
+
+    /**
+     * Epoch millis of the first sample of each interval, in ascending order
+     */
+    private final long[] starts;
+
+    /**
+     * Epoch millis of the last sample of each interval. Intervals never overlap, so these are ascending too.
+     */
+    private final long[] ends;
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    private final short[] floors;
+
+    /**
+     * Position of the first sample of each interval within the trajectory, followed by the size of the trajectory
+     */
+    private final int[] offsets;
+
+    /**
+     * Maximum planar distance between a recorded sample and the position of its interval
+     */
+    private final double spatialError;
+
+    /**
+     * Maximum interval in millis between an instant of an interval and the closest recorded sample
+     */
+    private final long temporalError;
+
+    private DwellIntervals(long[] starts,
+                           long[] ends,
+                           double[] xs,
+                           double[] ys,
+                           short[] floors,
+                           int[] offsets,
+                           double spatialError,
+                           long temporalError) {
+        this.starts = starts;
+        this.ends = ends;
+        this.xs = xs;
+        this.ys = ys;
+        this.floors = floors;
+        this.offsets = offsets;
+        this.spatialError = spatialError;
+        this.temporalError = temporalError;
+    }
+
+    /**
+     * Collapse the samples of a trajectory into dwell intervals in a single pass.
+     *
+     * @param trajectory      Trajectory to collapse
+     * @param maxSpatialError Maximum planar distance between a sample and the first sample of its run
+     * @param maxGap          Maximum interval in millis between consecutive samples of a run
+     * @return the dwell intervals, carrying the largest errors actually introduced on top of the ones of the given
+     * trajectory
+     */
+    public static DwellIntervals of(Trajectory trajectory, double maxSpatialError, long maxGap) {
+        int n = trajectory.size();
+        long[] timestamps = trajectory.getTimestamps();
+        double[] xs = trajectory.getXs();
+        double[] ys = trajectory.getYs();
+        short[] floors = trajectory.getFloors();
+
+        double squaredError = maxSpatialError * maxSpatialError;
+        int[] offsets = new int[n + 1];
+        int size = 0;
+        double spatialError = 0;
+        long largestGap = 0;
+
+        for (int i = 0; i < n; i++) {
+            if (size > 0) {
+                int anchor = offsets[size - 1];
+                double dx = xs[i] - xs[anchor];
+                double dy = ys[i] - ys[anchor];
+                double squaredDistance = dx * dx + dy * dy;
+                long gap = timestamps[i] - timestamps[i - 1];
+                if (floors[i] == floors[anchor] && gap <= maxGap && squaredDistance <= squaredError) {
+                    spatialError = Math.max(spatialError, squaredDistance);
+                    largestGap = Math.max(largestGap, gap);
+                    continue;
+                }
+            }
+            offsets[size++] = i;
+        }
+        offsets[size] = n;
+
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        double[] dwellXs = new double[size];
+        double[] dwellYs = new double[size];
+        short[] dwellFloors = new short[size];
+        for (int k = 0; k < size; k++) {
+            int first = offsets[k];
+            starts[k] = timestamps[first];
+            ends[k] = timestamps[offsets[k + 1] - 1];
+            dwellXs[k] = xs[first];
+            dwellYs[k] = ys[first];
+            dwellFloors[k] = floors[first];
+        }
+
+        return new DwellIntervals(starts, ends, dwellXs, dwellYs, dwellFloors, Arrays.copyOf(offsets, size + 1),
+                trajectory.getSpatialError() + (spatialError == 0 ? 0 : Math.nextUp(Math.sqrt(spatialError))),
+                trajectory.getTemporalError() + (largestGap + 1) / 2);
+    }
+
+    /**
+     * Clip the intervals to a range of samples of their trajectory, keeping the error bounds. Intervals straddling a
+     * bound of the range keep their position and span the samples within the range only, so their samples stay within
+     * the errors of the original intervals.
+     *
+     * @param timestamps Timestamps of the trajectory the intervals were collapsed from
+     * @param from       Position of the first sample of the range
+     * @param to         Position after the last sample of the range
+     * @return the intervals of the samples within the range, positioned within the range
+     */
+    DwellIntervals slice(long[] timestamps, int from, int to) {
+        int first = intervalOf(from);
+        int last = intervalOf(to - 1) + 1;
+        int size = last - first;
+
+        long[] slicedStarts = Arrays.copyOfRange(starts, first, last);
+        long[] slicedEnds = Arrays.copyOfRange(ends, first, last);
+        int[] slicedOffsets = new int[size + 1];
+        for (int k = 0; k <= size; k++) slicedOffsets[k] = Math.min(Math.max(offsets[first + k], from), to) - from;
+        slicedStarts[0] = timestamps[from];
+        slicedEnds[size - 1] = timestamps[to - 1];
+
+        return new DwellIntervals(slicedStarts, slicedEnds,
+                Arrays.copyOfRange(xs, first, last),
+                Arrays.copyOfRange(ys, first, last),
+                Arrays.copyOfRange(floors, first, last),
+                slicedOffsets,
+                spatialError,
+                temporalError);
+    }
+
+    /**
+     * @param sample Position of a sample within the trajectory
+     * @return position of the interval holding the sample
+     */
+    public int intervalOf(int sample) {
+        int interval = Arrays.binarySearch(offsets, sample);
+        return interval >= 0 ? interval : -interval - 2;
+    }
+
+    /**
+     * @return number of intervals
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Backing array of the starts of the intervals. Must not be modified.
+     */
+    public long[] getStarts() {
+        return starts;
+    }
+
+    /**
+     * Backing array of the ends of the intervals. Must not be modified.
+     */
+    public long[] getEnds() {
+        return ends;
+    }
+
+    /**
+     * Backing array of the x coordinates of the intervals. Must not be modified.
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+    /**
+     * Backing array of the y coordinates of the intervals. Must not be modified.
+     */
+    public double[] getYs() {
+        return ys;
+    }
+
+    /**
+     * Backing array of the floors of the intervals. Must not be modified.
+     */
+    public short[] getFloors() {
+        return floors;
+    }
+
+    /**
+     * @param interval Position of the interval
+     * @return position of the first sample of the interval within the trajectory
+     */
+    public int from(int interval) {
+        return offsets[interval];
+    }
+
+    /**
+     * @param interval Position of the interval
+     * @return position after the last sample of the interval within the trajectory
+     */
+    public int to(int interval) {
+        return offsets[interval + 1];
+    }
+
+    /**
+     * @return maximum planar distance between a recorded sample and the position of its interval
+     */
+    public double getSpatialError() {
+        return spatialError;
+    }
+
+    /**
+     * @return maximum interval in millis between an instant of an interval and the closest recorded sample
+     */
+    public long getTemporalError() {
+        return temporalError;
+    }
+}
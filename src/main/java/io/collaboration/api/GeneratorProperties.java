@@ -0,0 +1,276 @@
+package io.collaboration.api;
+
+import java.time.ZonedDateTime;
+
+/**
+ * DTO carrying the settings of a synthetic dataset written by {@link io.collaboration.helper.TrajectoryGenerator}.
+ * Every setting has a default and may be overridden through {@link #of(String...)}.
+ */
+public class GeneratorProperties {
+
+    /**
+     * Seed of the generated dataset. The same settings always yield the same file.
+     */
+    private long seed = 1;
+
+    /**
+     * Number of UIDs walking around the building.
+     */
+    private int uids = 100;
+
+    /**
+     * Number of floors of the building.
+     */
+    private int floors = 5;
+
+    /**
+     * Total number of rows to write.
+     */
+    private long rows = 1_000_000;
+
+    /**
+     * Mean interval between two samples of the same UID. Actual intervals are jittered by up to half of it.
+     */
+    private double samplingSeconds = 5;
+
+    /**
+     * Extent of each floor along the x axis, in meters.
+     */
+    private double width = 300;
+
+    /**
+     * Extent of each floor along the y axis, in meters.
+     */
+    private double height = 150;
+
+    /**
+     * Walking speed, in meters per second.
+     */
+    private double speed = 1.2;
+
+    /**
+     * Probability of dwelling at a destination before heading to the next one.
+     */
+    private double dwellProbability = 0.5;
+
+    /**
+     * Mean duration of a dwell.
+     */
+    private double dwellSeconds = 120;
+
+    /**
+     * Probability of the next destination lying on another floor.
+     */
+    private double floorChangeProbability = 0.1;
+
+    /**
+     * Number of planned meetings each UID attends per hour on average.
+     */
+    private double meetingsPerHour = 1;
+
+    /**
+     * Duration of a planned meeting, once both UIDs have arrived.
+     */
+    private double meetingSeconds = 120;
+
+    /**
+     * Timestamp of the first samples.
+     */
+    private ZonedDateTime start = ZonedDateTime.parse("2014-07-19T00:00:00Z");
+
+    /**
+     * Override the defaults with settings in key=value form, the keys being the names of the properties.
+     *
+     * @param settings Settings such as rows=1000000 or seed=7
+     * @return the properties
+     * @throws IllegalArgumentException for unknown keys or malformed settings
+     */
+    public static GeneratorProperties of(String... settings) {
+        GeneratorProperties properties = new GeneratorProperties();
+        for (String setting : settings) {
+            int separator = setting.indexOf('=');
+            if (separator < 0) throw new IllegalArgumentException("Expected key=value instead of " + setting);
+
+            String value = setting.substring(separator + 1).trim();
+            switch (setting.substring(0, separator).trim()) {
+                case "seed":
+                    properties.setSeed(Long.parseLong(value));
+                    break;
+                case "uids":
+                    properties.setUids(Integer.parseInt(value));
+                    break;
+                case "floors":
+                    properties.setFloors(Integer.parseInt(value));
+                    break;
+                case "rows":
+                    properties.setRows(Long.parseLong(value));
+                    break;
+                case "samplingSeconds":
+                    properties.setSamplingSeconds(Double.parseDouble(value));
+                    break;
+                case "width":
+                    properties.setWidth(Double.parseDouble(value));
+                    break;
+                case "height":
+                    properties.setHeight(Double.parseDouble(value));
+                    break;
+                case "speed":
+                    properties.setSpeed(Double.parseDouble(value));
+                    break;
+                case "dwellProbability":
+                    properties.setDwellProbability(Double.parseDouble(value));
+                    break;
+                case "dwellSeconds":
+                    properties.setDwellSeconds(Double.parseDouble(value));
+                    break;
+                case "floorChangeProbability":
+                    properties.setFloorChangeProbability(Double.parseDouble(value));
+                    break;
+                case "meetingsPerHour":
+                    properties.setMeetingsPerHour(Double.parseDouble(value));
+                    break;
+                case "meetingSeconds":
+                    properties.setMeetingSeconds(Double.parseDouble(value));
+                    break;
+                case "start":
+                    properties.setStart(ZonedDateTime.parse(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown generator setting " + setting);
+            }
+        }
+        return properties;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getUids() {
+        return uids;
+    }
+
+    public void setUids(int uids) {
+        this.uids = uids;
+    }
+
+    public int getFloors() {
+        return floors;
+    }
+
+    public void setFloors(int floors) {
+        this.floors = floors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public double getSamplingSeconds() {
+        return samplingSeconds;
+    }
+
+    public void setSamplingSeconds(double samplingSeconds) {
+        this.samplingSeconds = samplingSeconds;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public void setWidth(double width) {
+        this.width = width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public void setHeight(double height) {
+        this.height = height;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    public double getDwellProbability() {
+        return dwellProbability;
+    }
+
+    public void setDwellProbability(double dwellProbability) {
+        this.dwellProbability = dwellProbability;
+    }
+
+    public double getDwellSeconds() {
+        return dwellSeconds;
+    }
+
+    public void setDwellSeconds(double dwellSeconds) {
+        this.dwellSeconds = dwellSeconds;
+    }
+
+    public double getFloorChangeProbability() {
+        return floorChangeProbability;
+    }
+
+    public void setFloorChangeProbability(double floorChangeProbability) {
+        this.floorChangeProbability = floorChangeProbability;
+    }
+
+    public double getMeetingsPerHour() {
+        return meetingsPerHour;
+    }
+
+    public void setMeetingsPerHour(double meetingsPerHour) {
+        this.meetingsPerHour = meetingsPerHour;
+    }
+
+    public double getMeetingSeconds() {
+        return meetingSeconds;
+    }
+
+    public void setMeetingSeconds(double meetingSeconds) {
+        this.meetingSeconds = meetingSeconds;
+    }
+
+    public ZonedDateTime getStart() {
+        return start;
+    }
+
+    public void setStart(ZonedDateTime start) {
+        this.start = start;
+    }
+
+    @Override
+    public String toString() {
+        return "GeneratorProperties{" +
+                "seed=" + seed +
+                ", uids=" + uids +
+                ", floors=" + floors +
+                ", rows=" + rows +
+                ", samplingSeconds=" + samplingSeconds +
+                ", width=" + width +
+                ", height=" + height +
+                ", speed=" + speed +
+                ", dwellProbability=" + dwellProbability +
+                ", dwellSeconds=" + dwellSeconds +
+                ", floorChangeProbability=" + floorChangeProbability +
+                ", meetingsPerHour=" + meetingsPerHour +
+                ", meetingSeconds=" + meetingSeconds +
+                ", start=" + start +
+                '}';
+    }
+}
@@ -0,0 +1,146 @@
+package io.collaboration.api;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * DTO carrying a meeting of two UIDs over a period of time, i.e. a run of consecutive samples of the first UID which
+ * all have a sample of the second UID within the spatial and temporal epsilons on the same floor.
+ */
+public class MeetingEpisode {
+
+    /**
+     * Floor the meeting took place on
+     */
+    private Integer floor;
+
+    /**
+     * The earlier timestamp of the first intersection of the episode
+     */
+    private ZonedDateTime start;
+
+    /**
+     * The later timestamp of the last intersection of the episode
+     */
+    private ZonedDateTime end;
+
+    /**
+     * Number of consecutive samples of the first UID the episode spans
+     */
+    private Integer samples;
+
+    /**
+     * Intersection at the first sample of the episode
+     */
+    private Intersection first;
+
+    /**
+     * Intersection with the smallest Euclidean distance within the episode
+     */
+    private Intersection closest;
+
+    public MeetingEpisode() {
+    }
+
+    public MeetingEpisode(Integer floor,
+                          ZonedDateTime start,
+                          ZonedDateTime end,
+                          Integer samples,
+                          Intersection first,
+                          Intersection closest) {
+        this.floor = floor;
+        this.start = start;
+        this.end = end;
+        this.samples = samples;
+        this.first = first;
+        this.closest = closest;
+    }
+
+    public Integer getFloor() {
+        return floor;
+    }
+
+    public void setFloor(Integer floor) {
+        this.floor = floor;
+    }
+
+    public ZonedDateTime getStart() {
+        return start;
+    }
+
+    public void setStart(ZonedDateTime start) {
+        this.start = start;
+    }
+
+    public ZonedDateTime getEnd() {
+        return end;
+    }
+
+    public void setEnd(ZonedDateTime end) {
+        this.end = end;
+    }
+
+    public Integer getSamples() {
+        return samples;
+    }
+
+    public void setSamples(Integer samples) {
+        this.samples = samples;
+    }
+
+    public Intersection getFirst() {
+        return first;
+    }
+
+    public void setFirst(Intersection first) {
+        this.first = first;
+    }
+
+    public Intersection getClosest() {
+        return closest;
+    }
+
+    public void setClosest(Intersection closest) {
+        this.closest = closest;
+    }
+
+    /**
+     * @return the time elapsed between {@link #start} and {@link #end}
+     */
+    public Duration getDuration() {
+        return Duration.between(start, end);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MeetingEpisode that = (MeetingEpisode) o;
+
+        return Objects.equals(floor, that.floor)
+                && Objects.equals(start, that.start)
+                && Objects.equals(end, that.end)
+                && Objects.equals(samples, that.samples)
+                && Objects.equals(first, that.first)
+                && Objects.equals(closest, that.closest);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(floor, start, end, samples, first, closest);
+    }
+
+    @Override
+    public String toString() {
+        return "MeetingEpisode{" +
+                "floor=" + floor +
+                ", start=" + start +
+                ", end=" + end +
+                ", samples=" + samples +
+                ", first=" + first +
+                ", closest=" + closest +
+                '}';
+    }
+}
@@ -0,0 +1,138 @@
+package io.collaboration.api;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * DTO carrying the outcome of a single query of a batch, i.e. the first intersection of the two UIDs, if any, along with
+ * the time the query spent waiting for a worker and the time it took to be answered.
+ */
+public class QueryResult {
+
+    /**
+     * Position of the query in the batch, starting from 1
+     */
+    private Long query;
+
+    /**
+     * Algorithm, epsilons and UIDs of the query
+     */
+    private ConfigurationProperties properties;
+
+    /**
+     * First intersection of the two UIDs, null if they never met
+     */
+    private Intersection intersection;
+
+    /**
+     * Reason the query could not be answered, null if it was
+     */
+    private String error;
+
+    /**
+     * Microseconds elapsed between reading the query and a worker picking it up
+     */
+    private Long queueMicros;
+
+    /**
+     * Microseconds the worker spent answering the query
+     */
+    private Long latencyMicros;
+
+    public QueryResult() {
+    }
+
+    public QueryResult(Long query,
+                       ConfigurationProperties properties,
+                       Intersection intersection,
+                       String error,
+                       Long queueMicros,
+                       Long latencyMicros) {
+        this.query = query;
+        this.properties = properties;
+        this.intersection = intersection;
+        this.error = error;
+        this.queueMicros = queueMicros;
+        this.latencyMicros = latencyMicros;
+    }
+
+    public Long getQuery() {
+        return query;
+    }
+
+    public void setQuery(Long query) {
+        this.query = query;
+    }
+
+    public ConfigurationProperties getProperties() {
+        return properties;
+    }
+
+    public void setProperties(ConfigurationProperties properties) {
+        this.properties = properties;
+    }
+
+    public Optional<Intersection> getIntersection() {
+        return Optional.ofNullable(intersection);
+    }
+
+    public void setIntersection(Intersection intersection) {
+        this.intersection = intersection;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Long getQueueMicros() {
+        return queueMicros;
+    }
+
+    public void setQueueMicros(Long queueMicros) {
+        this.queueMicros = queueMicros;
+    }
+
+    public Long getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public void setLatencyMicros(Long latencyMicros) {
+        this.latencyMicros = latencyMicros;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        QueryResult that = (QueryResult) o;
+
+        return Objects.equals(query, that.query)
+                && Objects.equals(properties, that.properties)
+                && Objects.equals(intersection, that.intersection)
+                && Objects.equals(error, that.error)
+                && Objects.equals(queueMicros, that.queueMicros)
+                && Objects.equals(latencyMicros, that.latencyMicros);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query, properties, intersection, error, queueMicros, latencyMicros);
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResult{" +
+                "query=" + query +
+                ", properties=" + properties +
+                ", intersection=" + intersection +
+                ", error='" + error + '\'' +
+                ", queueMicros=" + queueMicros +
+                ", latencyMicros=" + latencyMicros +
+                '}';
+    }
+}
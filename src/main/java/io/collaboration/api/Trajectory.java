@@ -0,0 +1,464 @@
+package io.collaboration.api;
+
+import io.collaboration.helper.TemporalDistance;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar (struct-of-arrays) representation of the coordinates of a single UID. Instead of one
+ * {@link EnhancedCoordinate} per sample, the timestamps are stored as epoch millis, the planar coordinates
+ * as primitive doubles and the floors as shorts, costing 26 bytes per sample. The samples are always kept
+ * in chronological order and are summarized by a {@link TrajectorySummary} once the trajectory is built.
+ * <p>
+ * {@link EnhancedCoordinate} instances are only created on demand (see {@link #toCoordinate(int)}), typically
+ * for the points of a returned {@link Intersection}.
+ */
+public class Trajectory {
+
+    /**
+     * UID owning the coordinates
+     */
+    private final String uid;
+
+    /**
+     * Dictionary id of the {@link #uid} within its {@link TrajectoryStore}. -1 for standalone trajectories.
+     */
+    private final int id;
+
+    /**
+     * Epoch millis each coordinate was recorded, in ascending order
+     */
+    private final long[] timestamps;
+
+    /**
+     * Distances from x axis
+     */
+    private final double[] xs;
+
+    /**
+     * Distances from y axis
+     */
+    private final double[] ys;
+
+    /**
+     * Floors the coordinates were recorded on
+     */
+    private final short[] floors;
+
+    /**
+     * Floors, time span and per floor bounding boxes of the coordinates
+     */
+    private final TrajectorySummary summary;
+
+    /**
+     * Maximum planar distance between a recorded sample and the sample standing in for it, 0 unless the trajectory
+     * was simplified
+     */
+    private final double spatialError;
+
+    /**
+     * Maximum interval in millis between a recorded sample and the sample standing in for it, 0 unless the trajectory
+     * was simplified
+     */
+    private final long temporalError;
+
+    /**
+     * Dwell intervals the samples were collapsed into at load time, null unless collapsed
+     */
+    private final DwellIntervals dwells;
+
+    private Trajectory(String uid,
+                       int id,
+                       long[] timestamps,
+                       double[] xs,
+                       double[] ys,
+                       short[] floors) {
+        this(uid, id, timestamps, xs, ys, floors, 0, 0);
+    }
+
+    private Trajectory(Trajectory trajectory, DwellIntervals dwells) {
+        this.uid = trajectory.uid;
+        this.id = trajectory.id;
+        this.timestamps = trajectory.timestamps;
+        this.xs = trajectory.xs;
+        this.ys = trajectory.ys;
+        this.floors = trajectory.floors;
+        this.summary = trajectory.summary;
+        this.spatialError = trajectory.spatialError;
+        this.temporalError = trajectory.temporalError;
+        this.dwells = dwells;
+    }
+
+    private Trajectory(String uid,
+                       int id,
+                       long[] timestamps,
+                       double[] xs,
+                       double[] ys,
+                       short[] floors,
+                       double spatialError,
+                       long temporalError) {
+        this.uid = uid;
+        this.id = id;
+        this.timestamps = timestamps;
+        this.xs = xs;
+        this.ys = ys;
+        this.floors = floors;
+        this.summary = TrajectorySummary.of(timestamps, xs, ys, floors);
+        this.spatialError = spatialError;
+        this.temporalError = temporalError;
+        this.dwells = null;
+    }
+
+    /**
+     * Create a standalone trajectory out of the coordinates of a single UID.
+     *
+     * @param coordinates Coordinates of a single UID in any order
+     * @return the chronologically ordered trajectory
+     */
+    public static Trajectory of(List<EnhancedCoordinate> coordinates) {
+        Builder builder = new Builder(coordinates.get(0).getUid(), -1, coordinates.size());
+        for (EnhancedCoordinate co : coordinates) {
+            builder.add(TemporalDistance.toEpochMillis(co.getTimestamp()), co.getX(), co.getY(), co.getFloor());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create a trajectory backed by the given columns, which are not copied.
+     *
+     * @param uid        UID owning the coordinates
+     * @param id         Dictionary id of the UID within its {@link TrajectoryStore}, -1 for standalone trajectories
+     * @param timestamps Epoch millis in ascending order
+     * @param xs         Distances from x axis
+     * @param ys         Distances from y axis
+     * @param floors     Floors the coordinates were recorded on
+     * @return the trajectory
+     * @throws IllegalArgumentException if the columns differ in length or the timestamps are not in ascending order
+     */
+    public static Trajectory of(String uid,
+                                int id,
+                                long[] timestamps,
+                                double[] xs,
+                                double[] ys,
+                                short[] floors) {
+        return of(uid, id, timestamps, xs, ys, floors, 0, 0);
+    }
+
+    /**
+     * Create a simplified trajectory backed by the given columns, which are not copied. Every sample dropped from the
+     * recorded trajectory must be represented by a sample of the columns on the same floor, within spatialError and
+     * temporalError of it.
+     *
+     * @param uid           UID owning the coordinates
+     * @param id            Dictionary id of the UID within its {@link TrajectoryStore}, -1 for standalone trajectories
+     * @param timestamps    Epoch millis in ascending order
+     * @param xs            Distances from x axis
+     * @param ys            Distances from y axis
+     * @param floors        Floors the coordinates were recorded on
+     * @param spatialError  Maximum planar distance between a recorded sample and its representative
+     * @param temporalError Maximum interval in millis between a recorded sample and its representative
+     * @return the trajectory
+     * @throws IllegalArgumentException if the columns differ in length, the timestamps are not in ascending order or
+     *                                  the errors are negative
+     */
+    public static Trajectory of(String uid,
+                                int id,
+                                long[] timestamps,
+                                double[] xs,
+                                double[] ys,
+                                short[] floors,
+                                double spatialError,
+                                long temporalError) {
+        if (!(spatialError >= 0) || temporalError < 0) {
+            throw new IllegalArgumentException("Error bounds of UID " + uid + " must not be negative");
+        }
+        if (xs.length != timestamps.length || ys.length != timestamps.length || floors.length != timestamps.length) {
+            throw new IllegalArgumentException("Columns of UID " + uid + " differ in length");
+        }
+        for (int i = 1; i < timestamps.length; i++) {
+            if (timestamps[i - 1] > timestamps[i]) {
+                throw new IllegalArgumentException("Timestamps of UID " + uid + " are not in chronological order");
+            }
+        }
+        return new Trajectory(uid, id, timestamps, xs, ys, floors, spatialError, temporalError);
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * Backing array of the timestamps. Must not be modified.
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * Backing array of the x coordinates. Must not be modified.
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+    /**
+     * Backing array of the y coordinates. Must not be modified.
+     */
+    public double[] getYs() {
+        return ys;
+    }
+
+    /**
+     * Backing array of the floors. Must not be modified.
+     */
+    public short[] getFloors() {
+        return floors;
+    }
+
+    public TrajectorySummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * @return maximum planar distance between a recorded sample and the sample standing in for it
+     */
+    public double getSpatialError() {
+        return spatialError;
+    }
+
+    /**
+     * @return maximum interval in millis between a recorded sample and the sample standing in for it
+     */
+    public long getTemporalError() {
+        return temporalError;
+    }
+
+    /**
+     * @return the dwell intervals the samples were collapsed into at load time, if any
+     */
+    public Optional<DwellIntervals> getDwells() {
+        return Optional.ofNullable(dwells);
+    }
+
+    /**
+     * Attach the dwell intervals the samples of this trajectory were collapsed into.
+     *
+     * @param dwells Dwell intervals of this trajectory, see {@link DwellIntervals#of(Trajectory, double, long)}
+     * @return a trajectory sharing the columns of this one and carrying the dwell intervals
+     */
+    public Trajectory withDwells(DwellIntervals dwells) {
+        return new Trajectory(this, dwells);
+    }
+
+    /**
+     * Materialize the coordinate at the given position.
+     *
+     * @param index Position of the coordinate in chronological order
+     * @return a new {@link EnhancedCoordinate} carrying the state of the sample
+     */
+    public EnhancedCoordinate toCoordinate(int index) {
+        return new EnhancedCoordinate(uid,
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(timestamps[index]), ZoneOffset.UTC),
+                xs[index],
+                ys[index],
+                (int) floors[index]);
+    }
+
+    /**
+     * Materialize the whole trajectory as a list of coordinates, for the identifiers which cannot work on the
+     * primitive columns.
+     *
+     * @return list of coordinates in chronological order
+     */
+    public List<EnhancedCoordinate> toCoordinates() {
+        List<EnhancedCoordinate> coordinates = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) coordinates.add(toCoordinate(i));
+        return coordinates;
+    }
+
+    /**
+     * Copy a range of the samples into a trajectory of the same UID, keeping the error bounds and the dwell intervals
+     * clipped to the range.
+     *
+     * @param from Position of the first sample of the range
+     * @param to   Position after the last sample of the range
+     * @return the trajectory of the samples within the range
+     * @throws IllegalArgumentException if the range is empty
+     */
+    public Trajectory slice(int from, int to) {
+        if (from >= to) throw new IllegalArgumentException("Empty range [" + from + ", " + to + ") of UID " + uid);
+        Trajectory slice = new Trajectory(uid, id,
+                Arrays.copyOfRange(timestamps, from, to),
+                Arrays.copyOfRange(xs, from, to),
+                Arrays.copyOfRange(ys, from, to),
+                Arrays.copyOfRange(floors, from, to),
+                spatialError,
+                temporalError);
+        return dwells == null ? slice : slice.withDwells(dwells.slice(timestamps, from, to));
+    }
+
+    @Override
+    public String toString() {
+        return "Trajectory{" +
+                "uid='" + uid + '\'' +
+                ", id=" + id +
+                ", size=" + size() +
+                '}';
+    }
+
+    /**
+     * Accumulates the samples of a single UID in growable primitive columns.
+     */
+    public static class Builder {
+
+        private final String uid;
+
+        private final int id;
+
+        private long[] timestamps;
+
+        private double[] xs;
+
+        private double[] ys;
+
+        private short[] floors;
+
+        private int size;
+
+        public Builder(String uid, int id) {
+            this(uid, id, 16);
+        }
+
+        public Builder(String uid, int id, int expectedSize) {
+            this.uid = uid;
+            this.id = id;
+            int capacity = Math.max(1, expectedSize);
+            this.timestamps = new long[capacity];
+            this.xs = new double[capacity];
+            this.ys = new double[capacity];
+            this.floors = new short[capacity];
+        }
+
+        public Builder add(long timestamp, double x, double y, int floor) {
+            if (floor < Short.MIN_VALUE || floor > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Floor " + floor + " of UID " + uid + " is out of range");
+            }
+            if (size == timestamps.length) grow();
+            timestamps[size] = timestamp;
+            xs[size] = x;
+            ys[size] = y;
+            floors[size] = (short) floor;
+            size++;
+            return this;
+        }
+
+        /**
+         * Append all samples accumulated by another builder of the same UID.
+         */
+        public Builder addAll(Builder other) {
+            if (size + other.size > timestamps.length) {
+                int capacity = Math.max(size + other.size, timestamps.length + (timestamps.length >> 1) + 1);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                floors = Arrays.copyOf(floors, capacity);
+            }
+            System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+            System.arraycopy(other.xs, 0, xs, size, other.size);
+            System.arraycopy(other.ys, 0, ys, size, other.size);
+            System.arraycopy(other.floors, 0, floors, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        public String getUid() {
+            return uid;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Sort the accumulated samples chronologically and trim the columns to size.
+         *
+         * @return the trajectory
+         */
+        public Trajectory build() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) sorted = timestamps[i - 1] <= timestamps[i];
+
+            if (sorted) {
+                return new Trajectory(uid, id,
+                        Arrays.copyOf(timestamps, size),
+                        Arrays.copyOf(xs, size),
+                        Arrays.copyOf(ys, size),
+                        Arrays.copyOf(floors, size));
+            }
+
+            int[] order = IntStream.range(0, size).toArray();
+            sort(order, new int[size], 0, size);
+            long[] sortedTimestamps = new long[size];
+            double[] sortedXs = new double[size];
+            double[] sortedYs = new double[size];
+            short[] sortedFloors = new short[size];
+            for (int i = 0; i < size; i++) {
+                sortedTimestamps[i] = timestamps[order[i]];
+                sortedXs[i] = xs[order[i]];
+                sortedYs[i] = ys[order[i]];
+                sortedFloors[i] = floors[order[i]];
+            }
+            return new Trajectory(uid, id, sortedTimestamps, sortedXs, sortedYs, sortedFloors);
+        }
+
+        /**
+         * Stable merge sort of the positions in [from, to) by timestamp, without boxing them.
+         */
+        private void sort(int[] order, int[] buffer, int from, int to) {
+            if (to - from < 16) {
+                for (int i = from + 1; i < to; i++) {
+                    int position = order[i];
+                    int j = i - 1;
+                    for (; j >= from && timestamps[order[j]] > timestamps[position]; j--) order[j + 1] = order[j];
+                    order[j + 1] = position;
+                }
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            sort(order, buffer, from, mid);
+            sort(order, buffer, mid, to);
+            if (timestamps[order[mid - 1]] <= timestamps[order[mid]]) return;
+
+            System.arraycopy(order, from, buffer, from, to - from);
+            for (int i = from, left = from, right = mid; i < to; i++) {
+                order[i] = right >= to || (left < mid && timestamps[buffer[left]] <= timestamps[buffer[right]])
+                        ? buffer[left++]
+                        : buffer[right++];
+            }
+        }
+
+        private void grow() {
+            int capacity = timestamps.length + (timestamps.length >> 1) + 1;
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            floors = Arrays.copyOf(floors, capacity);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package io.collaboration.api;
+
+import io.collaboration.helper.TemporalDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar in memory store of the trajectories of all UIDs included in a dataset. UIDs are dictionary
+ * encoded to dense int ids so that each UID string is held once, while the samples of every UID live in
+ * the primitive columns of its {@link Trajectory}.
+ * <p>
+ * A store may also be lazy (see {@link #lazy(String[], long, IntFunction)}), materializing the trajectory of a UID the
+ * first time it is requested, e.g. out of a memory mapped snapshot.
+ */
+public class TrajectoryStore {
+
+    /**
+     * Dictionary id to UID
+     */
+    private final String[] uids;
+
+    /**
+     * UID to dictionary id
+     */
+    private final Map<String, Integer> ids;
+
+    /**
+     * Dictionary id to trajectory. Entries of lazy stores are null until first requested.
+     */
+    private final Trajectory[] trajectories;
+
+    /**
+     * Materializes the trajectory of a dictionary id, null for stores built eagerly
+     */
+    private final IntFunction<Trajectory> loader;
+
+    private final long samples;
+
+    private TrajectoryStore(String[] uids,
+                            Map<String, Integer> ids,
+                            Trajectory[] trajectories,
+                            IntFunction<Trajectory> loader,
+                            long samples) {
+        this.uids = uids;
+        this.ids = ids;
+        this.trajectories = trajectories;
+        this.loader = loader;
+        this.samples = samples;
+    }
+
+    /**
+     * Create a store whose trajectories are materialized on first request. Concurrent first requests of the same UID
+     * may invoke the loader more than once, hence it must be free of side effects.
+     *
+     * @param uids    Dictionary id to UID
+     * @param samples Total number of samples across all UIDs
+     * @param loader  Materializes the trajectory of a dictionary id
+     * @return the lazy store
+     */
+    public static TrajectoryStore lazy(String[] uids, long samples, IntFunction<Trajectory> loader) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < uids.length; id++) ids.put(uids[id], id);
+        return new TrajectoryStore(uids, ids, new Trajectory[uids.length], loader, samples);
+    }
+
+    /**
+     * Retrieve the trajectory of the given UID.
+     *
+     * @param uid UID under examination
+     * @return the trajectory or null if the UID is not part of the dataset
+     */
+    public Trajectory get(String uid) {
+        Integer id = ids.get(uid);
+        return id == null ? null : get(id);
+    }
+
+    public Trajectory get(int id) {
+        Trajectory trajectory = trajectories[id];
+        if (trajectory == null) {
+            // Trajectories are immutable, a racing thread at worst materializes an identical one
+            trajectory = loader.apply(id);
+            trajectories[id] = trajectory;
+        }
+        return trajectory;
+    }
+
+    /**
+     * @param uid UID under examination
+     * @return the dictionary id of the UID or -1 if the UID is not part of the dataset
+     */
+    public int getId(String uid) {
+        Integer id = ids.get(uid);
+        return id == null ? -1 : id;
+    }
+
+    public String getUid(int id) {
+        return uids[id];
+    }
+
+    /**
+     * @return number of distinct UIDs
+     */
+    public int size() {
+        return uids.length;
+    }
+
+    /**
+     * @return total number of samples across all UIDs
+     */
+    public long samples() {
+        return samples;
+    }
+
+    public List<String> getUids() {
+        return Collections.unmodifiableList(Arrays.asList(uids));
+    }
+
+    /**
+     * Create a store holding the trajectories of this store transformed by the given function, e.g. simplified. The
+     * trajectories are transformed eagerly and in parallel.
+     *
+     * @param function Transforms the trajectory of a UID, keeping its UID and dictionary id
+     * @return the transformed store
+     */
+    public TrajectoryStore map(UnaryOperator<Trajectory> function) {
+        Trajectory[] mapped = new Trajectory[uids.length];
+        IntStream.range(0, uids.length).parallel().forEach(id -> mapped[id] = function.apply(get(id)));
+        long samples = 0;
+        for (Trajectory trajectory : mapped) samples += trajectory.size();
+        return new TrajectoryStore(uids, ids, mapped, null, samples);
+    }
+
+    /**
+     * Create a store out of coordinates already grouped by UID.
+     *
+     * @param coordinates Map correlating UIDs with their coordinates
+     * @return the columnar store
+     */
+    public static TrajectoryStore of(Map<String, List<EnhancedCoordinate>> coordinates) {
+        Builder builder = new Builder();
+        coordinates.forEach((uid, list) -> list.forEach(co ->
+                builder.add(uid, TemporalDistance.toEpochMillis(co.getTimestamp()), co.getX(), co.getY(), co.getFloor())));
+        return builder.build();
+    }
+
+    /**
+     * Accumulates samples of any UID, assigning dictionary ids in order of first appearance.
+     */
+    public static class Builder {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private final List<Trajectory.Builder> columns = new ArrayList<>();
+
+        public Builder add(String uid, long timestamp, double x, double y, int floor) {
+            builder(uid).add(timestamp, x, y, floor);
+            return this;
+        }
+
+        /**
+         * Retrieve the column builder of the given UID, registering the UID if it was not seen before.
+         *
+         * @param uid UID of the sample
+         * @return the column builder accumulating the samples of the UID
+         */
+        public Trajectory.Builder builder(String uid) {
+            Integer id = ids.get(uid);
+            if (id == null) {
+                id = columns.size();
+                ids.put(uid, id);
+                columns.add(new Trajectory.Builder(uid, id));
+            }
+            return columns.get(id);
+        }
+
+        public TrajectoryStore build() {
+            String[] uids = new String[columns.size()];
+            Trajectory[] trajectories = new Trajectory[columns.size()];
+            // Sorting the columns of each UID is independent of the rest
+            IntStream.range(0, columns.size()).parallel().forEach(id -> {
+                trajectories[id] = columns.get(id).build();
+                uids[id] = trajectories[id].getUid();
+            });
+            long samples = 0;
+            for (Trajectory trajectory : trajectories) samples += trajectory.size();
+            return new TrajectoryStore(uids, new HashMap<>(ids), trajectories, null, samples);
+        }
+    }
+}
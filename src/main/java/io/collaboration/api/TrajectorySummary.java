@@ -0,0 +1,297 @@
+package io.collaboration.api;
+
+import java.util.Arrays;
+
+/**
+ * Summary of the {@link Trajectory} of a single UID, computed once along with the trajectory: the floors it visits, its
+ * time span, and the number, bounding box and time span of its samples on every floor.
+ * <p>
+ * Two UIDs can only meet on a floor both of them visit, while both are there and within spatialEpsilon of each other,
+ * so comparing the summaries of two trajectories (see {@link #mayMeet(TrajectorySummary, double, long)}) rules out
+ * most pairs of UIDs without touching a single sample. The same comparison estimates how many pairs of samples of two
+ * UIDs are close in time and space (see {@link #expectedPairs(TrajectorySummary, double, long)}), which is what the
+ * cost of most identifiers grows with.
+ */
+public final class TrajectorySummary {
+
+    private static final TrajectorySummary EMPTY = new TrajectorySummary(0, Long.MAX_VALUE, Long.MIN_VALUE,
+            new short[0], new int[0], new long[0], new long[0], new double[0], new double[0], new double[0],
+            new double[0]);
+
+    /**
+     * Bit floor mod 64 is set for every floor visited. Disjoint masks imply disjoint floors while overlapping ones
+     * still have to be confirmed against {@link #floors}.
+     */
+    private final long floorMask;
+
+    private final long start;
+
+    private final long end;
+
+    /**
+     * Floors visited in ascending order. The rest of the per floor arrays are aligned to it.
+     */
+    private final short[] floors;
+
+    private final int[] counts;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final double[] minXs;
+
+    private final double[] maxXs;
+
+    private final double[] minYs;
+
+    private final double[] maxYs;
+
+    private TrajectorySummary(long floorMask,
+                              long start,
+                              long end,
+                              short[] floors,
+                              int[] counts,
+                              long[] starts,
+                              long[] ends,
+                              double[] minXs,
+                              double[] maxXs,
+                              double[] minYs,
+                              double[] maxYs) {
+        this.floorMask = floorMask;
+        this.start = start;
+        this.end = end;
+        this.floors = floors;
+        this.counts = counts;
+        this.starts = starts;
+        this.ends = ends;
+        this.minXs = minXs;
+        this.maxXs = maxXs;
+        this.minYs = minYs;
+        this.maxYs = maxYs;
+    }
+
+    /**
+     * Summarize the columns of a trajectory in a single pass.
+     *
+     * @param timestamps Epoch millis in ascending order
+     * @param xs         Distances from x axis
+     * @param ys         Distances from y axis
+     * @param floors     Floors the coordinates were recorded on
+     * @return the summary
+     */
+    public static TrajectorySummary of(long[] timestamps, double[] xs, double[] ys, short[] floors) {
+        if (timestamps.length == 0) return EMPTY;
+
+        // Buildings have a handful of floors, a linear lookup beats hashing
+        short[] distinct = new short[4];
+        int[] counts = new int[4];
+        long[] starts = new long[4];
+        long[] ends = new long[4];
+        double[] minXs = new double[4];
+        double[] maxXs = new double[4];
+        double[] minYs = new double[4];
+        double[] maxYs = new double[4];
+        int size = 0;
+        long floorMask = 0;
+
+        int f = 0;
+        for (int i = 0; i < timestamps.length; i++) {
+            short floor = floors[i];
+            if (size == 0 || distinct[f] != floor) {
+                f = 0;
+                while (f < size && distinct[f] != floor) f++;
+                if (f == size) {
+                    if (size == distinct.length) {
+                        int capacity = size * 2;
+                        distinct = Arrays.copyOf(distinct, capacity);
+                        counts = Arrays.copyOf(counts, capacity);
+                        starts = Arrays.copyOf(starts, capacity);
+                        ends = Arrays.copyOf(ends, capacity);
+                        minXs = Arrays.copyOf(minXs, capacity);
+                        maxXs = Arrays.copyOf(maxXs, capacity);
+                        minYs = Arrays.copyOf(minYs, capacity);
+                        maxYs = Arrays.copyOf(maxYs, capacity);
+                    }
+                    distinct[f] = floor;
+                    starts[f] = timestamps[i];
+                    minXs[f] = maxXs[f] = xs[i];
+                    minYs[f] = maxYs[f] = ys[i];
+                    floorMask |= 1L << (floor & 63);
+                    size++;
+                }
+            }
+            // Samples are in chronological order, the last one seen on a floor is the latest
+            ends[f] = timestamps[i];
+            counts[f]++;
+            if (xs[i] < minXs[f]) minXs[f] = xs[i];
+            if (xs[i] > maxXs[f]) maxXs[f] = xs[i];
+            if (ys[i] < minYs[f]) minYs[f] = ys[i];
+            if (ys[i] > maxYs[f]) maxYs[f] = ys[i];
+        }
+
+        // Order the floors so that two summaries can be merged
+        int[] order = new int[size];
+        for (int k = 0; k < size; k++) {
+            int j = k - 1;
+            for (; j >= 0 && distinct[order[j]] > distinct[k]; j--) order[j + 1] = order[j];
+            order[j + 1] = k;
+        }
+
+        short[] sortedFloors = new short[size];
+        int[] sortedCounts = new int[size];
+        long[] sortedStarts = new long[size];
+        long[] sortedEnds = new long[size];
+        double[] sortedMinXs = new double[size];
+        double[] sortedMaxXs = new double[size];
+        double[] sortedMinYs = new double[size];
+        double[] sortedMaxYs = new double[size];
+        for (int k = 0; k < size; k++) {
+            sortedFloors[k] = distinct[order[k]];
+            sortedCounts[k] = counts[order[k]];
+            sortedStarts[k] = starts[order[k]];
+            sortedEnds[k] = ends[order[k]];
+            sortedMinXs[k] = minXs[order[k]];
+            sortedMaxXs[k] = maxXs[order[k]];
+            sortedMinYs[k] = minYs[order[k]];
+            sortedMaxYs[k] = maxYs[order[k]];
+        }
+
+        return new TrajectorySummary(floorMask, timestamps[0], timestamps[timestamps.length - 1],
+                sortedFloors, sortedCounts, sortedStarts, sortedEnds, sortedMinXs, sortedMaxXs, sortedMinYs, sortedMaxYs);
+    }
+
+    /**
+     * Check whether two UIDs may meet at all: on some floor both of them visit, their time spans on that floor are
+     * within maxInterval of each other and their bounding boxes on that floor are within spatialEpsilon of each other.
+     * A false answer is final while a true one still has to be confirmed against the samples.
+     *
+     * @param other          Summary of the other UID
+     * @param spatialEpsilon Maximum spatial distance between two points to be considered a potential intersection
+     * @param maxInterval    Maximum temporal interval in millis between two points to be considered a potential
+     *                       intersection, see {@link io.collaboration.helper.TemporalDistance#getMaxIntervalMillis(int)}
+     * @return false if no sample of this UID can meet a sample of the other one
+     */
+    public boolean mayMeet(TrajectorySummary other, double spatialEpsilon, long maxInterval) {
+        if ((floorMask & other.floorMask) == 0) return false;
+        if (!overlap(start, end, other.start, other.end, maxInterval)) return false;
+
+        double squaredEpsilon = spatialEpsilon * spatialEpsilon;
+        for (int i = 0, j = 0; i < floors.length && j < other.floors.length; ) {
+            if (floors[i] < other.floors[j]) {
+                i++;
+            } else if (floors[i] > other.floors[j]) {
+                j++;
+            } else {
+                if (overlap(starts[i], ends[i], other.starts[j], other.ends[j], maxInterval)) {
+                    // Gap between the two boxes along each axis, 0 where they overlap
+                    double dx = Math.max(0, Math.max(minXs[i] - other.maxXs[j], other.minXs[j] - maxXs[i]));
+                    double dy = Math.max(0, Math.max(minYs[i] - other.maxYs[j], other.minYs[j] - maxYs[i]));
+                    if (dx * dx + dy * dy <= squaredEpsilon) return true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimate the number of pairs of samples of the two UIDs recorded on the same floor at most maxInterval apart and
+     * within radius of each other, assuming that the samples of a UID on a floor are spread evenly over its time span
+     * and bounding box on that floor. A rough estimate, meant to compare the costs of identifiers rather than to
+     * predict the outcome of a query.
+     *
+     * @param other       Summary of the other UID
+     * @param radius      Maximum planar distance between the samples of a pair, infinite for no spatial criteria
+     * @param maxInterval Maximum temporal interval in millis between the samples of a pair
+     * @return the expected number of pairs, at most the product of the numbers of samples on the common floors
+     */
+    public double expectedPairs(TrajectorySummary other, double radius, long maxInterval) {
+        if ((floorMask & other.floorMask) == 0) return 0;
+
+        double pairs = 0;
+        for (int i = 0, j = 0; i < floors.length && j < other.floors.length; ) {
+            if (floors[i] < other.floors[j]) {
+                i++;
+            } else if (floors[i] > other.floors[j]) {
+                j++;
+            } else {
+                // Samples of this UID within maxInterval of the time span of the other one, times the samples of the
+                // other UID within the window around each of them
+                long duration = ends[i] - starts[i] + 1;
+                long otherDuration = other.ends[j] - other.starts[j] + 1;
+                long overlap = Math.min(ends[i], other.ends[j] + maxInterval)
+                        - Math.max(starts[i], other.starts[j] - maxInterval) + 1;
+                double temporal = overlap <= 0 ? 0 : (double) counts[i] * Math.min(1, (double) overlap / duration)
+                        * other.counts[j] * Math.min(1, (2.0 * maxInterval + 1) / otherDuration);
+
+                // Share of the pairs within radius, out of the larger of the two boxes
+                double dx = Math.max(0, Math.max(minXs[i] - other.maxXs[j], other.minXs[j] - maxXs[i]));
+                double dy = Math.max(0, Math.max(minYs[i] - other.maxYs[j], other.minYs[j] - maxYs[i]));
+                double area = Math.max((maxXs[i] - minXs[i]) * (maxYs[i] - minYs[i]),
+                        (other.maxXs[j] - other.minXs[j]) * (other.maxYs[j] - other.minYs[j]));
+                double disk = Math.PI * radius * radius;
+                double spatial = dx * dx + dy * dy > radius * radius ? 0 : area <= disk ? 1 : disk / area;
+
+                pairs += Math.min(temporal, (double) counts[i] * other.counts[j]) * spatial;
+                i++;
+                j++;
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * @param other Summary of the other UID
+     * @return true if the two UIDs visit at least one common floor
+     */
+    public boolean sharesFloor(TrajectorySummary other) {
+        if ((floorMask & other.floorMask) == 0) return false;
+
+        for (int i = 0, j = 0; i < floors.length && j < other.floors.length; ) {
+            if (floors[i] < other.floors[j]) i++;
+            else if (floors[i] > other.floors[j]) j++;
+            else return true;
+        }
+        return false;
+    }
+
+    private static boolean overlap(long start, long end, long otherStart, long otherEnd, long maxInterval) {
+        return start - maxInterval <= otherEnd && otherStart - maxInterval <= end;
+    }
+
+    public long getFloorMask() {
+        return floorMask;
+    }
+
+    /**
+     * @return epoch millis of the first sample
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return epoch millis of the last sample
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the floors visited in ascending order
+     */
+    public short[] getFloors() {
+        return floors.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "TrajectorySummary{" +
+                "floors=" + Arrays.toString(floors) +
+                ", start=" + start +
+                ", end=" + end +
+                '}';
+    }
+}
@@ -1,51 +1,260 @@
 package io.collaboration.helper;
 
+import io.collaboration.api.DwellIntervals;
 import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
 import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.groupingByConcurrent;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Reads CSV files containing the coordinates of users in space and performs a simple ETL by loading all
  * (timestamp,x_coordinate,y_coordinate,floor,uid) combination to {@link EnhancedCoordinate} DTOs. Afterwards,
  * a map correlating the included UIDs with their respective coordinates through the day is created.
+ * <p>
+ * For full building datasets {@link #loadTrajectories(String)} should be preferred, which skips the
+ * {@link EnhancedCoordinate} DTOs altogether and loads the samples straight into a columnar {@link TrajectoryStore}.
+ * Files in the standard layout are parsed in parallel off a memory mapped buffer by {@link MappedCsvParser}. Once
+ * enabled through the snapshot.enabled property, a {@link TrajectorySnapshot} of the store is written to the
+ * snapshot.directory, or next to the file if none is set, to be served instead of the file on later runs. Once enabled
+ * through the simplification.enabled property, the loaded trajectories are simplified within the configured error
+ * bounds, see {@link TrajectorySimplifier}. Once enabled through the dwell.enabled property, the samples of every
+ * trajectory are also collapsed into {@link DwellIntervals}.
+ * <p>
+ * The bytes and rows read and the latency of every phase of loading are recorded in the {@link Metrics}.
  */
 @Component
 public class DataLoader {
 
     private static final Logger LOGGER = Logger.getLogger(DataLoader.class);
 
+    @Value("${snapshot.enabled:false}")
+    private boolean snapshotEnabled;
+
+    /**
+     * Directory the snapshots are written to, next to the CSV files if empty
+     */
+    @Value("${snapshot.directory:}")
+    private String snapshotDirectory = "";
+
+    @Value("${simplification.enabled:false}")
+    private boolean simplificationEnabled;
+
+    /**
+     * Maximum planar distance between a dropped coordinate and the coordinate kept in its place
+     */
+    @Value("${simplification.spatialError:0.5}")
+    private double maxSpatialError = 0.5;
+
+    /**
+     * Maximum interval in seconds between a dropped coordinate and the coordinate kept in its place
+     */
+    @Value("${simplification.temporalError:30}")
+    private int maxTemporalError = 30;
+
+    @Value("${dwell.enabled:false}")
+    private boolean dwellEnabled;
+
+    /**
+     * Maximum planar distance between a coordinate and the first coordinate of its dwell interval
+     */
+    @Value("${dwell.spatialError:0.5}")
+    private double maxDwellError = 0.5;
+
+    /**
+     * Maximum interval in seconds between consecutive coordinates of a dwell interval
+     */
+    @Value("${dwell.maxGap:60}")
+    private int maxDwellGap = 60;
+
+    @Autowired(required = false)
+    private Metrics metrics = new Metrics();
+
     public Map<String, List<EnhancedCoordinate>> load(String fileName) throws IOException {
 
         LOGGER.info("Preparing data from file " + fileName + " ...");
 
-        Reader reader = new FileReader(fileName);
-        CSVParser parser = CSVFormat.DEFAULT.withHeader(Headers.class)
-                .withFirstRecordAsHeader()
-                .parse(reader);
-
-        Map<String, List<EnhancedCoordinate>> collect = StreamSupport.stream(parser.spliterator(), true)
+        CSVParser parser = parse(fileName);
+        Stream<EnhancedCoordinate> coordinates = StreamSupport.stream(parser.spliterator(), true)
                 .map(r -> new EnhancedCoordinate(r.get(Headers.UID),
                         ZonedDateTime.parse(r.get(Headers.TIMESTAMP)),
                         Double.parseDouble(r.get(Headers.X_COORDINATE)),
                         Double.parseDouble(r.get(Headers.Y_COORDINATE)),
-                        Integer.valueOf(r.get(Headers.FLOOR))))
-                .collect(groupingByConcurrent(EnhancedCoordinate::getUid));
+                        Integer.valueOf(r.get(Headers.FLOOR))));
+
+        // Parsing and grouping are fused in a single pipeline, unless they are to be timed apart
+        Map<String, List<EnhancedCoordinate>> collect;
+        if (metrics.isEnabled()) {
+            long start = metrics.start();
+            List<EnhancedCoordinate> parsed = coordinates.collect(toList());
+            metrics.stop("load.parse", start);
+
+            start = metrics.start();
+            collect = parsed.parallelStream().collect(groupingByConcurrent(EnhancedCoordinate::getUid));
+            metrics.stop("load.group", start);
+
+            recordRead(Paths.get(fileName), parsed.size());
+        } else {
+            collect = coordinates.collect(groupingByConcurrent(EnhancedCoordinate::getUid));
+        }
 
         LOGGER.info("Data from file " + fileName + " ready");
 
         return collect;
     }
+
+    /**
+     * Load the CSV file into a {@link TrajectoryStore}. Each row is appended to the primitive columns of its
+     * UID without creating an {@link EnhancedCoordinate}; the UIDs are dictionary encoded to ints. Files with the
+     * standard header and no quoted fields are handed over to {@link MappedCsvParser}, anything else is read through
+     * commons-csv. An up to date snapshot of the file, if any, is served instead of parsing it.
+     *
+     * @param fileName Fully qualified path of the CSV file
+     * @return the columnar store holding the trajectories of all UIDs
+     * @throws IOException if the file cannot be read
+     */
+    public TrajectoryStore loadTrajectories(String fileName) throws IOException {
+
+        LOGGER.info("Preparing trajectories from file " + fileName + " ...");
+
+        long start = System.nanoTime();
+        Path source = Paths.get(fileName);
+
+        if (snapshotEnabled) {
+            long read = metrics.start();
+            Optional<TrajectoryStore> snapshot = TrajectorySnapshot.read(source, snapshotDirectory());
+            metrics.stop("load.snapshot.read", read);
+            if (snapshot.isPresent()) {
+                metrics.add("load.snapshot.hits", 1);
+                LOGGER.info("Trajectories from snapshot of file " + fileName + " ready in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+                return collapse(simplify(snapshot.get()));
+            }
+        }
+
+        // Parsing and grouping by UID are fused in both parsers
+        long parse = metrics.start();
+        TrajectoryStore store = MappedCsvParser.parse(source).orElse(null);
+        if (store == null) {
+            LOGGER.info("Unexpected header or quoted fields in file " + fileName + ". Falling back to commons-csv");
+            store = loadRecords(fileName);
+        }
+        metrics.stop("load.parse", parse);
+        recordRead(source, store.samples());
+
+        if (snapshotEnabled) {
+            long write = metrics.start();
+            try {
+                TrajectorySnapshot.write(store, source, snapshotDirectory());
+            } catch (IOException e) {
+                LOGGER.warn("Could not write snapshot of file " + fileName, e);
+            }
+            metrics.stop("load.snapshot.write", write);
+        }
+
+        LOGGER.info("Trajectories of " + store.size() + " UIDs (" + store.samples() + " coordinates) from file "
+                + fileName + " ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        return collapse(simplify(store));
+    }
+
+    /**
+     * Simplify the trajectories of the store through {@link TrajectorySimplifier}, unless disabled through the
+     * simplification.enabled property. Snapshots always hold the recorded trajectories, so that the error bounds may
+     * change between runs.
+     */
+    private TrajectoryStore simplify(TrajectoryStore store) {
+        if (!simplificationEnabled) return store;
+
+        long start = System.nanoTime();
+        long timer = metrics.start();
+        TrajectoryStore simplified = store.map(trajectory ->
+                TrajectorySimplifier.simplify(trajectory, maxSpatialError, maxTemporalError * 1000L));
+        metrics.stop("load.simplify", timer);
+        metrics.add("load.simplify.dropped", store.samples() - simplified.samples());
+
+        LOGGER.info("Trajectories simplified from " + store.samples() + " to " + simplified.samples()
+                + " coordinates within " + maxSpatialError + " and " + maxTemporalError + " seconds in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        return simplified;
+    }
+
+    /**
+     * Collapse the samples of every trajectory of the store into {@link DwellIntervals}, unless disabled through the
+     * dwell.enabled property.
+     */
+    private TrajectoryStore collapse(TrajectoryStore store) {
+        if (!dwellEnabled) return store;
+
+        long start = System.nanoTime();
+        long timer = metrics.start();
+        LongAdder intervals = new LongAdder();
+        TrajectoryStore collapsed = store.map(trajectory -> {
+            DwellIntervals dwells = DwellIntervals.of(trajectory, maxDwellError, maxDwellGap * 1000L);
+            intervals.add(dwells.size());
+            return trajectory.withDwells(dwells);
+        });
+        metrics.stop("load.dwell", timer);
+        metrics.add("load.dwell.intervals", intervals.sum());
+
+        LOGGER.info("Trajectories collapsed from " + store.samples() + " coordinates to " + intervals.sum()
+                + " dwell intervals within " + maxDwellError + " and gaps of " + maxDwellGap + " seconds in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        return collapsed;
+    }
+
+    private Path snapshotDirectory() {
+        return snapshotDirectory.isEmpty() ? null : Paths.get(snapshotDirectory);
+    }
+
+    private void recordRead(Path source, long rows) throws IOException {
+        if (!metrics.isEnabled()) return;
+        metrics.add("load.bytes", Files.size(source));
+        metrics.add("load.rows", rows);
+    }
+
+    private TrajectoryStore loadRecords(String fileName) throws IOException {
+        TrajectoryStore.Builder builder = new TrajectoryStore.Builder();
+        try (CSVParser parser = parse(fileName)) {
+            for (CSVRecord r : parser) {
+                Trajectory.Builder columns = builder.builder(r.get(Headers.UID));
+                columns.add(TemporalDistance.toEpochMillis(ZonedDateTime.parse(r.get(Headers.TIMESTAMP))),
+                        Double.parseDouble(r.get(Headers.X_COORDINATE)),
+                        Double.parseDouble(r.get(Headers.Y_COORDINATE)),
+                        Integer.parseInt(r.get(Headers.FLOOR)));
+            }
+        }
+        return builder.build();
+    }
+
+    private CSVParser parse(String fileName) throws IOException {
+        Reader reader = new FileReader(fileName);
+        return CSVFormat.DEFAULT.withHeader(Headers.class)
+                .withFirstRecordAsHeader()
+                .parse(reader);
+    }
 }
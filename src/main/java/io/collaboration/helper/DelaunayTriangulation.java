@@ -0,0 +1,612 @@
+package io.collaboration.helper;
+
+import java.util.Arrays;
+
+/**
+ * Delaunay triangulation of a set of planar points held in primitive arrays, built by the sweep-hull algorithm: the
+ * points are added in order of distance from the circumcenter of a seed triangle, each one connected to the edges of
+ * the convex hull it sees, and the triangles created are flipped until they satisfy the Delaunay condition. A hash of
+ * the hull by pseudo angle finds the visible edges in expected constant time, so triangulating takes O(nlogn) for the
+ * sort and O(n) for the sweep, without creating a single object per point.
+ * <p>
+ * Triangles are kept as triples of point indices in clockwise order, along with the opposite half edge of
+ * every half edge (-1 on the hull). Points coinciding with a point already added are left out of the triangulation.
+ * Points all lying on a line have no triangles, and are instead kept as a hull in order along the line.
+ * <p>
+ * Ported from <a href="https://github.com/mapbox/delaunator">Delaunator</a>, whose license follows.
+ * <pre>
+ * ISC License
+ *
+ * Copyright (c) 2021, Mapbox
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any purpose
+ * with or without fee is hereby granted, provided that the above copyright notice
+ * and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND ISC DISCLAIMS ALL WARRANTIES WITH REGARD TO
+ * THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS.
+ * IN NO EVENT SHALL ISC BE LIABLE FOR ANY SPECIAL, DIRECT, INDIRECT, OR
+ * CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING FROM LOSS OF USE, DATA
+ * OR PROFITS, WHETHER IN AN ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION,
+ * ARISING OUT OF OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ * </pre>
+ */
+public final class DelaunayTriangulation {
+
+    private final double[] xs;
+
+    private final double[] ys;
+
+    /**
+     * Point indices of the triangles, three per triangle
+     */
+    private int[] triangles;
+
+    /**
+     * Opposite half edge of each half edge, -1 for the half edges on the hull. Half edge e starts at triangles[e].
+     */
+    private int[] halfedges;
+
+    private int trianglesLength;
+
+    /**
+     * Point indices of the convex hull, or of all distinct points in order along the line if they are collinear
+     */
+    private int[] hull;
+
+    // State of the sweep
+    private int[] hullPrev;
+
+    private int[] hullNext;
+
+    private int[] hullTri;
+
+    private int[] hullHash;
+
+    private int hashSize;
+
+    private int hullStart;
+
+    private double centerX;
+
+    private double centerY;
+
+    private final int[] edgeStack = new int[512];
+
+    private DelaunayTriangulation(double[] xs, double[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * Triangulate the given points.
+     *
+     * @param xs Distances of the points from the x axis
+     * @param ys Distances of the points from the y axis
+     * @return the triangulation
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public static DelaunayTriangulation of(double[] xs, double[] ys) {
+        if (xs.length != ys.length) throw new IllegalArgumentException("Coordinates differ in length");
+        DelaunayTriangulation triangulation = new DelaunayTriangulation(xs, ys);
+        triangulation.triangulate();
+        return triangulation;
+    }
+
+    /**
+     * @return number of triangles
+     */
+    public int triangles() {
+        return trianglesLength / 3;
+    }
+
+    /**
+     * @return number of edges
+     */
+    public int edges() {
+        return trianglesLength == 0 ? Math.max(0, hull.length - 1) : (trianglesLength + hull.length) / 2;
+    }
+
+    /**
+     * @return point indices of the triangles, three per triangle in clockwise order
+     */
+    public int[] getTriangles() {
+        return Arrays.copyOf(triangles, trianglesLength);
+    }
+
+    /**
+     * @return point indices of the convex hull in clockwise order, or of all distinct points in order along
+     * the line if they are collinear
+     */
+    public int[] getHull() {
+        return hull.clone();
+    }
+
+    /**
+     * Edges of the <a href="https://en.wikipedia.org/wiki/Gabriel_graph">Gabriel graph</a>, i.e. the pairs of points
+     * whose closed diametral disk holds no other point. The Gabriel graph is the subgraph of the triangulation whose
+     * edges see the vertices opposite to them in their adjacent triangles under an acute angle, so every edge is
+     * tested against at most two points.
+     *
+     * @return point indices of the edges, two per edge
+     */
+    public int[] gabrielEdges() {
+        return collect(true);
+    }
+
+    /**
+     * Edges of the triangulation left out of the Gabriel graph.
+     *
+     * @return point indices of the edges, two per edge
+     */
+    public int[] nonGabrielEdges() {
+        return collect(false);
+    }
+
+    private int[] collect(boolean gabriel) {
+        // Collinear points: consecutive points along the line, a lone pair or nothing at all
+        if (trianglesLength == 0) {
+            if (!gabriel) return new int[0];
+            int[] edges = new int[Math.max(0, 2 * (hull.length - 1))];
+            for (int h = 1; h < hull.length; h++) {
+                edges[2 * h - 2] = hull[h - 1];
+                edges[2 * h - 1] = hull[h];
+            }
+            return edges;
+        }
+
+        int[] edges = new int[2 * edges()];
+        int size = 0;
+        for (int e = 0; e < trianglesLength; e++) {
+            int opposite = halfedges[e];
+            // Every inner edge is visited from both of its half edges
+            if (opposite != -1 && opposite < e) continue;
+
+            int a = triangles[e];
+            int b = triangles[next(e)];
+            boolean acute = acute(a, b, triangles[previous(e)])
+                    && (opposite == -1 || acute(a, b, triangles[previous(opposite)]));
+            if (acute != gabriel) continue;
+
+            edges[size++] = a;
+            edges[size++] = b;
+        }
+        return Arrays.copyOf(edges, size);
+    }
+
+    /**
+     * @return whether the angle at c of the triangle (a, b, c) is acute, i.e. c lies outside the closed diametral
+     * disk of (a, b)
+     */
+    private boolean acute(int a, int b, int c) {
+        return (xs[a] - xs[c]) * (xs[b] - xs[c]) + (ys[a] - ys[c]) * (ys[b] - ys[c]) > 0;
+    }
+
+    private static int next(int e) {
+        return e % 3 == 2 ? e - 2 : e + 1;
+    }
+
+    private static int previous(int e) {
+        return e % 3 == 0 ? e + 2 : e - 1;
+    }
+
+    private void triangulate() {
+        int n = xs.length;
+        int maxTriangles = Math.max(2 * n - 5, 0);
+        triangles = new int[maxTriangles * 3];
+        halfedges = new int[maxTriangles * 3];
+
+        if (n < 3) {
+            hull = n == 2 && (xs[0] != xs[1] || ys[0] != ys[1]) ? new int[]{0, 1} : n == 0 ? new int[0] : new int[]{0};
+            return;
+        }
+
+        hashSize = (int) Math.ceil(Math.sqrt(n));
+        hullPrev = new int[n];
+        hullNext = new int[n];
+        hullTri = new int[n];
+        hullHash = new int[hashSize];
+        int[] ids = new int[n];
+        double[] dists = new double[n];
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+            ids[i] = i;
+        }
+        double cx = (minX + maxX) / 2;
+        double cy = (minY + maxY) / 2;
+
+        // Seed point closest to the center, the point closest to it and the point forming the smallest circumcircle
+        int i0 = 0;
+        double minDist = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double d = dist(cx, cy, xs[i], ys[i]);
+            if (d < minDist) {
+                i0 = i;
+                minDist = d;
+            }
+        }
+
+        int i1 = -1;
+        minDist = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (i == i0) continue;
+            double d = dist(xs[i0], ys[i0], xs[i], ys[i]);
+            if (d < minDist && d > 0) {
+                i1 = i;
+                minDist = d;
+            }
+        }
+
+        int i2 = -1;
+        double minRadius = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n && i1 >= 0; i++) {
+            if (i == i0 || i == i1) continue;
+            double r = circumradius(xs[i0], ys[i0], xs[i1], ys[i1], xs[i], ys[i]);
+            if (r < minRadius) {
+                i2 = i;
+                minRadius = r;
+            }
+        }
+
+        if (minRadius == Double.POSITIVE_INFINITY) {
+            collinear(ids, dists);
+            return;
+        }
+
+        // Clockwise seed triangle
+        if (orient(xs[i0], ys[i0], xs[i1], ys[i1], xs[i2], ys[i2])) {
+            int i = i1;
+            i1 = i2;
+            i2 = i;
+        }
+
+        circumcenter(xs[i0], ys[i0], xs[i1], ys[i1], xs[i2], ys[i2]);
+        for (int i = 0; i < n; i++) dists[i] = dist(xs[i], ys[i], centerX, centerY);
+        sort(ids, dists, 0, n - 1);
+
+        hullStart = i0;
+        hullNext[i0] = hullPrev[i2] = i1;
+        hullNext[i1] = hullPrev[i0] = i2;
+        hullNext[i2] = hullPrev[i1] = i0;
+        hullTri[i0] = 0;
+        hullTri[i1] = 1;
+        hullTri[i2] = 2;
+        Arrays.fill(hullHash, -1);
+        hullHash[hashKey(xs[i0], ys[i0])] = i0;
+        hullHash[hashKey(xs[i1], ys[i1])] = i1;
+        hullHash[hashKey(xs[i2], ys[i2])] = i2;
+
+        trianglesLength = 0;
+        addTriangle(i0, i1, i2, -1, -1, -1);
+
+        double xp = 0;
+        double yp = 0;
+        for (int k = 0; k < n; k++) {
+            int i = ids[k];
+            double x = xs[i];
+            double y = ys[i];
+
+            // Skip the points coinciding with the previous one
+            if (k > 0 && x == xp && y == yp) continue;
+            xp = x;
+            yp = y;
+
+            if (i == i0 || i == i1 || i == i2) continue;
+
+            // Find an edge of the hull visible from the point through the hash
+            int start = 0;
+            for (int j = 0, key = hashKey(x, y); j < hashSize; j++) {
+                start = hullHash[(key + j) % hashSize];
+                if (start != -1 && start != hullNext[start]) break;
+            }
+
+            start = hullPrev[start];
+            int e = start;
+            int q;
+            while (!orient(x, y, xs[e], ys[e], xs[q = hullNext[e]], ys[q])) {
+                e = q;
+                if (e == start) {
+                    e = -1;
+                    break;
+                }
+            }
+            // Seeing no edge, the point coincides with a point of the hull
+            if (e == -1) continue;
+
+            // First triangle from the point, flipped until it satisfies the Delaunay condition
+            int t = addTriangle(e, i, hullNext[e], -1, -1, hullTri[e]);
+            hullTri[i] = legalize(t + 2);
+            hullTri[e] = t;
+
+            // Walk forward along the hull, adding triangles
+            int forward = hullNext[e];
+            while (orient(x, y, xs[forward], ys[forward], xs[q = hullNext[forward]], ys[q])) {
+                t = addTriangle(forward, i, q, hullTri[i], -1, hullTri[forward]);
+                hullTri[i] = legalize(t + 2);
+                // Removed from the hull
+                hullNext[forward] = forward;
+                forward = q;
+            }
+
+            // Walk backward along the hull, adding triangles
+            if (e == start) {
+                while (orient(x, y, xs[q = hullPrev[e]], ys[q], xs[e], ys[e])) {
+                    t = addTriangle(q, i, e, -1, hullTri[e], hullTri[q]);
+                    legalize(t + 2);
+                    hullTri[q] = t;
+                    hullNext[e] = e;
+                    e = q;
+                }
+            }
+
+            hullStart = hullPrev[i] = e;
+            hullNext[e] = hullPrev[forward] = i;
+            hullNext[i] = forward;
+
+            hullHash[hashKey(x, y)] = i;
+            hullHash[hashKey(xs[e], ys[e])] = e;
+        }
+
+        int hullSize = 0;
+        int e = hullStart;
+        do {
+            hullSize++;
+            e = hullNext[e];
+        } while (e != hullStart);
+        hull = new int[hullSize];
+        for (int h = 0; h < hullSize; h++) {
+            hull[h] = e;
+            e = hullNext[e];
+        }
+
+        // Release the state of the sweep
+        hullPrev = hullNext = hullTri = hullHash = null;
+    }
+
+    /**
+     * Order collinear points along their line, dropping the coinciding ones.
+     */
+    private void collinear(int[] ids, double[] dists) {
+        int n = xs.length;
+        for (int i = 0; i < n; i++) {
+            double dx = xs[i] - xs[0];
+            dists[i] = dx != 0 ? dx : ys[i] - ys[0];
+        }
+        sort(ids, dists, 0, n - 1);
+
+        int[] line = new int[n];
+        int size = 0;
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < n; k++) {
+            int id = ids[k];
+            if (dists[id] > previous) {
+                line[size++] = id;
+                previous = dists[id];
+            }
+        }
+        hull = Arrays.copyOf(line, size);
+    }
+
+    /**
+     * Flip the triangles sharing half edge a, and then the ones next to them, until they satisfy the Delaunay
+     * condition. Recursion is replaced by a fixed size stack, which only fills up on extremely degenerate input.
+     *
+     * @return the half edge following a once flipped
+     */
+    private int legalize(int a) {
+        int i = 0;
+        int ar;
+
+        while (true) {
+            int b = halfedges[a];
+            int a0 = a - a % 3;
+            ar = a0 + (a + 2) % 3;
+
+            // Hull edge
+            if (b == -1) {
+                if (i == 0) break;
+                a = edgeStack[--i];
+                continue;
+            }
+
+            int b0 = b - b % 3;
+            int al = a0 + (a + 1) % 3;
+            int bl = b0 + (b + 2) % 3;
+
+            int p0 = triangles[ar];
+            int pr = triangles[a];
+            int pl = triangles[al];
+            int p1 = triangles[bl];
+
+            if (inCircle(xs[p0], ys[p0], xs[pr], ys[pr], xs[pl], ys[pl], xs[p1], ys[p1])) {
+                triangles[a] = p1;
+                triangles[b] = p0;
+
+                int hbl = halfedges[bl];
+
+                // Edge flipped on the other side of the hull, fix the reference of the hull to it
+                if (hbl == -1) {
+                    int e = hullStart;
+                    do {
+                        if (hullTri[e] == bl) {
+                            hullTri[e] = a;
+                            break;
+                        }
+                        e = hullPrev[e];
+                    } while (e != hullStart);
+                }
+                link(a, hbl);
+                link(b, halfedges[ar]);
+                link(ar, bl);
+
+                int br = b0 + (b + 1) % 3;
+                if (i < edgeStack.length) edgeStack[i++] = br;
+            } else {
+                if (i == 0) break;
+                a = edgeStack[--i];
+            }
+        }
+
+        return ar;
+    }
+
+    private void link(int a, int b) {
+        halfedges[a] = b;
+        if (b != -1) halfedges[b] = a;
+    }
+
+    private int addTriangle(int i0, int i1, int i2, int a, int b, int c) {
+        int t = trianglesLength;
+        triangles[t] = i0;
+        triangles[t + 1] = i1;
+        triangles[t + 2] = i2;
+        link(t, a);
+        link(t + 1, b);
+        link(t + 2, c);
+        trianglesLength += 3;
+        return t;
+    }
+
+    private int hashKey(double x, double y) {
+        return (int) Math.floor(pseudoAngle(x - centerX, y - centerY) * hashSize) % hashSize;
+    }
+
+    /**
+     * Monotonic in the angle of the vector, in [0, 1], without trigonometry
+     */
+    private static double pseudoAngle(double dx, double dy) {
+        double p = dx / (Math.abs(dx) + Math.abs(dy));
+        return (dy > 0 ? 3 - p : 1 + p) / 4;
+    }
+
+    private static double dist(double ax, double ay, double bx, double by) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Sign of the orientation of (p, r, q), or 0 if rounding errors may have flipped it (Shewchuk's error bound)
+     */
+    private static double orientIfSure(double px, double py, double rx, double ry, double qx, double qy) {
+        double l = (ry - py) * (qx - px);
+        double r = (rx - px) * (qy - py);
+        return Math.abs(l - r) >= 3.3306690738754716e-16 * Math.abs(l + r) ? l - r : 0;
+    }
+
+    /**
+     * Whether (r, q, p) turn counter-clockwise, evaluated from whichever vertex gives a reliable sign so that the
+     * answer is the same for every rotation of the triangle
+     */
+    private static boolean orient(double rx, double ry, double qx, double qy, double px, double py) {
+        double sign = orientIfSure(px, py, rx, ry, qx, qy);
+        if (sign == 0) sign = orientIfSure(rx, ry, qx, qy, px, py);
+        if (sign == 0) sign = orientIfSure(qx, qy, px, py, rx, ry);
+        return sign < 0;
+    }
+
+    /**
+     * Whether p lies inside the circumcircle of the triangle (a, b, c)
+     */
+    private static boolean inCircle(double ax, double ay, double bx, double by, double cx, double cy,
+                                    double px, double py) {
+        double dx = ax - px;
+        double dy = ay - py;
+        double ex = bx - px;
+        double ey = by - py;
+        double fx = cx - px;
+        double fy = cy - py;
+
+        double ap = dx * dx + dy * dy;
+        double bp = ex * ex + ey * ey;
+        double cp = fx * fx + fy * fy;
+
+        return dx * (ey * cp - bp * fy) - dy * (ex * cp - bp * fx) + ap * (ex * fy - ey * fx) < 0;
+    }
+
+    /**
+     * Squared circumradius of the triangle (a, b, c), infinite for collinear points
+     */
+    private static double circumradius(double ax, double ay, double bx, double by, double cx, double cy) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double ex = cx - ax;
+        double ey = cy - ay;
+        double bl = dx * dx + dy * dy;
+        double cl = ex * ex + ey * ey;
+        double d = 0.5 / (dx * ey - dy * ex);
+        double x = (ey * bl - dy * cl) * d;
+        double y = (dx * cl - ex * bl) * d;
+        double r = x * x + y * y;
+        return Double.isNaN(r) ? Double.POSITIVE_INFINITY : r;
+    }
+
+    private void circumcenter(double ax, double ay, double bx, double by, double cx, double cy) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double ex = cx - ax;
+        double ey = cy - ay;
+        double bl = dx * dx + dy * dy;
+        double cl = ex * ex + ey * ey;
+        double d = 0.5 / (dx * ey - dy * ex);
+        centerX = ax + (ey * bl - dy * cl) * d;
+        centerY = ay + (dx * cl - ex * bl) * d;
+    }
+
+    /**
+     * Sort the point indices by their distances, a quicksort falling back to insertion sort on short ranges.
+     */
+    private static void sort(int[] ids, double[] dists, int left, int right) {
+        while (right - left > 20) {
+            int median = (left + right) >>> 1;
+            int i = left + 1;
+            int j = right;
+            swap(ids, median, i);
+            if (dists[ids[left]] > dists[ids[right]]) swap(ids, left, right);
+            if (dists[ids[i]] > dists[ids[right]]) swap(ids, i, right);
+            if (dists[ids[left]] > dists[ids[i]]) swap(ids, left, i);
+
+            int pivot = ids[i];
+            double pivotDist = dists[pivot];
+            while (true) {
+                do i++; while (dists[ids[i]] < pivotDist);
+                do j--; while (dists[ids[j]] > pivotDist);
+                if (j < i) break;
+                swap(ids, i, j);
+            }
+            ids[left + 1] = ids[j];
+            ids[j] = pivot;
+
+            // Recurse into the shorter side, loop over the longer one
+            if (right - i + 1 >= j - left) {
+                sort(ids, dists, left, j - 1);
+                left = i;
+            } else {
+                sort(ids, dists, i, right);
+                right = j - 1;
+            }
+        }
+
+        for (int i = left + 1; i <= right; i++) {
+            int id = ids[i];
+            double dist = dists[id];
+            int j = i - 1;
+            while (j >= left && dists[ids[j]] > dist) ids[j + 1] = ids[j--];
+            ids[j + 1] = id;
+        }
+    }
+
+    private static void swap(int[] ids, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+}
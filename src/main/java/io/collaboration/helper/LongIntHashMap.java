@@ -0,0 +1,114 @@
+package io.collaboration.helper;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive long keys to primitive int values. Used by the grid based
+ * identifiers for keying cells on packed (floor, cellX, cellY) longs without boxing a {@link Long} per
+ * lookup. Linear probing is used and the table grows once it becomes half full.
+ */
+public final class LongIntHashMap {
+
+    /**
+     * Value returned by {@link #get(long)} when the key is absent.
+     */
+    public static final int MISSING = -1;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private boolean[] used;
+
+    private int size;
+
+    private int mask;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Retrieve the value mapped to the given key.
+     *
+     * @param key Packed key
+     * @return the mapped value or {@link #MISSING}
+     */
+    public int get(long key) {
+        int slot = mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Map the given key to the given value, replacing any previous value.
+     *
+     * @param key   Packed key
+     * @param value Non negative value
+     */
+    public void put(long key, int value) {
+        int slot = mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) rehash();
+    }
+
+    /**
+     * Retrieve the value mapped to the given key, mapping it to {@code size()} first if it is absent.
+     * Convenient for assigning dense ids to keys.
+     *
+     * @param key Packed key
+     * @return the dense id of the key
+     */
+    public int putIfAbsent(long key) {
+        int existing = get(key);
+        if (existing != MISSING) return existing;
+        int id = size;
+        put(key, id);
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,416 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Parser of CSV files in the (timestamp,x,y,floor,uid) layout of {@link Headers}, working straight on the bytes of the
+ * memory mapped file. The file is split at line boundaries into chunks which are parsed concurrently, each one
+ * grouping its rows by UID into primitive columns. The chunks are merged into a {@link TrajectoryStore} at the end.
+ * <p>
+ * Fields are decoded without creating intermediate Strings: timestamps in the fixed
+ * {@code 2014-07-20T07:49:20.256Z} format are converted to epoch millis arithmetically, plain decimals are rounded
+ * exactly with integer arithmetic and UIDs are looked up by their bytes, so that a String is created
+ * once per UID and chunk. Any field outside the fast paths is handed over to the JDK parsers. Quoted fields are not
+ * supported: a file containing any quote is left to commons-csv, since a quoted field may even hold a line break and
+ * shift the boundaries of the rows.
+ */
+public final class MappedCsvParser {
+
+    static final String HEADER = "timestamp,x,y,floor,uid";
+
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private static final int TIMESTAMP_LENGTH = 24;
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    private static final long[] POWERS_OF_FIVE = new long[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        POWERS_OF_FIVE[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+            POWERS_OF_FIVE[i] = POWERS_OF_FIVE[i - 1] * 5;
+        }
+    }
+
+    private MappedCsvParser() {
+    }
+
+    /**
+     * Parse the given CSV file using one chunk per few megabytes, up to four chunks per available processor.
+     *
+     * @param file CSV file
+     * @return the columnar store, or empty if the header of the file differs from {@link #HEADER} or the file contains
+     * quotes
+     * @throws IOException if the file cannot be read
+     */
+    public static Optional<TrajectoryStore> parse(Path file) throws IOException {
+        return parse(file, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    static Optional<TrajectoryStore> parse(Path file, int maxChunks) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            long dataStart = dataStart(channel);
+            if (dataStart < 0) return Optional.empty();
+
+            long length = size - dataStart;
+            int chunks = (int) Math.max(1, Math.min(maxChunks, length / MIN_CHUNK_SIZE));
+            chunks = (int) Math.max(chunks, (length + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+
+            long[] bounds = new long[chunks + 1];
+            bounds[0] = dataStart;
+            bounds[chunks] = size;
+            for (int k = 1; k < chunks; k++) {
+                bounds[k] = nextLineStart(channel, Math.max(bounds[k - 1], dataStart + k * (length / chunks)));
+            }
+
+            List<List<Trajectory.Builder>> parsed;
+            try {
+                parsed = IntStream.range(0, chunks).parallel()
+                        .mapToObj(k -> parseChunk(channel, bounds[k], bounds[k + 1]))
+                        .collect(toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (parsed.contains(null)) return Optional.empty();
+
+            // Merge the columns of every UID in chunk order
+            TrajectoryStore.Builder builder = new TrajectoryStore.Builder();
+            for (List<Trajectory.Builder> chunk : parsed) {
+                for (Trajectory.Builder columns : chunk) builder.builder(columns.getUid()).addAll(columns);
+            }
+            return Optional.of(builder.build());
+        }
+    }
+
+    /**
+     * Validate the header of the file.
+     *
+     * @return the offset of the first data row, or -1 if the header differs from {@link #HEADER}
+     */
+    private static long dataStart(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(channel.size(), 4096));
+        channel.read(head, 0);
+        head.flip();
+
+        int end = 0;
+        while (end < head.limit() && head.get(end) != '\n') end++;
+        long dataStart = end < head.limit() ? end + 1 : channel.size();
+
+        int start = 0;
+        // Skip the byte order mark, if any
+        if (end >= 3 && (head.get(0) & 0xFF) == 0xEF && (head.get(1) & 0xFF) == 0xBB && (head.get(2) & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        if (end > start && head.get(end - 1) == '\r') end--;
+
+        String header = new String(head.array(), start, end - start, StandardCharsets.US_ASCII);
+        return HEADER.equals(header) ? dataStart : -1;
+    }
+
+    /**
+     * @return the offset right after the first line break at or after the given position
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        while (position < channel.size()) {
+            block.clear();
+            int read = channel.read(block, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return channel.size();
+    }
+
+    /**
+     * @return the columns of the UIDs in the chunk, or null if it contains a quote
+     */
+    private static List<Trajectory.Builder> parseChunk(FileChannel channel, long from, long to) {
+        Dictionary dictionary = new Dictionary();
+        if (to <= from) return dictionary.builders;
+
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int[] commas = new int[4];
+        int limit = buffer.limit();
+        int position = 0;
+        while (position < limit) {
+            int lineEnd = position;
+            int fields = 0;
+            byte c;
+            while (lineEnd < limit && (c = buffer.get(lineEnd)) != '\n') {
+                if (c == ',' && fields < commas.length) commas[fields++] = lineEnd;
+                else if (c == '"') return null;
+                lineEnd++;
+            }
+            int end = lineEnd > position && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+
+            if (end > position) {
+                if (fields < commas.length) {
+                    throw new IllegalArgumentException("Malformed row at byte " + (from + position));
+                }
+                dictionary.get(buffer, commas[3] + 1, end)
+                        .add(parseTimestamp(buffer, position, commas[0]),
+                                parseDouble(buffer, commas[0] + 1, commas[1]),
+                                parseDouble(buffer, commas[1] + 1, commas[2]),
+                                parseInt(buffer, commas[2] + 1, commas[3]));
+            }
+
+            position = lineEnd + 1;
+        }
+
+        return dictionary.builders;
+    }
+
+    /**
+     * Decode an ISO-8601 timestamp to epoch millis. Timestamps in the fixed {@code yyyy-MM-ddTHH:mm:ss.SSSZ} format
+     * are decoded arithmetically; anything else is handed over to {@link ZonedDateTime#parse(CharSequence)}.
+     */
+    static long parseTimestamp(ByteBuffer buffer, int from, int to) {
+        if (to - from == TIMESTAMP_LENGTH
+                && buffer.get(from + 4) == '-' && buffer.get(from + 7) == '-' && buffer.get(from + 10) == 'T'
+                && buffer.get(from + 13) == ':' && buffer.get(from + 16) == ':' && buffer.get(from + 19) == '.'
+                && buffer.get(from + 23) == 'Z') {
+
+            int year = digits(buffer, from, 4);
+            int month = digits(buffer, from + 5, 2);
+            int day = digits(buffer, from + 8, 2);
+            int hour = digits(buffer, from + 11, 2);
+            int minute = digits(buffer, from + 14, 2);
+            int second = digits(buffer, from + 17, 2);
+            int millis = digits(buffer, from + 20, 3);
+
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month)
+                    && hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60 && millis >= 0) {
+                return ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+            }
+        }
+
+        return TemporalDistance.toEpochMillis(ZonedDateTime.parse(string(buffer, from, to)));
+    }
+
+    /**
+     * Parse a decimal. Plain decimals of up to 18 significant digits and 22 fractional digits are rounded exactly to
+     * the nearest double, which is the same double {@link Double#parseDouble(String)} yields. Anything else is handed
+     * over to it.
+     */
+    static double parseDouble(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean dot = false;
+        boolean digits = false;
+        for (; i < to; i++) {
+            byte c = buffer.get(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (mantissa > 0 || c != '0') significant++;
+                if (significant > MAX_SIGNIFICANT_DIGITS) return Double.parseDouble(string(buffer, from, to));
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot) scale++;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(string(buffer, from, to));
+            }
+        }
+
+        if (!digits || scale >= POWERS_OF_TEN.length) return Double.parseDouble(string(buffer, from, to));
+
+        double value;
+        if (mantissa <= 1L << 53) {
+            // Both operands are exact, so is the single rounding of the division
+            value = mantissa / POWERS_OF_TEN[scale];
+        } else {
+            value = divide(mantissa, scale);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Correctly round mantissa / 10^scale to a double. As 10^scale = 5^scale * 2^scale and dividing by a power of two
+     * is exact, it suffices to round mantissa / 5^scale, whose quotient is computed with long division to at least 55
+     * bits plus a sticky bit for the remainder.
+     */
+    private static double divide(long mantissa, int scale) {
+        long divisor = POWERS_OF_FIVE[scale];
+        long quotient = mantissa / divisor;
+        long remainder = mantissa % divisor;
+        int exponent = -scale;
+        while (quotient < 1L << 55) {
+            // The remainder is below 5^22 < 2^52, so neither shift overflows
+            quotient = (quotient << 8) | ((remainder << 8) / divisor);
+            remainder = (remainder << 8) % divisor;
+            exponent -= 8;
+        }
+
+        int shift = 64 - Long.numberOfLeadingZeros(quotient) - 53;
+        long significand = quotient >>> shift;
+        boolean round = ((quotient >>> (shift - 1)) & 1) != 0;
+        boolean sticky = remainder != 0 || (quotient & ((1L << (shift - 1)) - 1)) != 0;
+        if (round && (sticky || (significand & 1) != 0)) significand++;
+
+        return Math.scalb((double) significand, exponent + shift);
+    }
+
+    static int parseInt(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && buffer.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == to || to - i > 9) return Integer.parseInt(string(buffer, from, to));
+
+        int value = 0;
+        for (; i < to; i++) {
+            byte c = buffer.get(i);
+            if (c < '0' || c > '9') return Integer.parseInt(string(buffer, from, to));
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Days since 1970-01-01 of the given date in the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(long year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return month == 2 && leap ? 29 : DAYS_IN_MONTH[month - 1];
+    }
+
+    /**
+     * @return the value of the given number of decimal digits, or -1 if any of them is not a digit
+     */
+    private static int digits(ByteBuffer buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            byte c = buffer.get(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static String string(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(from + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Chunk local dictionary from the bytes of a UID to the columns accumulating its rows. Open addressing on the
+     * hash of the bytes, so that looking up the UID of a row allocates nothing.
+     */
+    private static final class Dictionary {
+
+        private final List<Trajectory.Builder> builders = new ArrayList<>();
+
+        private byte[][] keys = new byte[64][];
+
+        private int[] slots = new int[64];
+
+        private int[] hashes = new int[64];
+
+        Trajectory.Builder get(ByteBuffer buffer, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) hash = 31 * hash + buffer.get(i);
+
+            int mask = keys.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null) {
+                if (hashes[slot] == hash && matches(keys[slot], buffer, from, to)) return builders.get(slots[slot]);
+                slot = (slot + 1) & mask;
+            }
+
+            byte[] key = new byte[to - from];
+            for (int i = 0; i < key.length; i++) key[i] = buffer.get(from + i);
+            keys[slot] = key;
+            hashes[slot] = hash;
+            slots[slot] = builders.size();
+            Trajectory.Builder builder = new Trajectory.Builder(new String(key, StandardCharsets.UTF_8), -1);
+            builders.add(builder);
+
+            if (builders.size() * 2 > keys.length) rehash();
+            return builder;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int from, int to) {
+            if (key.length != to - from) return false;
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(from + i)) return false;
+            }
+            return true;
+        }
+
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            int[] oldSlots = slots;
+            int[] oldHashes = hashes;
+            keys = new byte[oldKeys.length * 2][];
+            slots = new int[keys.length];
+            hashes = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+                while (keys[slot] != null) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                slots[slot] = oldSlots[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+}
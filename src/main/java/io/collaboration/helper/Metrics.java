@@ -0,0 +1,167 @@
+package io.collaboration.helper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the phases of loading and querying, exported through JMX and as a text dump
+ * (see {@link #dump()}) to tell which phase is the bottleneck on a given dataset.
+ * <p>
+ * Recording is off unless enabled through the metrics.enabled property or the Enabled attribute of the MBean. While off,
+ * {@link #start()} returns 0 without reading the clock and every other recording method returns straight away, so
+ * instrumented code pays a volatile read per phase. Hot loops are expected to count into locals and record the totals
+ * once per call. Counters and histograms are striped ({@link LongAdder}) so that concurrent queries do not contend.
+ */
+@Component
+@ManagedResource(objectName = "io.collaboration:type=Metrics", description = "Counters and latencies of loading and querying")
+public class Metrics {
+
+    /**
+     * Histograms bucket latencies by powers of two of nanos
+     */
+    private static final int BUCKETS = 64;
+
+    @Value("${metrics.enabled:false}")
+    private volatile boolean enabled;
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    @ManagedAttribute(description = "Whether counters and latencies are recorded")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @ManagedAttribute
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Start timing a phase.
+     *
+     * @return {@link System#nanoTime()} if recording is enabled, 0 otherwise
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the latency of a phase started by {@link #start()}.
+     *
+     * @param phase Name of the phase
+     * @param start Value returned by {@link #start()}
+     */
+    public void stop(String phase, long start) {
+        if (start == 0 || !enabled) return;
+        histograms.computeIfAbsent(phase, p -> new Histogram()).record(System.nanoTime() - start);
+    }
+
+    /**
+     * @param counter Name of the counter
+     * @param delta   Amount to add to the counter
+     */
+    public void add(String counter, long delta) {
+        if (!enabled || delta == 0) return;
+        counters.computeIfAbsent(counter, c -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * @param counter Name of the counter
+     * @return value of the counter, 0 if never incremented
+     */
+    @ManagedOperation(description = "Value of a counter")
+    public long getCount(String counter) {
+        LongAdder adder = counters.get(counter);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * @param phase Name of the phase
+     * @return number of latencies recorded for the phase
+     */
+    @ManagedOperation(description = "Number of times a phase was timed")
+    public long getTimings(String phase) {
+        Histogram histogram = histograms.get(phase);
+        return histogram == null ? 0 : histogram.count.sum();
+    }
+
+    @ManagedOperation(description = "Reset all counters and latencies")
+    public void reset() {
+        counters.clear();
+        histograms.clear();
+    }
+
+    /**
+     * @return one line per phase with the count, mean, median, 99th percentile and maximum of its latencies in micros,
+     * followed by one line per counter, both in alphabetical order. Percentiles are upper bounds, accurate within a
+     * factor of two.
+     */
+    @ManagedOperation(description = "Text dump of all counters and latencies")
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        dump.append(String.format("%-32s %10s %12s %12s %12s %12s%n", "phase (micros)", "count", "mean", "p50", "p99", "max"));
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            long count = histogram.count.sum();
+            dump.append(String.format("%-32s %10d %12.1f %12d %12d %12d%n", entry.getKey(), count,
+                    count == 0 ? 0 : histogram.total.sum() / 1000.0 / count,
+                    histogram.percentile(0.5) / 1000, histogram.percentile(0.99) / 1000, histogram.max.get() / 1000));
+        }
+        dump.append(String.format("%-32s %10s%n", "counter", "value"));
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            dump.append(String.format("%-32s %10d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Latencies bucketed by powers of two
+     */
+    private static final class Histogram {
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Histogram() {
+            for (int b = 0; b < BUCKETS; b++) buckets[b] = new LongAdder();
+        }
+
+        private void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            buckets[BUCKETS - 1 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        /**
+         * @return upper bound in nanos of the bucket holding the given quantile
+         */
+        private long percentile(double quantile) {
+            long rank = (long) Math.ceil(quantile * count.sum());
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += buckets[b].sum();
+                if (seen >= rank && seen > 0) return Math.min(max.get(), b == BUCKETS - 1 ? Long.MAX_VALUE : (2L << b) - 1);
+            }
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.collaboration.helper;
+
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Helper class for evaluating the interval between the timestamps of two planar points on primitive
+ * epoch milliseconds. The checks mirror {@link ChronoUnit#SECONDS} semantics (whole seconds, truncated
+ * towards zero) so that primitive based identifiers agree with the {@link ZonedDateTime} based ones.
+ */
+public final class TemporalDistance {
+
+    private TemporalDistance() {
+    }
+
+    /**
+     * Convert the timestamp of a coordinate to milliseconds since the epoch.
+     *
+     * @param timestamp {@link ZonedDateTime} the coordinate was recorded
+     * @return milliseconds since 1970-01-01T00:00:00Z
+     */
+    public static long toEpochMillis(ZonedDateTime timestamp) {
+        return timestamp.toInstant().toEpochMilli();
+    }
+
+    /**
+     * The largest absolute difference in milliseconds two timestamps may have while still being
+     * at most <strong>temporalEpsilon</strong> whole seconds apart.
+     *
+     * @param temporalEpsilon Maximum temporal interval in seconds
+     * @return maximum interval in milliseconds
+     */
+    public static long getMaxIntervalMillis(int temporalEpsilon) {
+        return temporalEpsilon * 1000L + 999L;
+    }
+
+    /**
+     * Method evaluating the temporal criteria. Used by the {@link AbstractTrajectoryIntersectionIdentifier}
+     * implementations working on epoch milliseconds.
+     *
+     * @param first           Epoch millis of the first point
+     * @param second          Epoch millis of the second point
+     * @param temporalEpsilon Maximum temporal interval in seconds
+     * @return true if the points were recorded at most temporalEpsilon seconds apart
+     */
+    public static boolean isWithin(long first,
+                                   long second,
+                                   int temporalEpsilon) {
+        return Math.abs(first - second) <= getMaxIntervalMillis(temporalEpsilon);
+    }
+}
@@ -0,0 +1,347 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.GeneratorProperties;
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Writes synthetic datasets in the (timestamp,x,y,floor,uid) layout of {@link Headers}, for load and scale testing.
+ * <p>
+ * Every UID walks at constant speed between random destinations of the building, dwelling at some of them and taking
+ * the stairs to another floor from time to time. Planned meetings are scheduled as a Poisson process: two random UIDs
+ * head to a common point and stay there until the meeting is over, so that the dataset is guaranteed to contain
+ * intersections at the requested density. UIDs are sampled at a jittered cadence and rows are written in chronological
+ * order across all UIDs, like a positioning system would log them.
+ * <p>
+ * The simulation only keeps the state of every UID and streams rows to disk, hence memory does not grow with the
+ * number of rows. A single seeded random source drives it, so the same settings always yield the same file.
+ */
+@Component
+public class TrajectoryGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(TrajectoryGenerator.class);
+
+    private static final long PROGRESS_ROWS = 10_000_000;
+
+    /**
+     * Write a synthetic dataset.
+     *
+     * @param properties Settings of the dataset
+     * @param output     CSV file to write
+     * @return number of rows written
+     * @throws IOException if the file cannot be written
+     */
+    public long generate(GeneratorProperties properties, Path output) throws IOException {
+
+        validate(properties);
+
+        LOGGER.info("Generating " + properties.getRows() + " rows into " + output + " with " + properties);
+
+        Random random = new Random(properties.getSeed());
+        long start = properties.getStart().toInstant().toEpochMilli();
+        long samplingMillis = Math.max(1, Math.round(properties.getSamplingSeconds() * 1000));
+
+        Walker[] walkers = new Walker[properties.getUids()];
+        PriorityQueue<Walker> queue = new PriorityQueue<>(walkers.length);
+        Set<String> uids = new HashSet<>();
+        for (int i = 0; i < walkers.length; i++) {
+            String uid;
+            do {
+                uid = String.format("%08x", random.nextInt());
+            } while (!uids.add(uid));
+
+            walkers[i] = new Walker(i, uid, properties, random, start + (long) (random.nextDouble() * samplingMillis));
+            queue.add(walkers[i]);
+        }
+
+        // Planned meetings per millisecond across the building, each one attended by two UIDs
+        double meetingRate = walkers.length < 2 ? 0 : properties.getMeetingsPerHour() * walkers.length / 2 / 3_600_000;
+        double nextMeeting = start + exponential(random, meetingRate);
+
+        long rows = 0;
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(output), 1 << 20)) {
+            Row row = new Row(stream);
+            row.header();
+
+            while (rows < properties.getRows()) {
+                Walker walker = queue.poll();
+
+                while (nextMeeting <= walker.next) {
+                    meet(walkers, (long) nextMeeting, properties, random);
+                    nextMeeting += exponential(random, meetingRate);
+                }
+
+                walker.advance(walker.next, random);
+                row.write(walker);
+                rows++;
+                if (rows % PROGRESS_ROWS == 0) LOGGER.info(rows + " rows written");
+
+                walker.next += (long) (samplingMillis * (0.5 + random.nextDouble()));
+                queue.add(walker);
+            }
+
+            row.flush();
+        }
+
+        LOGGER.info(rows + " rows written into " + output);
+
+        return rows;
+    }
+
+    private static void validate(GeneratorProperties properties) {
+        if (properties.getUids() < 1) throw new IllegalArgumentException("At least one UID is required");
+        if (properties.getFloors() < 1 || properties.getFloors() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Floors must lie within [1, " + Short.MAX_VALUE + "]");
+        }
+        if (properties.getRows() < 0) throw new IllegalArgumentException("Rows must not be negative");
+        if (properties.getSamplingSeconds() <= 0 || properties.getSpeed() <= 0
+                || properties.getWidth() <= 0 || properties.getHeight() <= 0) {
+            throw new IllegalArgumentException("Sampling interval, speed and floor extent must be positive");
+        }
+        if (properties.getDwellSeconds() < 0 || properties.getMeetingSeconds() < 0 || properties.getMeetingsPerHour() < 0) {
+            throw new IllegalArgumentException("Durations and meeting density must not be negative");
+        }
+    }
+
+    /**
+     * Send two random UIDs not already in a meeting to a common point. Both are given the time to cross the floor
+     * diagonally before the meeting starts, so they are guaranteed to overlap at the point for the whole meeting.
+     */
+    private static void meet(Walker[] walkers, long time, GeneratorProperties properties, Random random) {
+        Walker one = walkers[random.nextInt(walkers.length)];
+        Walker two = walkers[random.nextInt(walkers.length)];
+        if (one == two || one.meetingUntil > time || two.meetingUntil > time) return;
+
+        int floor = 1 + random.nextInt(properties.getFloors());
+        double x = random.nextDouble() * properties.getWidth();
+        double y = random.nextDouble() * properties.getHeight();
+        double crossing = Math.hypot(properties.getWidth(), properties.getHeight()) / properties.getSpeed() * 1000;
+        long end = time + (long) (crossing + properties.getMeetingSeconds() * 1000);
+
+        for (Walker walker : new Walker[]{one, two}) {
+            walker.advance(time, random);
+            walker.floor = floor;
+            walker.targetX = x;
+            walker.targetY = y;
+            walker.arrived = false;
+            walker.dwellUntil = time;
+            walker.meetingUntil = end;
+        }
+    }
+
+    private static double exponential(Random random, double rate) {
+        return rate <= 0 ? Double.POSITIVE_INFINITY : -Math.log(1 - random.nextDouble()) / rate;
+    }
+
+    /**
+     * State of a single UID.
+     */
+    private static final class Walker implements Comparable<Walker> {
+
+        private final int id;
+
+        private final String uid;
+
+        private final GeneratorProperties properties;
+
+        private int floor;
+
+        private double x;
+
+        private double y;
+
+        private double targetX;
+
+        private double targetY;
+
+        /**
+         * Time the position was last advanced to
+         */
+        private long time;
+
+        /**
+         * Time of the next sample
+         */
+        private long next;
+
+        private long dwellUntil;
+
+        /**
+         * End of the planned meeting the UID is heading to or attending
+         */
+        private long meetingUntil;
+
+        /**
+         * Whether the UID reached its destination and picks the next one on departure
+         */
+        private boolean arrived = true;
+
+        Walker(int id, String uid, GeneratorProperties properties, Random random, long first) {
+            this.id = id;
+            this.uid = uid;
+            this.properties = properties;
+            this.floor = 1 + random.nextInt(properties.getFloors());
+            this.x = random.nextDouble() * properties.getWidth();
+            this.y = random.nextDouble() * properties.getHeight();
+            this.time = first;
+            this.next = first;
+            this.meetingUntil = Long.MIN_VALUE;
+        }
+
+        /**
+         * Move the UID along its course up to the given time.
+         */
+        void advance(long now, Random random) {
+            while (time < now) {
+                if (time < dwellUntil) {
+                    time = Math.min(now, dwellUntil);
+                    continue;
+                }
+                if (arrived) {
+                    destination(random);
+                    arrived = false;
+                }
+
+                double distance = Math.hypot(targetX - x, targetY - y);
+                double reachable = properties.getSpeed() * (now - time) / 1000;
+                if (reachable < distance) {
+                    x += (targetX - x) * reachable / distance;
+                    y += (targetY - y) * reachable / distance;
+                    time = now;
+                } else {
+                    x = targetX;
+                    y = targetY;
+                    time += (long) Math.ceil(distance / properties.getSpeed() * 1000);
+                    arrive(random);
+                }
+            }
+        }
+
+        private void arrive(Random random) {
+            arrived = true;
+            if (meetingUntil > time) {
+                dwellUntil = meetingUntil;
+            } else if (random.nextDouble() < properties.getDwellProbability()) {
+                dwellUntil = time + (long) (exponential(random, 1 / (properties.getDwellSeconds() * 1000 + 1)));
+            }
+        }
+
+        private void destination(Random random) {
+            if (properties.getFloors() > 1 && random.nextDouble() < properties.getFloorChangeProbability()) {
+                floor = 1 + (floor + random.nextInt(properties.getFloors() - 1)) % properties.getFloors();
+            }
+            targetX = random.nextDouble() * properties.getWidth();
+            targetY = random.nextDouble() * properties.getHeight();
+        }
+
+        @Override
+        public int compareTo(Walker other) {
+            return next != other.next ? Long.compare(next, other.next) : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * Formats rows straight into a byte buffer. The date and time of day are formatted once per second.
+     */
+    private static final class Row {
+
+        private final OutputStream stream;
+
+        private final byte[] buffer = new byte[1 << 16];
+
+        private int position;
+
+        private long second = Long.MIN_VALUE;
+
+        private byte[] prefix;
+
+        Row(OutputStream stream) {
+            this.stream = stream;
+        }
+
+        void header() throws IOException {
+            append(MappedCsvParser.HEADER.getBytes(StandardCharsets.US_ASCII));
+            append((byte) '\n');
+        }
+
+        void write(Walker walker) throws IOException {
+            if (buffer.length - position < 256) flush();
+
+            long millis = walker.next;
+            long epochSecond = Math.floorDiv(millis, 1000);
+            if (epochSecond != second) {
+                String instant = Instant.ofEpochSecond(epochSecond).toString();
+                // Drop the trailing Z
+                prefix = instant.substring(0, instant.length() - 1).getBytes(StandardCharsets.US_ASCII);
+                second = epochSecond;
+            }
+            append(prefix);
+            append((byte) '.');
+            digits(Math.floorMod(millis, 1000), 3);
+            append((byte) 'Z');
+            append((byte) ',');
+            fixed(walker.x);
+            append((byte) ',');
+            fixed(walker.y);
+            append((byte) ',');
+            integer(walker.floor);
+            append((byte) ',');
+            for (int i = 0; i < walker.uid.length(); i++) append((byte) walker.uid.charAt(i));
+            append((byte) '\n');
+        }
+
+        void flush() throws IOException {
+            stream.write(buffer, 0, position);
+            position = 0;
+        }
+
+        /**
+         * Append a non negative number with five decimals
+         */
+        private void fixed(double value) {
+            long scaled = Math.round(value * 100_000);
+            integer(scaled / 100_000);
+            append((byte) '.');
+            digits(scaled % 100_000, 5);
+        }
+
+        private void integer(long value) {
+            if (value < 0) {
+                append((byte) '-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) digits++;
+            digits(value, digits);
+        }
+
+        private void digits(long value, int count) {
+            for (int i = position + count - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            position += count;
+        }
+
+        private void append(byte[] bytes) {
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void append(byte value) {
+            buffer[position++] = value;
+        }
+    }
+}
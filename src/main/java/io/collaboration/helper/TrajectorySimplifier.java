@@ -0,0 +1,120 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.Trajectory;
+
+/**
+ * Error bounded simplification of trajectories, dropping the samples which add no information at the resolution of the
+ * queries, e.g. the many samples recorded while a UID stands still.
+ * <p>
+ * Meetings are decided on pairs of samples rather than on the path between them, so unlike Douglas-Peucker, which
+ * bounds the distance of a dropped sample from the segment joining the samples kept around it, every dropped sample is
+ * bounded against a kept sample standing in for it. A sample is kept as an anchor and the samples following it are
+ * dropped for as long as they stay on the same floor, within maxSpatialError of the anchor and within
+ * maxTemporalError after it; the first sample that does not becomes the next anchor. Any meeting of two recorded
+ * samples is then a meeting of their anchors once the epsilons are widened by the errors of both trajectories, see
+ * {@link #widenSpatialEpsilon(Trajectory, Trajectory, double)} and
+ * {@link #widenTemporalEpsilon(Trajectory, Trajectory, int)}. Queries on simplified trajectories thus never miss a
+ * meeting, while they may report pairs of UIDs which came within the widened epsilons only.
+ */
+public final class TrajectorySimplifier {
+
+    private TrajectorySimplifier() {
+    }
+
+    /**
+     * Simplify a trajectory in a single pass.
+     *
+     * @param trajectory       Trajectory to simplify
+     * @param maxSpatialError  Maximum planar distance between a dropped sample and its anchor
+     * @param maxTemporalError Maximum interval in millis between a dropped sample and its anchor
+     * @return the simplified trajectory, carrying the largest errors actually introduced on top of the ones of the
+     * given trajectory
+     */
+    public static Trajectory simplify(Trajectory trajectory, double maxSpatialError, long maxTemporalError) {
+        int n = trajectory.size();
+        if (n == 0) return trajectory;
+
+        long[] timestamps = trajectory.getTimestamps();
+        double[] xs = trajectory.getXs();
+        double[] ys = trajectory.getYs();
+        short[] floors = trajectory.getFloors();
+
+        double squaredError = maxSpatialError * maxSpatialError;
+        int[] kept = new int[n];
+        int size = 0;
+        double spatialError = 0;
+        long temporalError = 0;
+
+        int anchor = 0;
+        kept[size++] = 0;
+        for (int i = 1; i < n; i++) {
+            double dx = xs[i] - xs[anchor];
+            double dy = ys[i] - ys[anchor];
+            double squaredDistance = dx * dx + dy * dy;
+            long interval = timestamps[i] - timestamps[anchor];
+            if (floors[i] == floors[anchor] && interval <= maxTemporalError && squaredDistance <= squaredError) {
+                spatialError = Math.max(spatialError, squaredDistance);
+                temporalError = Math.max(temporalError, interval);
+            } else {
+                anchor = i;
+                kept[size++] = i;
+            }
+        }
+
+        if (size == n) return trajectory;
+
+        long[] keptTimestamps = new long[size];
+        double[] keptXs = new double[size];
+        double[] keptYs = new double[size];
+        short[] keptFloors = new short[size];
+        for (int k = 0; k < size; k++) {
+            keptTimestamps[k] = timestamps[kept[k]];
+            keptXs[k] = xs[kept[k]];
+            keptYs[k] = ys[kept[k]];
+            keptFloors[k] = floors[kept[k]];
+        }
+
+        return Trajectory.of(trajectory.getUid(), trajectory.getId(), keptTimestamps, keptXs, keptYs, keptFloors,
+                trajectory.getSpatialError() + Math.nextUp(Math.sqrt(spatialError)),
+                trajectory.getTemporalError() + temporalError);
+    }
+
+    /**
+     * @param one            Trajectory of the first UID
+     * @param two            Trajectory of the second UID
+     * @param spatialEpsilon Maximum spatial distance between two points to be considered a potential intersection
+     * @return spatialEpsilon widened by the spatial errors of both trajectories
+     */
+    public static double widenSpatialEpsilon(Trajectory one, Trajectory two, double spatialEpsilon) {
+        return widenSpatialEpsilon(spatialEpsilon, one.getSpatialError() + two.getSpatialError());
+    }
+
+    /**
+     * @param spatialEpsilon Maximum spatial distance between two points to be considered a potential intersection
+     * @param error          Sum of the spatial errors of the two trajectories
+     * @return spatialEpsilon widened by the error
+     */
+    public static double widenSpatialEpsilon(double spatialEpsilon, double error) {
+        // A relative slack absorbs the rounding of the distances computed between the anchors
+        return error == 0 ? spatialEpsilon : (spatialEpsilon + error) * (1 + 1e-12);
+    }
+
+    /**
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return temporalEpsilon widened by the temporal errors of both trajectories, rounded up to whole seconds
+     */
+    public static int widenTemporalEpsilon(Trajectory one, Trajectory two, int temporalEpsilon) {
+        return widenTemporalEpsilon(temporalEpsilon, one.getTemporalError() + two.getTemporalError());
+    }
+
+    /**
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @param error           Sum of the temporal errors in millis of the two trajectories
+     * @return temporalEpsilon widened by the error, rounded up to whole seconds
+     */
+    public static int widenTemporalEpsilon(int temporalEpsilon, long error) {
+        return (int) Math.min(Integer.MAX_VALUE, temporalEpsilon + (error + 999) / 1000);
+    }
+}
@@ -0,0 +1,349 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a {@link TrajectoryStore}, written next to the CSV it was loaded from or to a cache directory so
+ * that later runs can skip parsing altogether. All numbers are little endian and the file is laid out as
+ * <pre>
+ * header   magic, version, source size, source last modified, UID count, index CRC32, samples, index length,
+ *          columns CRC32, padding
+ * index    per UID: UID length, UID bytes, offset of its first sample, number of samples
+ * columns  timestamps (long), xs (double), ys (double), floors (short); the samples of each UID are contiguous
+ * </pre>
+ * The size and modification time of the source CSV act as its fingerprint; a snapshot whose fingerprint does not match
+ * the source, or whose index or columns fail their checksum, is ignored and rebuilt.
+ * <p>
+ * Reading a snapshot maps the file, checksums the columns in a single sequential pass over the mapping and decodes the
+ * index. The columns of a UID are copied out of the mapped buffers with bulk transfers the first time the UID is
+ * requested.
+ */
+public final class TrajectorySnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(TrajectorySnapshot.class);
+
+    private static final int MAGIC = 0x53494954;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_LENGTH = 56;
+
+    /**
+     * Columns are mapped in segments of this many bytes, a multiple of every element size
+     */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private TrajectorySnapshot() {
+    }
+
+    /**
+     * @return the path of the snapshot of the given CSV file, next to it
+     */
+    public static Path of(Path source) {
+        return of(source, null);
+    }
+
+    /**
+     * @param source    CSV file
+     * @param directory Directory holding the snapshots, null for the directory of the CSV file
+     * @return the path of the snapshot of the given CSV file. Snapshots in a shared directory are told apart by a hash
+     * of the absolute path of their source.
+     */
+    public static Path of(Path source, Path directory) {
+        if (directory == null) return source.resolveSibling(source.getFileName() + ".snapshot");
+        String path = source.toAbsolutePath().normalize().toString();
+        return directory.resolve(source.getFileName() + "." + Integer.toHexString(path.hashCode()) + ".snapshot");
+    }
+
+    /**
+     * Write the snapshot of the store loaded from the given source next to it.
+     *
+     * @see #write(TrajectoryStore, Path, Path)
+     */
+    public static void write(TrajectoryStore store, Path source) throws IOException {
+        write(store, source, null);
+    }
+
+    /**
+     * Write the snapshot of the store loaded from the given source. The snapshot is written to a temporary file which
+     * then replaces any previous snapshot, so that readers never observe a partially written one.
+     *
+     * @param store     Store loaded from the source
+     * @param source    CSV file the store was loaded from
+     * @param directory Directory holding the snapshots, created if missing, null for the directory of the CSV file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(TrajectoryStore store, Path source, Path directory) throws IOException {
+        Path snapshot = of(source, directory);
+        if (directory != null) Files.createDirectories(directory);
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+
+        // Index
+        ByteBuffer index = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = 0;
+        for (int id = 0; id < store.size(); id++) {
+            byte[] uid = store.getUid(id).getBytes(StandardCharsets.UTF_8);
+            if (index.remaining() < uid.length + 16) {
+                index = ByteBuffer.allocate(Math.max(index.capacity() * 2, index.position() + uid.length + 16))
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .put((ByteBuffer) index.flip());
+            }
+            index.putInt(uid.length).put(uid).putLong(offset).putInt(store.get(id).size());
+            offset += store.get(id).size();
+        }
+        index.flip();
+        CRC32 crc = new CRC32();
+        crc.update(index.array(), 0, index.limit());
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // The header is written last, once the checksum of the columns is known
+            channel.position(align(HEADER_LENGTH + index.limit()));
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 columns = new CRC32();
+            for (int id = 0; id < store.size(); id++) {
+                for (long timestamp : store.get(id).getTimestamps()) put(channel, buffer, columns, 8).putLong(timestamp);
+            }
+            for (int id = 0; id < store.size(); id++) {
+                for (double x : store.get(id).getXs()) put(channel, buffer, columns, 8).putDouble(x);
+            }
+            for (int id = 0; id < store.size(); id++) {
+                for (double y : store.get(id).getYs()) put(channel, buffer, columns, 8).putDouble(y);
+            }
+            for (int id = 0; id < store.size(); id++) {
+                for (short floor : store.get(id).getFloors()) put(channel, buffer, columns, 2).putShort(floor);
+            }
+            flush(channel, buffer, columns);
+
+            long padding = align(HEADER_LENGTH + index.limit()) - HEADER_LENGTH - index.limit();
+            ByteBuffer header = ByteBuffer.allocate((int) (HEADER_LENGTH + padding)).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(Files.size(source))
+                    .putLong(Files.getLastModifiedTime(source).toMillis())
+                    .putInt(store.size())
+                    .putInt((int) crc.getValue())
+                    .putLong(store.samples())
+                    .putLong(index.limit())
+                    .putInt((int) columns.getValue())
+                    .putInt(0);
+            header.flip();
+            channel.position(0);
+            writeFully(channel, header);
+            writeFully(channel, index);
+            writeFully(channel, (ByteBuffer) header.clear().position(HEADER_LENGTH));
+        }
+
+        try {
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        LOGGER.info("Snapshot of " + store.size() + " UIDs written to " + snapshot);
+    }
+
+    /**
+     * Map the snapshot next to the given source, provided it exists and is up to date.
+     *
+     * @see #read(Path, Path)
+     */
+    public static Optional<TrajectoryStore> read(Path source) {
+        return read(source, null);
+    }
+
+    /**
+     * Map the snapshot of the given source, provided it exists and is up to date.
+     *
+     * @param source    CSV file the snapshot was created from
+     * @param directory Directory holding the snapshots, null for the directory of the CSV file
+     * @return the store served from the snapshot or empty if there is no valid snapshot of the source
+     */
+    public static Optional<TrajectoryStore> read(Path source, Path directory) {
+        Path snapshot = of(source, directory);
+        if (!Files.isRegularFile(snapshot)) return Optional.empty();
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH) return stale(snapshot, "truncated header");
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) return stale(snapshot, "not a snapshot");
+            if (header.getInt() != VERSION) return stale(snapshot, "unsupported version");
+            if (header.getLong() != Files.size(source) || header.getLong() != Files.getLastModifiedTime(source).toMillis()) {
+                return stale(snapshot, "source file changed");
+            }
+            int uidCount = header.getInt();
+            int indexCrc = header.getInt();
+            long samples = header.getLong();
+            long indexLength = header.getLong();
+            int columnsCrc = header.getInt();
+
+            long dataStart = align(HEADER_LENGTH + indexLength);
+            if (uidCount < 0 || samples < 0 || indexLength < 0 || indexLength > Integer.MAX_VALUE
+                    || size != dataStart + 26 * samples) {
+                return stale(snapshot, "truncated");
+            }
+
+            byte[] indexBytes = new byte[(int) indexLength];
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, indexLength).get(indexBytes);
+            CRC32 crc = new CRC32();
+            crc.update(indexBytes);
+            if ((int) crc.getValue() != indexCrc) return stale(snapshot, "corrupted index");
+
+            Segments timestamps = new Segments(channel, dataStart, 8 * samples);
+            Segments xs = new Segments(channel, dataStart + 8 * samples, 8 * samples);
+            Segments ys = new Segments(channel, dataStart + 16 * samples, 8 * samples);
+            Segments floors = new Segments(channel, dataStart + 24 * samples, 2 * samples);
+            crc.reset();
+            for (Segments column : new Segments[]{timestamps, xs, ys, floors}) column.update(crc);
+            if ((int) crc.getValue() != columnsCrc) return stale(snapshot, "corrupted columns");
+
+            ByteBuffer index = ByteBuffer.wrap(indexBytes).order(ByteOrder.LITTLE_ENDIAN);
+
+            String[] uids = new String[uidCount];
+            long[] offsets = new long[uidCount];
+            int[] counts = new int[uidCount];
+            for (int id = 0; id < uidCount; id++) {
+                byte[] uid = new byte[index.getInt()];
+                index.get(uid);
+                uids[id] = new String(uid, StandardCharsets.UTF_8);
+                offsets[id] = index.getLong();
+                counts[id] = index.getInt();
+            }
+
+            LOGGER.info("Serving " + uidCount + " UIDs (" + samples + " coordinates) from snapshot " + snapshot);
+
+            return Optional.of(TrajectoryStore.lazy(uids, samples, id -> {
+                int count = counts[id];
+                long[] ts = new long[count];
+                double[] x = new double[count];
+                double[] y = new double[count];
+                short[] f = new short[count];
+                timestamps.get(offsets[id] * 8, ts);
+                xs.get(offsets[id] * 8, x);
+                ys.get(offsets[id] * 8, y);
+                floors.get(offsets[id] * 2, f);
+                return Trajectory.of(uids[id], id, ts, x, y, f);
+            }));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read snapshot " + snapshot, e);
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<TrajectoryStore> stale(Path snapshot, String reason) {
+        LOGGER.info("Ignoring snapshot " + snapshot + ": " + reason);
+        return Optional.empty();
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Make room for the given number of bytes, flushing the buffer to the channel if needed.
+     */
+    private static ByteBuffer put(FileChannel channel, ByteBuffer buffer, CRC32 crc, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush(channel, buffer, crc);
+        return buffer;
+    }
+
+    /**
+     * Write the content of the buffer to the channel, adding it to the checksum, and clear the buffer.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    /**
+     * A column mapped in segments, since a single mapping cannot exceed 2GB. Segments are a multiple of the element
+     * size so that no element straddles two of them.
+     */
+    private static final class Segments {
+
+        private final MappedByteBuffer[] segments;
+
+        Segments(FileChannel channel, long start, long length) throws IOException {
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int s = 0; s < segments.length; s++) {
+                long from = s * SEGMENT_SIZE;
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start + from, Math.min(SEGMENT_SIZE, length - from));
+                segments[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        /**
+         * Add the whole column to the checksum.
+         */
+        void update(CRC32 crc) {
+            for (MappedByteBuffer segment : segments) crc.update(segment.duplicate());
+        }
+
+        void get(long offset, long[] destination) {
+            int copied = 0;
+            while (copied < destination.length) {
+                ByteBuffer segment = slice(offset + 8L * copied);
+                int count = Math.min(destination.length - copied, segment.remaining() / 8);
+                segment.asLongBuffer().get(destination, copied, count);
+                copied += count;
+            }
+        }
+
+        void get(long offset, double[] destination) {
+            int copied = 0;
+            while (copied < destination.length) {
+                ByteBuffer segment = slice(offset + 8L * copied);
+                int count = Math.min(destination.length - copied, segment.remaining() / 8);
+                segment.asDoubleBuffer().get(destination, copied, count);
+                copied += count;
+            }
+        }
+
+        void get(long offset, short[] destination) {
+            int copied = 0;
+            while (copied < destination.length) {
+                ByteBuffer segment = slice(offset + 2L * copied);
+                int count = Math.min(destination.length - copied, segment.remaining() / 2);
+                segment.asShortBuffer().get(destination, copied, count);
+                copied += count;
+            }
+        }
+
+        /**
+         * @return a view of the segment holding the given offset, positioned at it
+         */
+        private ByteBuffer slice(long offset) {
+            ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            segment.position((int) (offset % SEGMENT_SIZE));
+            return segment;
+        }
+    }
+}
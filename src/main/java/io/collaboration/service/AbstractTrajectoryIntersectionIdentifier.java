@@ -2,23 +2,57 @@ package io.collaboration.service;
 
 import io.collaboration.api.EnhancedCoordinate;
 import io.collaboration.api.Intersection;
+import io.collaboration.api.MeetingEpisode;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectorySummary;
 import io.collaboration.factory.TrajectoryIntersectionIdentifierFactory;
+import io.collaboration.helper.Metrics;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
 import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
 import io.collaboration.service.impl.GabrielDelaunayTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.GridTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
 import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Specification of the identifiers ({@link GabrielDelaunayTrajectoryIntersectionIdentifier},
- * {@link BruteTrajectoryIntersectionIdentifier})
+ * {@link BruteTrajectoryIntersectionIdentifier}, {@link SweepLineTrajectoryIntersectionIdentifier},
+ * {@link GridTrajectoryIntersectionIdentifier})
  */
 public abstract class AbstractTrajectoryIntersectionIdentifier {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractTrajectoryIntersectionIdentifier.class);
 
+    /**
+     * Counters and latencies of the phases of the queries. Identifiers created outside of the context record nothing.
+     */
+    @Autowired(required = false)
+    protected Metrics metrics = new Metrics();
+
+    /**
+     * Minimum number of samples of the first trajectory per task of
+     * {@link #identifyParallel(Trajectory, Trajectory, double, int)}
+     */
+    private static final int MIN_TASK_SIZE = 2048;
+
+    /**
+     * Tasks per worker of the common pool, so that workers finishing early pick up the ranges left
+     */
+    private static final int TASKS_PER_WORKER = 4;
+
     /**
      * The method implementing the available algorithms for identifying trajectory collision.
      *
@@ -33,6 +67,202 @@ public abstract class AbstractTrajectoryIntersectionIdentifier {
                                                     Double spatialEpsilon,
                                                     Integer temporalEpsilon);
 
+    /**
+     * Identify trajectory collision on the columnar representation of the trajectories. Implementations able to work
+     * on the primitive columns directly should override this method, widening the epsilons by the error bounds of
+     * simplified trajectories (see {@link TrajectorySimplifier}). By default pairs of UIDs which cannot meet
+     * according to their {@link TrajectorySummary summaries} are rejected, and the trajectories of the rest are
+     * materialized as lists of {@link EnhancedCoordinate}s and handed over to
+     * {@link #identify(List, List, Double, Integer)} along with the widened epsilons.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return
+     */
+    public Optional<Intersection> identify(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon) {
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Optional.empty();
+
+        return identify(one.toCoordinates(),
+                two.toCoordinates(),
+                TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon),
+                TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon));
+    }
+
+    /**
+     * Same as {@link #identify(Trajectory, Trajectory, double, int)}, spreading a single query over the cores. The
+     * first trajectory is split into ranges of consecutive samples, each identified against the samples of the second
+     * trajectory within the temporal window of the range, by the workers of the common ForkJoin pool. Ranges are taken
+     * up in chronological order, none is taken up once an earlier range yielded an intersection, and the intersection
+     * of the earliest range is returned. Identifiers returning the earliest intersection thus return the same one
+     * either way. Trajectories too short to be worth splitting are identified on the calling thread.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return
+     */
+    public Optional<Intersection> identifyParallel(Trajectory one,
+                                                   Trajectory two,
+                                                   double spatialEpsilon,
+                                                   int temporalEpsilon) {
+        return identifyParallel(one, two, spatialEpsilon, temporalEpsilon, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #identifyParallel(Trajectory, Trajectory, double, int)} on the workers of the given pool.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @param pool            Pool running the tasks, as many at a time as its parallelism
+     * @return
+     */
+    public Optional<Intersection> identifyParallel(Trajectory one,
+                                                   Trajectory two,
+                                                   double spatialEpsilon,
+                                                   int temporalEpsilon,
+                                                   ForkJoinPool pool) {
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Optional.empty();
+
+        int workers = pool.getParallelism();
+        int tasks = Math.min(workers * TASKS_PER_WORKER, one.size() / MIN_TASK_SIZE);
+        if (workers <= 1 || tasks <= 1) return identify(one, two, spatialEpsilon, temporalEpsilon);
+
+        long start = metrics.start();
+        long[] timesOne = one.getTimestamps();
+        long[] timesTwo = two.getTimestamps();
+        // Ranges of the second trajectory overlap by the temporal window
+        long maxInterval = maxIntervalMillis(one, two, temporalEpsilon);
+
+        // Next task to take up, and earliest task which yielded an intersection shared by all workers to stop
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger earliest = new AtomicInteger(tasks);
+        Intersection[] intersections = new Intersection[tasks];
+        Runnable worker = () -> {
+            for (int task = next.getAndIncrement(); task < earliest.get(); task = next.getAndIncrement()) {
+                int from = alignBoundary(one, (int) ((long) one.size() * task / tasks), false);
+                int to = alignBoundary(one, (int) ((long) one.size() * (task + 1) / tasks), false);
+                if (from == to) continue;
+                int fromTwo = alignBoundary(two, firstNotBefore(timesTwo, timesOne[from] - maxInterval), false);
+                int toTwo = alignBoundary(two, firstNotBefore(timesTwo, timesOne[to - 1] + maxInterval + 1), true);
+                if (fromTwo == toTwo) continue;
+
+                Optional<Intersection> intersection = identify(one.slice(from, to), two.slice(fromTwo, toTwo),
+                        spatialEpsilon, temporalEpsilon);
+                if (intersection.isPresent()) {
+                    intersections[task] = intersection.get();
+                    earliest.accumulateAndGet(task, Math::min);
+                }
+            }
+        };
+        List<ForkJoinTask<?>> running = new ArrayList<>();
+        for (int w = Math.min(workers, tasks); w > 0; w--) running.add(ForkJoinTask.adapt(worker));
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(running)));
+        metrics.stop(getName() + ".parallel", start);
+
+        int task = earliest.get();
+        return task < tasks ? Optional.of(intersections[task]) : Optional.empty();
+    }
+
+    /**
+     * Temporal window of {@link #identifyParallel(Trajectory, Trajectory, double, int, ForkJoinPool)}: samples of the
+     * second trajectory further apart in time from every sample of a range of the first one are left out of its task.
+     * By default the temporal epsilon widened by the errors of simplified trajectories.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return the window in millis
+     */
+    protected long maxIntervalMillis(Trajectory one, Trajectory two, int temporalEpsilon) {
+        return TemporalDistance.getMaxIntervalMillis(TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon));
+    }
+
+    /**
+     * Move a bound of a range handed to a task of {@link #identifyParallel(Trajectory, Trajectory, double, int,
+     * ForkJoinPool)}, for identifiers comparing runs of samples rather than samples to see whole runs only. By default
+     * every sample is a run of its own and the bound is left where it is.
+     *
+     * @param trajectory Trajectory the range is taken from
+     * @param bound      Position of the first sample of the range, or position after its last sample
+     * @param up         true to move the bound after the run holding the sample before it, false to move it to the
+     *                   first sample of the run holding it
+     * @return the moved bound
+     */
+    protected int alignBoundary(Trajectory trajectory, int bound, boolean up) {
+        return bound;
+    }
+
+    /**
+     * Whether the identifier overrides {@link #identify(Trajectory, Trajectory, double, int)} to work on the primitive
+     * columns directly. Callers holding both representations of a trajectory use it to pick the cheaper entry point.
+     *
+     * @return true if the columnar representation should be preferred. false if the identifier works on lists.
+     */
+    public boolean isColumnar() {
+        return false;
+    }
+
+    /**
+     * Whether the intersection returned is always the earliest one in the timeline of the first UID, earliest sample of
+     * the second UID first, as {@link BruteTrajectoryIntersectionIdentifier} finds it. Answers of such identifiers may
+     * be served out of the candidates held by {@link io.collaboration.service.cache.IntersectionCache}.
+     *
+     * @return true if the earliest intersection is returned. false if any intersection may be.
+     */
+    public boolean isEarliest() {
+        return false;
+    }
+
+    /**
+     * Find every meeting of the two UIDs as time ordered episodes, instead of the single intersection
+     * {@link #identify(Trajectory, Trajectory, double, int)} stops at. Episodes are computed lazily by a
+     * {@link MeetingEpisodeSpliterator} as the stream is consumed, so callers may stop early or page through them
+     * without all intersections being held in memory. The episodes are exact and thus the same for every identifier.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return sequential stream of the episodes in chronological order of the first UID's samples
+     */
+    public Stream<MeetingEpisode> episodes(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon) {
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Stream.empty();
+
+        return StreamSupport.stream(new MeetingEpisodeSpliterator(one,
+                two,
+                TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon),
+                TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon)), false);
+    }
+
+    /**
+     * Same as {@link #episodes(Trajectory, Trajectory, double, int)} for lists of coordinates.
+     *
+     * @param one             List of coordinates for the first UID
+     * @param two             List of coordinates for the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return sequential stream of the episodes in chronological order of the first UID's samples
+     */
+    public Stream<MeetingEpisode> episodes(List<EnhancedCoordinate> one,
+                                           List<EnhancedCoordinate> two,
+                                           Double spatialEpsilon,
+                                           Integer temporalEpsilon) {
+        if (!validate(one, two)) return Stream.empty();
+
+        return episodes(Trajectory.of(one), Trajectory.of(two), spatialEpsilon, temporalEpsilon);
+    }
+
     /**
      * Perform primary validations before proceeding to actual computation. Please refer to
      * {@link #onDifferentFloors(List, List)}, {@link #noCoordinates(List, List)} and
@@ -44,26 +274,142 @@ public abstract class AbstractTrajectoryIntersectionIdentifier {
      */
     public boolean validate(List<EnhancedCoordinate> one,
                             List<EnhancedCoordinate> two) {
-        return !noCoordinates(one, two) && !sameUIDs(one, two) && !onDifferentFloors(one, two);
+        long start = metrics.start();
+        boolean valid = !noCoordinates(one, two) && !sameUIDs(one, two) && !onDifferentFloors(one, two);
+        metrics.stop("validate", start);
+        if (!valid) metrics.add("validate.rejected", 1);
+        return valid;
     }
 
     /**
-     * If given UIDs move on different floors throughout the day then there is no
+     * Same as {@link #validate(List, List)} for the columnar representation of the trajectories.
+     *
+     * @param one Trajectory of first UID
+     * @param two Trajectory of second UID
+     * @return
+     */
+    public boolean validate(Trajectory one,
+                            Trajectory two) {
+        if (one == null || two == null || one.size() == 0 || two.size() == 0) return false;
+
+        if (one.getUid().equals(two.getUid())) {
+            LOGGER.info("No point in identifying intersection points of same UID");
+            return false;
+        }
+
+        return !onDifferentFloors(one, two);
+    }
+
+    /**
+     * Same as {@link #validate(Trajectory, Trajectory)}, additionally rejecting pairs of UIDs which are never close
+     * enough in space and time on any floor they share, judging by their {@link TrajectorySummary summaries} alone.
+     * The epsilons are widened by the error bounds of simplified trajectories, see {@link TrajectorySimplifier}.
+     *
+     * @param one             Trajectory of first UID
+     * @param two             Trajectory of second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return
+     */
+    public boolean validate(Trajectory one,
+                            Trajectory two,
+                            double spatialEpsilon,
+                            int temporalEpsilon) {
+        long start = metrics.start();
+        try {
+            if (!validate(one, two)) {
+                metrics.add("validate.rejected", 1);
+                return false;
+            }
+
+            double widenedSpatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon);
+            long maxInterval = maxIntervalMillis(one, two, temporalEpsilon);
+            if (!one.getSummary().mayMeet(two.getSummary(), widenedSpatialEpsilon, maxInterval)) {
+                LOGGER.debug("UIDs " + one.getUid() + " and " + two.getUid() + " are never within epsilons on a common floor");
+                metrics.add("validate.rejected", 1);
+                metrics.add("validate.rejected.summary", 1);
+                return false;
+            }
+
+            return true;
+        } finally {
+            metrics.stop("validate", start);
+        }
+    }
+
+    /**
+     * Record the latency and the counters of the scan of a query, named after the identifier. Scans count into locals
+     * and record once, so that the hot loops stay free of shared state.
+     *
+     * @param start      Value of {@link Metrics#start()} when the scan started
+     * @param candidates Number of pairs of coordinates examined within the temporal window
+     * @param distances  Number of distances evaluated
+     * @param found      Whether the scan yielded an intersection
+     */
+    protected void recordScan(long start, long candidates, long distances, boolean found) {
+        if (!metrics.isEnabled()) return;
+        metrics.stop(getName() + ".scan", start);
+        metrics.add(getName() + ".candidates", candidates);
+        metrics.add(getName() + ".distances", distances);
+        metrics.add(getName() + ".pruned", candidates - (found ? 1 : 0));
+    }
+
+    /**
+     * Binary search for the first of the ascending timestamps not before the given time.
+     */
+    private static int firstNotBefore(long[] timestamps, long time) {
+        int low = 0;
+        int high = timestamps.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < time) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * If given UIDs never visit a common floor throughout the day then there is no
      * point in proceeding with this computation
      *
      * @param one Coordinates for first UID
      * @param two Coordinates for second UID
-     * @return true if UID include coordinates residing on different floors. false otherwise.
+     * @return true if the UIDs have no floor in common. false otherwise.
      */
     protected boolean onDifferentFloors(List<EnhancedCoordinate> one, List<EnhancedCoordinate> two) {
-        Integer[] floorsFromFirst = one.stream().map(EnhancedCoordinate::getFloor).distinct().toArray(Integer[]::new);
-        Integer[] floorsFromSecond = two.stream().map(EnhancedCoordinate::getFloor).distinct().toArray(Integer[]::new);
-        if (floorsFromFirst.length == 1 && floorsFromFirst.length == floorsFromSecond.length && floorsFromFirst[0] != floorsFromSecond[0]) {
-            LOGGER.info("All measurements reside on different floors");
-            return true;
+        // Buildings have a handful of floors, a linear lookup beats hashing
+        int[] floorsFromFirst = new int[4];
+        int distinct = 0;
+        for (EnhancedCoordinate co : one) {
+            int floor = co.getFloor();
+            int f = 0;
+            while (f < distinct && floorsFromFirst[f] != floor) f++;
+            if (f < distinct) continue;
+            if (distinct == floorsFromFirst.length) floorsFromFirst = Arrays.copyOf(floorsFromFirst, distinct * 2);
+            floorsFromFirst[distinct++] = floor;
         }
 
-        return false;
+        for (EnhancedCoordinate ct : two) {
+            int floor = ct.getFloor();
+            for (int f = 0; f < distinct; f++) if (floorsFromFirst[f] == floor) return false;
+        }
+
+        LOGGER.info("All measurements reside on different floors");
+        return true;
+    }
+
+    /**
+     * Same as {@link #onDifferentFloors(List, List)} for the columnar representation of the trajectories.
+     *
+     * @param one Trajectory of first UID
+     * @param two Trajectory of second UID
+     * @return true if the UIDs have no floor in common. false otherwise.
+     */
+    protected boolean onDifferentFloors(Trajectory one, Trajectory two) {
+        if (one.getSummary().sharesFloor(two.getSummary())) return false;
+
+        LOGGER.info("All measurements reside on different floors");
+        return true;
     }
 
     /**
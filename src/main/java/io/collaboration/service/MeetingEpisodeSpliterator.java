@@ -0,0 +1,147 @@
+package io.collaboration.service;
+
+import io.collaboration.api.Intersection;
+import io.collaboration.api.MeetingEpisode;
+import io.collaboration.api.Trajectory;
+import io.collaboration.helper.TemporalDistance;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Lazily sweeps two trajectories in chronological order, emitting one {@link MeetingEpisode} per run of consecutive
+ * samples of the first trajectory which meet the second one. Each sample is matched against the samples of the second
+ * trajectory within temporalEpsilon, kept in a window sliding along with it, so that advancing to the next episode
+ * costs time proportional to the samples swept and no candidates are ever collected. An episode ends at the first
+ * sample without a match or on a change of floor.
+ */
+public final class MeetingEpisodeSpliterator extends Spliterators.AbstractSpliterator<MeetingEpisode> {
+
+    private final Trajectory one;
+
+    private final Trajectory two;
+
+    private final double squaredEpsilon;
+
+    private final long maxInterval;
+
+    /**
+     * Next sample of the first trajectory to examine
+     */
+    private int cursor;
+
+    /**
+     * First sample of the second trajectory not too early for the sample under the cursor
+     */
+    private int low;
+
+    /**
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     */
+    public MeetingEpisodeSpliterator(Trajectory one,
+                                     Trajectory two,
+                                     double spatialEpsilon,
+                                     int temporalEpsilon) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        this.one = one;
+        this.two = two;
+        this.squaredEpsilon = spatialEpsilon * spatialEpsilon;
+        this.maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super MeetingEpisode> action) {
+        short[] floors = one.getFloors();
+
+        int first = -1;
+        int firstPartner = -1;
+        int last = -1;
+        int lastPartner = -1;
+        int closest = -1;
+        int closestPartner = -1;
+        double closestDistance = Double.POSITIVE_INFINITY;
+
+        while (cursor < one.size()) {
+            int partner = partnerOf(cursor);
+
+            if (partner < 0) {
+                cursor++;
+                if (first >= 0) break;
+                continue;
+            }
+            // A change of floor starts a new episode at the same sample
+            if (first >= 0 && floors[cursor] != floors[first]) break;
+
+            if (first < 0) {
+                first = cursor;
+                firstPartner = partner;
+            }
+            last = cursor;
+            lastPartner = partner;
+
+            double distance = squaredDistance(cursor, partner);
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closest = cursor;
+                closestPartner = partner;
+            }
+            cursor++;
+        }
+
+        if (first < 0) return false;
+
+        long[] timesOne = one.getTimestamps();
+        long[] timesTwo = two.getTimestamps();
+        action.accept(new MeetingEpisode((int) floors[first],
+                toDateTime(Math.min(timesOne[first], timesTwo[firstPartner])),
+                toDateTime(Math.max(timesOne[last], timesTwo[lastPartner])),
+                last - first + 1,
+                new Intersection(one.toCoordinate(first), two.toCoordinate(firstPartner)),
+                new Intersection(one.toCoordinate(closest), two.toCoordinate(closestPartner))));
+        return true;
+    }
+
+    /**
+     * Find the closest sample of the second trajectory meeting the given sample of the first one.
+     *
+     * @return position of the partner in the second trajectory, or -1 if there is none
+     */
+    private int partnerOf(int i) {
+        long[] timesTwo = two.getTimestamps();
+        short[] floorsTwo = two.getFloors();
+        long time = one.getTimestamps()[i];
+        short floor = one.getFloors()[i];
+
+        while (low < two.size() && timesTwo[low] < time - maxInterval) low++;
+
+        int partner = -1;
+        double partnerDistance = Double.POSITIVE_INFINITY;
+        for (int j = low; j < two.size() && timesTwo[j] <= time + maxInterval; j++) {
+            if (floorsTwo[j] != floor) continue;
+
+            double distance = squaredDistance(i, j);
+            if (distance <= squaredEpsilon && distance < partnerDistance) {
+                partner = j;
+                partnerDistance = distance;
+            }
+        }
+        return partner;
+    }
+
+    private double squaredDistance(int i, int j) {
+        double dx = one.getXs()[i] - two.getXs()[j];
+        double dy = one.getYs()[i] - two.getYs()[j];
+        return dx * dx + dy * dy;
+    }
+
+    private static ZonedDateTime toDateTime(long epochMillis) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+}
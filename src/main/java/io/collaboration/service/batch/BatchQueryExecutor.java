@@ -0,0 +1,215 @@
+package io.collaboration.service.batch;
+
+import io.collaboration.api.ConfigurationProperties;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.QueryResult;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.factory.TrajectoryIntersectionIdentifierFactory;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import io.collaboration.service.cache.IntersectionCache;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Non interactive counterpart of the interactive shell, answering a file of queries against an already loaded
+ * dataset. Each line of the file holds the algorithm, the epsilons and the two UIDs of a query, under the header
+ * {@code algorithm,spatialEpsilon,temporalEpsilon,uidOne,uidTwo}.
+ * <p>
+ * Queries are answered concurrently by a fixed pool of workers, while the file is read and the results are written by
+ * the calling thread. At most a few queries per worker are in flight at any time; once the window is full the caller
+ * waits for the oldest query before reading the next one. Results are thus written in the order of the queries, and
+ * neither the queries nor the results of a batch are ever held in memory as a whole. The preparation of the trajectory
+ * of a UID is shared by all queries it takes part in, see {@link PreparedTrajectories}, and queries repeating a pair of
+ * UIDs are answered by the {@link IntersectionCache}.
+ */
+@Component
+public class BatchQueryExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchQueryExecutor.class);
+
+    static final String[] HEADER = {"algorithm", "spatialEpsilon", "temporalEpsilon", "uidOne", "uidTwo"};
+
+    /**
+     * Queries in flight per worker. More than one keeps the workers busy while the caller waits on a slow query.
+     */
+    private static final int IN_FLIGHT_PER_WORKER = 4;
+
+    @Autowired
+    private TrajectoryIntersectionIdentifierFactory identifierFactory;
+
+    @Autowired
+    private IntersectionCache intersectionCache;
+
+    /**
+     * Number of workers, 0 for one per available processor
+     */
+    @Value("${batch.threads:0}")
+    private int threads;
+
+    /**
+     * Number of UIDs whose prepared trajectories are kept across queries
+     */
+    @Value("${batch.cache.uids:1024}")
+    private int cachedUids = 1024;
+
+    /**
+     * Answer every query of the given file and write the results to the output file.
+     *
+     * @param store   Trajectories of all UIDs
+     * @param queries Fully qualified path of the CSV file holding the queries
+     * @param output  Fully qualified path of the file to write, as newline delimited JSON if it ends in .ndjson, .jsonl
+     *                or .json and as CSV otherwise
+     * @return number of queries answered
+     * @throws IOException if the queries cannot be read or the results cannot be written
+     */
+    public long execute(TrajectoryStore store, Path queries, Path output) throws IOException {
+
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        int window = workers * IN_FLIGHT_PER_WORKER;
+
+        LOGGER.info("Answering queries of file " + queries + " on " + workers + " workers ...");
+
+        PreparedTrajectories prepared = new PreparedTrajectories(store, cachedUids);
+        ExecutorService executor = Executors.newFixedThreadPool(workers, daemonThreads());
+        Deque<Future<QueryResult>> pending = new ArrayDeque<>(window);
+
+        long count = 0;
+        try (CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader()
+                .withIgnoreSurroundingSpaces()
+                .withIgnoreEmptyLines()
+                .parse(Files.newBufferedReader(queries));
+             QueryResultWriter writer = QueryResultWriter.of(output)) {
+
+            for (String column : HEADER) {
+                if (!parser.getHeaderMap().containsKey(column)) {
+                    throw new IllegalArgumentException("Queries of file " + queries + " lack column " + column
+                            + ". Expected header is " + String.join(",", HEADER));
+                }
+            }
+
+            for (CSVRecord record : parser) {
+                if (pending.size() == window) writer.write(await(pending.poll()));
+
+                long query = ++count;
+                long submitted = System.nanoTime();
+                pending.add(executor.submit(() -> answer(query, record::get, submitted, prepared)));
+            }
+
+            while (!pending.isEmpty()) writer.write(await(pending.poll()));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOGGER.info(count + " queries of file " + queries + " answered");
+
+        return count;
+    }
+
+    /**
+     * Answer a single query, reporting any reason it could not be answered in the error of the result.
+     *
+     * @param query     Position of the query
+     * @param fields    Value of each column of {@link #HEADER} for the query, null if missing
+     * @param submitted {@link System#nanoTime()} at which the query was submitted
+     * @param prepared  Trajectories shared across queries
+     * @return the result of the query
+     */
+    QueryResult answer(long query, Function<String, String> fields, long submitted, PreparedTrajectories prepared) {
+        long start = System.nanoTime();
+
+        ConfigurationProperties properties = new ConfigurationProperties(fields.apply("algorithm"),
+                null,
+                null,
+                fields.apply("uidOne"),
+                fields.apply("uidTwo"));
+        Intersection intersection = null;
+        String error = null;
+
+        try {
+            properties.setSpatialEpsilon(Double.valueOf(fields.apply("spatialEpsilon")));
+            properties.setTemporalEpsilon(Integer.valueOf(fields.apply("temporalEpsilon")));
+
+            intersection = identify(properties, prepared).orElse(null);
+        } catch (NumberFormatException e) {
+            error = "Malformed epsilon: " + e.getMessage();
+        } catch (NoSuchAlgorithmException e) {
+            error = "Unknown algorithm " + properties.getAlgorithm();
+        } catch (IllegalArgumentException e) {
+            error = e.getMessage();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Query " + query + " failed: " + properties, e);
+            error = e.toString();
+        }
+
+        long end = System.nanoTime();
+
+        return new QueryResult(query, properties, intersection, error, (start - submitted) / 1000, (end - start) / 1000);
+    }
+
+    private Optional<Intersection> identify(ConfigurationProperties properties,
+                                            PreparedTrajectories prepared) throws NoSuchAlgorithmException {
+
+        AbstractTrajectoryIntersectionIdentifier identifier = identifierFactory.getIdentifier(properties.getAlgorithm());
+
+        PreparedTrajectories.Prepared one = prepared.get(properties.getUIDOne());
+        if (one == null) throw new IllegalArgumentException("Unknown UID " + properties.getUIDOne());
+        PreparedTrajectories.Prepared two = prepared.get(properties.getUIDTwo());
+        if (two == null) throw new IllegalArgumentException("Unknown UID " + properties.getUIDTwo());
+
+        return intersectionCache.identify(one.getTrajectory(),
+                two.getTrajectory(),
+                properties.getSpatialEpsilon(),
+                properties.getTemporalEpsilon(),
+                identifier,
+                () -> identifier.isColumnar()
+                        ? identifier.identify(one.getTrajectory(),
+                        two.getTrajectory(),
+                        properties.getSpatialEpsilon(),
+                        properties.getTemporalEpsilon())
+                        : identifier.identify(one.getCoordinates(),
+                        two.getCoordinates(),
+                        properties.getSpatialEpsilon(),
+                        properties.getTemporalEpsilon()));
+    }
+
+    private static QueryResult await(Future<QueryResult> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for query results");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Query could not be answered", e.getCause());
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "batch-query-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
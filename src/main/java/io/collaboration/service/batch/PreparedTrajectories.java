@@ -0,0 +1,80 @@
+package io.collaboration.service.batch;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the per UID work shared by the queries of a batch. The trajectory of a UID is
+ * materialized once and, for identifiers working on lists, so are its {@link EnhancedCoordinate}s, no matter how many
+ * queries the UID takes part in. At most capacity UIDs are held at any time.
+ */
+final class PreparedTrajectories {
+
+    private final TrajectoryStore store;
+
+    private final int capacity;
+
+    /**
+     * Prepared trajectories in access order, the least recently used first
+     */
+    private final Map<String, Prepared> prepared = new LinkedHashMap<>(16, 0.75f, true);
+
+    PreparedTrajectories(TrajectoryStore store, int capacity) {
+        this.store = store;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param uid UID under examination
+     * @return the prepared trajectory of the UID or null if the UID is not part of the dataset
+     */
+    Prepared get(String uid) {
+        synchronized (prepared) {
+            Prepared trajectory = prepared.get(uid);
+            if (trajectory == null) {
+                Trajectory columns = store.get(uid);
+                if (columns == null) return null;
+                trajectory = new Prepared(columns);
+                prepared.put(uid, trajectory);
+
+                Iterator<Prepared> eldest = prepared.values().iterator();
+                while (prepared.size() > capacity) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return trajectory;
+        }
+    }
+
+    /**
+     * Both representations of the trajectory of a UID. The list of coordinates is only built once requested, outside
+     * the lock of the cache so that preparing one UID does not hold back queries on others.
+     */
+    static final class Prepared {
+
+        private final Trajectory trajectory;
+
+        private List<EnhancedCoordinate> coordinates;
+
+        private Prepared(Trajectory trajectory) {
+            this.trajectory = trajectory;
+        }
+
+        Trajectory getTrajectory() {
+            return trajectory;
+        }
+
+        synchronized List<EnhancedCoordinate> getCoordinates() {
+            if (coordinates == null) coordinates = Collections.unmodifiableList(trajectory.toCoordinates());
+            return coordinates;
+        }
+    }
+}
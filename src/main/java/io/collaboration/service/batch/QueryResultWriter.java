@@ -0,0 +1,191 @@
+package io.collaboration.service.batch;
+
+import io.collaboration.api.ConfigurationProperties;
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.QueryResult;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streams the results of a batch to a file, one line per query, as CSV or as newline delimited JSON depending on the
+ * extension of the file. Nothing but the line being written is held in memory.
+ */
+abstract class QueryResultWriter implements Closeable {
+
+    static final String[] HEADER = {"query", "algorithm", "spatialEpsilon", "temporalEpsilon", "uidOne", "uidTwo",
+            "intersected", "floor", "timestampOne", "xOne", "yOne", "timestampTwo", "xTwo", "yTwo", "distance",
+            "queueMicros", "latencyMicros", "error"};
+
+    /**
+     * @param output Fully qualified path of the file to write. Files ending in .ndjson, .jsonl or .json are written as
+     *               newline delimited JSON, anything else as CSV.
+     * @return writer of the file
+     */
+    static QueryResultWriter of(Path output) throws IOException {
+        String name = output.getFileName().toString().toLowerCase();
+        Writer writer = Files.newBufferedWriter(output);
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")
+                ? new Json(writer)
+                : new Csv(writer);
+    }
+
+    abstract void write(QueryResult result) throws IOException;
+
+    private static class Csv extends QueryResultWriter {
+
+        private final CSVPrinter printer;
+
+        private Csv(Writer writer) throws IOException {
+            this.printer = CSVFormat.DEFAULT.withHeader(HEADER).print(writer);
+        }
+
+        @Override
+        void write(QueryResult result) throws IOException {
+            ConfigurationProperties properties = result.getProperties();
+            Intersection intersection = result.getIntersection().orElse(null);
+            EnhancedCoordinate one = intersection == null ? null : intersection.getPointOne();
+            EnhancedCoordinate two = intersection == null ? null : intersection.getPointTwo();
+
+            printer.printRecord(result.getQuery(),
+                    properties.getAlgorithm(),
+                    properties.getSpatialEpsilon(),
+                    properties.getTemporalEpsilon(),
+                    properties.getUIDOne(),
+                    properties.getUIDTwo(),
+                    result.getError() == null ? intersection != null : null,
+                    one == null ? null : one.getFloor(),
+                    one == null ? null : one.getTimestamp(),
+                    one == null ? null : one.getX(),
+                    one == null ? null : one.getY(),
+                    two == null ? null : two.getTimestamp(),
+                    two == null ? null : two.getX(),
+                    two == null ? null : two.getY(),
+                    intersection == null ? null : intersection.getEuclideanDistance(),
+                    result.getQueueMicros(),
+                    result.getLatencyMicros(),
+                    result.getError());
+        }
+
+        @Override
+        public void close() throws IOException {
+            printer.close();
+        }
+    }
+
+    /**
+     * Format a result as a single line of JSON, without the line terminator.
+     *
+     * @param result Result of a query
+     * @return the JSON object of the result
+     */
+    static String json(QueryResult result) {
+        StringBuilder line = new StringBuilder(512);
+        ConfigurationProperties properties = result.getProperties();
+
+        line.append("{\"query\":").append(result.getQuery());
+        line.append(",\"algorithm\":");
+        string(line, properties.getAlgorithm());
+        line.append(",\"spatialEpsilon\":");
+        number(line, properties.getSpatialEpsilon());
+        line.append(",\"temporalEpsilon\":").append(properties.getTemporalEpsilon());
+        line.append(",\"uidOne\":");
+        string(line, properties.getUIDOne());
+        line.append(",\"uidTwo\":");
+        string(line, properties.getUIDTwo());
+        line.append(",\"intersection\":");
+        if (result.getIntersection().isPresent()) {
+            Intersection intersection = result.getIntersection().get();
+            line.append("{\"floor\":").append(intersection.getPointOne().getFloor());
+            line.append(",\"one\":");
+            coordinate(line, intersection.getPointOne());
+            line.append(",\"two\":");
+            coordinate(line, intersection.getPointTwo());
+            line.append(",\"distance\":");
+            number(line, intersection.getEuclideanDistance());
+            line.append('}');
+        } else {
+            line.append("null");
+        }
+        line.append(",\"queueMicros\":").append(result.getQueueMicros());
+        line.append(",\"latencyMicros\":").append(result.getLatencyMicros());
+        line.append(",\"error\":");
+        string(line, result.getError());
+        line.append('}');
+
+        return line.toString();
+    }
+
+    private static void coordinate(StringBuilder line, EnhancedCoordinate coordinate) {
+        line.append("{\"timestamp\":");
+        string(line, coordinate.getTimestamp().toString());
+        line.append(",\"x\":");
+        number(line, coordinate.getX());
+        line.append(",\"y\":");
+        number(line, coordinate.getY());
+        line.append('}');
+    }
+
+    private static void number(StringBuilder line, Double value) {
+        // JSON has no representation for NaN and the infinities
+        if (value == null || value.isNaN() || value.isInfinite()) line.append("null");
+        else line.append(value.doubleValue());
+    }
+
+    static void string(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+                    else line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static class Json extends QueryResultWriter {
+
+        private final Writer writer;
+
+        private Json(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        void write(QueryResult result) throws IOException {
+            writer.append(json(result)).append('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package io.collaboration.service.batch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.collaboration.api.QueryResult;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.helper.Metrics;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long running counterpart of the {@link BatchQueryExecutor}, serving queries over HTTP against a dataset loaded once,
+ * so that any number of clients share the warm JVM and the loaded trajectories. The server binds to the loopback
+ * address and answers
+ * <ul>
+ * <li>{@code GET /identify?algorithm=&spatialEpsilon=&temporalEpsilon=&uidOne=&uidTwo=} with the result of the query
+ * as a JSON object in the layout of the NDJSON results of batch mode, i.e. the intersection if any along with the
+ * microseconds the query waited for a worker and took to be answered</li>
+ * <li>{@code GET /health} with the size of the dataset and the number of queries admitted</li>
+ * <li>{@code GET /metrics} with the text dump of the {@link Metrics}</li>
+ * </ul>
+ * Queries are answered by a fixed pool of {@code http.threads} workers. At most {@code http.queue} queries are admitted
+ * at any time, either waiting for or occupying a worker, and the rest are turned away with 503 instead of piling up.
+ * Queries not answered within {@code http.timeoutMillis} are answered with 504. The identifiers are not interruptible,
+ * so a worker which already picked such a query up finishes it regardless and only then releases its admission,
+ * keeping the load bounded, while a query still waiting for a worker is dropped.
+ */
+@Component
+public class QueryServer {
+
+    private static final Logger LOGGER = Logger.getLogger(QueryServer.class);
+
+    @Autowired
+    private BatchQueryExecutor batchQueryExecutor;
+
+    @Autowired
+    private Metrics metrics;
+
+    /**
+     * Port to listen on, 0 for any free port
+     */
+    @Value("${http.port:8080}")
+    private int port = 8080;
+
+    /**
+     * Number of workers, 0 for one per available processor
+     */
+    @Value("${http.threads:0}")
+    private int threads;
+
+    /**
+     * Maximum number of queries admitted at once
+     */
+    @Value("${http.queue:64}")
+    private int queue = 64;
+
+    @Value("${http.timeoutMillis:10000}")
+    private long timeoutMillis = 10_000;
+
+    /**
+     * Number of UIDs whose prepared trajectories are kept across queries
+     */
+    @Value("${batch.cache.uids:1024}")
+    private int cachedUids = 1024;
+
+    private HttpServer server;
+
+    private ExecutorService workers;
+
+    private ExecutorService dispatchers;
+
+    private final AtomicLong queries = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * Start serving queries on the given dataset on {@code http.port}. The server keeps the JVM alive until
+     * {@link #stop()}.
+     *
+     * @param store Trajectories of all UIDs
+     * @return the port the server listens on
+     * @throws IOException if the port cannot be bound
+     */
+    public int start(TrajectoryStore store) throws IOException {
+        return start(store, port);
+    }
+
+    /**
+     * Same as {@link #start(TrajectoryStore)} on the given port.
+     *
+     * @param store Trajectories of all UIDs
+     * @param port  Port to listen on, 0 for any free port
+     * @return the port the server listens on
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized int start(TrajectoryStore store, int port) throws IOException {
+        if (server != null) throw new IllegalStateException("Already serving on port " + server.getAddress().getPort());
+
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        PreparedTrajectories prepared = new PreparedTrajectories(store, cachedUids);
+        Semaphore admission = new Semaphore(queue);
+
+        workers = Executors.newFixedThreadPool(size, threads("http-query-", true));
+        // Exchanges are mostly spent waiting on workers, hence one dispatcher per admitted query
+        dispatchers = Executors.newFixedThreadPool(queue + 1, threads("http-dispatch-", false));
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), queue);
+        server.setExecutor(dispatchers);
+        server.createContext("/identify", exchange -> {
+            try {
+                identify(exchange, prepared, admission);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Request " + exchange.getRequestURI() + " failed", e);
+                respond(exchange, 500, error(e.toString()));
+            } finally {
+                exchange.close();
+            }
+        });
+        server.createContext("/health", exchange -> {
+            try {
+                respond(exchange, 200, "{\"uids\":" + store.size() + ",\"samples\":" + store.samples()
+                        + ",\"admitted\":" + (queue - admission.availablePermits()) + ",\"queries\":" + queries.get()
+                        + ",\"rejected\":" + rejected.get() + ",\"timedOut\":" + timedOut.get() + "}");
+            } finally {
+                exchange.close();
+            }
+        });
+        server.createContext("/metrics", exchange -> {
+            try {
+                respond(exchange, 200, "text/plain", metrics.dump());
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        LOGGER.info("Serving queries on " + server.getAddress() + " with " + size + " workers");
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop serving, abandoning the queries in flight.
+     */
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        workers.shutdownNow();
+        dispatchers.shutdownNow();
+        server = null;
+    }
+
+    private void identify(HttpExchange exchange, PreparedTrajectories prepared, Semaphore admission) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Only GET is supported"));
+            return;
+        }
+
+        Map<String, String> parameters;
+        try {
+            parameters = parameters(exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException e) {
+            // Thrown by URLDecoder on malformed percent-encodings
+            respond(exchange, 400, error("Malformed query: " + e.getMessage()));
+            return;
+        }
+        for (String column : BatchQueryExecutor.HEADER) {
+            if (parameters.get(column) == null) {
+                respond(exchange, 400, error("Missing parameter " + column));
+                return;
+            }
+        }
+
+        if (!admission.tryAcquire()) {
+            rejected.incrementAndGet();
+            respond(exchange, 503, error("Too many queries in flight"));
+            return;
+        }
+
+        long query = queries.incrementAndGet();
+        long submitted = System.nanoTime();
+        // Claimed by the worker picking the query up, or by the handler giving up on it before then
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<QueryResult> result;
+        try {
+            result = workers.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) return null;
+                try {
+                    return batchQueryExecutor.answer(query, parameters::get, submitted, prepared);
+                } finally {
+                    admission.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+
+        try {
+            QueryResult answer = result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            respond(exchange, answer.getError() == null ? 200 : 400, QueryResultWriter.json(answer));
+        } catch (TimeoutException e) {
+            timedOut.incrementAndGet();
+            if (claimed.compareAndSet(false, true)) {
+                result.cancel(false);
+                admission.release();
+            }
+            respond(exchange, 504, error("Query " + query + " was not answered within " + timeoutMillis + " millis"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, error("Server is stopping"));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Query could not be answered", e.getCause());
+        }
+    }
+
+    private static Map<String, String> parameters(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) return parameters;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0) continue;
+            parameters.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        QueryResultWriter.string(json, message);
+        return json.append('}').toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        respond(exchange, status, "application/json", json);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String content) throws IOException {
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static ThreadFactory threads(String prefix, boolean daemon) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+}
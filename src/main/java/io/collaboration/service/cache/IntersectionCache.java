@@ -0,0 +1,395 @@
+package io.collaboration.service.cache;
+
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Least recently used cache of the candidate pairs of coordinates of pairs of UIDs, sitting in front of the identifiers
+ * so that exploring the same pair of UIDs with different epsilons does not recompute it from scratch.
+ * <p>
+ * Entries are keyed by the unordered pair of UIDs and hold every pair of samples of the two trajectories meeting
+ * under the widest epsilons queried so far for the pair. A query within those epsilons is a hit and is answered by
+ * filtering the candidates, which yields the earliest intersection with respect to the first trajectory, earliest
+ * sample of the second trajectory first. Any other query is a miss and is answered by the identifier chosen by the
+ * user. The first miss of a pair only records that the pair was queried, so that pairs queried once never pay for
+ * collecting their candidates; later misses collect the candidates under the widest epsilons queried so far once the
+ * identifier answered.
+ * <p>
+ * Only the answers of identifiers reporting the earliest intersection (see
+ * {@link AbstractTrajectoryIntersectionIdentifier#isEarliest()}) may be served out of the candidates, queries of the
+ * rest always go to the identifier. The cache is bounded both by the number of pairs of UIDs and by the total number of
+ * candidates held. Pairs with more candidates than a quarter of the latter are not cached at all.
+ */
+@Component
+public class IntersectionCache {
+
+    private static final Logger LOGGER = Logger.getLogger(IntersectionCache.class);
+
+    @Value("${cache.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of pairs of UIDs held
+     */
+    @Value("${cache.entries:1024}")
+    private int maxEntries = 1024;
+
+    /**
+     * Maximum number of candidate pairs of samples held across all pairs of UIDs
+     */
+    @Value("${cache.candidates:4000000}")
+    private long maxCandidates = 4_000_000;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long candidates;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong bypasses = new AtomicLong();
+
+    public IntersectionCache() {
+    }
+
+    /**
+     * @param maxEntries    Maximum number of pairs of UIDs held
+     * @param maxCandidates Maximum number of candidate pairs of samples held across all pairs of UIDs
+     */
+    public IntersectionCache(int maxEntries, long maxCandidates) {
+        this.maxEntries = maxEntries;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Answer the query out of the cached candidates of the two UIDs if they cover the given epsilons, or through the
+     * identifier otherwise, collecting the candidates of pairs queried more than once under the widest epsilons queried
+     * so far.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @param identifier      Identifier chosen by the user
+     * @param identify        Answers the query through the identifier, e.g. its columnar or parallel entry point
+     * @return the intersection of the two UIDs, if any
+     */
+    public Optional<Intersection> identify(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon,
+                                           AbstractTrajectoryIntersectionIdentifier identifier,
+                                           Supplier<Optional<Intersection>> identify) {
+
+        if (!enabled || one == null || two == null || one.size() == 0 || two.size() == 0
+                || one.getUid().equals(two.getUid())) {
+            return identify.get();
+        }
+
+        if (!identifier.isEarliest()) {
+            bypasses.incrementAndGet();
+            return identify.get();
+        }
+
+        // Candidates of simplified trajectories are collected and filtered under the widened epsilons throughout
+        spatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon);
+        temporalEpsilon = TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon);
+
+        // Pairs which cannot meet by their summaries are settled without collecting or caching anything
+        if (!one.getSummary().mayMeet(two.getSummary(), spatialEpsilon, TemporalDistance.getMaxIntervalMillis(temporalEpsilon))) {
+            return Optional.empty();
+        }
+
+        boolean ordered = one.getUid().compareTo(two.getUid()) < 0;
+        Trajectory first = ordered ? one : two;
+        Trajectory second = ordered ? two : one;
+        String key = first.getUid() + '\u0000' + second.getUid();
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        boolean known = entry != null && entry.first == first && entry.second == second;
+        boolean covered = known && entry.spatialEpsilon >= spatialEpsilon && entry.temporalEpsilon >= temporalEpsilon;
+        if (covered && entry.firsts != null) {
+            hits.incrementAndGet();
+            return entry.filter(ordered, spatialEpsilon, temporalEpsilon);
+        }
+
+        if (covered && entry.overflow) {
+            bypasses.incrementAndGet();
+            return identify.get();
+        }
+
+        misses.incrementAndGet();
+        Optional<Intersection> intersection = identify.get();
+
+        if (!known) {
+            put(key, Entry.queried(first, second, spatialEpsilon, temporalEpsilon, false));
+            return intersection;
+        }
+
+        double widestSpatial = Math.max(spatialEpsilon, entry.spatialEpsilon);
+        int widestTemporal = Math.max(temporalEpsilon, entry.temporalEpsilon);
+        Entry widest = Entry.collect(first, second, widestSpatial, widestTemporal, maxCandidates / 4);
+        if (widest == null) {
+            LOGGER.debug("Too many candidates between " + first.getUid() + " and " + second.getUid() + " to cache");
+            bypasses.incrementAndGet();
+            widest = Entry.queried(first, second, widestSpatial, widestTemporal, true);
+        }
+
+        put(key, widest);
+        return intersection;
+    }
+
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.get(key);
+            // A concurrent query may have widened the epsilons of the pair further in the meantime
+            if (previous != null && previous.first == entry.first && previous.second == entry.second
+                    && previous.spatialEpsilon >= entry.spatialEpsilon && previous.temporalEpsilon >= entry.temporalEpsilon
+                    && (previous.isSettled() || !entry.isSettled())) {
+                return;
+            }
+
+            if (previous != null) candidates -= previous.size();
+            entries.put(key, entry);
+            candidates += entry.size();
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while ((entries.size() > maxEntries || candidates > maxCandidates) && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                if (evicted == entry) break;
+                eldest.remove();
+                candidates -= evicted.size();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop every entry, keeping the statistics.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            candidates = 0;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return number of queries answered by the identifier since their pair of UIDs had too many candidates to cache,
+     * or since the identifier does not report the earliest intersection
+     */
+    public long getBypasses() {
+        return bypasses.get();
+    }
+
+    /**
+     * @return number of pairs of UIDs held
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return one line summary of the statistics of the cache
+     */
+    public String statistics() {
+        long lookups = getHits() + getMisses();
+        synchronized (entries) {
+            return "Intersection cache: " + getHits() + " hits, " + getMisses() + " misses ("
+                    + (lookups == 0 ? 0 : 100 * getHits() / lookups) + "% hit ratio), " + getEvictions() + " evictions, "
+                    + getBypasses() + " bypasses, " + entries.size() + " pairs of UIDs and " + candidates
+                    + " candidates held";
+        }
+    }
+
+    /**
+     * Candidate pairs of samples of two trajectories under a pair of epsilons, as positions in the first and the second
+     * trajectory ordered by the former and then the latter. Pairs queried only once, or with too many candidates, are
+     * held without any.
+     */
+    private static final class Entry {
+
+        private final Trajectory first;
+
+        private final Trajectory second;
+
+        private final double spatialEpsilon;
+
+        private final int temporalEpsilon;
+
+        /**
+         * Positions in the first trajectory, null if no candidates are held
+         */
+        private final int[] firsts;
+
+        private final int[] seconds;
+
+        /**
+         * Whether there were too many candidates under the epsilons of the entry to hold them
+         */
+        private final boolean overflow;
+
+        private Entry(Trajectory first,
+                      Trajectory second,
+                      double spatialEpsilon,
+                      int temporalEpsilon,
+                      int[] firsts,
+                      int[] seconds,
+                      boolean overflow) {
+            this.first = first;
+            this.second = second;
+            this.spatialEpsilon = spatialEpsilon;
+            this.temporalEpsilon = temporalEpsilon;
+            this.firsts = firsts;
+            this.seconds = seconds;
+            this.overflow = overflow;
+        }
+
+        private int size() {
+            return firsts == null ? 0 : firsts.length;
+        }
+
+        /**
+         * @return true if the entry holds the candidates or knows that there are too many of them
+         */
+        private boolean isSettled() {
+            return firsts != null || overflow;
+        }
+
+        /**
+         * @return an entry recording that the pair was queried under the given epsilons, holding no candidates
+         */
+        private static Entry queried(Trajectory first,
+                                     Trajectory second,
+                                     double spatialEpsilon,
+                                     int temporalEpsilon,
+                                     boolean overflow) {
+            return new Entry(first, second, spatialEpsilon, temporalEpsilon, null, null, overflow);
+        }
+
+        /**
+         * Sweep the two trajectories in chronological order collecting every pair of samples meeting under the given
+         * epsilons, see {@link io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier}.
+         *
+         * @return the candidates or null if there are more than limit of them
+         */
+        private static Entry collect(Trajectory first,
+                                     Trajectory second,
+                                     double spatialEpsilon,
+                                     int temporalEpsilon,
+                                     long limit) {
+            long[] timesOne = first.getTimestamps();
+            double[] xOne = first.getXs();
+            double[] yOne = first.getYs();
+            short[] floorsOne = first.getFloors();
+            long[] timesTwo = second.getTimestamps();
+            double[] xTwo = second.getXs();
+            double[] yTwo = second.getYs();
+            short[] floorsTwo = second.getFloors();
+
+            long maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+            double squaredEpsilon = spatialEpsilon * spatialEpsilon;
+
+            int[] firsts = new int[16];
+            int[] seconds = new int[16];
+            int size = 0;
+
+            int low = 0;
+            for (int i = 0; i < timesOne.length; i++) {
+                long time = timesOne[i];
+
+                while (low < timesTwo.length && timesTwo[low] < time - maxInterval) low++;
+
+                for (int j = low; j < timesTwo.length && timesTwo[j] <= time + maxInterval; j++) {
+                    double dx = xOne[i] - xTwo[j];
+                    double dy = yOne[i] - yTwo[j];
+                    if (floorsOne[i] == floorsTwo[j] && dx * dx + dy * dy <= squaredEpsilon) {
+                        if (size == limit) return null;
+                        if (size == firsts.length) {
+                            firsts = Arrays.copyOf(firsts, size * 2);
+                            seconds = Arrays.copyOf(seconds, size * 2);
+                        }
+                        firsts[size] = i;
+                        seconds[size] = j;
+                        size++;
+                    }
+                }
+            }
+
+            return new Entry(first, second, spatialEpsilon, temporalEpsilon,
+                    Arrays.copyOf(firsts, size), Arrays.copyOf(seconds, size), false);
+        }
+
+        /**
+         * Find the earliest candidate meeting tighter epsilons.
+         *
+         * @param ordered true if the query asked for the first trajectory first. false if it asked for the second one.
+         * @return the intersection with the points in the order of the query, if any
+         */
+        private Optional<Intersection> filter(boolean ordered, double spatialEpsilon, int temporalEpsilon) {
+            long maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+            double squaredEpsilon = spatialEpsilon * spatialEpsilon;
+
+            int best = -1;
+            for (int k = 0; k < firsts.length; k++) {
+                int i = firsts[k];
+                int j = seconds[k];
+                double dx = first.getXs()[i] - second.getXs()[j];
+                double dy = first.getYs()[i] - second.getYs()[j];
+                if (Math.abs(first.getTimestamps()[i] - second.getTimestamps()[j]) > maxInterval
+                        || dx * dx + dy * dy > squaredEpsilon) {
+                    continue;
+                }
+
+                // Candidates are ordered by the first trajectory, so the earliest one of the query is the first match
+                if (ordered) {
+                    best = k;
+                    break;
+                }
+                if (best < 0 || j < seconds[best] || (j == seconds[best] && i < firsts[best])) best = k;
+            }
+
+            if (best < 0) return Optional.empty();
+
+            Intersection intersection = ordered
+                    ? new Intersection(first.toCoordinate(firsts[best]), second.toCoordinate(seconds[best]))
+                    : new Intersection(second.toCoordinate(seconds[best]), first.toCoordinate(firsts[best]));
+            return Optional.of(intersection);
+        }
+    }
+}
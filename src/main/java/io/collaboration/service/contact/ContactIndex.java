@@ -0,0 +1,297 @@
+package io.collaboration.service.contact;
+
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.helper.LongIntHashMap;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Dataset wide index of the samples of every UID by (floor, x, y, time), answering "who did this UID meet" without
+ * comparing the UID against every other one.
+ * <p>
+ * Samples are bucketed in a 3D grid of cellSize x cellSize metres by cellMillis wide cells per floor, laid out cell
+ * after cell as (uid, index) references into the store. The index does not depend on the epsilons of the queries: a
+ * query probes, for every sample of the UID under examination, the cells overlapping the box of spatialEpsilon around
+ * it and the temporal window around its timestamp, so its cost is proportional to the samples of that UID and of its
+ * neighbours rather than to the size of the dataset.
+ * <p>
+ * Cell coordinates are folded into a single long key. Cells which are far apart may thus share a key, which only adds
+ * candidates that the exact checks discard.
+ */
+public final class ContactIndex {
+
+    private static final long FLOOR_MASK = 0xFFFL;
+
+    private static final long CELL_MASK = 0x3FFFL;
+
+    private static final long BUCKET_MASK = 0xFFFFFFL;
+
+    private final TrajectoryStore store;
+
+    private final double cellSize;
+
+    private final long cellMillis;
+
+    private final LongIntHashMap cellIds;
+
+    /**
+     * Cell id to the position of its first reference. Cell c spans [cellStarts[c], cellStarts[c + 1]).
+     */
+    private final int[] cellStarts;
+
+    private final int[] uids;
+
+    private final int[] indices;
+
+    /**
+     * Largest errors of the simplified trajectories of the store, see {@link TrajectorySimplifier}
+     */
+    private final double spatialError;
+
+    private final long temporalError;
+
+    private ContactIndex(TrajectoryStore store,
+                         double cellSize,
+                         long cellMillis,
+                         LongIntHashMap cellIds,
+                         int[] cellStarts,
+                         int[] uids,
+                         int[] indices,
+                         double spatialError,
+                         long temporalError) {
+        this.store = store;
+        this.cellSize = cellSize;
+        this.cellMillis = cellMillis;
+        this.cellIds = cellIds;
+        this.cellStarts = cellStarts;
+        this.uids = uids;
+        this.indices = indices;
+        this.spatialError = spatialError;
+        this.temporalError = temporalError;
+    }
+
+    /**
+     * Index every sample of the store in two passes, counting the samples of every cell and then laying out their
+     * references.
+     *
+     * @param store      Trajectories of all UIDs
+     * @param cellSize   Width and height of a cell in metres
+     * @param cellMillis Width of a cell in millis
+     * @return the index
+     */
+    public static ContactIndex of(TrajectoryStore store, double cellSize, long cellMillis) {
+        if (!(cellSize > 0) || cellMillis <= 0) {
+            throw new IllegalArgumentException("Cells must have positive dimensions, got " + cellSize + " metres by " + cellMillis + " millis");
+        }
+        if (store.samples() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot index more than " + Integer.MAX_VALUE + " samples");
+        }
+
+        // Assign dense ids to the occupied cells and count their samples
+        LongIntHashMap cellIds = new LongIntHashMap(1024);
+        int[] counts = new int[1024];
+        double spatialError = 0;
+        long temporalError = 0;
+        for (int uid = 0; uid < store.size(); uid++) {
+            Trajectory trajectory = store.get(uid);
+            spatialError = Math.max(spatialError, trajectory.getSpatialError());
+            temporalError = Math.max(temporalError, trajectory.getTemporalError());
+            for (int i = 0; i < trajectory.size(); i++) {
+                int cell = cellIds.putIfAbsent(cellKey(trajectory.getFloors()[i],
+                        cellOf(trajectory.getXs()[i], cellSize),
+                        cellOf(trajectory.getYs()[i], cellSize),
+                        Math.floorDiv(trajectory.getTimestamps()[i], cellMillis)));
+                if (cell == counts.length) counts = Arrays.copyOf(counts, counts.length * 2);
+                counts[cell]++;
+            }
+        }
+
+        int cells = cellIds.size();
+        int[] cellStarts = new int[cells + 1];
+        for (int c = 0; c < cells; c++) cellStarts[c + 1] = cellStarts[c] + counts[c];
+
+        // Lay the samples out cell after cell. Samples of a UID are visited chronologically and so are kept within a cell.
+        int[] uids = new int[cellStarts[cells]];
+        int[] indices = new int[cellStarts[cells]];
+        int[] cursor = Arrays.copyOf(cellStarts, cells);
+        for (int uid = 0; uid < store.size(); uid++) {
+            Trajectory trajectory = store.get(uid);
+            for (int i = 0; i < trajectory.size(); i++) {
+                int cell = cellIds.get(cellKey(trajectory.getFloors()[i],
+                        cellOf(trajectory.getXs()[i], cellSize),
+                        cellOf(trajectory.getYs()[i], cellSize),
+                        Math.floorDiv(trajectory.getTimestamps()[i], cellMillis)));
+                uids[cursor[cell]] = uid;
+                indices[cursor[cell]++] = i;
+            }
+        }
+
+        return new ContactIndex(store, cellSize, cellMillis, cellIds, cellStarts, uids, indices, spatialError, temporalError);
+    }
+
+    /**
+     * Find the first meeting of the given UID with every other UID of the dataset.
+     *
+     * @param uid             UID under examination
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return one intersection per UID met, the point of the given UID first, in chronological order of the samples of
+     * the given UID and then in order of UID. Each is the intersection {@code sweep} finds for the same pair.
+     */
+    public List<Intersection> contacts(String uid, double spatialEpsilon, int temporalEpsilon) {
+        int id = store.getId(uid);
+        if (id < 0) throw new IllegalArgumentException("Unknown UID " + uid);
+
+        Trajectory trajectory = store.get(id);
+
+        // Probe the cells within the epsilons widened by the errors of the UID and of the most simplified trajectory it
+        // may meet, each candidate being then checked against the errors of its own trajectory
+        double widenedSpatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(spatialEpsilon,
+                trajectory.getSpatialError() + spatialError);
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(TrajectorySimplifier.widenTemporalEpsilon(temporalEpsilon,
+                trajectory.getTemporalError() + temporalError));
+
+        Partners partners = new Partners();
+
+        long[] timestamps = trajectory.getTimestamps();
+        double[] xs = trajectory.getXs();
+        double[] ys = trajectory.getYs();
+        short[] floors = trajectory.getFloors();
+        for (int i = 0; i < trajectory.size(); i++) {
+            long fromX = cellOf(xs[i] - widenedSpatialEpsilon, cellSize);
+            long toX = cellOf(xs[i] + widenedSpatialEpsilon, cellSize);
+            long fromY = cellOf(ys[i] - widenedSpatialEpsilon, cellSize);
+            long toY = cellOf(ys[i] + widenedSpatialEpsilon, cellSize);
+            long fromBucket = Math.floorDiv(timestamps[i] - maxInterval, cellMillis);
+            long toBucket = Math.floorDiv(timestamps[i] + maxInterval, cellMillis);
+
+            for (long cellX = fromX; cellX <= toX; cellX++) {
+                for (long cellY = fromY; cellY <= toY; cellY++) {
+                    for (long bucket = fromBucket; bucket <= toBucket; bucket++) {
+                        int cell = cellIds.get(cellKey(floors[i], cellX, cellY, bucket));
+                        if (cell == LongIntHashMap.MISSING) continue;
+
+                        for (int m = cellStarts[cell]; m < cellStarts[cell + 1]; m++) {
+                            int other = uids[m];
+                            if (other == id) continue;
+                            // Later samples of the UID cannot improve on a meeting already found
+                            int p = partners.get(other);
+                            if (p != LongIntHashMap.MISSING && partners.firsts[p] < i) continue;
+
+                            Trajectory candidate = store.get(other);
+                            int j = indices[m];
+                            if (candidate.getFloors()[j] != floors[i]) continue;
+                            long candidateInterval = TemporalDistance.getMaxIntervalMillis(
+                                    TrajectorySimplifier.widenTemporalEpsilon(trajectory, candidate, temporalEpsilon));
+                            if (Math.abs(candidate.getTimestamps()[j] - timestamps[i]) > candidateInterval) continue;
+
+                            double candidateEpsilon = TrajectorySimplifier.widenSpatialEpsilon(trajectory, candidate, spatialEpsilon);
+                            double dx = candidate.getXs()[j] - xs[i];
+                            double dy = candidate.getYs()[j] - ys[i];
+                            if (dx * dx + dy * dy > candidateEpsilon * candidateEpsilon) continue;
+
+                            partners.offer(other, i, j);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Order by sample of the UID, then by UID within the runs of partners first met at the same sample
+        long[] order = new long[partners.size];
+        for (int p = 0; p < partners.size; p++) order[p] = ((long) partners.firsts[p] << 32) | p;
+        Arrays.sort(order);
+
+        List<Intersection> contacts = new ArrayList<>(partners.size);
+        int run = 0;
+        for (int k = 0; k < order.length; k++) {
+            int p = (int) order[k];
+            int first = partners.firsts[p];
+            if (first != partners.firsts[(int) order[run]]) {
+                sortByUid(contacts.subList(run, k));
+                run = k;
+            }
+            contacts.add(new Intersection(trajectory.toCoordinate(first),
+                    store.get(partners.uids[p]).toCoordinate(partners.seconds[p])));
+        }
+        sortByUid(contacts.subList(run, contacts.size()));
+        return contacts;
+    }
+
+    private static void sortByUid(List<Intersection> contacts) {
+        if (contacts.size() > 1) contacts.sort(Comparator.comparing(contact -> contact.getPointTwo().getUid()));
+    }
+
+    /**
+     * @return the store the index was built on
+     */
+    public TrajectoryStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return number of occupied cells
+     */
+    public int cells() {
+        return cellIds.size();
+    }
+
+    private static long cellKey(int floor, long cellX, long cellY, long bucket) {
+        return ((floor & FLOOR_MASK) << 52) | ((cellX & CELL_MASK) << 38) | ((cellY & CELL_MASK) << 24) | (bucket & BUCKET_MASK);
+    }
+
+    private static long cellOf(double value, double cellSize) {
+        return (long) Math.floor(value / cellSize);
+    }
+
+    /**
+     * First meeting of the UID under examination with each of its partners, growing with the partners met rather than
+     * with the dataset: the earliest sample of the UID, then the earliest sample of the partner.
+     */
+    private static final class Partners {
+
+        /**
+         * Dictionary id of the partner to its position in the columns
+         */
+        private final LongIntHashMap positions = new LongIntHashMap(16);
+
+        private int[] uids = new int[16];
+
+        private int[] firsts = new int[16];
+
+        private int[] seconds = new int[16];
+
+        private int size;
+
+        /**
+         * @return the position of the given partner, or {@link LongIntHashMap#MISSING} if not met yet
+         */
+        int get(int uid) {
+            return positions.get(uid);
+        }
+
+        void offer(int uid, int first, int second) {
+            int p = positions.putIfAbsent(uid);
+            if (p == size) {
+                if (size == uids.length) {
+                    uids = Arrays.copyOf(uids, size * 2);
+                    firsts = Arrays.copyOf(firsts, size * 2);
+                    seconds = Arrays.copyOf(seconds, size * 2);
+                }
+                uids[p] = uid;
+                firsts[p] = first;
+                seconds[p] = second;
+                size++;
+            } else if (second < seconds[p]) {
+                seconds[p] = second;
+            }
+        }
+    }
+}
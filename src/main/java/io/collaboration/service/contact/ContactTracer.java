@@ -0,0 +1,63 @@
+package io.collaboration.service.contact;
+
+import io.collaboration.api.Intersection;
+import io.collaboration.api.TrajectoryStore;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Contact tracing queries, answering "who did this UID meet" out of a {@link ContactIndex} of the whole dataset. The
+ * index is built on the first query of a store and reused by the following ones.
+ */
+@Component
+public class ContactTracer {
+
+    private static final Logger LOGGER = Logger.getLogger(ContactTracer.class);
+
+    /**
+     * Width and height in metres of the cells of the index. Queries probe ceil(2 * spatialEpsilon / cellSize) + 1
+     * cells along each axis, hence the default suits the epsilons of the interactive shell.
+     */
+    @Value("${contacts.cellSize:4}")
+    private double cellSize = 4;
+
+    /**
+     * Width in seconds of the cells of the index
+     */
+    @Value("${contacts.cellSeconds:60}")
+    private int cellSeconds = 60;
+
+    private ContactIndex index;
+
+    /**
+     * Retrieve the index of the given store, building it if the store was not indexed before.
+     *
+     * @param store Trajectories of all UIDs
+     * @return the index of the store
+     */
+    public synchronized ContactIndex index(TrajectoryStore store) {
+        if (index == null || index.getStore() != store) {
+            long start = System.currentTimeMillis();
+            index = ContactIndex.of(store, cellSize, cellSeconds * 1000L);
+            LOGGER.info("Indexed " + store.samples() + " coordinates of " + store.size() + " UIDs in " + index.cells()
+                    + " cells in " + (System.currentTimeMillis() - start) + " millis");
+        }
+        return index;
+    }
+
+    /**
+     * Find the first meeting of the given UID with every other UID of the dataset.
+     *
+     * @param store           Trajectories of all UIDs
+     * @param uid             UID under examination
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return one intersection per UID met, see {@link ContactIndex#contacts(String, double, int)}
+     */
+    public List<Intersection> contacts(TrajectoryStore store, String uid, double spatialEpsilon, int temporalEpsilon) {
+        return index(store).contacts(uid, spatialEpsilon, temporalEpsilon);
+    }
+}
@@ -0,0 +1,253 @@
+package io.collaboration.service.cost;
+
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectorySummary;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Estimates of the runtime of the exact identifiers on a pair of UIDs, out of {@link Features} computed from the
+ * {@link TrajectorySummary summaries} of their trajectories: the number of samples of each UID, and the number of pairs
+ * of samples expected on a common floor within the temporal window, overall and close in space (see
+ * {@link TrajectorySummary#expectedPairs(TrajectorySummary, double, long)}). Only the exact identifiers are modelled,
+ * {@code brute}, {@code sweep}, {@code grid} and {@code kdtree}, so that whichever of them answers a query finds an
+ * intersection if and only if there is one.
+ * <p>
+ * Each identifier is priced in nanos by a baseline formula after its complexity, calibrated on a single core, times
+ * a factor refined from the runtimes observed on this machine and dataset. The factor is an exponentially weighted
+ * moving average of the ratio of observed to baseline runtimes, taken over their logarithms so that a few outliers,
+ * e.g. a garbage collection or a query stopping at its first sample, do not swing it.
+ * <p>
+ * Only the identifiers picked are observed, so an identifier whose factor got too pessimistic would never be picked
+ * again to prove otherwise. Every {@code auto.exploreEvery}th query is thus meant for the runner-up instead (see
+ * {@link #explore()}), at a bounded cost since its estimate is the closest to the cheapest one.
+ */
+@Component
+public class CostModel {
+
+    /**
+     * Fixed cost of a query in nanos, validation and setup
+     */
+    private static final double OVERHEAD = 3_000;
+
+    /**
+     * Radius of the disk covering the 3x3 cells of spatialEpsilon a grid probe visits, in spatialEpsilons
+     */
+    private static final double NEAR_RADIUS = 1.7;
+
+    /**
+     * Baseline runtime in nanos of every modelled identifier, in order of preference on a tie
+     */
+    private static final Map<String, ToDoubleFunction<Features>> BASELINES;
+
+    static {
+        Map<String, ToDoubleFunction<Features>> baselines = new LinkedHashMap<>();
+        baselines.put("sweep", f -> OVERHEAD + 2 * f.samples() + 3.5 * f.temporalPairs);
+        baselines.put("grid", f -> OVERHEAD + 35 * f.samples() + 3.5 * f.nearPairs);
+        baselines.put("kdtree", f -> OVERHEAD + 12 * f.samples() * log2(f.sizeTwo + 2) + 3.5 * f.nearPairs);
+        baselines.put("brute", f -> OVERHEAD + 2 * (double) f.sizeOne * f.sizeTwo);
+        BASELINES = Collections.unmodifiableMap(baselines);
+    }
+
+    /**
+     * Weight of the latest observation in the factors
+     */
+    @Value("${auto.smoothing:0.2}")
+    private double smoothing = 0.2;
+
+    /**
+     * One query out of this many is meant for the runner-up, none if not positive
+     */
+    @Value("${auto.exploreEvery:16}")
+    private int exploreEvery = 16;
+
+    /**
+     * Number of calls to {@link #explore()} so far
+     */
+    private final AtomicLong queries = new AtomicLong();
+
+    /**
+     * Logarithm of the factor of every identifier observed so far, 0 for the rest
+     */
+    private final ConcurrentMap<String, Double> logFactors = new ConcurrentHashMap<>();
+
+    public CostModel() {
+    }
+
+    /**
+     * @param smoothing Weight of the latest observation in the factors, within (0, 1]
+     */
+    public CostModel(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * @param smoothing    Weight of the latest observation in the factors, within (0, 1]
+     * @param exploreEvery One query out of this many is meant for the runner-up, none if not positive
+     */
+    public CostModel(double smoothing, int exploreEvery) {
+        this.smoothing = smoothing;
+        this.exploreEvery = exploreEvery;
+    }
+
+    /**
+     * Compute the features of a query, widening the epsilons by the errors of simplified trajectories same as the
+     * identifiers do.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return the features
+     */
+    public static Features features(Trajectory one, Trajectory two, double spatialEpsilon, int temporalEpsilon) {
+        double widenedSpatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon);
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon));
+        TrajectorySummary summaryOne = one.getSummary();
+        TrajectorySummary summaryTwo = two.getSummary();
+
+        return new Features(one.size(),
+                two.size(),
+                summaryOne.expectedPairs(summaryTwo, Double.POSITIVE_INFINITY, maxInterval),
+                summaryOne.expectedPairs(summaryTwo, NEAR_RADIUS * widenedSpatialEpsilon, maxInterval));
+    }
+
+    /**
+     * @return names of the modelled identifiers in order of preference on a tie
+     */
+    public Set<String> identifiers() {
+        return BASELINES.keySet();
+    }
+
+    /**
+     * @param identifier Name of the identifier, see {@link #identifiers()}
+     * @param features   Features of the query
+     * @return the estimated runtime in nanos, infinite for identifiers which are not modelled
+     */
+    public double estimate(String identifier, Features features) {
+        ToDoubleFunction<Features> baseline = BASELINES.get(identifier);
+        if (baseline == null) return Double.POSITIVE_INFINITY;
+
+        return baseline.applyAsDouble(features) * getFactor(identifier);
+    }
+
+    /**
+     * @param features Features of the query
+     * @return names of the modelled identifiers from the cheapest to the most expensive, in order of preference on a
+     * tie
+     */
+    public List<String> rank(Features features) {
+        List<String> ranking = new ArrayList<>(BASELINES.keySet());
+        // Stable, so that ties keep the order of preference
+        ranking.sort(Comparator.comparingDouble(identifier -> estimate(identifier, features)));
+        return ranking;
+    }
+
+    /**
+     * Count a query, telling whether it should be answered by the runner-up of {@link #rank(Features)} and observed,
+     * rather than by the cheapest identifier.
+     *
+     * @return true for every {@code auto.exploreEvery}th call
+     */
+    public boolean explore() {
+        return exploreEvery > 0 && queries.incrementAndGet() % exploreEvery == 0;
+    }
+
+    /**
+     * Refine the factor of an identifier with the runtime of a query it answered.
+     *
+     * @param identifier Name of the identifier, see {@link #identifiers()}
+     * @param features   Features of the query
+     * @param nanos      Observed runtime
+     */
+    public void observe(String identifier, Features features, long nanos) {
+        ToDoubleFunction<Features> baseline = BASELINES.get(identifier);
+        if (baseline == null) return;
+
+        double ratio = Math.log(Math.max(1, nanos) / baseline.applyAsDouble(features));
+        logFactors.merge(identifier, smoothing * ratio, (factor, ignored) -> factor + smoothing * (ratio - factor));
+    }
+
+    /**
+     * @param identifier Name of the identifier, see {@link #identifiers()}
+     * @return ratio of the runtimes observed on this machine to the baseline ones, 1 until the first observation
+     */
+    public double getFactor(String identifier) {
+        return Math.exp(logFactors.getOrDefault(identifier, 0.0));
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+
+    /**
+     * Cheap statistics of a query, out of the summaries of the two trajectories
+     */
+    public static final class Features {
+
+        private final int sizeOne;
+
+        private final int sizeTwo;
+
+        /**
+         * Pairs of samples expected on a common floor within the temporal window
+         */
+        private final double temporalPairs;
+
+        /**
+         * Pairs of samples expected on a common floor within the temporal window and a few spatialEpsilons
+         */
+        private final double nearPairs;
+
+        public Features(int sizeOne, int sizeTwo, double temporalPairs, double nearPairs) {
+            this.sizeOne = sizeOne;
+            this.sizeTwo = sizeTwo;
+            this.temporalPairs = temporalPairs;
+            this.nearPairs = nearPairs;
+        }
+
+        private double samples() {
+            return (double) sizeOne + sizeTwo;
+        }
+
+        public int getSizeOne() {
+            return sizeOne;
+        }
+
+        public int getSizeTwo() {
+            return sizeTwo;
+        }
+
+        public double getTemporalPairs() {
+            return temporalPairs;
+        }
+
+        public double getNearPairs() {
+            return nearPairs;
+        }
+
+        @Override
+        public String toString() {
+            return "Features{" +
+                    "sizeOne=" + sizeOne +
+                    ", sizeTwo=" + sizeTwo +
+                    ", temporalPairs=" + temporalPairs +
+                    ", nearPairs=" + nearPairs +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.collaboration.service.impl;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import io.collaboration.service.cost.CostModel;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Dispatches every query to whichever of the registered identifiers the {@link CostModel} expects to answer it the
+ * fastest, judging by the sizes of the two trajectories and by how much their summaries overlap in time, space and
+ * floors. The runtime of every query dispatched is fed back to the model, so that estimates which turn out too
+ * optimistic for this machine or dataset steer the following queries towards another identifier. Every
+ * {@code auto.exploreEvery}th query is dispatched to the runner-up instead, so that estimates which turn out too
+ * pessimistic get corrected too.
+ * <p>
+ * Only the exact identifiers modelled by the {@link CostModel} are picked, so an intersection is found if and only if
+ * there is one. Which pair of samples is reported depends on the identifier picked: the earliest one in the timeline of
+ * the first UID, except for {@link GridTrajectoryIntersectionIdentifier} which reports the first pair its probes hit.
+ */
+@Component
+public class AutoTrajectoryIntersectionIdentifier extends AbstractTrajectoryIntersectionIdentifier {
+
+    private static final Logger LOGGER = Logger.getLogger(AutoTrajectoryIntersectionIdentifier.class);
+
+    /**
+     * Every identifier of the context but this one
+     */
+    @Autowired
+    private List<AbstractTrajectoryIntersectionIdentifier> identifiers;
+
+    @Autowired
+    private CostModel costModel;
+
+    @Override
+    public Optional<Intersection> identify(List<EnhancedCoordinate> one,
+                                           List<EnhancedCoordinate> two,
+                                           Double spatialEpsilon,
+                                           Integer temporalEpsilon) {
+
+        if (!validate(one, two)) return Optional.empty();
+
+        return identify(Trajectory.of(one), Trajectory.of(two), spatialEpsilon, temporalEpsilon);
+    }
+
+    @Override
+    public Optional<Intersection> identify(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon) {
+
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Optional.empty();
+
+        long start = metrics.start();
+        CostModel.Features features = CostModel.features(one, two, spatialEpsilon, temporalEpsilon);
+        List<AbstractTrajectoryIntersectionIdentifier> ranking = rank(features);
+        boolean explore = ranking.size() > 1 && costModel.explore();
+        AbstractTrajectoryIntersectionIdentifier chosen = ranking.get(explore ? 1 : 0);
+        metrics.stop("auto.choose", start);
+        metrics.add("auto." + chosen.getName(), 1);
+        if (explore) metrics.add("auto.explore", 1);
+
+        LOGGER.debug("Identifying " + one.getUid() + " and " + two.getUid() + " with " + chosen.getName()
+                + (explore ? ", exploring," : "") + " for " + features);
+
+        long nanos = System.nanoTime();
+        Optional<Intersection> intersection = chosen.identify(one, two, spatialEpsilon, temporalEpsilon);
+        costModel.observe(chosen.getName(), features, System.nanoTime() - nanos);
+        return intersection;
+    }
+
+    /**
+     * Pick the identifier expected to answer a query the fastest.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return the cheapest of the identifiers modelled by the {@link CostModel}, regardless of exploration
+     */
+    public AbstractTrajectoryIntersectionIdentifier choose(Trajectory one,
+                                                           Trajectory two,
+                                                           double spatialEpsilon,
+                                                           int temporalEpsilon) {
+        return rank(CostModel.features(one, two, spatialEpsilon, temporalEpsilon)).get(0);
+    }
+
+    /**
+     * @return the registered identifiers modelled by the {@link CostModel}, from the cheapest to the most expensive
+     */
+    private List<AbstractTrajectoryIntersectionIdentifier> rank(CostModel.Features features) {
+        List<AbstractTrajectoryIntersectionIdentifier> ranking = new ArrayList<>();
+        for (String name : costModel.rank(features)) {
+            for (AbstractTrajectoryIntersectionIdentifier identifier : identifiers) {
+                if (identifier.getName().equals(name)) {
+                    ranking.add(identifier);
+                    break;
+                }
+            }
+        }
+
+        if (ranking.isEmpty()) throw new IllegalStateException("No identifier modelled by the cost model is registered");
+        return ranking;
+    }
+
+    @Override
+    public boolean isColumnar() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "auto";
+    }
+}
@@ -2,12 +2,13 @@ package io.collaboration.service.impl;
 
 import io.collaboration.api.EnhancedCoordinate;
 import io.collaboration.api.Intersection;
-import io.collaboration.helper.EuclideanDistance2D;
+import io.collaboration.api.Trajectory;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
 import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
 import org.apache.log4j.Logger;
 import org.springframework.stereotype.Component;
 
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,12 +18,29 @@ import java.util.Optional;
  * greater than spatialEpsilon. The time complexity of the brute force approach is O(n^2) since the
  * {@link #identify(List, List, Double, Integer)} method has to traverse the entirety of both list of coordinates
  * (worst case scenario) in order to come up with the intersecting points.
+ * <p>
+ * Having no pruning of its own, it serves as the exact reference of the other identifiers. The comparisons run on the
+ * primitive columns of the trajectories in tiles: a block of {@link #BLOCK_TWO} coordinates of the second trajectory,
+ * small enough to stay in L1, is compared against a block of {@link #BLOCK_ONE} coordinates of the first one before
+ * moving on, and squared distances are compared against the squared spatialEpsilon. Nothing is allocated until an
+ * intersection is found. The intersection returned is the earliest one with respect to the timestamps of the first
+ * trajectory and then of the second, same as {@link SweepLineTrajectoryIntersectionIdentifier}.
  */
 @Component
 public class BruteTrajectoryIntersectionIdentifier extends AbstractTrajectoryIntersectionIdentifier {
 
     private static final Logger LOGGER = Logger.getLogger(BruteTrajectoryIntersectionIdentifier.class);
 
+    /**
+     * Coordinates of the first trajectory per tile
+     */
+    static final int BLOCK_ONE = 256;
+
+    /**
+     * Coordinates of the second trajectory per tile, 26 bytes each across the four columns
+     */
+    static final int BLOCK_TWO = 1024;
+
     @Override
     public Optional<Intersection> identify(List<EnhancedCoordinate> one,
                                            List<EnhancedCoordinate> two,
@@ -31,27 +49,99 @@ public class BruteTrajectoryIntersectionIdentifier extends AbstractTrajectoryInt
 
         if (!validate(one, two)) return Optional.empty();
 
+        return identify(Trajectory.of(one), Trajectory.of(two), spatialEpsilon, temporalEpsilon);
+    }
+
+    @Override
+    public Optional<Intersection> identify(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon) {
+
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Optional.empty();
+
+        spatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon);
+        temporalEpsilon = TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon);
+
         LOGGER.trace("Number of coordinates for first trajectory is " + one.size()
                 + ". Number of coordinates for second trajectory is " + two.size());
 
-        for (EnhancedCoordinate co : one) {
-            Optional<EnhancedCoordinate> second = two.stream()
-                    .filter(ct -> EuclideanDistance2D.getDistance(co.getX(),
-                            co.getY(),
-                            ct.getX(),
-                            ct.getY()) <= spatialEpsilon &&
-                            co.getFloor() == ct.getFloor() &&
-                            Math.abs(ChronoUnit.SECONDS.between(co.getTimestamp(), ct.getTimestamp())) <= temporalEpsilon)
-                    .findFirst();
-
-            if (second.isPresent()) {
-                return Optional.of(new Intersection(co, second.get()));
+        long start = metrics.start();
+        long hit = scan(one.getTimestamps(), one.getXs(), one.getYs(), one.getFloors(),
+                two.getTimestamps(), two.getXs(), two.getYs(), two.getFloors(),
+                spatialEpsilon * spatialEpsilon, TemporalDistance.getMaxIntervalMillis(temporalEpsilon));
+
+        if (metrics.isEnabled()) {
+            // At most the blocks of rows up to the intersecting one are compared against the whole second trajectory
+            int rows = hit < 0 ? one.size() : Math.min(one.size(), ((int) (hit >>> 32) / BLOCK_ONE + 1) * BLOCK_ONE);
+            recordScan(start, (long) rows * two.size(), (long) rows * two.size(), hit >= 0);
+        }
+
+        if (hit < 0) return Optional.empty();
+        return Optional.of(new Intersection(one.toCoordinate((int) (hit >>> 32)), two.toCoordinate((int) hit)));
+    }
+
+    /**
+     * Compare every coordinate of the first trajectory against every coordinate of the second one, tile by tile.
+     * Within a tile a row stops at its first match, and rows after the earliest row matched so far are skipped, so that
+     * the match returned is the one a plain nested loop would find first.
+     *
+     * @param squaredEpsilon Squared maximum spatial distance
+     * @param maxInterval    Maximum temporal interval in millis
+     * @return the index into the first trajectory in the upper 32 bits and the index into the second one in the lower
+     * 32 bits, or -1 if no coordinates match
+     */
+    static long scan(long[] timesOne, double[] xOne, double[] yOne, short[] floorsOne,
+                     long[] timesTwo, double[] xTwo, double[] yTwo, short[] floorsTwo,
+                     double squaredEpsilon, long maxInterval) {
+
+        int n = timesOne.length;
+        int m = timesTwo.length;
+        for (int fromOne = 0; fromOne < n; fromOne += BLOCK_ONE) {
+            int toOne = Math.min(n, fromOne + BLOCK_ONE);
+            // Earliest row of the block matched so far and its earliest column
+            int bestI = toOne;
+            int bestJ = 0;
+
+            for (int fromTwo = 0; fromTwo < m && bestI > fromOne; fromTwo += BLOCK_TWO) {
+                int toTwo = Math.min(m, fromTwo + BLOCK_TWO);
+
+                // A row matched in an earlier block of columns already has its earliest column
+                for (int i = fromOne; i < bestI; i++) {
+                    long time = timesOne[i];
+                    double x = xOne[i];
+                    double y = yOne[i];
+                    short floor = floorsOne[i];
+
+                    for (int j = fromTwo; j < toTwo; j++) {
+                        double dx = x - xTwo[j];
+                        double dy = y - yTwo[j];
+                        // Non short-circuiting to keep the loop free of branches but the exit
+                        if ((floor == floorsTwo[j]) & (dx * dx + dy * dy <= squaredEpsilon)
+                                & (Math.abs(time - timesTwo[j]) <= maxInterval)) {
+                            bestI = i;
+                            bestJ = j;
+                            break;
+                        }
+                    }
+                }
             }
+
+            if (bestI < toOne) return ((long) bestI << 32) | bestJ;
         }
 
-        return Optional.empty();
+        return -1;
     }
 
+    @Override
+    public boolean isColumnar() {
+        return true;
+    }
+
+    @Override
+    public boolean isEarliest() {
+        return true;
+    }
 
     @Override
     public String getName() {
@@ -0,0 +1,181 @@
+package io.collaboration.service.impl;
+
+import io.collaboration.api.DwellIntervals;
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Time ordered sweep over the {@link DwellIntervals} of the two trajectories instead of their samples. A UID sitting
+ * still is held as a single interval, so each interval of the first trajectory is compared against the intervals of the
+ * second one whose time spans, expanded by temporalEpsilon, overlap with its own. Intervals of a trajectory never
+ * overlap, hence a two-pointer window slides along the second trajectory same as in
+ * {@link SweepLineTrajectoryIntersectionIdentifier}, in O(n + m + k) over n and m intervals.
+ * <p>
+ * The dwell intervals collapsed at load time are used when present (see the dwell.enabled property), otherwise the
+ * runs of samples recorded at identical positions are collapsed for the query. The epsilons are widened by the errors
+ * of the intervals, so no meeting is ever missed. The intersection returned is made of the two samples closest in time
+ * within the earliest pair of intervals which meet.
+ */
+@Component
+public class DwellTrajectoryIntersectionIdentifier extends AbstractTrajectoryIntersectionIdentifier {
+
+    private static final Logger LOGGER = Logger.getLogger(DwellTrajectoryIntersectionIdentifier.class);
+
+    /**
+     * Maximum interval in millis between consecutive samples of the intervals collapsed for a query
+     */
+    private static final long MAX_GAP = 60_000;
+
+    @Override
+    public Optional<Intersection> identify(List<EnhancedCoordinate> one,
+                                           List<EnhancedCoordinate> two,
+                                           Double spatialEpsilon,
+                                           Integer temporalEpsilon) {
+
+        if (!validate(one, two)) return Optional.empty();
+
+        return identify(Trajectory.of(one), Trajectory.of(two), spatialEpsilon, temporalEpsilon);
+    }
+
+    @Override
+    public Optional<Intersection> identify(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon) {
+
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Optional.empty();
+
+        DwellIntervals dwellsOne = dwells(one);
+        DwellIntervals dwellsTwo = dwells(two);
+
+        spatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(spatialEpsilon,
+                dwellsOne.getSpatialError() + dwellsTwo.getSpatialError());
+        temporalEpsilon = TrajectorySimplifier.widenTemporalEpsilon(temporalEpsilon,
+                dwellsOne.getTemporalError() + dwellsTwo.getTemporalError());
+
+        LOGGER.trace("Number of dwell intervals for first trajectory is " + dwellsOne.size()
+                + ". Number of dwell intervals for second trajectory is " + dwellsTwo.size());
+
+        long[] startsOne = dwellsOne.getStarts();
+        long[] endsOne = dwellsOne.getEnds();
+        double[] xOne = dwellsOne.getXs();
+        double[] yOne = dwellsOne.getYs();
+        short[] floorsOne = dwellsOne.getFloors();
+        long[] startsTwo = dwellsTwo.getStarts();
+        long[] endsTwo = dwellsTwo.getEnds();
+        double[] xTwo = dwellsTwo.getXs();
+        double[] yTwo = dwellsTwo.getYs();
+        short[] floorsTwo = dwellsTwo.getFloors();
+
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+        double squaredEpsilon = spatialEpsilon * spatialEpsilon;
+
+        long start = metrics.start();
+        long candidates = 0;
+        long distances = 0;
+
+        // First interval of the second trajectory not ending before the current interval of the first one, expanded.
+        // Only moves forward since the intervals of both trajectories are in chronological order.
+        int low = 0;
+        for (int i = 0; i < startsOne.length; i++) {
+            while (low < startsTwo.length && endsTwo[low] < startsOne[i] - maxInterval) low++;
+
+            for (int j = low; j < startsTwo.length && startsTwo[j] <= endsOne[i] + maxInterval; j++) {
+                candidates++;
+                if (floorsOne[i] != floorsTwo[j]) continue;
+
+                distances++;
+                double dx = xOne[i] - xTwo[j];
+                double dy = yOne[i] - yTwo[j];
+                if (dx * dx + dy * dy <= squaredEpsilon) {
+                    recordScan(start, candidates, distances, true);
+                    return Optional.of(closestInTime(one, dwellsOne, i, two, dwellsTwo, j));
+                }
+            }
+        }
+
+        recordScan(start, candidates, distances, false);
+        return Optional.empty();
+    }
+
+    /**
+     * Same as {@link #identify(Trajectory, Trajectory, double, int)}, spreading the query over the workers of the
+     * given pool. The intervals collapsed for the query are attached to the trajectories before splitting them, and
+     * ranges are split between intervals only, so that every task compares whole intervals widened by the same errors
+     * as a single pass and the same intersection is returned either way.
+     */
+    @Override
+    public Optional<Intersection> identifyParallel(Trajectory one,
+                                                   Trajectory two,
+                                                   double spatialEpsilon,
+                                                   int temporalEpsilon,
+                                                   ForkJoinPool pool) {
+        return super.identifyParallel(one.withDwells(dwells(one)), two.withDwells(dwells(two)),
+                spatialEpsilon, temporalEpsilon, pool);
+    }
+
+    @Override
+    protected long maxIntervalMillis(Trajectory one, Trajectory two, int temporalEpsilon) {
+        return TemporalDistance.getMaxIntervalMillis(TrajectorySimplifier.widenTemporalEpsilon(temporalEpsilon,
+                dwells(one).getTemporalError() + dwells(two).getTemporalError()));
+    }
+
+    @Override
+    protected int alignBoundary(Trajectory trajectory, int bound, boolean up) {
+        if (bound == 0 || bound == trajectory.size()) return bound;
+
+        DwellIntervals dwells = dwells(trajectory);
+        return up ? dwells.to(dwells.intervalOf(bound - 1)) : dwells.from(dwells.intervalOf(bound));
+    }
+
+    /**
+     * @return the dwell intervals collapsed at load time or else the runs of samples at identical positions
+     */
+    private static DwellIntervals dwells(Trajectory trajectory) {
+        return trajectory.getDwells().orElseGet(() -> DwellIntervals.of(trajectory, 0, MAX_GAP));
+    }
+
+    /**
+     * Pick the pair of samples closest in time out of two meeting intervals, merging their timestamps.
+     */
+    private static Intersection closestInTime(Trajectory one, DwellIntervals dwellsOne, int i,
+                                              Trajectory two, DwellIntervals dwellsTwo, int j) {
+        long[] timesOne = one.getTimestamps();
+        long[] timesTwo = two.getTimestamps();
+
+        int a = dwellsOne.from(i);
+        int b = dwellsTwo.from(j);
+        int closestA = a;
+        int closestB = b;
+        while (a < dwellsOne.to(i) && b < dwellsTwo.to(j)) {
+            if (Math.abs(timesOne[a] - timesTwo[b]) < Math.abs(timesOne[closestA] - timesTwo[closestB])) {
+                closestA = a;
+                closestB = b;
+            }
+            if (timesOne[a] <= timesTwo[b]) a++;
+            else b++;
+        }
+
+        return new Intersection(one.toCoordinate(closestA), two.toCoordinate(closestB));
+    }
+
+    @Override
+    public boolean isColumnar() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "dwell";
+    }
+}
@@ -3,35 +3,62 @@ package io.collaboration.service.impl;
 import com.google.common.collect.Sets;
 import io.collaboration.api.EnhancedCoordinate;
 import io.collaboration.api.Intersection;
+import io.collaboration.helper.DelaunayTriangulation;
+import io.collaboration.helper.EuclideanDistance2D;
+import io.collaboration.helper.TemporalDistance;
 import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
 import org.apache.log4j.Logger;
-import org.kynosarges.tektosyne.geometry.*;
+import org.kynosarges.tektosyne.geometry.LineD;
+import org.kynosarges.tektosyne.geometry.PointD;
 import org.springframework.stereotype.Component;
 
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
 
 /**
  * Computation is based on <a href="http://www-cgrl.cs.mcgill.ca/~godfried/publications/mindist.pdf"> Toussaint & Bhattacharya</a>'s
  * paper suggesting that the minimum distance between two sets of planar points can be
  * computed in O(nlogn) in the worst case. If S(1) and S(2) are the planar sets under examination then:
  * <ul>
- * <li>Compute the Voronoi diagram and its dual graph (the Delaunay triangulation) for S = S(1) U S(2)</li>
+ * <li>Compute the Delaunay triangulation (the dual graph of the Voronoi diagram) for S = S(1) U S(2)</li>
  * <li>Obtain the Gabriel graph of S which is a subgraph of the Delauny triangulation</li>
  * <li>Filter out all edges smaller than spatialEpsilon</li>
  * <li>From among the edges of the Gabriel graph, determine the set of pairs of points such that one is from S(1)
  * and the other from S(2)</li>
  * <li>Check that the interval between timestamps is smaller than temporalEpsilon</li>
  * <li>Check floor equality</li>
+ * </ul>
+ * The triangulation is built directly on primitive arrays by {@link DelaunayTriangulation}, without computing the
+ * Voronoi diagram, and a Delaunay edge belongs to the Gabriel graph if the vertices opposite to it in its adjacent
+ * triangles lie outside its diametral circle. A {@link PointIndex} built once per query maps the sites of the
+ * triangulation back to the owning UID and coordinate, so that the classification of every edge takes constant time.
  * <p>
+ * The Gabriel graph only holds the closest pairs, and the temporal criteria may reject them while a longer pair sharing
+ * a Delaunay edge still meets them. When no Gabriel edge of a partition yields an intersection, the classification
+ * therefore falls back to the remaining edges of the whole Delaunay triangulation. The Gabriel graph orders the work
+ * rather than bounding it: a partition without an intersection classifies every Delaunay edge, at most 3n of them for
+ * n distinct points, as reported by the {@code gabriel.edges.fallback} counter.
  * <p>
- * </ul>
+ * Points on different floors or recorded far apart in time can never intersect, so the union is partitioned by floor
+ * and by overlapping time slabs before triangulating. The partitions are processed concurrently on the common
+ * ForkJoin pool and all of them stop as soon as one yields an intersection.
  */
 @Component
 public class GabrielDelaunayTrajectoryIntersectionIdentifier extends AbstractTrajectoryIntersectionIdentifier {
 
     private static final Logger LOGGER = Logger.getLogger(GabrielDelaunayTrajectoryIntersectionIdentifier.class);
 
+    /**
+     * Width of the time slabs as a multiple of the temporal window. Wider slabs mean fewer, larger triangulations
+     * while narrower ones duplicate more coordinates in the overlap between neighbouring slabs.
+     */
+    private static final long SLAB_WIDTH_FACTOR = 8;
+
     @Override
     public Optional<Intersection> identify(List<EnhancedCoordinate> one,
                                            List<EnhancedCoordinate> two,
@@ -46,25 +73,153 @@ public class GabrielDelaunayTrajectoryIntersectionIdentifier extends AbstractTra
         List<EnhancedCoordinate> all = new ArrayList<>(one);
         all.addAll(two);
 
-        // Create Gabriel graph out of the two sets of planar points
-        Set<LineD> gabrielGraph = createGabrielGraph(all);
-
-        // Filter out all edges with a length larger that spatialEpsilon
-        Optional<Intersection> filtered = gabrielGraph.stream().filter(e -> e.length() <= spatialEpsilon)
-                // Filter out edges between points owned by first UID
-                .filter(outOne -> !pointsShareUID(outOne.start, outOne.end, one))
-                // Filter out edges between points owned by second UID
-                .filter(outTwo -> !pointsShareUID(outTwo.start, outTwo.end, two))
-                // Map to EnhancedCoordinate and group by floor
-                .map(lele -> convertToPotentialIntersections(lele, all))
-                // Check temporalEpsilon
-                .filter(coco -> ChronoUnit.SECONDS.between(coco.getPointOne().getTimestamp(), coco.getPointTwo().getTimestamp()) <= temporalEpsilon)
+        long start = metrics.start();
+        List<Partition> partitions = partition(all, one.size(), TemporalDistance.getMaxIntervalMillis(temporalEpsilon));
+        metrics.stop("gabriel.partition", start);
+        metrics.add("gabriel.partitions", partitions.size());
+
+        LOGGER.trace("Union of coordinates split in " + partitions.size() + " partitions");
+
+        // Raised as soon as any partition yields an intersection so that the rest of them stop
+        AtomicBoolean found = new AtomicBoolean();
+
+        return partitions.parallelStream()
+                .map(partition -> identify(partition, spatialEpsilon, temporalEpsilon, found))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .findAny();
+    }
+
+    /**
+     * Run the algorithm on the coordinates of a single partition.
+     *
+     * @param partition       Coordinates of both UIDs recorded on the same floor within the same time slab
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @param found           Cancellation flag shared by all partitions of the query
+     * @return the first intersection found within the partition
+     */
+    private Optional<Intersection> identify(Partition partition,
+                                            double spatialEpsilon,
+                                            int temporalEpsilon,
+                                            AtomicBoolean found) {
+
+        if (found.get()) return Optional.empty();
+
+        List<EnhancedCoordinate> coordinates = partition.coordinates;
+
+        // Index the distinct planar points of the partition
+        long start = metrics.start();
+        PointIndex index = new PointIndex(coordinates, partition.split);
+        metrics.stop("gabriel.index", start);
+
+        // Edges measured, edges longer than spatialEpsilon, pairs of distinct UIDs classified, pairs rejected by
+        // the temporal criteria and non Gabriel edges measured. Partitions are streamed sequentially, so plain
+        // counters do.
+        long[] counts = new long[5];
+
+        // Coincident points of distinct UIDs never make it to the triangulation. Treat them as zero length edges.
+        Stream<int[]> coincident = IntStream.range(0, index.size()).mapToObj(site -> new int[]{site, site});
+
+        // Create Gabriel graph out of the two sets of planar points and filter out all edges with a length larger
+        // than spatialEpsilon. The closest pair of distinct UIDs is a Gabriel edge, but the temporal criteria may
+        // reject it and leave a longer pair sharing a Delaunay edge only, so the whole triangulation follows.
+        DelaunayTriangulation triangulation = triangulate(index.xs, index.ys);
+        start = metrics.start();
+        int[] gabrielGraph = triangulation.gabrielEdges();
+        metrics.stop("gabriel.filter", start);
+        metrics.add("gabriel.edges.delaunay", triangulation.edges());
+        metrics.add("gabriel.edges.gabriel", gabrielGraph.length / 2);
+
+        // The remaining edges are only collected once the Gabriel edges are exhausted
+        Stream<int[]> fallback = Stream.of(triangulation)
+                .map(DelaunayTriangulation::nonGabrielEdges)
+                .flatMap(GabrielDelaunayTrajectoryIntersectionIdentifier::edges)
+                .peek(e -> counts[4]++);
+        Stream<int[]> edges = Stream.concat(edges(gabrielGraph), fallback)
+                .filter(e -> {
+                    counts[0]++;
+                    boolean within = EuclideanDistance2D.getDistance(index.xs[e[0]], index.ys[e[0]],
+                            index.xs[e[1]], index.ys[e[1]]) <= spatialEpsilon;
+                    if (!within) counts[1]++;
+                    return within;
+                });
+
+        // Distance filtering, classification and temporal filtering are fused in a single lazy pass
+        start = metrics.start();
+        Optional<Intersection> intersection = Stream.concat(coincident, edges)
+                // Skip the remaining edges once another partition has found an intersection
+                .filter(e -> !found.get())
+                // Map the edge to the pairs of coordinates owned by distinct UIDs
+                .flatMap(index::pairsOfDistinctUIDs)
+                .peek(pair -> counts[2]++)
+                // Check temporalEpsilon. Floors are equal within a partition.
+                .filter(pair -> {
+                    boolean within = Math.abs(ChronoUnit.SECONDS.between(coordinates.get(pair[0]).getTimestamp(),
+                            coordinates.get(pair[1]).getTimestamp())) <= temporalEpsilon;
+                    if (!within) counts[3]++;
+                    return within;
+                })
+                .map(pair -> new Intersection(coordinates.get(pair[0]), coordinates.get(pair[1])))
                 // Do not evaluate entire stream. Return first fitting criteria
                 .findFirst();
+        metrics.stop("gabriel.classify", start);
+
+        intersection.ifPresent(i -> found.set(true));
+
+        metrics.add("gabriel.distances", counts[0]);
+        metrics.add("gabriel.pruned.distance", counts[1]);
+        metrics.add("gabriel.candidates", counts[2]);
+        metrics.add("gabriel.pruned.temporal", counts[3]);
+        metrics.add("gabriel.edges.fallback", counts[4]);
 
-        if (filtered.isPresent()) return filtered;
+        return intersection;
+    }
 
-        return Optional.empty();
+    /**
+     * @param pairs Point indices of edges, two per edge
+     * @return the edges as pairs of point indices
+     */
+    private static Stream<int[]> edges(int[] pairs) {
+        return IntStream.range(0, pairs.length / 2).mapToObj(e -> new int[]{pairs[2 * e], pairs[2 * e + 1]});
+    }
+
+    /**
+     * Split the union of the coordinates by floor and then by time slabs of {@link #SLAB_WIDTH_FACTOR} times the
+     * temporal window. Each slab is extended by the temporal window on both sides, so that any two coordinates
+     * satisfying the temporal criteria share at least one partition. Partitions lacking coordinates from either
+     * UID cannot yield an intersection and are dropped.
+     *
+     * @param all         Union of all coordinates, the ones of the first UID first
+     * @param split       Number of coordinates of the first UID
+     * @param maxInterval Maximum temporal interval in milliseconds
+     * @return the partitions of the union
+     */
+    private List<Partition> partition(List<EnhancedCoordinate> all,
+                                      int split,
+                                      long maxInterval) {
+
+        long[] times = all.stream().mapToLong(co -> TemporalDistance.toEpochMillis(co.getTimestamp())).toArray();
+        long slabWidth = SLAB_WIDTH_FACTOR * (maxInterval + 1);
+        long origin = Arrays.stream(times).min().getAsLong();
+
+        // (floor, slab) to indices into the union, in ascending order
+        Map<Integer, Map<Long, List<Integer>>> slabs = new HashMap<>();
+        for (int i = 0; i < all.size(); i++) {
+            Map<Long, List<Integer>> floor = slabs.computeIfAbsent(all.get(i).getFloor(), f -> new HashMap<>());
+            long offset = times[i] - origin;
+            for (long slab = Math.floorDiv(offset - maxInterval, slabWidth);
+                 slab <= Math.floorDiv(offset + maxInterval, slabWidth); slab++) {
+                floor.computeIfAbsent(slab, sl -> new ArrayList<>()).add(i);
+            }
+        }
+
+        return slabs.values().stream()
+                .flatMap(floor -> floor.values().stream())
+                .filter(members -> members.get(0) < split && members.get(members.size() - 1) >= split)
+                .map(members -> new Partition(members.stream().map(all::get).collect(toList()),
+                        (int) members.stream().filter(i -> i < split).count()))
+                .collect(toList());
     }
 
     @Override
@@ -81,73 +236,196 @@ public class GabrielDelaunayTrajectoryIntersectionIdentifier extends AbstractTra
      */
     public Set<LineD> createGabrielGraph(List<EnhancedCoordinate> all) {
 
-        Set<LineD> gabrielGraph = Sets.newConcurrentHashSet();
+        PointIndex index = new PointIndex(all, all.size());
+        int[] edges = createGabrielGraph(index.xs, index.ys);
 
-        // Define a clipping rectangle for the Voronoi diagram
-        RectD clip = new RectD(all.stream().min(Comparator.comparing(EnhancedCoordinate::getX)).get().getX(),
-                all.stream().min(Comparator.comparing(EnhancedCoordinate::getY)).get().getY(),
-                all.stream().max(Comparator.comparing(EnhancedCoordinate::getX)).get().getX(),
-                all.stream().max(Comparator.comparing(EnhancedCoordinate::getY)).get().getY());
-
-        PointD[] pointsDUnion = all.stream().map(co -> new PointD(co.getX(), co.getY())).toArray(PointD[]::new);
-        VoronoiResults results = Voronoi.findAll(pointsDUnion, clip);
-        LineD[] delaunayEdges = results.delaunayEdges();
-        VoronoiEdge[] voronoiEdges = results.voronoiEdges;
-        PointD[] voronoiVertices = results.voronoiVertices;
-
-        for (int i = 0; i < delaunayEdges.length; i++) {
-
-            // Find Delaunay's edge dual Voronoi edge
-            LineD dualVoronoiEdge = new LineD(voronoiVertices[voronoiEdges[i].vertex1].x,
-                    voronoiVertices[voronoiEdges[i].vertex2].x,
-                    voronoiVertices[voronoiEdges[i].vertex1].y,
-                    voronoiVertices[voronoiEdges[i].vertex2].y);
-
-            // Determine whether or not the edges intersect
-            LineIntersection intersection = delaunayEdges[i].intersect(dualVoronoiEdge);
-
-            // If the relation between the edges is divergent
-            if (intersection.relation == LineRelation.DIVERGENT) {
-                // Then this edge is part of the Gabriel Graph
-                // Adding this to the set of Gabriel Graph edges
-                gabrielGraph.add(delaunayEdges[i]);
-            }
+        Set<LineD> gabrielGraph = Sets.newConcurrentHashSet();
+        for (int e = 0; e < edges.length; e += 2) {
+            gabrielGraph.add(new LineD(index.xs[edges[e]], index.ys[edges[e]],
+                    index.xs[edges[e + 1]], index.ys[edges[e + 1]]));
         }
 
         return gabrielGraph;
     }
 
     /**
-     * Determine whether the start and the end of the line segment which is part of the
-     * Gabriel graph are part of the same UID's coordinates.
+     * Create <a href="https://en.wikipedia.org/wiki/Gabriel_graph">Gabriel graph</a> from a set of distinct
+     * planar points.
      *
-     * @param start       Start of Gabriel graph edge
-     * @param end         End of Gabriel graph edge
-     * @param coordinates
-     * @return true if both start and end of Gabriel graph edge belong to same UID
+     * @param sites Distinct planar points
+     * @return Gabriel graph edges as pairs of indices into sites
      */
-    public boolean pointsShareUID(PointD start,
-                                  PointD end,
-                                  List<EnhancedCoordinate> coordinates) {
+    public List<int[]> createGabrielGraph(PointD[] sites) {
 
-        boolean containsStart = coordinates.stream().filter(coo -> coo.equals(start)).count() > 0;
-        boolean containsEnd = coordinates.stream().filter(coo -> coo.equals(end)).count() > 0;
+        double[] xs = Arrays.stream(sites).mapToDouble(p -> p.x).toArray();
+        double[] ys = Arrays.stream(sites).mapToDouble(p -> p.y).toArray();
+        int[] edges = createGabrielGraph(xs, ys);
 
-        return containsStart && containsEnd;
+        List<int[]> gabrielGraph = new ArrayList<>(edges.length / 2);
+        for (int e = 0; e < edges.length; e += 2) gabrielGraph.add(new int[]{edges[e], edges[e + 1]});
+
+        return gabrielGraph;
     }
 
     /**
-     * Convert {@link LineD} (used by the kynoserges library) back to {@link EnhancedCoordinate}
+     * Create <a href="https://en.wikipedia.org/wiki/Gabriel_graph">Gabriel graph</a> from a set of planar points
+     * held in primitive arrays. The points are triangulated by {@link DelaunayTriangulation} and each Delaunay edge is
+     * kept if neither of the vertices opposite to it sees it under a right or obtuse angle.
      *
-     * @param segment Gabriel graph edge which is characterised by start and end owned by distinct UIDs.
-     * @param all     Union of all coordinates
-     * @return a potential {@link Intersection} point
+     * @param xs Distances of the points from the x axis
+     * @param ys Distances of the points from the y axis
+     * @return Gabriel graph edges as indices into the arrays, two per edge
      */
-    private Intersection convertToPotentialIntersections(LineD segment,
-                                                         List<EnhancedCoordinate> all) {
-        Optional<EnhancedCoordinate> first = all.stream().filter(coo -> coo.equals(segment.start)).findFirst();
-        Optional<EnhancedCoordinate> second = all.stream().filter(coo -> coo.equals(segment.end)).findFirst();
-        return new Intersection(first.get(), second.get());
+    public int[] createGabrielGraph(double[] xs, double[] ys) {
+        return triangulate(xs, ys).gabrielEdges();
+    }
+
+    private DelaunayTriangulation triangulate(double[] xs, double[] ys) {
+        long start = metrics.start();
+        DelaunayTriangulation triangulation = DelaunayTriangulation.of(xs, ys);
+        metrics.stop("gabriel.delaunay", start);
+        return triangulation;
+    }
+
+    /**
+     * Point identity index over the union of the coordinates of the two UIDs. Coincident coordinates are
+     * merged into a single site handed over to the triangulation, while every site keeps track of the
+     * coordinates it stands for. Site indices coming out of the triangulation are thus mapped back to the
+     * owning UID and coordinate in O(1), instead of scanning the lists of coordinates for every edge.
+     */
+    static final class PointIndex {
+
+        /**
+         * Distances of the distinct planar points of the union from the x axis
+         */
+        final double[] xs;
+
+        /**
+         * Distances of the distinct planar points of the union from the y axis
+         */
+        final double[] ys;
+
+        /**
+         * Indices into the union of the coordinates standing for each site, site after site
+         */
+        private final int[] owners;
+
+        /**
+         * Start of the owners of each site within {@link #owners}
+         */
+        private final int[] ownersStart;
+
+        /**
+         * Coordinates before this index belong to the first UID
+         */
+        private final int split;
+
+        PointIndex(List<EnhancedCoordinate> all, int split) {
+            this.split = split;
+
+            Map<SiteKey, Integer> siteIds = new HashMap<>(all.size() * 2);
+            int[] siteOf = new int[all.size()];
+            double[] xs = new double[all.size()];
+            double[] ys = new double[all.size()];
+            int sites = 0;
+            for (int i = 0; i < all.size(); i++) {
+                EnhancedCoordinate co = all.get(i);
+                SiteKey key = new SiteKey(co.getX(), co.getY());
+                Integer site = siteIds.get(key);
+                if (site == null) {
+                    site = sites++;
+                    siteIds.put(key, site);
+                    xs[site] = co.getX();
+                    ys[site] = co.getY();
+                }
+                siteOf[i] = site;
+            }
+            this.xs = Arrays.copyOf(xs, sites);
+            this.ys = Arrays.copyOf(ys, sites);
+
+            // Group the coordinates by site
+            this.ownersStart = new int[sites + 1];
+            for (int site : siteOf) ownersStart[site + 1]++;
+            for (int s = 0; s < sites; s++) ownersStart[s + 1] += ownersStart[s];
+            int[] cursor = Arrays.copyOf(ownersStart, sites);
+            this.owners = new int[siteOf.length];
+            for (int i = 0; i < siteOf.length; i++) owners[cursor[siteOf[i]]++] = i;
+        }
+
+        /**
+         * @return number of distinct planar points
+         */
+        int size() {
+            return xs.length;
+        }
+
+        /**
+         * Pairs of coordinates standing for the two ends of an edge which belong to distinct UIDs.
+         *
+         * @param edge Pair of site indices
+         * @return pairs of indices into the union, the coordinate of the first UID first
+         */
+        Stream<int[]> pairsOfDistinctUIDs(int[] edge) {
+            return IntStream.range(ownersStart[edge[0]], ownersStart[edge[0] + 1]).map(o -> owners[o])
+                    .boxed()
+                    .flatMap(a -> IntStream.range(ownersStart[edge[1]], ownersStart[edge[1] + 1]).map(o -> owners[o])
+                            .filter(b -> (a < split) != (b < split))
+                            .mapToObj(b -> a < split ? new int[]{a, b} : new int[]{b, a}));
+        }
+    }
+
+    /**
+     * Coordinates of both UIDs recorded on the same floor within the same (extended) time slab.
+     */
+    private static final class Partition {
+
+        /**
+         * Coordinates of the partition, the ones of the first UID first
+         */
+        private final List<EnhancedCoordinate> coordinates;
+
+        /**
+         * Number of coordinates of the first UID
+         */
+        private final int split;
+
+        Partition(List<EnhancedCoordinate> coordinates, int split) {
+            this.coordinates = coordinates;
+            this.split = split;
+        }
+    }
+
+    /**
+     * Value based key of a planar point.
+     */
+    private static final class SiteKey {
+
+        private final double x;
+
+        private final double y;
+
+        SiteKey(double x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            SiteKey that = (SiteKey) o;
+
+            return Double.compare(that.x, x) == 0 && Double.compare(that.y, y) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            long temp = Double.doubleToLongBits(x);
+            int result = (int) (temp ^ (temp >>> 32));
+            temp = Double.doubleToLongBits(y);
+            return 31 * result + (int) (temp ^ (temp >>> 32));
+        }
     }
 
 }
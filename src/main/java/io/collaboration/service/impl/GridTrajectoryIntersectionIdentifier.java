@@ -0,0 +1,175 @@
+package io.collaboration.service.impl;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.helper.LongIntHashMap;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Uniform spatial hash grid partitioned by floor. The coordinates of the smaller trajectory are bucketed into square
+ * cells with a side of spatialEpsilon, keyed on a packed (floor, cellX, cellY) long. Any point within spatialEpsilon of a
+ * probe point then lies in the 3x3 neighbourhood of the probe's cell on the same floor, so each coordinate of the larger
+ * trajectory only visits those nine buckets. The members of every bucket are kept in chronological order, allowing the
+ * temporal criteria to be applied with a binary search inside the probe. No candidate pairs are ever materialized.
+ * <p>
+ * Building the grid takes O(n) since trajectories are kept in chronological order and probing takes O(m) times the
+ * occupancy of the visited cells within temporalEpsilon.
+ */
+@Component
+public class GridTrajectoryIntersectionIdentifier extends AbstractTrajectoryIntersectionIdentifier {
+
+    private static final Logger LOGGER = Logger.getLogger(GridTrajectoryIntersectionIdentifier.class);
+
+    private static final long CELL_MASK = 0xFFFFFFL;
+
+    @Override
+    public Optional<Intersection> identify(List<EnhancedCoordinate> one,
+                                           List<EnhancedCoordinate> two,
+                                           Double spatialEpsilon,
+                                           Integer temporalEpsilon) {
+
+        if (!validate(one, two)) return Optional.empty();
+
+        return identify(Trajectory.of(one), Trajectory.of(two), spatialEpsilon, temporalEpsilon);
+    }
+
+    @Override
+    public Optional<Intersection> identify(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon) {
+
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Optional.empty();
+
+        spatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon);
+        temporalEpsilon = TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon);
+
+        LOGGER.trace("Number of coordinates for first trajectory is " + one.size()
+                + ". Number of coordinates for second trajectory is " + two.size());
+
+        // Bucket the smaller trajectory, probe with the larger one
+        boolean buildOnFirst = one.size() <= two.size();
+        Trajectory build = buildOnFirst ? one : two;
+        Trajectory probe = buildOnFirst ? two : one;
+
+        // Any cell at least as wide as spatialEpsilon keeps the 3x3 neighbourhood exhaustive
+        double cellSize = spatialEpsilon > 0 ? spatialEpsilon : 1.0;
+        double squaredEpsilon = spatialEpsilon * spatialEpsilon;
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+
+        long start = metrics.start();
+        long[] times = build.getTimestamps();
+        double[] xs = build.getXs();
+        double[] ys = build.getYs();
+        short[] floors = build.getFloors();
+        int n = build.size();
+        int[] cells = new int[n];
+        int[] members = new int[n];
+
+        // Assign dense ids to the occupied cells and count their members
+        LongIntHashMap cellIds = new LongIntHashMap(n);
+        int[] counts = new int[n + 1];
+        for (int k = 0; k < n; k++) {
+            cells[k] = cellIds.putIfAbsent(cellKey(floors[k], cellOf(xs[k], cellSize), cellOf(ys[k], cellSize)));
+            counts[cells[k] + 1]++;
+        }
+
+        // Prefix sums give the start of every bucket. Filling in chronological order keeps buckets sorted by time.
+        for (int c = 0; c < cellIds.size(); c++) counts[c + 1] += counts[c];
+        int[] starts = new int[cellIds.size() + 1];
+        System.arraycopy(counts, 0, starts, 0, starts.length);
+        int[] cursor = new int[cellIds.size()];
+        System.arraycopy(counts, 0, cursor, 0, cursor.length);
+        for (int k = 0; k < n; k++) members[cursor[cells[k]]++] = k;
+        metrics.stop("grid.build", start);
+
+        start = metrics.start();
+        long candidates = 0;
+
+        long[] probeTimes = probe.getTimestamps();
+        double[] probeXs = probe.getXs();
+        double[] probeYs = probe.getYs();
+        short[] probeFloors = probe.getFloors();
+        for (int i = 0; i < probe.size(); i++) {
+            long time = probeTimes[i];
+            double x = probeXs[i];
+            double y = probeYs[i];
+            long cellX = cellOf(x, cellSize);
+            long cellY = cellOf(y, cellSize);
+
+            for (long dx = -1; dx <= 1; dx++) {
+                for (long dy = -1; dy <= 1; dy++) {
+                    int cell = cellIds.get(cellKey(probeFloors[i], cellX + dx, cellY + dy));
+                    if (cell == LongIntHashMap.MISSING) continue;
+
+                    int end = starts[cell + 1];
+                    for (int p = firstNotBefore(members, times, starts[cell], end, time - maxInterval);
+                         p < end && times[members[p]] <= time + maxInterval; p++) {
+                        int k = members[p];
+                        candidates++;
+                        double ddx = x - xs[k];
+                        double ddy = y - ys[k];
+                        if (ddx * ddx + ddy * ddy <= squaredEpsilon) {
+                            recordScan(start, candidates, candidates, true);
+                            return Optional.of(buildOnFirst
+                                    ? new Intersection(build.toCoordinate(k), probe.toCoordinate(i))
+                                    : new Intersection(probe.toCoordinate(i), build.toCoordinate(k)));
+                        }
+                    }
+                }
+            }
+        }
+
+        recordScan(start, candidates, candidates, false);
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isColumnar() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "grid";
+    }
+
+    /**
+     * Pack the floor and the cell coordinates in a single long. The cell coordinates are truncated to 24 bits each;
+     * cells which alias after truncation lie far apart and are rejected by the exact distance check.
+     *
+     * @param floor Floor of the coordinate
+     * @param cellX Column of the cell
+     * @param cellY Row of the cell
+     * @return packed cell key
+     */
+    static long cellKey(int floor, long cellX, long cellY) {
+        return ((long) (floor & 0xFFFF) << 48) | ((cellX & CELL_MASK) << 24) | (cellY & CELL_MASK);
+    }
+
+    static long cellOf(double value, double cellSize) {
+        return (long) Math.floor(value / cellSize);
+    }
+
+    /**
+     * Binary search for the first member of a bucket recorded at or after the given time.
+     */
+    private static int firstNotBefore(int[] members, long[] times, int from, int to, long time) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[members[mid]] < time) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
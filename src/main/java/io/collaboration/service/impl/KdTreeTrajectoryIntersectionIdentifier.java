@@ -0,0 +1,439 @@
+package io.collaboration.service.impl;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Range search over a k-d tree of the second trajectory, with time as a third dimension scaled by
+ * spatialEpsilon / temporalEpsilon so that a meeting spans about as far along time as along x and y. One balanced,
+ * array-backed tree is built per floor, splitting every range of samples at the median of whichever dimension spreads
+ * the most, so that clustered samples, e.g. a UID sitting at its desk most of the day, are split as finely as sparse
+ * ones. Each sample of the first trajectory is then answered by a search which prunes on space and time together,
+ * descending only into the subtrees whose half space still reaches within spatialEpsilon and temporalEpsilon of it.
+ * <p>
+ * Building takes O(mlogm) and probing O(n(logm + k)) where k is the number of samples visited close to each probe,
+ * however skewed the data. Samples are probed in chronological order and every search keeps the earliest sample of the
+ * second trajectory it matches, so the intersection returned is the same as the one of
+ * {@link SweepLineTrajectoryIntersectionIdentifier}. The same trees answer
+ * {@link #nearestApproach(Trajectory, Trajectory, int)}, the exact closest approach of two UIDs within temporalEpsilon.
+ */
+@Component
+public class KdTreeTrajectoryIntersectionIdentifier extends AbstractTrajectoryIntersectionIdentifier {
+
+    private static final Logger LOGGER = Logger.getLogger(KdTreeTrajectoryIntersectionIdentifier.class);
+
+    /**
+     * Metres a UID walks in a second, scaling time for {@link #nearestApproach(Trajectory, Trajectory, int)}
+     */
+    private static final double WALKING_SPEED = 1.0;
+
+    @Override
+    public Optional<Intersection> identify(List<EnhancedCoordinate> one,
+                                           List<EnhancedCoordinate> two,
+                                           Double spatialEpsilon,
+                                           Integer temporalEpsilon) {
+
+        if (!validate(one, two)) return Optional.empty();
+
+        return identify(Trajectory.of(one), Trajectory.of(two), spatialEpsilon, temporalEpsilon);
+    }
+
+    @Override
+    public Optional<Intersection> identify(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon) {
+
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Optional.empty();
+
+        spatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon);
+        temporalEpsilon = TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon);
+
+        LOGGER.trace("Number of coordinates for first trajectory is " + one.size()
+                + ". Number of coordinates for second trajectory is " + two.size());
+
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+
+        long start = metrics.start();
+        KdTree[] trees = KdTree.perFloor(two, (spatialEpsilon > 0 ? spatialEpsilon : 1.0) / maxInterval);
+        metrics.stop("kdtree.build", start);
+
+        start = metrics.start();
+        long[] times = one.getTimestamps();
+        double[] xs = one.getXs();
+        double[] ys = one.getYs();
+        short[] floors = one.getFloors();
+        long[] counts = new long[2];
+        for (int i = 0; i < one.size(); i++) {
+            KdTree tree = KdTree.of(trees, floors[i]);
+            if (tree == null) continue;
+
+            int j = tree.earliestWithin(xs[i], ys[i], times[i], spatialEpsilon, maxInterval, counts);
+            if (j >= 0) {
+                recordScan(start, counts[0], counts[1], true);
+                return Optional.of(new Intersection(one.toCoordinate(i), two.toCoordinate(j)));
+            }
+        }
+
+        recordScan(start, counts[0], counts[1], false);
+        return Optional.empty();
+    }
+
+    /**
+     * Find the closest approach of the two UIDs, i.e. the pair of samples recorded on the same floor at most
+     * temporalEpsilon apart whose Euclidean distance is the smallest. Unlike
+     * {@link #identify(Trajectory, Trajectory, double, int)} there is no spatialEpsilon to stop at, the distance of the
+     * closest pair found so far bounds the rest of the searches instead.
+     *
+     * @param one             Trajectory of the first UID
+     * @param two             Trajectory of the second UID
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return the closest pair of samples, empty if the UIDs are never on the same floor within temporalEpsilon
+     */
+    public Optional<Intersection> nearestApproach(Trajectory one, Trajectory two, int temporalEpsilon) {
+        if (!validate(one, two)) return Optional.empty();
+
+        long start = metrics.start();
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+        KdTree[] trees = KdTree.perFloor(two, WALKING_SPEED / 1000);
+
+        long[] times = one.getTimestamps();
+        double[] xs = one.getXs();
+        double[] ys = one.getYs();
+        short[] floors = one.getFloors();
+        // Squared distance and samples of the closest pair found so far
+        double[] closest = {Double.POSITIVE_INFINITY};
+        int closestOne = -1;
+        int closestTwo = -1;
+        for (int i = 0; i < one.size(); i++) {
+            KdTree tree = KdTree.of(trees, floors[i]);
+            if (tree == null) continue;
+
+            int j = tree.nearestWithin(xs[i], ys[i], times[i], maxInterval, closest);
+            if (j >= 0) {
+                closestOne = i;
+                closestTwo = j;
+            }
+        }
+        metrics.stop("kdtree.nearest", start);
+
+        if (closestOne < 0) return Optional.empty();
+        return Optional.of(new Intersection(one.toCoordinate(closestOne), two.toCoordinate(closestTwo)));
+    }
+
+    @Override
+    public boolean isColumnar() {
+        return true;
+    }
+
+    @Override
+    public boolean isEarliest() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "kdtree";
+    }
+
+    /**
+     * Balanced k-d tree over the samples of a trajectory on a single floor, laid out implicitly in arrays: the node of
+     * the range [from, to) is the sample at its middle, its left subtree the range before it and its right subtree the
+     * range after it. Ranges of at most {@link #LEAF_SIZE} samples are scanned rather than split.
+     */
+    static final class KdTree {
+
+        static final int LEAF_SIZE = 8;
+
+        private static final byte X = 0;
+
+        private static final byte Y = 1;
+
+        private static final byte TIME = 2;
+
+        private final short floor;
+
+        private final double[] xs;
+
+        private final double[] ys;
+
+        private final long[] times;
+
+        /**
+         * Position of each sample within the trajectory
+         */
+        private final int[] ids;
+
+        /**
+         * Dimension each node splits its range on
+         */
+        private final byte[] dims;
+
+        /**
+         * Scale of the timestamps against the planar coordinates, in metres per milli
+         */
+        private final double scale;
+
+        private KdTree(short floor, int size, double scale) {
+            this.floor = floor;
+            this.xs = new double[size];
+            this.ys = new double[size];
+            this.times = new long[size];
+            this.ids = new int[size];
+            this.dims = new byte[size];
+            this.scale = scale;
+        }
+
+        /**
+         * Build a tree per floor visited by the trajectory.
+         *
+         * @param trajectory Trajectory to index
+         * @param scale      Metres per milli timestamps are scaled by when choosing the dimension to split on
+         * @return the trees in ascending order of floor
+         */
+        static KdTree[] perFloor(Trajectory trajectory, double scale) {
+            short[] floors = trajectory.getSummary().getFloors();
+            int[] sizes = new int[floors.length];
+            short[] sampleFloors = trajectory.getFloors();
+            for (short floor : sampleFloors) sizes[indexOf(floors, floor)]++;
+
+            KdTree[] trees = new KdTree[floors.length];
+            for (int f = 0; f < floors.length; f++) trees[f] = new KdTree(floors[f], sizes[f], scale);
+
+            int[] cursor = new int[floors.length];
+            for (int i = 0; i < sampleFloors.length; i++) {
+                int f = indexOf(floors, sampleFloors[i]);
+                KdTree tree = trees[f];
+                int k = cursor[f]++;
+                tree.xs[k] = trajectory.getXs()[i];
+                tree.ys[k] = trajectory.getYs()[i];
+                tree.times[k] = trajectory.getTimestamps()[i];
+                tree.ids[k] = i;
+            }
+
+            for (KdTree tree : trees) tree.build(0, tree.ids.length);
+            return trees;
+        }
+
+        /**
+         * @return the tree of the given floor, null if the trajectory never visits it
+         */
+        static KdTree of(KdTree[] trees, short floor) {
+            // Buildings have a handful of floors
+            for (KdTree tree : trees) if (tree.floor == floor) return tree;
+            return null;
+        }
+
+        private static int indexOf(short[] floors, short floor) {
+            int f = 0;
+            while (floors[f] != floor) f++;
+            return f;
+        }
+
+        private void build(int from, int to) {
+            while (to - from > LEAF_SIZE) {
+                double minX = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY;
+                double minY = Double.POSITIVE_INFINITY;
+                double maxY = Double.NEGATIVE_INFINITY;
+                long minTime = Long.MAX_VALUE;
+                long maxTime = Long.MIN_VALUE;
+                for (int k = from; k < to; k++) {
+                    minX = Math.min(minX, xs[k]);
+                    maxX = Math.max(maxX, xs[k]);
+                    minY = Math.min(minY, ys[k]);
+                    maxY = Math.max(maxY, ys[k]);
+                    minTime = Math.min(minTime, times[k]);
+                    maxTime = Math.max(maxTime, times[k]);
+                }
+                double spreadX = maxX - minX;
+                double spreadY = maxY - minY;
+                double spreadTime = (maxTime - minTime) * scale;
+                byte dim = spreadX >= spreadY && spreadX >= spreadTime ? X : spreadY >= spreadTime ? Y : TIME;
+
+                int mid = (from + to) >>> 1;
+                select(from, to - 1, mid, dim);
+                dims[mid] = dim;
+
+                // Recurse into the left half, loop over the right one
+                build(from, mid);
+                from = mid + 1;
+            }
+        }
+
+        /**
+         * Earliest sample within spatialEpsilon and maxInterval of the probe.
+         *
+         * @param counts Samples visited and distances evaluated, incremented by the search
+         * @return the position of the sample within the trajectory, -1 if none is close enough
+         */
+        int earliestWithin(double x, double y, long time, double spatialEpsilon, long maxInterval, long[] counts) {
+            int earliest = earliestWithin(0, ids.length, x, y, time, spatialEpsilon, spatialEpsilon * spatialEpsilon,
+                    maxInterval, Integer.MAX_VALUE, counts);
+            return earliest == Integer.MAX_VALUE ? -1 : earliest;
+        }
+
+        private int earliestWithin(int from, int to, double x, double y, long time, double spatialEpsilon,
+                                   double squaredEpsilon, long maxInterval, int earliest, long[] counts) {
+            if (to - from <= LEAF_SIZE) {
+                for (int k = from; k < to; k++) {
+                    earliest = match(k, x, y, time, squaredEpsilon, maxInterval, earliest, counts);
+                }
+                return earliest;
+            }
+
+            int mid = (from + to) >>> 1;
+            earliest = match(mid, x, y, time, squaredEpsilon, maxInterval, earliest, counts);
+
+            boolean left;
+            boolean right;
+            switch (dims[mid]) {
+                case X:
+                    left = x - spatialEpsilon <= xs[mid];
+                    right = x + spatialEpsilon >= xs[mid];
+                    break;
+                case Y:
+                    left = y - spatialEpsilon <= ys[mid];
+                    right = y + spatialEpsilon >= ys[mid];
+                    break;
+                default:
+                    left = time - maxInterval <= times[mid];
+                    right = time + maxInterval >= times[mid];
+            }
+            if (left) {
+                earliest = earliestWithin(from, mid, x, y, time, spatialEpsilon, squaredEpsilon, maxInterval,
+                        earliest, counts);
+            }
+            if (right) {
+                earliest = earliestWithin(mid + 1, to, x, y, time, spatialEpsilon, squaredEpsilon, maxInterval,
+                        earliest, counts);
+            }
+            return earliest;
+        }
+
+        private int match(int k, double x, double y, long time, double squaredEpsilon, long maxInterval,
+                          int earliest, long[] counts) {
+            counts[0]++;
+            if (ids[k] >= earliest || Math.abs(time - times[k]) > maxInterval) return earliest;
+
+            counts[1]++;
+            double dx = x - xs[k];
+            double dy = y - ys[k];
+            return dx * dx + dy * dy <= squaredEpsilon ? ids[k] : earliest;
+        }
+
+        /**
+         * Closest sample within maxInterval of the probe, if closer than the closest one found so far.
+         *
+         * @param closest Squared distance of the closest sample found so far, lowered by the search
+         * @return the position of the sample within the trajectory, -1 if none is closer
+         */
+        int nearestWithin(double x, double y, long time, long maxInterval, double[] closest) {
+            return nearestWithin(0, ids.length, x, y, time, maxInterval, closest, -1);
+        }
+
+        private int nearestWithin(int from, int to, double x, double y, long time, long maxInterval,
+                                  double[] closest, int nearest) {
+            if (to - from <= LEAF_SIZE) {
+                for (int k = from; k < to; k++) nearest = closer(k, x, y, time, maxInterval, closest, nearest);
+                return nearest;
+            }
+
+            int mid = (from + to) >>> 1;
+            nearest = closer(mid, x, y, time, maxInterval, closest, nearest);
+
+            if (dims[mid] == TIME) {
+                if (time - maxInterval <= times[mid]) {
+                    nearest = nearestWithin(from, mid, x, y, time, maxInterval, closest, nearest);
+                }
+                if (time + maxInterval >= times[mid]) {
+                    nearest = nearestWithin(mid + 1, to, x, y, time, maxInterval, closest, nearest);
+                }
+                return nearest;
+            }
+
+            // Descend on the side of the probe first, the other side only while it may still hold a closer sample
+            double diff = dims[mid] == X ? x - xs[mid] : y - ys[mid];
+            if (diff <= 0) {
+                nearest = nearestWithin(from, mid, x, y, time, maxInterval, closest, nearest);
+                if (diff * diff < closest[0]) {
+                    nearest = nearestWithin(mid + 1, to, x, y, time, maxInterval, closest, nearest);
+                }
+            } else {
+                nearest = nearestWithin(mid + 1, to, x, y, time, maxInterval, closest, nearest);
+                if (diff * diff < closest[0]) {
+                    nearest = nearestWithin(from, mid, x, y, time, maxInterval, closest, nearest);
+                }
+            }
+            return nearest;
+        }
+
+        private int closer(int k, double x, double y, long time, long maxInterval, double[] closest, int nearest) {
+            if (Math.abs(time - times[k]) > maxInterval) return nearest;
+
+            double dx = x - xs[k];
+            double dy = y - ys[k];
+            double squaredDistance = dx * dx + dy * dy;
+            if (squaredDistance >= closest[0]) return nearest;
+
+            closest[0] = squaredDistance;
+            return ids[k];
+        }
+
+        /**
+         * Quickselect the sample of the given rank along a dimension, so that the samples before it are not greater
+         * and the ones after it not smaller along that dimension. Partitioning three ways keeps runs of equal values,
+         * e.g. the samples of a UID standing still, from degrading it to quadratic time.
+         */
+        private void select(int left, int right, int rank, byte dim) {
+            while (right > left) {
+                double pivot = value((left + right) >>> 1, dim);
+                // [left, lower) below the pivot, [lower, k) equal to it, (upper, right] above it
+                int lower = left;
+                int upper = right;
+                int k = left;
+                while (k <= upper) {
+                    double value = value(k, dim);
+                    if (value < pivot) swap(k++, lower++);
+                    else if (value > pivot) swap(k, upper--);
+                    else k++;
+                }
+
+                if (rank < lower) right = lower - 1;
+                else if (rank > upper) left = upper + 1;
+                else return;
+            }
+        }
+
+        /**
+         * Coordinate of a sample along a dimension. Epoch millis are exact as doubles.
+         */
+        private double value(int k, byte dim) {
+            return dim == X ? xs[k] : dim == Y ? ys[k] : times[k];
+        }
+
+        private void swap(int a, int b) {
+            double x = xs[a];
+            xs[a] = xs[b];
+            xs[b] = x;
+            double y = ys[a];
+            ys[a] = ys[b];
+            ys[b] = y;
+            long time = times[a];
+            times[a] = times[b];
+            times[b] = time;
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package io.collaboration.service.impl;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Time ordered sweep over the two trajectories. Both trajectories are sorted by timestamp and a two-pointer
+ * window is slid along the second trajectory so that each point of the first trajectory is only compared against the
+ * points of the second one recorded at most temporalEpsilon seconds apart. Since temporalEpsilon is bounded to a
+ * minute, the window holds a handful of points and a day long query is answered in O(nlogn) (sorting) plus
+ * O(n + m + k) for the sweep itself, where k is the number of pairs which satisfy the temporal criteria.
+ * <p>
+ * The intersection returned is the earliest one with respect to the timestamps of the first trajectory.
+ */
+@Component
+public class SweepLineTrajectoryIntersectionIdentifier extends AbstractTrajectoryIntersectionIdentifier {
+
+    private static final Logger LOGGER = Logger.getLogger(SweepLineTrajectoryIntersectionIdentifier.class);
+
+    @Override
+    public Optional<Intersection> identify(List<EnhancedCoordinate> one,
+                                           List<EnhancedCoordinate> two,
+                                           Double spatialEpsilon,
+                                           Integer temporalEpsilon) {
+
+        if (!validate(one, two)) return Optional.empty();
+
+        return identify(Trajectory.of(one), Trajectory.of(two), spatialEpsilon, temporalEpsilon);
+    }
+
+    @Override
+    public Optional<Intersection> identify(Trajectory one,
+                                           Trajectory two,
+                                           double spatialEpsilon,
+                                           int temporalEpsilon) {
+
+        if (!validate(one, two, spatialEpsilon, temporalEpsilon)) return Optional.empty();
+
+        spatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon);
+        temporalEpsilon = TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon);
+
+        LOGGER.trace("Number of coordinates for first trajectory is " + one.size()
+                + ". Number of coordinates for second trajectory is " + two.size());
+
+        long[] timesOne = one.getTimestamps();
+        double[] xOne = one.getXs();
+        double[] yOne = one.getYs();
+        short[] floorsOne = one.getFloors();
+        long[] timesTwo = two.getTimestamps();
+        double[] xTwo = two.getXs();
+        double[] yTwo = two.getYs();
+        short[] floorsTwo = two.getFloors();
+
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+        double squaredEpsilon = spatialEpsilon * spatialEpsilon;
+
+        long start = metrics.start();
+        long candidates = 0;
+        long distances = 0;
+
+        // Start of the window over the second trajectory. Only moves forward since both trajectories are sorted.
+        int low = 0;
+        for (int i = 0; i < timesOne.length; i++) {
+            long time = timesOne[i];
+
+            while (low < timesTwo.length && timesTwo[low] < time - maxInterval) low++;
+
+            for (int j = low; j < timesTwo.length && timesTwo[j] <= time + maxInterval; j++) {
+                candidates++;
+                if (floorsOne[i] != floorsTwo[j]) continue;
+
+                distances++;
+                double dx = xOne[i] - xTwo[j];
+                double dy = yOne[i] - yTwo[j];
+                if (dx * dx + dy * dy <= squaredEpsilon) {
+                    recordScan(start, candidates, distances, true);
+                    return Optional.of(new Intersection(one.toCoordinate(i), two.toCoordinate(j)));
+                }
+            }
+        }
+
+        recordScan(start, candidates, distances, false);
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isColumnar() {
+        return true;
+    }
+
+    @Override
+    public boolean isEarliest() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "sweep";
+    }
+}
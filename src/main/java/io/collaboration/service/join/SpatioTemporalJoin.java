@@ -0,0 +1,302 @@
+package io.collaboration.service.join;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.helper.LongIntHashMap;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.helper.TrajectorySimplifier;
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * All-pairs spatio-temporal join answering "who met whom" across every UID of a dataset in a single pass, instead of
+ * one {@link io.collaboration.service.AbstractTrajectoryIntersectionIdentifier#identify} call per pair of UIDs.
+ * <p>
+ * All samples are partitioned by floor and by time buckets as wide as the temporal window, so that two samples
+ * satisfying the temporal criteria lie either in the same bucket or in adjacent ones. Each partition is joined with
+ * itself and with the next bucket of the same floor through a spatial hash grid with cells as wide as spatialEpsilon,
+ * probing only the 3x3 neighbourhood of every sample. Partitions are processed in parallel on the common ForkJoin pool
+ * and the earliest meeting of every pair of UIDs is kept.
+ * <p>
+ * Buckets and cells are sized after the epsilons widened by the errors of the two most simplified trajectories, so
+ * that they hold every candidate, while each candidate pair of samples is checked against the epsilons widened by the
+ * errors of its own two trajectories, same as a single query on them.
+ */
+@Component
+public class SpatioTemporalJoin {
+
+    private static final Logger LOGGER = Logger.getLogger(SpatioTemporalJoin.class);
+
+    private static final long CELL_MASK = 0xFFFFFFL;
+
+    private static final long BUCKET_MASK = 0xFFFFFFFFFFFFL;
+
+    /**
+     * Find the first meeting of every pair of UIDs in the dataset.
+     *
+     * @param store           Trajectories of all UIDs
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @return the earliest intersection of every pair of UIDs which met, in chronological order. The point of the
+     * lexicographically smaller UID comes first.
+     */
+    public List<Intersection> join(TrajectoryStore store,
+                                   double spatialEpsilon,
+                                   int temporalEpsilon) {
+
+        // Size the buckets and cells after the error bounds of the two most simplified trajectories
+        double spatialError = 0;
+        long temporalError = 0;
+        for (int uid = 0; uid < store.size(); uid++) {
+            spatialError = Math.max(spatialError, store.get(uid).getSpatialError());
+            temporalError = Math.max(temporalError, store.get(uid).getTemporalError());
+        }
+        double cellSize = TrajectorySimplifier.widenSpatialEpsilon(spatialEpsilon, 2 * spatialError);
+        long bucketWidth = TemporalDistance.getMaxIntervalMillis(
+                TrajectorySimplifier.widenTemporalEpsilon(temporalEpsilon, 2 * temporalError)) + 1;
+
+        // Assign dense ids to the occupied (floor, bucket) partitions and count their samples
+        LongIntHashMap partitionIds = new LongIntHashMap(1024);
+        int[] counts = new int[1024];
+        long[] keys = new long[1024];
+        for (int uid = 0; uid < store.size(); uid++) {
+            Trajectory trajectory = store.get(uid);
+            for (int i = 0; i < trajectory.size(); i++) {
+                long key = partitionKey(trajectory.getFloors()[i], Math.floorDiv(trajectory.getTimestamps()[i], bucketWidth));
+                int partition = partitionIds.putIfAbsent(key);
+                if (partition == counts.length) {
+                    counts = Arrays.copyOf(counts, counts.length * 2);
+                    keys = Arrays.copyOf(keys, keys.length * 2);
+                }
+                keys[partition] = key;
+                counts[partition]++;
+            }
+        }
+
+        int partitions = partitionIds.size();
+        int[] starts = new int[partitions + 1];
+        for (int p = 0; p < partitions; p++) starts[p + 1] = starts[p] + counts[p];
+
+        // Lay the samples out partition after partition as (uid, index) references
+        int[] uids = new int[starts[partitions]];
+        int[] indices = new int[starts[partitions]];
+        int[] cursor = Arrays.copyOf(starts, partitions);
+        for (int uid = 0; uid < store.size(); uid++) {
+            Trajectory trajectory = store.get(uid);
+            for (int i = 0; i < trajectory.size(); i++) {
+                int partition = partitionIds.get(partitionKey(trajectory.getFloors()[i], Math.floorDiv(trajectory.getTimestamps()[i], bucketWidth)));
+                uids[cursor[partition]] = uid;
+                indices[cursor[partition]++] = i;
+            }
+        }
+
+        LOGGER.info("Joining " + uids.length + " coordinates of " + store.size() + " UIDs across " + partitions + " partitions");
+
+        long[] partitionKeys = keys;
+        Meetings meetings = IntStream.range(0, partitions).parallel().collect(Meetings::new, (local, p) -> {
+            int next = partitionIds.get(partitionKeys[p] + 1);
+            joinPartition(local, store, uids, indices,
+                    starts[p], starts[p + 1],
+                    next == LongIntHashMap.MISSING ? 0 : starts[next],
+                    next == LongIntHashMap.MISSING ? 0 : starts[next + 1],
+                    cellSize, spatialEpsilon, temporalEpsilon);
+        }, Meetings::addAll);
+
+        // Only now are the UIDs of every pair put in lexicographic order
+        Intersection[] intersections = new Intersection[meetings.size()];
+        for (int m = 0; m < meetings.size(); m++) intersections[m] = meetings.toIntersection(store, m);
+
+        return IntStream.range(0, meetings.size()).boxed()
+                .sorted(Comparator.comparingLong(meetings::time)
+                        .thenComparing(m -> intersections[m].getPointOne().getUid())
+                        .thenComparing(m -> intersections[m].getPointTwo().getUid()))
+                .map(m -> intersections[m])
+                .collect(toList());
+    }
+
+    /**
+     * Join the samples of a partition with themselves and with the samples of the next bucket on the same floor.
+     *
+     * @param meetings Earliest meeting per pair of UIDs found so far, updated with the meetings of the partition
+     * @param cellSize Side of the cells of the spatial hash grid, no smaller than the widest widened spatialEpsilon
+     */
+    private void joinPartition(Meetings meetings,
+                               TrajectoryStore store,
+                               int[] uids,
+                               int[] indices,
+                               int from,
+                               int to,
+                               int nextFrom,
+                               int nextTo,
+                               double cellSize,
+                               double spatialEpsilon,
+                               int temporalEpsilon) {
+
+        int own = to - from;
+        int n = own + nextTo - nextFrom;
+        if (cellSize <= 0) cellSize = 1.0;
+
+        // Gather the samples of both buckets
+        int[] sampleUids = new int[n];
+        int[] sampleIndices = new int[n];
+        long[] times = new long[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int k = 0; k < n; k++) {
+            int ref = k < own ? from + k : nextFrom + k - own;
+            Trajectory trajectory = store.get(uids[ref]);
+            sampleUids[k] = uids[ref];
+            sampleIndices[k] = indices[ref];
+            times[k] = trajectory.getTimestamps()[indices[ref]];
+            xs[k] = trajectory.getXs()[indices[ref]];
+            ys[k] = trajectory.getYs()[indices[ref]];
+        }
+
+        // Bucket them in a spatial hash grid
+        LongIntHashMap cellIds = new LongIntHashMap(n);
+        int[] cells = new int[n];
+        int[] cellStarts = new int[n + 1];
+        for (int k = 0; k < n; k++) {
+            cells[k] = cellIds.putIfAbsent(cellKey(cellOf(xs[k], cellSize), cellOf(ys[k], cellSize)));
+            cellStarts[cells[k] + 1]++;
+        }
+        for (int c = 0; c < cellIds.size(); c++) cellStarts[c + 1] += cellStarts[c];
+        int[] members = new int[n];
+        int[] cursor = Arrays.copyOf(cellStarts, cellIds.size());
+        for (int k = 0; k < n; k++) members[cursor[cells[k]]++] = k;
+
+        // Probe with the samples of the partition's own bucket. Pairs within the own bucket are visited once.
+        for (int a = 0; a < own; a++) {
+            long cellX = cellOf(xs[a], cellSize);
+            long cellY = cellOf(ys[a], cellSize);
+            for (long dx = -1; dx <= 1; dx++) {
+                for (long dy = -1; dy <= 1; dy++) {
+                    int cell = cellIds.get(cellKey(cellX + dx, cellY + dy));
+                    if (cell == LongIntHashMap.MISSING) continue;
+
+                    for (int m = cellStarts[cell]; m < cellStarts[cell + 1]; m++) {
+                        int b = members[m];
+                        if ((b < own && b <= a) || sampleUids[a] == sampleUids[b]) continue;
+
+                        // Epsilons widened by the errors of this pair of trajectories only
+                        Trajectory one = store.get(sampleUids[a]);
+                        Trajectory two = store.get(sampleUids[b]);
+                        long maxInterval = TemporalDistance.getMaxIntervalMillis(
+                                TrajectorySimplifier.widenTemporalEpsilon(one, two, temporalEpsilon));
+                        if (Math.abs(times[a] - times[b]) > maxInterval) continue;
+
+                        double widenedSpatialEpsilon = TrajectorySimplifier.widenSpatialEpsilon(one, two, spatialEpsilon);
+                        double ddx = xs[a] - xs[b];
+                        double ddy = ys[a] - ys[b];
+                        if (ddx * ddx + ddy * ddy > widenedSpatialEpsilon * widenedSpatialEpsilon) continue;
+
+                        meetings.offer(sampleUids[a], sampleIndices[a], times[a],
+                                sampleUids[b], sampleIndices[b], times[b]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long partitionKey(int floor, long bucket) {
+        return ((long) (floor & 0xFFFF) << 48) | (bucket & BUCKET_MASK);
+    }
+
+    private static long cellKey(long cellX, long cellY) {
+        return ((cellX & CELL_MASK) << 24) | (cellY & CELL_MASK);
+    }
+
+    private static long cellOf(double value, double cellSize) {
+        return (long) Math.floor(value / cellSize);
+    }
+
+    /**
+     * Earliest meeting of every pair of UIDs met, as references into the store held in primitive columns. Pairs are
+     * keyed on the dictionary ids of their UIDs, the smaller id first, and a meeting is earlier than another if its
+     * (time, index of the smaller id, index of the larger id) is.
+     */
+    private static final class Meetings {
+
+        /**
+         * Pair of dictionary ids to its position in the columns
+         */
+        private final LongIntHashMap positions = new LongIntHashMap(64);
+
+        private int[] uidsLow = new int[64];
+
+        private int[] uidsHigh = new int[64];
+
+        private int[] indicesLow = new int[64];
+
+        private int[] indicesHigh = new int[64];
+
+        /**
+         * The earlier of the two timestamps of every meeting
+         */
+        private long[] times = new long[64];
+
+        private int size;
+
+        void offer(int uidA, int indexA, long timeA, int uidB, int indexB, long timeB) {
+            if (uidA < uidB) offer(uidA, indexA, uidB, indexB, Math.min(timeA, timeB));
+            else offer(uidB, indexB, uidA, indexA, Math.min(timeA, timeB));
+        }
+
+        private void offer(int uidLow, int indexLow, int uidHigh, int indexHigh, long time) {
+            int m = positions.putIfAbsent(((long) uidLow << 32) | (uidHigh & 0xFFFFFFFFL));
+            if (m == size) {
+                if (size == times.length) grow();
+                uidsLow[m] = uidLow;
+                uidsHigh[m] = uidHigh;
+                size++;
+            } else if (times[m] != time ? times[m] < time
+                    : indicesLow[m] != indexLow ? indicesLow[m] < indexLow : indicesHigh[m] <= indexHigh) {
+                return;
+            }
+            indicesLow[m] = indexLow;
+            indicesHigh[m] = indexHigh;
+            times[m] = time;
+        }
+
+        void addAll(Meetings other) {
+            for (int m = 0; m < other.size; m++) {
+                offer(other.uidsLow[m], other.indicesLow[m], other.uidsHigh[m], other.indicesHigh[m], other.times[m]);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        long time(int m) {
+            return times[m];
+        }
+
+        /**
+         * @return the meeting at the given position, the point of the lexicographically smaller UID first
+         */
+        Intersection toIntersection(TrajectoryStore store, int m) {
+            EnhancedCoordinate low = store.get(uidsLow[m]).toCoordinate(indicesLow[m]);
+            EnhancedCoordinate high = store.get(uidsHigh[m]).toCoordinate(indicesHigh[m]);
+            return low.getUid().compareTo(high.getUid()) < 0 ? new Intersection(low, high) : new Intersection(high, low);
+        }
+
+        private void grow() {
+            int capacity = times.length * 2;
+            uidsLow = Arrays.copyOf(uidsLow, capacity);
+            uidsHigh = Arrays.copyOf(uidsHigh, capacity);
+            indicesLow = Arrays.copyOf(indicesLow, capacity);
+            indicesHigh = Arrays.copyOf(indicesHigh, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+    }
+}
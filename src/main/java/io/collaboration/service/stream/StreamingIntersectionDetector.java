@@ -0,0 +1,279 @@
+package io.collaboration.service.stream;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.helper.TemporalDistance;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Online counterpart of the identifiers, detecting meetings as the coordinates of a live feed arrive instead of
+ * querying a dataset loaded up front.
+ * <p>
+ * Only the coordinates of the last temporalEpsilon seconds are kept, in a spatial hash grid per floor with cells as wide
+ * as spatialEpsilon. Every arriving coordinate probes the 3x3 neighbourhood of its cell and is then added to the
+ * window; the window is trimmed behind the latest timestamp seen so far (the watermark), so memory depends on the
+ * rate of the feed rather than on how long it runs. Coordinates arriving more than the temporal window behind the
+ * watermark could no longer be matched against the ones already evicted and are dropped as late.
+ * <p>
+ * A meeting is reported once, when a pair of UIDs starts meeting, and is not reported again for as long as the pair
+ * keeps meeting within the temporal window of its previous matching coordinates. Instances are thread safe.
+ */
+public class StreamingIntersectionDetector {
+
+    private static final long CELL_MASK = 0xFFFFFFL;
+
+    /**
+     * Receives the meetings detected
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param meeting      The matching coordinates, the lexicographically smaller UID first
+         * @param latencyNanos Nanos elapsed since the second of the two coordinates arrived
+         */
+        void onMeeting(Intersection meeting, long latencyNanos);
+    }
+
+    private final double spatialEpsilon;
+
+    private final long maxInterval;
+
+    private final double cellSize;
+
+    /**
+     * Canonical keys of the watched pairs of UIDs, empty to watch all pairs
+     */
+    private final Set<String> watched;
+
+    private final Listener listener;
+
+    /**
+     * Coordinates of the window per (floor, cell), in order of arrival
+     */
+    private final Map<Long, ArrayDeque<Sample>> cells = new HashMap<>();
+
+    /**
+     * Every coordinate of the window in order of arrival
+     */
+    private final ArrayDeque<Sample> window = new ArrayDeque<>();
+
+    /**
+     * Timestamp of the latest matching coordinates of the pairs of UIDs currently meeting, least recently matched first
+     */
+    private final LinkedHashMap<String, Long> meeting = new LinkedHashMap<>();
+
+    private long watermark = Long.MIN_VALUE;
+
+    private long ingested;
+
+    private long late;
+
+    private long meetings;
+
+    private long totalLatencyNanos;
+
+    private long maxLatencyNanos;
+
+    private long firstArrivalNanos;
+
+    private long lastArrivalNanos;
+
+    /**
+     * @param spatialEpsilon  Maximum spatial distance between two points to be considered a potential intersection
+     * @param temporalEpsilon Maximum temporal interval between two points to be considered a potential intersection.
+     * @param watched         Pairs of UIDs to report meetings of, each as an array of two UIDs. Empty to report all
+     * @param listener        Receives the meetings detected, on the thread which offered the second coordinate
+     */
+    public StreamingIntersectionDetector(double spatialEpsilon,
+                                         int temporalEpsilon,
+                                         Collection<String[]> watched,
+                                         Listener listener) {
+        this.spatialEpsilon = spatialEpsilon;
+        this.maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+        this.cellSize = spatialEpsilon > 0 ? spatialEpsilon : 1.0;
+        Set<String> keys = new HashSet<>();
+        for (String[] pair : watched) keys.add(key(pair[0], pair[1]));
+        this.watched = Collections.unmodifiableSet(keys);
+        this.listener = listener;
+    }
+
+    /**
+     * Match a coordinate against the window and add it to the window.
+     *
+     * @param coordinate   Coordinate of the feed
+     * @param arrivalNanos {@link System#nanoTime()} at which the coordinate was received
+     * @return false if the coordinate was dropped as late
+     */
+    public synchronized boolean offer(EnhancedCoordinate coordinate, long arrivalNanos) {
+        if (ingested++ == 0) firstArrivalNanos = arrivalNanos;
+        lastArrivalNanos = arrivalNanos;
+
+        Sample sample = new Sample(coordinate);
+        if (watermark != Long.MIN_VALUE && sample.time < watermark - maxInterval) {
+            late++;
+            return false;
+        }
+
+        long cellX = cellOf(sample.x);
+        long cellY = cellOf(sample.y);
+        double squaredEpsilon = spatialEpsilon * spatialEpsilon;
+        for (long dx = -1; dx <= 1; dx++) {
+            for (long dy = -1; dy <= 1; dy++) {
+                ArrayDeque<Sample> cell = cells.get(cellKey(sample.floor, cellX + dx, cellY + dy));
+                if (cell == null) continue;
+
+                for (Sample other : cell) {
+                    if (other.floor != sample.floor || other.uid.equals(sample.uid)) continue;
+                    if (Math.abs(other.time - sample.time) > maxInterval) continue;
+
+                    double ddx = other.x - sample.x;
+                    double ddy = other.y - sample.y;
+                    if (ddx * ddx + ddy * ddy > squaredEpsilon) continue;
+
+                    match(sample, other, arrivalNanos);
+                }
+            }
+        }
+
+        cells.computeIfAbsent(cellKey(sample.floor, cellX, cellY), k -> new ArrayDeque<>()).addLast(sample);
+        window.addLast(sample);
+
+        if (sample.time > watermark) {
+            watermark = sample.time;
+            evict();
+        }
+        return true;
+    }
+
+    private void match(Sample sample, Sample other, long arrivalNanos) {
+        boolean ordered = sample.uid.compareTo(other.uid) < 0;
+        String key = ordered ? key(sample.uid, other.uid) : key(other.uid, sample.uid);
+        if (!watched.isEmpty() && !watched.contains(key)) return;
+
+        long time = Math.max(sample.time, other.time);
+        Long previous = meeting.remove(key);
+        // Re-inserting keeps the least recently matched pairs first
+        meeting.put(key, previous == null ? time : Math.max(previous, time));
+        if (previous != null && time - previous <= maxInterval) return;
+
+        Intersection intersection = ordered
+                ? new Intersection(sample.coordinate, other.coordinate)
+                : new Intersection(other.coordinate, sample.coordinate);
+        long latency = System.nanoTime() - arrivalNanos;
+        meetings++;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        listener.onMeeting(intersection, latency);
+    }
+
+    /**
+     * Drop the coordinates and the meetings which fell behind the temporal window of the watermark. Coordinates are
+     * dropped in order of arrival, so a coordinate which arrived out of order may outlive older ones for a while.
+     */
+    private void evict() {
+        long horizon = watermark - maxInterval;
+        while (!window.isEmpty() && window.peekFirst().time < horizon) {
+            Sample sample = window.pollFirst();
+            Long key = cellKey(sample.floor, cellOf(sample.x), cellOf(sample.y));
+            ArrayDeque<Sample> cell = cells.get(key);
+            // The window and the cells share the order of arrival, so the sample heads its cell
+            cell.pollFirst();
+            if (cell.isEmpty()) cells.remove(key);
+        }
+
+        Iterator<Long> times = meeting.values().iterator();
+        while (times.hasNext() && times.next() < horizon) times.remove();
+    }
+
+    /**
+     * @return number of coordinates currently held in the window
+     */
+    public synchronized int windowSize() {
+        return window.size();
+    }
+
+    /**
+     * @return number of pairs of UIDs currently meeting
+     */
+    public synchronized int meetingPairs() {
+        return meeting.size();
+    }
+
+    public synchronized long getIngested() {
+        return ingested;
+    }
+
+    public synchronized long getLate() {
+        return late;
+    }
+
+    public synchronized long getMeetings() {
+        return meetings;
+    }
+
+    /**
+     * @return coordinates ingested per second of wall clock time between the first and the latest arrival
+     */
+    public synchronized double throughput() {
+        long elapsed = lastArrivalNanos - firstArrivalNanos;
+        return elapsed > 0 ? (ingested - 1) * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * @return one line summary of the detector for logging
+     */
+    public synchronized String statistics() {
+        return "Stream: " + ingested + " coordinates ingested (" + String.format("%.0f", throughput()) + "/s), "
+                + late + " late, " + window.size() + " in window, " + meetings + " meetings, latency mean "
+                + (meetings == 0 ? 0 : totalLatencyNanos / meetings / 1000) + " max " + maxLatencyNanos / 1000 + " micros";
+    }
+
+    private long cellOf(double value) {
+        return (long) Math.floor(value / cellSize);
+    }
+
+    private static Long cellKey(int floor, long cellX, long cellY) {
+        return ((long) (floor & 0xFFFF) << 48) | ((cellX & CELL_MASK) << 24) | (cellY & CELL_MASK);
+    }
+
+    private static String key(String one, String two) {
+        return one.compareTo(two) < 0 ? one + '\u0000' + two : two + '\u0000' + one;
+    }
+
+    /**
+     * Coordinate of the window along with its primitive fields
+     */
+    private static final class Sample {
+
+        private final EnhancedCoordinate coordinate;
+
+        private final String uid;
+
+        private final long time;
+
+        private final double x;
+
+        private final double y;
+
+        private final int floor;
+
+        private Sample(EnhancedCoordinate coordinate) {
+            this.coordinate = coordinate;
+            this.uid = coordinate.getUid();
+            this.time = TemporalDistance.toEpochMillis(coordinate.getTimestamp());
+            this.x = coordinate.getX();
+            this.y = coordinate.getY();
+            this.floor = coordinate.getFloor();
+        }
+    }
+}
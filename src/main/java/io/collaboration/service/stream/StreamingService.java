@@ -0,0 +1,205 @@
+package io.collaboration.service.stream;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.helper.Headers;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a {@link StreamingIntersectionDetector} out of a live source of coordinates: a file being appended to, which is
+ * followed like {@code tail -f}, or the connections to a local socket. Either source carries one coordinate per line
+ * in the layout of the datasets, {@code timestamp,x,y,floor,uid}, optionally preceded by the header of the datasets
+ * which may reorder the columns.
+ * <p>
+ * Sources are consumed until the calling thread is interrupted, or until the server socket is closed, while the
+ * statistics of the detector are logged every {@code stream.reportSeconds}.
+ */
+@Component
+public class StreamingService {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamingService.class);
+
+    /**
+     * Millis to wait for a followed file to grow once its end has been reached
+     */
+    @Value("${stream.pollMillis:20}")
+    private long pollMillis = 20;
+
+    /**
+     * Seconds between two reports of the statistics of the detector, 0 to not report
+     */
+    @Value("${stream.reportSeconds:10}")
+    private int reportSeconds = 10;
+
+    /**
+     * Follow a file, offering every line appended to it to the detector, until the calling thread is interrupted.
+     *
+     * @param file     Fully qualified path of the file to follow
+     * @param detector Detector receiving the coordinates
+     * @return number of coordinates read
+     */
+    public long tail(Path file, StreamingIntersectionDetector detector) throws IOException {
+        LOGGER.info("Following " + file);
+        ScheduledExecutorService reporter = report(detector);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return consume(reader, true, detector);
+        } finally {
+            reporter.shutdownNow();
+            LOGGER.info(detector.statistics());
+        }
+    }
+
+    /**
+     * Listen on a local port, offering the lines of every connection to the detector. Connections are served
+     * concurrently, each by a thread of its own.
+     *
+     * @param port     Port to listen on, bound to the loopback address
+     * @param detector Detector receiving the coordinates
+     */
+    public void listen(int port, StreamingIntersectionDetector detector) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            listen(server, detector);
+        }
+    }
+
+    /**
+     * Same as {@link #listen(int, StreamingIntersectionDetector)} on an already bound socket. Returns once the socket
+     * is closed or the calling thread is interrupted.
+     *
+     * @param server   Bound server socket
+     * @param detector Detector receiving the coordinates
+     */
+    public void listen(ServerSocket server, StreamingIntersectionDetector detector) throws IOException {
+        LOGGER.info("Listening on " + server.getLocalSocketAddress());
+        ScheduledExecutorService reporter = report(detector);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketException e) {
+                    // Closed
+                    break;
+                }
+
+                Thread connection = new Thread(() -> {
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                        long read = consume(reader, false, detector);
+                        LOGGER.info(read + " coordinates read from " + socket.getRemoteSocketAddress());
+                    } catch (IOException e) {
+                        LOGGER.warn("Connection from " + socket.getRemoteSocketAddress() + " failed", e);
+                    }
+                }, "stream-" + socket.getRemoteSocketAddress());
+                connection.setDaemon(true);
+                connection.start();
+            }
+        } finally {
+            reporter.shutdownNow();
+            LOGGER.info(detector.statistics());
+        }
+    }
+
+    /**
+     * Offer every line of the reader to the detector.
+     *
+     * @param reader   Lines of coordinates
+     * @param follow   Whether to wait for more lines once the end is reached, until interrupted
+     * @param detector Detector receiving the coordinates
+     * @return number of coordinates read
+     */
+    long consume(Reader reader, boolean follow, StreamingIntersectionDetector detector) throws IOException {
+        // Column of timestamp, x, y, floor and uid
+        int[] columns = {0, 1, 2, 3, 4};
+        char[] buffer = new char[8192];
+        // A followed file may be read while a line is half written, which is completed by the following reads
+        StringBuilder pending = new StringBuilder();
+        long read = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            int length = reader.read(buffer);
+            if (length < 0) {
+                if (!follow) break;
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                continue;
+            }
+            long arrival = System.nanoTime();
+
+            pending.append(buffer, 0, length);
+            int from = 0;
+            for (int newline = pending.indexOf("\n"); newline >= 0; newline = pending.indexOf("\n", from)) {
+                String line = pending.substring(from, newline).trim();
+                from = newline + 1;
+                if (line.isEmpty()) continue;
+
+                String[] values = line.split(",", -1);
+                if (Arrays.asList(values).contains(Headers.UID.toString())) {
+                    columns = header(values);
+                } else if (offer(values, columns, arrival, detector)) {
+                    read++;
+                }
+            }
+            pending.delete(0, from);
+        }
+
+        String last = pending.toString().trim();
+        if (!follow && !last.isEmpty() && offer(last.split(",", -1), columns, System.nanoTime(), detector)) read++;
+        return read;
+    }
+
+    private static boolean offer(String[] values, int[] columns, long arrival, StreamingIntersectionDetector detector) {
+        try {
+            detector.offer(new EnhancedCoordinate(values[columns[4]].trim(),
+                    ZonedDateTime.parse(values[columns[0]].trim()),
+                    Double.parseDouble(values[columns[1]]),
+                    Double.parseDouble(values[columns[2]]),
+                    Integer.parseInt(values[columns[3]].trim())), arrival);
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Skipping malformed coordinate: " + String.join(",", values));
+            return false;
+        }
+    }
+
+    private static int[] header(String[] values) {
+        Headers[] headers = {Headers.TIMESTAMP, Headers.X_COORDINATE, Headers.Y_COORDINATE, Headers.FLOOR, Headers.UID};
+        int[] columns = new int[headers.length];
+        for (int h = 0; h < headers.length; h++) {
+            columns[h] = Arrays.asList(values).indexOf(headers[h].toString());
+            if (columns[h] < 0) throw new IllegalArgumentException("Missing column " + headers[h] + " in " + Arrays.toString(values));
+        }
+        return columns;
+    }
+
+    private ScheduledExecutorService report(StreamingIntersectionDetector detector) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stream-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (reportSeconds > 0) {
+            reporter.scheduleAtFixedRate(() -> LOGGER.info(detector.statistics()), reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        }
+        return reporter;
+    }
+}
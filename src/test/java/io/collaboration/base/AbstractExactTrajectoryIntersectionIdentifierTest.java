@@ -0,0 +1,212 @@
+package io.collaboration.base;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.service.AbstractTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.net.URL;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static io.collaboration.base.RandomTrajectories.walk;
+
+/**
+ * Test suite shared by the identifiers which find a meeting whenever one exists, asserting that they agree with
+ * {@link BruteTrajectoryIntersectionIdentifier} on the test data and on random walks. Identifiers reporting the
+ * earliest intersection must return the very same one as brute force, the rest any valid one.
+ */
+public abstract class AbstractExactTrajectoryIntersectionIdentifierTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    protected BruteTrajectoryIntersectionIdentifier brute;
+
+    /**
+     * @return the identifier under test
+     */
+    protected abstract AbstractTrajectoryIntersectionIdentifier identifier();
+
+    @Test
+    public void testIntersecting() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = identifier().identify(data.get("de0a13a8"),
+                data.get("2f442867"),
+                3.7,
+                30);
+
+        Assert.assertTrue(intersection.isPresent());
+
+        Intersection result = intersection.get();
+        Assert.assertTrue(result.getEuclideanDistance() <= 3.7);
+        Assert.assertTrue(Math.abs(ChronoUnit.SECONDS.between(result.getPointOne().getTimestamp(), result.getPointTwo().getTimestamp())) <= 30);
+        Assert.assertEquals(result.getPointOne().getFloor(), result.getPointTwo().getFloor());
+    }
+
+    @Test
+    public void testAgreesWithBrute() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.getPath());
+        Trajectory one = store.get("de0a13a8");
+        Trajectory two = store.get("2f442867");
+
+        for (double spatialEpsilon = 0.5; spatialEpsilon < 10; spatialEpsilon += 0.5) {
+            for (int temporalEpsilon = 0; temporalEpsilon <= 60; temporalEpsilon += 10) {
+                assertAgreesWithBrute(one, two, spatialEpsilon, temporalEpsilon);
+            }
+        }
+    }
+
+    /**
+     * Random walks crossing the axes on four floors, with epsilons both smaller and larger than the distance walked
+     * between two samples. Every other pair has its coordinates snapped to a lattice of half a metre, so that many
+     * samples lie exactly on the boundaries of cells as wide as the epsilons and many pairs lie exactly spatialEpsilon
+     * apart.
+     */
+    @Test
+    public void testAgreesWithBruteOnRandomWalks() throws Exception {
+        Random random = new Random(17);
+        int meeting = 0;
+        int missing = 0;
+        for (int query = 0; query < 12; query++) {
+            double lattice = query % 2 == 0 ? 0.5 : 0;
+            Trajectory one = spread(walk("one", 1000, 1000, 60, random), lattice);
+            Trajectory two = spread(walk("two", 1000, 1000, 60, random), lattice);
+
+            for (double spatialEpsilon : new double[]{0.5, 1, 2.5, 6}) {
+                for (int temporalEpsilon : new int[]{0, 5, 30}) {
+                    if (assertAgreesWithBrute(one, two, spatialEpsilon, temporalEpsilon)) meeting++;
+                    else missing++;
+                }
+            }
+        }
+
+        // Both outcomes must be covered for the comparison to be of any use
+        Assert.assertTrue(meeting > 0);
+        Assert.assertTrue(missing > 0);
+    }
+
+    @Test
+    public void testIntersectingOnTrajectoryStore() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.getPath());
+
+        Optional<Intersection> intersection = identifier().identify(store.get("de0a13a8"),
+                store.get("2f442867"),
+                3.7,
+                30);
+
+        Assert.assertTrue(intersection.isPresent());
+        Assert.assertEquals(identifier().identify(data.get("de0a13a8"), data.get("2f442867"), 3.7, 30), intersection);
+        Assert.assertFalse(identifier().identify(store.get("de0a13a8"), store.get("unknown"), 3.7, 30).isPresent());
+    }
+
+    @Test
+    public void testNonIntersecting() throws Exception {
+
+        URL csv = this.getClass().getResource("/non-intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = identifier().identify(data.get("287279d1"),
+                data.get("8f719572"),
+                3.4,
+                30);
+
+        Assert.assertFalse(intersection.isPresent());
+    }
+
+    @Test
+    public void testDifferentFloors() throws Exception {
+
+        URL csv = this.getClass().getResource("/different-floors.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = identifier().identify(data.get("de0a13a8"),
+                data.get("2f442867"),
+                3.4,
+                30);
+
+        Assert.assertFalse(intersection.isPresent());
+    }
+
+    @Test
+    public void testSameUID() throws Exception {
+        URL csv = this.getClass().getResource("/different-floors.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = identifier().identify(data.get("2f442867"),
+                data.get("2f442867"),
+                3.4,
+                30);
+
+        Assert.assertFalse(intersection.isPresent());
+    }
+
+    /**
+     * Assert that the identifier under test finds a meeting of the pair exactly when brute force does, and that the
+     * meeting it reports satisfies the criteria.
+     *
+     * @return whether the pair meets
+     */
+    private boolean assertAgreesWithBrute(Trajectory one, Trajectory two, double spatialEpsilon, int temporalEpsilon) {
+        String query = "spatialEpsilon " + spatialEpsilon + ", temporalEpsilon " + temporalEpsilon;
+        Optional<Intersection> expected = brute.identify(one, two, spatialEpsilon, temporalEpsilon);
+        Optional<Intersection> intersection = identifier().identify(one, two, spatialEpsilon, temporalEpsilon);
+
+        if (identifier().isEarliest()) {
+            Assert.assertEquals(query, expected, intersection);
+            return expected.isPresent();
+        }
+
+        Assert.assertEquals(query, expected.isPresent(), intersection.isPresent());
+        if (!intersection.isPresent()) return false;
+
+        Intersection result = intersection.get();
+        Assert.assertEquals(query, one.getUid(), result.getPointOne().getUid());
+        Assert.assertEquals(query, two.getUid(), result.getPointTwo().getUid());
+        Assert.assertTrue(query, result.getEuclideanDistance() <= spatialEpsilon);
+        Assert.assertTrue(query, Math.abs(TemporalDistance.toEpochMillis(result.getPointOne().getTimestamp())
+                - TemporalDistance.toEpochMillis(result.getPointTwo().getTimestamp()))
+                <= TemporalDistance.getMaxIntervalMillis(temporalEpsilon));
+        Assert.assertEquals(query, result.getPointOne().getFloor(), result.getPointTwo().getFloor());
+        return true;
+    }
+
+    /**
+     * Move a walk of {@link RandomTrajectories} around the origin and spread it over floors -1 to 2.
+     *
+     * @param lattice Spacing of the lattice to snap the coordinates to, 0 to keep them as they are
+     */
+    private static Trajectory spread(Trajectory walk, double lattice) {
+        double[] xs = new double[walk.size()];
+        double[] ys = new double[walk.size()];
+        short[] floors = new short[walk.size()];
+        for (int k = 0; k < walk.size(); k++) {
+            xs[k] = walk.getXs()[k] - 30;
+            ys[k] = walk.getYs()[k] - 30;
+            if (lattice > 0) {
+                xs[k] = Math.round(xs[k] / lattice) * lattice;
+                ys[k] = Math.round(ys[k] / lattice) * lattice;
+            }
+            floors[k] = (short) (walk.getFloors()[k] + 2 * (k / 500 % 2) - 1);
+        }
+        return Trajectory.of(walk.getUid(), -1, walk.getTimestamps(), xs, ys, floors);
+    }
+}
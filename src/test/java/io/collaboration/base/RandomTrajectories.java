@@ -0,0 +1,91 @@
+package io.collaboration.base;
+
+import io.collaboration.api.Trajectory;
+
+import java.util.Random;
+
+/**
+ * Random trajectories shared by the test suites comparing identifiers against each other.
+ */
+public final class RandomTrajectories {
+
+    /**
+     * Epoch millis of the first sample of every trajectory
+     */
+    public static final long START = 1_500_000_000_000L;
+
+    private RandomTrajectories() {
+    }
+
+    /**
+     * Samples of a UID wandering around a square area and two floors
+     *
+     * @param size   Number of samples
+     * @param millis Mean interval between samples
+     * @param side   Side of the area in metres
+     */
+    public static Trajectory walk(String uid, int size, int millis, double side, Random random) {
+        long[] times = new long[size];
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        short[] floors = new short[size];
+        long time = START;
+        double x = side * random.nextDouble();
+        double y = side * random.nextDouble();
+        short floor = 0;
+        for (int k = 0; k < size; k++) {
+            if (random.nextInt(100) == 0) floor = (short) (1 - floor);
+            time += 1 + random.nextInt(2 * millis);
+            x = Math.max(0, Math.min(side, x + random.nextGaussian()));
+            y = Math.max(0, Math.min(side, y + random.nextGaussian()));
+            times[k] = time;
+            xs[k] = Math.round(x * 100) / 100.0;
+            ys[k] = Math.round(y * 100) / 100.0;
+            floors[k] = floor;
+        }
+        return Trajectory.of(uid, -1, times, xs, ys, floors);
+    }
+
+    /**
+     * Samples every few seconds of a UID moving between spots of the building and sitting at each of them for minutes
+     *
+     * @param size          Number of samples
+     * @param offsetSeconds Delay of the first sample after {@link #START}
+     * @param desks         Number of desks shared by all UIDs, two per floor, to sit at. 0 to sit anywhere within a
+     *                      20 metres wide area of two floors.
+     * @param jitter        Standard deviation in metres of the noise of the badge, 0 to log every stay at the exact
+     *                      same position
+     */
+    public static Trajectory sitting(String uid, int size, long offsetSeconds, int desks, double jitter, Random random) {
+        long[] times = new long[size];
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        short[] floors = new short[size];
+        long time = START + offsetSeconds * 1000;
+        double x = 0;
+        double y = 0;
+        short floor = 0;
+        int stay = 0;
+        for (int k = 0; k < size; k++) {
+            if (stay-- == 0) {
+                if (desks > 0) {
+                    int desk = random.nextInt(desks);
+                    x = 5 + 6 * desk;
+                    y = 5 + 3 * (desk % 2);
+                    floor = (short) (desk / 2);
+                } else {
+                    x = 20 * random.nextDouble();
+                    y = 20 * random.nextDouble();
+                    floor = (short) random.nextInt(2);
+                }
+                stay = 50 + random.nextInt(250);
+            }
+            time += 1000 + random.nextInt(3000);
+            times[k] = time;
+            xs[k] = jitter == 0 ? x : x + jitter * random.nextGaussian();
+            ys[k] = jitter == 0 ? y : y + jitter * random.nextGaussian();
+            floors[k] = floor;
+        }
+        return Trajectory.of(uid, -1, times, xs, ys, floors);
+    }
+}
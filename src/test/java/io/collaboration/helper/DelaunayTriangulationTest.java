@@ -0,0 +1,195 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.GabrielDelaunayTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Asserting that {@link DelaunayTriangulation} satisfies the Delaunay condition and that its Gabriel edges are exactly
+ * the pairs of points whose diametral disk holds no other point.
+ */
+public class DelaunayTriangulationTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private GabrielDelaunayTrajectoryIntersectionIdentifier gabriel;
+
+    @Autowired
+    private BruteTrajectoryIntersectionIdentifier brute;
+
+    @Test
+    public void testDelaunayCondition() {
+        Random random = new Random(7);
+        for (int n : new int[]{3, 4, 10, 100, 400}) {
+            double[] xs = random.doubles(n, 0, 50).toArray();
+            double[] ys = random.doubles(n, 0, 50).toArray();
+            DelaunayTriangulation triangulation = DelaunayTriangulation.of(xs, ys);
+
+            // Euler's formula for a triangulated point set with h points on its hull
+            int hull = triangulation.getHull().length;
+            Assert.assertEquals(2 * n - 2 - hull, triangulation.triangles());
+            Assert.assertEquals(3 * n - 3 - hull, triangulation.edges());
+
+            int[] triangles = triangulation.getTriangles();
+            for (int t = 0; t < triangles.length; t += 3) {
+                int a = triangles[t];
+                int b = triangles[t + 1];
+                int c = triangles[t + 2];
+                // Clockwise
+                Assert.assertTrue((xs[b] - xs[a]) * (ys[c] - ys[a]) - (ys[b] - ys[a]) * (xs[c] - xs[a]) < 0);
+                for (int p = 0; p < n; p++) {
+                    if (p == a || p == b || p == c) continue;
+                    Assert.assertFalse(inCircumcircle(xs, ys, a, b, c, p));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGabrielEdges() {
+        Random random = new Random(11);
+        for (int n : new int[]{3, 5, 50, 300}) {
+            double[] xs = random.doubles(n, 0, 50).toArray();
+            double[] ys = random.doubles(n, 0, 50).toArray();
+            Assert.assertEquals(bruteGabriel(xs, ys), edges(DelaunayTriangulation.of(xs, ys).gabrielEdges()));
+        }
+
+        // Every square of a lattice is cocircular, neither of its diagonals is a Gabriel edge
+        double[] xs = new double[100];
+        double[] ys = new double[100];
+        for (int i = 0; i < 100; i++) {
+            xs[i] = i % 10;
+            ys[i] = i / 10;
+        }
+        Set<Long> lattice = edges(DelaunayTriangulation.of(xs, ys).gabrielEdges());
+        Assert.assertEquals(bruteGabriel(xs, ys), lattice);
+        Assert.assertEquals(2 * 10 * 9, lattice.size());
+    }
+
+    @Test
+    public void testDegenerateInput() {
+        // Duplicates are left out of the triangulation
+        double[] xs = {0, 1, 0, 1, 0, 0.5};
+        double[] ys = {0, 0, 1, 1, 0, 0.5};
+        DelaunayTriangulation triangulation = DelaunayTriangulation.of(xs, ys);
+        Assert.assertEquals(4, triangulation.triangles());
+        // Either of the duplicates may be kept, the centre is joined to all four corners
+        int[] gabrielEdges = triangulation.gabrielEdges();
+        Assert.assertEquals(8, gabrielEdges.length);
+        for (int e = 0; e < gabrielEdges.length; e += 2) {
+            Assert.assertTrue(gabrielEdges[e] == 5 || gabrielEdges[e + 1] == 5);
+        }
+
+        // Collinear points are joined to their neighbours along the line
+        xs = new double[]{3, 0, 2, 1};
+        ys = new double[]{6, 0, 4, 2};
+        triangulation = DelaunayTriangulation.of(xs, ys);
+        Assert.assertEquals(0, triangulation.triangles());
+        Assert.assertArrayEquals(new int[]{1, 3, 2, 0}, triangulation.getHull());
+        Set<Long> expected = new HashSet<>();
+        expected.add(edge(1, 3));
+        expected.add(edge(3, 2));
+        expected.add(edge(2, 0));
+        Assert.assertEquals(expected, edges(triangulation.gabrielEdges()));
+
+        Assert.assertEquals(0, DelaunayTriangulation.of(new double[0], new double[0]).gabrielEdges().length);
+        Assert.assertEquals(0, DelaunayTriangulation.of(new double[]{1}, new double[]{1}).gabrielEdges().length);
+        Assert.assertArrayEquals(new int[]{0, 1},
+                DelaunayTriangulation.of(new double[]{1, 2}, new double[]{1, 2}).gabrielEdges());
+        Assert.assertEquals(0,
+                DelaunayTriangulation.of(new double[]{1, 1, 1}, new double[]{2, 2, 2}).gabrielEdges().length);
+    }
+
+    @Test
+    public void testLargeInput() {
+        Random random = new Random(13);
+        int n = 200_000;
+        // Rounded to the centimetre as the recorded coordinates are, which makes for many duplicates and cocircular
+        // points
+        double[] xs = random.doubles(n, 0, 100).map(x -> Math.round(x * 100) / 100.0).toArray();
+        double[] ys = random.doubles(n, 0, 100).map(y -> Math.round(y * 100) / 100.0).toArray();
+        DelaunayTriangulation triangulation = DelaunayTriangulation.of(xs, ys);
+
+        Set<Long> distinct = new HashSet<>();
+        for (int i = 0; i < n; i++) distinct.add(Math.round(xs[i] * 100) * 100_000 + Math.round(ys[i] * 100));
+        Assert.assertEquals(2 * distinct.size() - 2 - triangulation.getHull().length, triangulation.triangles());
+    }
+
+    @Test
+    public void testAgreesWithBrute() throws Exception {
+        Random random = new Random(17);
+        for (int query = 0; query < 20; query++) {
+            List<EnhancedCoordinate> one = walk("one", 300, random);
+            List<EnhancedCoordinate> two = walk("two", 300, random);
+            Assert.assertEquals(brute.identify(one, two, 1.0, 30).isPresent(),
+                    gabriel.identify(one, two, 1.0, 30).isPresent());
+        }
+    }
+
+    private static List<EnhancedCoordinate> walk(String uid, int size, Random random) {
+        List<EnhancedCoordinate> walk = new ArrayList<>(size);
+        ZonedDateTime time = ZonedDateTime.of(2017, 11, 1, 9, 0, 0, 0, ZoneOffset.UTC);
+        double x = 40 * random.nextDouble();
+        double y = 40 * random.nextDouble();
+        for (int k = 0; k < size; k++) {
+            x = Math.max(0, Math.min(40, x + random.nextGaussian()));
+            y = Math.max(0, Math.min(40, y + random.nextGaussian()));
+            walk.add(new EnhancedCoordinate(uid, time.plusSeconds(k), Math.round(x * 10) / 10.0,
+                    Math.round(y * 10) / 10.0, 0));
+        }
+        return walk;
+    }
+
+    /**
+     * Pairs of points whose closed diametral disk holds no other point, straight from the definition
+     */
+    private static Set<Long> bruteGabriel(double[] xs, double[] ys) {
+        Set<Long> edges = new HashSet<>();
+        for (int a = 0; a < xs.length; a++) {
+            for (int b = a + 1; b < xs.length; b++) {
+                boolean empty = true;
+                for (int c = 0; c < xs.length && empty; c++) {
+                    if (c == a || c == b) continue;
+                    empty = (xs[a] - xs[c]) * (xs[b] - xs[c]) + (ys[a] - ys[c]) * (ys[b] - ys[c]) > 0;
+                }
+                if (empty) edges.add(edge(a, b));
+            }
+        }
+        return edges;
+    }
+
+    private static boolean inCircumcircle(double[] xs, double[] ys, int a, int b, int c, int p) {
+        double dx = xs[a] - xs[p];
+        double dy = ys[a] - ys[p];
+        double ex = xs[b] - xs[p];
+        double ey = ys[b] - ys[p];
+        double fx = xs[c] - xs[p];
+        double fy = ys[c] - ys[p];
+        double ap = dx * dx + dy * dy;
+        double bp = ex * ex + ey * ey;
+        double cp = fx * fx + fy * fy;
+        // Clockwise triangle, negative determinant inside, with some slack for rounding
+        return dx * (ey * cp - bp * fy) - dy * (ex * cp - bp * fx) + ap * (ex * fy - ey * fx) < -1e-9;
+    }
+
+    private static Set<Long> edges(int[] pairs) {
+        Set<Long> edges = new HashSet<>();
+        for (int e = 0; e < pairs.length; e += 2) Assert.assertTrue(edges.add(edge(pairs[e], pairs[e + 1])));
+        return edges;
+    }
+
+    private static long edge(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+}
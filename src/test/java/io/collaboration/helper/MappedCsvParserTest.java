@@ -0,0 +1,104 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+/**
+ * Asserting that {@link MappedCsvParser} loads exactly what the commons-csv based loader does.
+ */
+public class MappedCsvParserTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Test
+    public void testSameAsCommonsCsv() throws Exception {
+        for (String resource : new String[]{"/intersecting.csv", "/non-intersecting.csv", "/different-floors.csv"}) {
+            URL csv = this.getClass().getResource(resource);
+
+            TrajectoryStore expected = TrajectoryStore.of(dataLoader.load(csv.getPath()));
+
+            for (int chunks : new int[]{1, 3, 16}) {
+                Optional<TrajectoryStore> actual = MappedCsvParser.parse(Paths.get(csv.toURI()), chunks);
+                Assert.assertTrue(actual.isPresent());
+                assertSameStore(expected, actual.get());
+            }
+        }
+    }
+
+    @Test
+    public void testFallbackFields() throws Exception {
+        Path csv = write("timestamp,x,y,floor,uid\r\n"
+                + "2016-02-29T23:59:59.999Z,-1.5,0.1,-2,a\r\n"
+                + "2014-07-20T07:49:20.256+02:00,1e3,12345678901234567890.5,1,b\r\n"
+                + "\r\n"
+                + "2014-07-20T07:49:20Z,+0.000000000000000000000001,-0.0,0,a");
+
+        TrajectoryStore store = MappedCsvParser.parse(csv, 2).get();
+
+        Trajectory a = store.get("a");
+        Assert.assertEquals(2, a.size());
+        Assert.assertEquals(TemporalDistance.toEpochMillis(ZonedDateTime.parse("2014-07-20T07:49:20Z")), a.getTimestamps()[0]);
+        Assert.assertEquals(TemporalDistance.toEpochMillis(ZonedDateTime.parse("2016-02-29T23:59:59.999Z")), a.getTimestamps()[1]);
+        Assert.assertEquals(1e-24, a.getXs()[0], 0);
+        Assert.assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(a.getYs()[0]));
+        Assert.assertEquals(-2, a.getFloors()[1]);
+
+        Trajectory b = store.get("b");
+        Assert.assertEquals(TemporalDistance.toEpochMillis(ZonedDateTime.parse("2014-07-20T07:49:20.256+02:00")), b.getTimestamps()[0]);
+        Assert.assertEquals(1000, b.getXs()[0], 0);
+        Assert.assertEquals(Double.parseDouble("12345678901234567890.5"), b.getYs()[0], 0);
+    }
+
+    @Test
+    public void testUnexpectedHeader() throws Exception {
+        Path csv = write("uid,timestamp,x,y,floor\n"
+                + "a,2014-07-20T07:49:20.256Z,1,2,3\n");
+
+        Assert.assertFalse(MappedCsvParser.parse(csv, 1).isPresent());
+
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.toString());
+        Assert.assertEquals(1, store.get("a").size());
+    }
+
+    @Test
+    public void testQuotedFields() throws Exception {
+        Path csv = write("timestamp,x,y,floor,uid\n"
+                + "2014-07-20T07:49:20.256Z,1,2,3,a\n"
+                + "2014-07-20T07:49:21.256Z,\"1.5\",2,3,\"b,\"\"c\"\"\"\n");
+
+        Assert.assertFalse(MappedCsvParser.parse(csv, 1).isPresent());
+
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.toString());
+        Assert.assertEquals(1, store.get("a").size());
+        Assert.assertEquals(1.5, store.get("b,\"c\"").getXs()[0], 0);
+    }
+
+    private static void assertSameStore(TrajectoryStore expected, TrajectoryStore actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (String uid : expected.getUids()) {
+            Trajectory one = expected.get(uid);
+            Trajectory two = actual.get(uid);
+            Assert.assertNotNull(two);
+            Assert.assertArrayEquals(one.getTimestamps(), two.getTimestamps());
+            Assert.assertArrayEquals(one.getXs(), two.getXs(), 0);
+            Assert.assertArrayEquals(one.getYs(), two.getYs(), 0);
+            Assert.assertArrayEquals(one.getFloors(), two.getFloors());
+        }
+    }
+
+    private static Path write(String content) throws Exception {
+        File file = File.createTempFile("mapped", ".csv");
+        file.deleteOnExit();
+        return Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,123 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Trajectory;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.GabrielDelaunayTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.AnnotationMBeanExporter;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Asserting that {@link Metrics} records the phases of loading and querying once enabled, and nothing otherwise.
+ */
+public class MetricsTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private Metrics metrics;
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Autowired
+    private GabrielDelaunayTrajectoryIntersectionIdentifier gabriel;
+
+    @Before
+    public void enable() {
+        metrics.reset();
+        metrics.setEnabled(true);
+    }
+
+    @After
+    public void disable() {
+        metrics.setEnabled(false);
+        metrics.reset();
+    }
+
+    @Test
+    public void testDisabled() {
+        Metrics disabled = new Metrics();
+        long start = disabled.start();
+        disabled.stop("phase", start);
+        disabled.add("counter", 1);
+
+        Assert.assertEquals(0, start);
+        Assert.assertEquals(0, disabled.getTimings("phase"));
+        Assert.assertEquals(0, disabled.getCount("counter"));
+    }
+
+    @Test
+    public void testLoadAndQuery() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Assert.assertEquals(1, metrics.getTimings("load.parse"));
+        Assert.assertEquals(1, metrics.getTimings("load.group"));
+        Assert.assertEquals(data.values().stream().mapToLong(List::size).sum(), metrics.getCount("load.rows"));
+        Assert.assertEquals(new File(csv.getPath()).length(), metrics.getCount("load.bytes"));
+
+        Trajectory one = Trajectory.of(data.get("de0a13a8"));
+        Trajectory two = Trajectory.of(data.get("2f442867"));
+        Assert.assertTrue(sweep.identify(one, two, 3.7, 30).isPresent());
+        Assert.assertTrue(gabriel.identify(data.get("de0a13a8"), data.get("2f442867"), 3.7, 30).isPresent());
+
+        Assert.assertEquals(2, metrics.getTimings("validate"));
+        Assert.assertEquals(1, metrics.getTimings("sweep.scan"));
+        long candidates = metrics.getCount("sweep.candidates");
+        Assert.assertTrue(candidates > 0);
+        Assert.assertTrue(metrics.getCount("sweep.distances") <= candidates);
+        Assert.assertEquals(candidates - 1, metrics.getCount("sweep.pruned"));
+
+        Assert.assertTrue(metrics.getTimings("gabriel.delaunay") > 0);
+        Assert.assertTrue(metrics.getCount("gabriel.edges.gabriel") <= metrics.getCount("gabriel.edges.delaunay"));
+        // The only meeting of the pair is not a Gabriel edge
+        Assert.assertTrue(metrics.getCount("gabriel.edges.fallback") > 0);
+        Assert.assertTrue(metrics.getCount("gabriel.edges.fallback")
+                <= metrics.getCount("gabriel.edges.delaunay") - metrics.getCount("gabriel.edges.gabriel"));
+        Assert.assertTrue(metrics.getCount("gabriel.candidates") > 0);
+
+        String dump = metrics.dump();
+        Assert.assertTrue(dump.contains("sweep.scan"));
+        Assert.assertTrue(dump.contains("load.rows"));
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        // Exported the way the JMX auto configuration exports it, into a server of its own
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        AnnotationMBeanExporter exporter = new AnnotationMBeanExporter();
+        exporter.setServer(server);
+        exporter.setAutodetect(false);
+        exporter.setBeans(Collections.singletonMap("metrics", metrics));
+        exporter.afterPropertiesSet();
+        exporter.afterSingletonsInstantiated();
+        try {
+            ObjectName name = new ObjectName("io.collaboration:type=Metrics");
+            Assert.assertTrue(server.isRegistered(name));
+            Assert.assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+
+            metrics.add("counter", 3);
+            Assert.assertEquals(3L, server.invoke(name, "getCount", new Object[]{"counter"}, new String[]{String.class.getName()}));
+            Assert.assertTrue(((String) server.invoke(name, "dump", null, null)).contains("counter"));
+
+            server.setAttribute(name, new Attribute("Enabled", false));
+            Assert.assertFalse(metrics.isEnabled());
+        } finally {
+            exporter.destroy();
+        }
+    }
+}
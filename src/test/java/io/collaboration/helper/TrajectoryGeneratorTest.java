@@ -0,0 +1,103 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.GeneratorProperties;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.join.SpatioTemporalJoin;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Asserting that {@link TrajectoryGenerator} writes deterministic, well formed datasets.
+ */
+public class TrajectoryGeneratorTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private TrajectoryGenerator generator;
+
+    @Autowired
+    private SpatioTemporalJoin join;
+
+    @Test
+    public void testDeterministic() throws Exception {
+        GeneratorProperties properties = GeneratorProperties.of("rows=20000", "uids=20", "seed=7");
+
+        Path one = temporary();
+        Path two = temporary();
+        Assert.assertEquals(20000, generator.generate(properties, one));
+        Assert.assertEquals(20000, generator.generate(properties, two));
+        Assert.assertTrue(Arrays.equals(Files.readAllBytes(one), Files.readAllBytes(two)));
+
+        Path other = temporary();
+        generator.generate(GeneratorProperties.of("rows=20000", "uids=20", "seed=8"), other);
+        Assert.assertFalse(Arrays.equals(Files.readAllBytes(one), Files.readAllBytes(other)));
+    }
+
+    @Test
+    public void testWellFormed() throws Exception {
+        GeneratorProperties properties = GeneratorProperties.of("rows=50000", "uids=50", "floors=3",
+                "width=100", "height=60", "samplingSeconds=2");
+
+        Path csv = temporary();
+        generator.generate(properties, csv);
+
+        TrajectoryStore store = MappedCsvParser.parse(csv).get();
+        Assert.assertEquals(50, store.size());
+        Assert.assertEquals(50000, store.samples());
+
+        // The mapped parser agrees with the commons-csv based loader
+        Assert.assertEquals(50000, dataLoader.load(csv.toString()).values().stream().mapToInt(l -> l.size()).sum());
+
+        long start = properties.getStart().toInstant().toEpochMilli();
+        for (String uid : store.getUids()) {
+            Trajectory trajectory = store.get(uid);
+            Assert.assertTrue(trajectory.size() > 0);
+            for (int i = 0; i < trajectory.size(); i++) {
+                Assert.assertTrue(trajectory.getTimestamps()[i] >= start);
+                Assert.assertTrue(trajectory.getXs()[i] >= 0 && trajectory.getXs()[i] <= 100);
+                Assert.assertTrue(trajectory.getYs()[i] >= 0 && trajectory.getYs()[i] <= 60);
+                Assert.assertTrue(trajectory.getFloors()[i] >= 1 && trajectory.getFloors()[i] <= 3);
+            }
+        }
+    }
+
+    @Test
+    public void testMeetingDensity() throws Exception {
+        // A large building where chance encounters are rare
+        String[] settings = {"rows=30000", "uids=30", "floors=10", "width=2000", "height=2000", "speed=5",
+                "dwellProbability=0"};
+
+        Path none = temporary();
+        generator.generate(GeneratorProperties.of(concat(settings, "meetingsPerHour=0")), none);
+        Path many = temporary();
+        generator.generate(GeneratorProperties.of(concat(settings, "meetingsPerHour=4")), many);
+
+        int chance = join.join(MappedCsvParser.parse(none).get(), 1.0, 5).size();
+        int planned = join.join(MappedCsvParser.parse(many).get(), 1.0, 5).size();
+        Assert.assertTrue(planned > chance + 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownSetting() {
+        GeneratorProperties.of("colour=blue");
+    }
+
+    private static String[] concat(String[] settings, String setting) {
+        String[] all = Arrays.copyOf(settings, settings.length + 1);
+        all[settings.length] = setting;
+        return all;
+    }
+
+    private static Path temporary() throws Exception {
+        File file = File.createTempFile("generated", ".csv");
+        file.deleteOnExit();
+        return file.toPath();
+    }
+}
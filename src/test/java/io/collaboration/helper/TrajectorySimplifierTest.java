@@ -0,0 +1,137 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.GeneratorProperties;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import io.collaboration.service.join.SpatioTemporalJoin;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Asserting that {@link TrajectorySimplifier} bounds the error of every dropped coordinate and that queries on
+ * simplified trajectories never miss a meeting.
+ */
+public class TrajectorySimplifierTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private TrajectoryGenerator generator;
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Autowired
+    private BruteTrajectoryIntersectionIdentifier brute;
+
+    @Autowired
+    private SpatioTemporalJoin join;
+
+    @Test
+    public void testErrorBounds() throws Exception {
+        TrajectoryStore store = generate();
+        TrajectoryStore simplified = store.map(t -> TrajectorySimplifier.simplify(t, 0.5, 30_000));
+
+        Assert.assertTrue(simplified.samples() * 2 < store.samples());
+
+        for (int id = 0; id < store.size(); id++) {
+            Trajectory recorded = store.get(id);
+            Trajectory kept = simplified.get(id);
+            Assert.assertEquals(recorded.getUid(), kept.getUid());
+            Assert.assertTrue(kept.getSpatialError() <= Math.nextUp(0.5));
+            Assert.assertTrue(kept.getTemporalError() <= 30_000);
+
+            // Every recorded coordinate is represented by the latest coordinate kept at or before it
+            int k = 0;
+            for (int i = 0; i < recorded.size(); i++) {
+                while (k + 1 < kept.size() && kept.getTimestamps()[k + 1] <= recorded.getTimestamps()[i]) k++;
+                Assert.assertEquals(recorded.getFloors()[i], kept.getFloors()[k]);
+                Assert.assertTrue(recorded.getTimestamps()[i] - kept.getTimestamps()[k] <= kept.getTemporalError());
+                Assert.assertTrue(Math.hypot(recorded.getXs()[i] - kept.getXs()[k],
+                        recorded.getYs()[i] - kept.getYs()[k]) <= kept.getSpatialError());
+            }
+        }
+    }
+
+    @Test
+    public void testNeverMissesMeetings() throws Exception {
+        TrajectoryStore store = generate();
+        TrajectoryStore simplified = store.map(t -> TrajectorySimplifier.simplify(t, 1.0, 20_000));
+
+        for (int one = 0; one < store.size(); one++) {
+            for (int two = one + 1; two < store.size(); two++) {
+                if (!sweep.identify(store.get(one), store.get(two), 2.0, 10).isPresent()) continue;
+
+                Assert.assertTrue(sweep.identify(simplified.get(one), simplified.get(two), 2.0, 10).isPresent());
+                Assert.assertTrue(brute.identify(simplified.get(one), simplified.get(two), 2.0, 10).isPresent());
+                Assert.assertTrue(sweep.episodes(simplified.get(one), simplified.get(two), 2.0, 10).findAny().isPresent());
+            }
+        }
+
+        Set<String> recorded = join.join(store, 2.0, 10).stream().map(this::pair).collect(toSet());
+        Set<String> kept = join.join(simplified, 2.0, 10).stream().map(this::pair).collect(toSet());
+        Assert.assertFalse(recorded.isEmpty());
+        Assert.assertTrue(kept.containsAll(recorded));
+    }
+
+    @Test
+    public void testJoinWidensPerPair() throws Exception {
+        // Half of the UIDs simplified, the rest as recorded
+        TrajectoryStore store = generate().map(t -> (t.getUid().hashCode() & 1) == 0
+                ? TrajectorySimplifier.simplify(t, 1.0, 20_000)
+                : t);
+
+        Set<String> expected = new HashSet<>();
+        for (int one = 0; one < store.size(); one++) {
+            for (int two = one + 1; two < store.size(); two++) {
+                Optional<Intersection> intersection = sweep.identify(store.get(one), store.get(two), 2.0, 10);
+                intersection.ifPresent(i -> expected.add(pair(i)));
+            }
+        }
+
+        Set<String> joined = join.join(store, 2.0, 10).stream().map(this::pair).collect(toSet());
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, joined);
+    }
+
+    @Test
+    public void testUnsimplified() throws Exception {
+        TrajectoryStore store = generate();
+        Trajectory trajectory = store.get(0);
+
+        // Without any error allowed nothing is dropped and the epsilons stay as they are
+        Trajectory simplified = TrajectorySimplifier.simplify(trajectory, 0, 0);
+        Assert.assertEquals(trajectory.size(), simplified.size());
+        Assert.assertEquals(2.0, TrajectorySimplifier.widenSpatialEpsilon(simplified, simplified, 2.0), 0);
+        Assert.assertEquals(10, TrajectorySimplifier.widenTemporalEpsilon(simplified, simplified, 10));
+    }
+
+    /**
+     * Pair of UIDs of an intersection, the lexicographically smaller one first as the join reports it
+     */
+    private String pair(Intersection intersection) {
+        String one = intersection.getPointOne().getUid();
+        String two = intersection.getPointTwo().getUid();
+        return one.compareTo(two) < 0 ? one + "," + two : two + "," + one;
+    }
+
+    private TrajectoryStore generate() throws Exception {
+        File file = File.createTempFile("simplified", ".csv");
+        file.deleteOnExit();
+        Path csv = file.toPath();
+        generator.generate(GeneratorProperties.of("rows=40000", "uids=40", "floors=2", "width=60", "height=40",
+                "samplingSeconds=1", "seed=3"), csv);
+        return MappedCsvParser.parse(csv).get();
+    }
+}
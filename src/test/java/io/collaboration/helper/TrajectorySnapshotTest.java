@@ -0,0 +1,121 @@
+package io.collaboration.helper;
+
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Asserting that {@link TrajectorySnapshot} serves exactly the store it was written from, and only while it is up to
+ * date.
+ */
+@TestPropertySource(properties = "snapshot.enabled=true")
+public class TrajectorySnapshotTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path csv = copy("/intersecting.csv");
+
+        TrajectoryStore expected = MappedCsvParser.parse(csv).get();
+        TrajectorySnapshot.write(expected, csv);
+
+        Optional<TrajectoryStore> actual = TrajectorySnapshot.read(csv);
+        Assert.assertTrue(actual.isPresent());
+        Assert.assertEquals(expected.size(), actual.get().size());
+        Assert.assertEquals(expected.samples(), actual.get().samples());
+        for (int id = 0; id < expected.size(); id++) {
+            Trajectory one = expected.get(id);
+            Trajectory two = actual.get().get(expected.getUid(id));
+            Assert.assertEquals(id, actual.get().getId(one.getUid()));
+            Assert.assertArrayEquals(one.getTimestamps(), two.getTimestamps());
+            Assert.assertArrayEquals(one.getXs(), two.getXs(), 0);
+            Assert.assertArrayEquals(one.getYs(), two.getYs(), 0);
+            Assert.assertArrayEquals(one.getFloors(), two.getFloors());
+        }
+    }
+
+    @Test
+    public void testStaleSnapshot() throws Exception {
+        Path csv = copy("/non-intersecting.csv");
+
+        TrajectorySnapshot.write(MappedCsvParser.parse(csv).get(), csv);
+        Assert.assertTrue(TrajectorySnapshot.read(csv).isPresent());
+
+        Files.write(csv, "\n2014-07-20T07:49:20.256Z,1,2,3,appended\n".getBytes(), StandardOpenOption.APPEND);
+        Assert.assertFalse(TrajectorySnapshot.read(csv).isPresent());
+
+        // The loader rebuilds the snapshot out of the modified file
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.toString());
+        Assert.assertNotNull(store.get("appended"));
+        Assert.assertNotNull(TrajectorySnapshot.read(csv).get().get("appended"));
+    }
+
+    @Test
+    public void testCorruptedSnapshot() throws Exception {
+        Path csv = copy("/different-floors.csv");
+
+        // First byte of the first UID, right after the header and its length
+        TrajectorySnapshot.write(MappedCsvParser.parse(csv).get(), csv);
+        flip(TrajectorySnapshot.of(csv), 60);
+        Assert.assertFalse(TrajectorySnapshot.read(csv).isPresent());
+
+        // Last floor
+        TrajectorySnapshot.write(MappedCsvParser.parse(csv).get(), csv);
+        flip(TrajectorySnapshot.of(csv), Files.size(TrajectorySnapshot.of(csv)) - 1);
+        Assert.assertFalse(TrajectorySnapshot.read(csv).isPresent());
+
+        TrajectorySnapshot.write(MappedCsvParser.parse(csv).get(), csv);
+        Assert.assertTrue(TrajectorySnapshot.read(csv).isPresent());
+
+        try (RandomAccessFile snapshot = new RandomAccessFile(TrajectorySnapshot.of(csv).toFile(), "rw")) {
+            snapshot.setLength(snapshot.length() - 1);
+        }
+        Assert.assertFalse(TrajectorySnapshot.read(csv).isPresent());
+    }
+
+    @Test
+    public void testDirectory() throws Exception {
+        Path csv = copy("/intersecting.csv");
+        Path directory = Files.createTempDirectory("snapshots").resolve("cache");
+        directory.getParent().toFile().deleteOnExit();
+        directory.toFile().deleteOnExit();
+        TrajectorySnapshot.of(csv, directory).toFile().deleteOnExit();
+
+        TrajectoryStore expected = MappedCsvParser.parse(csv).get();
+        TrajectorySnapshot.write(expected, csv, directory);
+
+        Assert.assertEquals(directory, TrajectorySnapshot.of(csv, directory).getParent());
+        Assert.assertFalse(Files.exists(TrajectorySnapshot.of(csv)));
+        Assert.assertFalse(TrajectorySnapshot.read(csv).isPresent());
+        Assert.assertEquals(expected.samples(), TrajectorySnapshot.read(csv, directory).get().samples());
+    }
+
+    private static void flip(Path snapshot, long position) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+    }
+
+    private Path copy(String resource) throws Exception {
+        Path directory = Files.createTempDirectory("snapshot");
+        Path csv = directory.resolve(Paths.get(resource.substring(1)));
+        Files.copy(Paths.get(this.getClass().getResource(resource).toURI()), csv, StandardCopyOption.REPLACE_EXISTING);
+        directory.toFile().deleteOnExit();
+        csv.toFile().deleteOnExit();
+        TrajectorySnapshot.of(csv).toFile().deleteOnExit();
+        return csv;
+    }
+}
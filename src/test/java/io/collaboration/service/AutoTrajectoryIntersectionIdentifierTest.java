@@ -0,0 +1,168 @@
+package io.collaboration.service;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.factory.TrajectoryIntersectionIdentifierFactory;
+import io.collaboration.service.cost.CostModel;
+import io.collaboration.service.impl.AutoTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.net.URL;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static io.collaboration.base.RandomTrajectories.walk;
+
+/**
+ * Asserting appropriate behavior of {@link AutoTrajectoryIntersectionIdentifier} implementation and of the
+ * {@link CostModel} it picks identifiers by.
+ */
+public class AutoTrajectoryIntersectionIdentifierTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private TrajectoryIntersectionIdentifierFactory factory;
+
+    @Autowired
+    private AutoTrajectoryIntersectionIdentifier identifier;
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Autowired
+    private CostModel costModel;
+
+    @Test
+    public void testIntersecting() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = factory.getIdentifier("auto").identify(data.get("de0a13a8"),
+                data.get("2f442867"),
+                3.7,
+                30);
+
+        Assert.assertTrue(intersection.isPresent());
+
+        Intersection result = intersection.get();
+        Assert.assertTrue(result.getEuclideanDistance() <= 3.7);
+        Assert.assertTrue(Math.abs(ChronoUnit.SECONDS.between(result.getPointOne().getTimestamp(), result.getPointTwo().getTimestamp())) <= 30);
+        Assert.assertEquals(result.getPointOne().getFloor(), result.getPointTwo().getFloor());
+    }
+
+    @Test
+    public void testNonIntersecting() throws Exception {
+
+        URL csv = this.getClass().getResource("/non-intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = factory.getIdentifier("auto").identify(data.get("287279d1"),
+                data.get("8f719572"),
+                3.4,
+                30);
+
+        Assert.assertFalse(intersection.isPresent());
+    }
+
+    @Test
+    public void testAgreesWithSweep() {
+        Random random = new Random(3);
+        int found = 0;
+        for (int query = 0; query < 30; query++) {
+            Trajectory one = walk("one", 50 + random.nextInt(5000), 10 + random.nextInt(5000), 20 + random.nextInt(200), random);
+            Trajectory two = walk("two", 50 + random.nextInt(5000), 10 + random.nextInt(5000), 20 + random.nextInt(200), random);
+
+            Optional<Intersection> expected = sweep.identify(one, two, 2, 10);
+            // Ranked before the query, whose runtime refines the model. Exploring queries go to the runner-up.
+            List<String> ranking = costModel.rank(CostModel.features(one, two, 2, 10)).subList(0, 2);
+            Assert.assertEquals(ranking.get(0), identifier.choose(one, two, 2, 10).getName());
+            Optional<Intersection> intersection = identifier.identify(one, two, 2, 10);
+            Assert.assertEquals(expected.isPresent(), intersection.isPresent());
+            if (!intersection.isPresent()) continue;
+
+            found++;
+            Intersection result = intersection.get();
+            Assert.assertTrue(result.getEuclideanDistance() <= 2);
+            Assert.assertTrue(Math.abs(ChronoUnit.MILLIS.between(result.getPointOne().getTimestamp(), result.getPointTwo().getTimestamp())) <= 10_999);
+            Assert.assertEquals(result.getPointOne().getFloor(), result.getPointTwo().getFloor());
+            Assert.assertEquals("one", result.getPointOne().getUid());
+            // Every identifier but grid reports the earliest intersection
+            if (!ranking.contains("grid")) Assert.assertEquals(expected, intersection);
+        }
+        Assert.assertTrue(found > 0);
+    }
+
+    @Test
+    public void testChoosesCheapest() {
+        Random random = new Random(5);
+        CostModel model = new CostModel();
+
+        // Sparse in time, few pairs of samples within the temporal window
+        Trajectory one = walk("one", 2000, 10_000, 50, random);
+        Trajectory two = walk("two", 2000, 10_000, 50, random);
+        Assert.assertEquals("sweep", model.rank(CostModel.features(one, two, 1, 10)).get(0));
+
+        // Dense in time and spread over a large area, many pairs within the temporal window and few close in space
+        one = walk("one", 100_000, 200, 2000, random);
+        two = walk("two", 100_000, 200, 2000, random);
+        Assert.assertEquals("grid", model.rank(CostModel.features(one, two, 1, 10)).get(0));
+    }
+
+    @Test
+    public void testLearnsFromRuntimes() {
+        CostModel model = new CostModel(0.5);
+        CostModel.Features features = new CostModel.Features(2000, 2000, 20_000, 50);
+        Assert.assertEquals("sweep", model.rank(features).get(0));
+        Assert.assertEquals(1, model.getFactor("sweep"), 0);
+
+        // Sweep turning out ten times slower than estimated on this machine
+        double estimate = model.estimate("sweep", features);
+        for (int run = 0; run < 10; run++) model.observe("sweep", features, (long) (10 * estimate));
+        Assert.assertEquals(10, model.getFactor("sweep"), 0.1);
+        Assert.assertEquals(10 * estimate, model.estimate("sweep", features), estimate);
+        Assert.assertEquals("grid", model.rank(features).get(0));
+
+        // Identifiers which are not modelled are never picked
+        Assert.assertEquals(Double.POSITIVE_INFINITY, model.estimate("gabriel", features), 0);
+        model.observe("gabriel", features, 1);
+        Assert.assertFalse(model.identifiers().contains("gabriel"));
+    }
+
+    @Test
+    public void testExploresRunnerUp() {
+        CostModel.Features features = new CostModel.Features(2000, 2000, 20_000, 50);
+        CostModel baseline = new CostModel();
+        CostModel model = new CostModel(0.5, 4);
+        CostModel locked = new CostModel(0.5, 0);
+
+        // Sweep mis-seeded five times slower than it turns out on this machine
+        double estimate = model.estimate("sweep", features);
+        for (int run = 0; run < 10; run++) {
+            model.observe("sweep", features, (long) (5 * estimate));
+            locked.observe("sweep", features, (long) (5 * estimate));
+        }
+        Assert.assertEquals(Arrays.asList("grid", "sweep"), model.rank(features).subList(0, 2));
+
+        // Dispatching as the auto identifier does, every identifier answering as fast as its baseline
+        for (int query = 0; query < 40; query++) {
+            for (CostModel dispatching : new CostModel[]{model, locked}) {
+                String chosen = dispatching.rank(features).get(dispatching.explore() ? 1 : 0);
+                dispatching.observe(chosen, features, (long) baseline.estimate(chosen, features));
+            }
+        }
+        Assert.assertEquals("sweep", model.rank(features).get(0));
+        Assert.assertEquals(1, model.getFactor("sweep"), 0.1);
+        // Never observed again without exploring
+        Assert.assertEquals("grid", locked.rank(features).get(0));
+    }
+}
@@ -0,0 +1,130 @@
+package io.collaboration.service;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.factory.TrajectoryIntersectionIdentifierFactory;
+import io.collaboration.service.batch.BatchQueryExecutor;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Asserting that {@link BatchQueryExecutor} answers every query of a batch like the interactive shell would.
+ */
+public class BatchQueryExecutorTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    private static final String[] ALGORITHMS = {"brute", "gabriel", "sweep", "grid"};
+
+    @Autowired
+    private BatchQueryExecutor executor;
+
+    @Autowired
+    private TrajectoryIntersectionIdentifierFactory factory;
+
+    @Test
+    public void testMatchesSingleQueries() throws Exception {
+        TrajectoryStore store = store();
+
+        List<String> queries = new ArrayList<>();
+        queries.add("algorithm,spatialEpsilon,temporalEpsilon,uidOne,uidTwo");
+        for (int i = 0; i < 50; i++) {
+            for (String algorithm : ALGORITHMS) {
+                queries.add(algorithm + ",3.7,30,de0a13a8,2f442867");
+                queries.add(algorithm + ",1.0,5,2f442867,de0a13a8");
+                queries.add(algorithm + ",3.4,30,287279d1,8f719572");
+            }
+        }
+        Path output = temporary(".csv");
+
+        Assert.assertEquals(queries.size() - 1, executor.execute(store, write(queries), output));
+
+        try (CSVParser parser = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(Files.newBufferedReader(output))) {
+            List<CSVRecord> records = parser.getRecords();
+            Assert.assertEquals(queries.size() - 1, records.size());
+
+            for (int q = 0; q < records.size(); q++) {
+                CSVRecord record = records.get(q);
+                String[] query = queries.get(q + 1).split(",");
+
+                // Results are written in the order of the queries
+                Assert.assertEquals(String.valueOf(q + 1), record.get("query"));
+                Assert.assertEquals(query[3], record.get("uidOne"));
+                Assert.assertEquals("", record.get("error"));
+                Assert.assertTrue(Long.parseLong(record.get("latencyMicros")) >= 0);
+
+                // The intersection cache answers every algorithm with the earliest intersection, as brute does
+                Optional<Intersection> expected = factory.getIdentifier("brute").identify(store.get(query[3]),
+                        store.get(query[4]), Double.parseDouble(query[1]), Integer.parseInt(query[2]));
+                Assert.assertEquals(String.valueOf(expected.isPresent()), record.get("intersected"));
+                if (expected.isPresent()) {
+                    Assert.assertEquals(expected.get().getPointOne().getTimestamp().toString(), record.get("timestampOne"));
+                    Assert.assertEquals(expected.get().getPointTwo().getTimestamp().toString(), record.get("timestampTwo"));
+                    Assert.assertEquals(expected.get().getEuclideanDistance(), Double.parseDouble(record.get("distance")), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNdjsonAndErrors() throws Exception {
+        List<String> queries = Arrays.asList("uidOne,uidTwo,algorithm,spatialEpsilon,temporalEpsilon",
+                "de0a13a8,2f442867,sweep,3.7,30",
+                "de0a13a8,2f442867,quantum,3.7,30",
+                "de0a13a8,unknown,grid,3.7,30",
+                "de0a13a8,2f442867,grid,wide,30");
+        Path output = temporary(".ndjson");
+
+        Assert.assertEquals(4, executor.execute(store(), write(queries), output));
+
+        List<String> lines = Files.readAllLines(output);
+        Assert.assertEquals(4, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("{\"query\":1,\"algorithm\":\"sweep\",\"spatialEpsilon\":3.7"));
+        Assert.assertTrue(lines.get(0).contains("\"intersection\":{\"floor\":"));
+        Assert.assertTrue(lines.get(0).endsWith("\"error\":null}"));
+        Assert.assertTrue(lines.get(1).contains("\"intersection\":null"));
+        Assert.assertTrue(lines.get(1).endsWith("\"error\":\"Unknown algorithm quantum\"}"));
+        Assert.assertTrue(lines.get(2).endsWith("\"error\":\"Unknown UID unknown\"}"));
+        Assert.assertTrue(lines.get(3).contains("\"spatialEpsilon\":null"));
+        Assert.assertTrue(lines.get(3).contains("\"error\":\"Malformed epsilon"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingColumn() throws Exception {
+        executor.execute(store(), write(Arrays.asList("algorithm,uidOne,uidTwo", "sweep,de0a13a8,2f442867")),
+                temporary(".csv"));
+    }
+
+    private TrajectoryStore store() throws Exception {
+        Map<String, List<EnhancedCoordinate>> data = new HashMap<>();
+        data.putAll(dataLoader.load(this.getClass().getResource("/intersecting.csv").getPath()));
+        data.putAll(dataLoader.load(this.getClass().getResource("/non-intersecting.csv").getPath()));
+        return TrajectoryStore.of(data);
+    }
+
+    private static Path write(List<String> lines) throws Exception {
+        Path queries = temporary(".csv");
+        Files.write(queries, lines);
+        return queries;
+    }
+
+    private static Path temporary(String suffix) throws Exception {
+        File file = File.createTempFile("batch", suffix);
+        file.deleteOnExit();
+        return file.toPath();
+    }
+}
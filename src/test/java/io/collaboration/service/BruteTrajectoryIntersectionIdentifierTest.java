@@ -2,7 +2,9 @@ package io.collaboration.service;
 
 import io.collaboration.api.EnhancedCoordinate;
 import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
 import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.helper.TemporalDistance;
 import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -14,6 +16,9 @@ import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+
+import static io.collaboration.base.RandomTrajectories.walk;
 
 public class BruteTrajectoryIntersectionIdentifierTest extends AbstractTrajectoryIntersectionIdentifierTest {
 
@@ -121,4 +126,34 @@ public class BruteTrajectoryIntersectionIdentifierTest extends AbstractTrajector
 
         Assert.assertFalse(intersection.isPresent());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTilesAgreeWithNestedLoop() throws Exception {
+        Random random = new Random(11);
+        // Longer than a tile in both directions, so that matches land in later tiles
+        Trajectory one = walk("one", 3000, 1000, 20, random);
+        Trajectory two = walk("two", 2500, 1000, 20, random);
+
+        for (double spatialEpsilon : new double[]{0.05, 0.2, 1.0, 5.0}) {
+            for (int temporalEpsilon : new int[]{0, 10, 60}) {
+                Assert.assertEquals(nestedLoop(one, two, spatialEpsilon, temporalEpsilon),
+                        identifier.identify(one, two, spatialEpsilon, temporalEpsilon));
+            }
+        }
+    }
+
+    private static Optional<Intersection> nestedLoop(Trajectory one, Trajectory two, double spatialEpsilon, int temporalEpsilon) {
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(temporalEpsilon);
+        for (int i = 0; i < one.size(); i++) {
+            for (int j = 0; j < two.size(); j++) {
+                double dx = one.getXs()[i] - two.getXs()[j];
+                double dy = one.getYs()[i] - two.getYs()[j];
+                if (one.getFloors()[i] == two.getFloors()[j] && dx * dx + dy * dy <= spatialEpsilon * spatialEpsilon
+                        && Math.abs(one.getTimestamps()[i] - two.getTimestamps()[j]) <= maxInterval) {
+                    return Optional.of(new Intersection(one.toCoordinate(i), two.toCoordinate(j)));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,120 @@
+package io.collaboration.service;
+
+import io.collaboration.api.GeneratorProperties;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.helper.MappedCsvParser;
+import io.collaboration.helper.TrajectoryGenerator;
+import io.collaboration.helper.TrajectorySimplifier;
+import io.collaboration.service.contact.ContactIndex;
+import io.collaboration.service.contact.ContactTracer;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Asserting that {@link ContactIndex} finds the same first meetings as querying every pair of UIDs.
+ */
+public class ContactIndexTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private ContactTracer contactTracer;
+
+    @Autowired
+    private TrajectoryGenerator generator;
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Test
+    public void testIntersecting() throws Exception {
+        TrajectoryStore store = dataLoader.loadTrajectories(this.getClass().getResource("/intersecting.csv").getPath());
+
+        List<Intersection> contacts = contactTracer.contacts(store, "de0a13a8", 3.7, 30);
+
+        Assert.assertEquals(1, contacts.size());
+        Assert.assertEquals(sweep.identify(store.get("de0a13a8"), store.get("2f442867"), 3.7, 30).get(), contacts.get(0));
+        Assert.assertEquals(sweep.identify(store.get("de0a13a8"), store.get("2f442867"), 0.5, 0).isPresent(),
+                !contactTracer.contacts(store, "de0a13a8", 0.5, 0).isEmpty());
+        Assert.assertSame(contactTracer.index(store), contactTracer.index(store));
+    }
+
+    @Test
+    public void testAgreesWithSweep() throws Exception {
+        File file = File.createTempFile("contacts", ".csv");
+        file.deleteOnExit();
+        Path csv = file.toPath();
+        generator.generate(GeneratorProperties.of("rows=30000", "uids=30", "floors=2", "width=40", "height=30", "seed=5"), csv);
+        TrajectoryStore store = MappedCsvParser.parse(csv).get();
+
+        // Cells both narrower and wider than the epsilons
+        for (ContactIndex index : new ContactIndex[]{ContactIndex.of(store, 0.7, 7_000), ContactIndex.of(store, 25, 600_000)}) {
+            for (double spatialEpsilon : new double[]{0.5, 2.0, 6.0}) {
+                for (int temporalEpsilon : new int[]{0, 10, 60}) {
+                    int met = 0;
+                    for (int one = 0; one < store.size(); one++) {
+                        Map<String, Intersection> contacts = new HashMap<>();
+                        for (Intersection contact : index.contacts(store.getUid(one), spatialEpsilon, temporalEpsilon)) {
+                            Assert.assertEquals(store.getUid(one), contact.getPointOne().getUid());
+                            contacts.put(contact.getPointTwo().getUid(), contact);
+                        }
+
+                        for (int two = 0; two < store.size(); two++) {
+                            if (one == two) continue;
+                            Optional<Intersection> expected = sweep.identify(store.get(one), store.get(two), spatialEpsilon, temporalEpsilon);
+                            Assert.assertEquals(expected.orElse(null), contacts.get(store.getUid(two)));
+                        }
+                        met += contacts.size();
+                    }
+                    if (spatialEpsilon > 1) Assert.assertTrue(met > 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPartlySimplified() throws Exception {
+        File file = File.createTempFile("contacts", ".csv");
+        file.deleteOnExit();
+        Path csv = file.toPath();
+        generator.generate(GeneratorProperties.of("rows=30000", "uids=30", "floors=2", "width=40", "height=30", "seed=7"), csv);
+        // Half of the UIDs simplified, the rest as recorded
+        TrajectoryStore store = MappedCsvParser.parse(csv).get().map(t -> (t.getUid().hashCode() & 1) == 0
+                ? TrajectorySimplifier.simplify(t, 1.0, 20_000)
+                : t);
+
+        ContactIndex index = ContactIndex.of(store, 2, 20_000);
+        int met = 0;
+        for (int one = 0; one < store.size(); one++) {
+            Map<String, Intersection> contacts = new HashMap<>();
+            for (Intersection contact : index.contacts(store.getUid(one), 2.0, 10)) {
+                contacts.put(contact.getPointTwo().getUid(), contact);
+            }
+
+            // Every pair widened by the errors of its own two trajectories only
+            for (int two = 0; two < store.size(); two++) {
+                if (one == two) continue;
+                Optional<Intersection> expected = sweep.identify(store.get(one), store.get(two), 2.0, 10);
+                Assert.assertEquals(expected.orElse(null), contacts.get(store.getUid(two)));
+            }
+            met += contacts.size();
+        }
+        Assert.assertTrue(met > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownUID() throws Exception {
+        TrajectoryStore store = dataLoader.loadTrajectories(this.getClass().getResource("/intersecting.csv").getPath());
+
+        contactTracer.contacts(store, "unknown", 3.7, 30);
+    }
+}
@@ -0,0 +1,183 @@
+package io.collaboration.service;
+
+import io.collaboration.api.DwellIntervals;
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.DwellTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.net.URL;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static io.collaboration.base.RandomTrajectories.sitting;
+
+/**
+ * Asserting appropriate behavior of {@link DwellTrajectoryIntersectionIdentifier} implementation.
+ */
+public class DwellTrajectoryIntersectionIdentifierTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private DwellTrajectoryIntersectionIdentifier identifier;
+
+    @Autowired
+    private BruteTrajectoryIntersectionIdentifier brute;
+
+    @Test
+    public void testIntersecting() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = identifier.identify(data.get("de0a13a8"),
+                data.get("2f442867"),
+                3.7,
+                30);
+
+        Assert.assertTrue(intersection.isPresent());
+
+        Intersection result = intersection.get();
+        Assert.assertTrue(result.getEuclideanDistance() <= 3.7);
+        Assert.assertTrue(Math.abs(ChronoUnit.SECONDS.between(result.getPointOne().getTimestamp(), result.getPointTwo().getTimestamp())) <= 30);
+        Assert.assertEquals(result.getPointOne().getFloor(), result.getPointTwo().getFloor());
+    }
+
+    @Test
+    public void testNonIntersecting() throws Exception {
+
+        URL csv = this.getClass().getResource("/non-intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = identifier.identify(data.get("287279d1"),
+                data.get("8f719572"),
+                3.4,
+                30);
+
+        Assert.assertFalse(intersection.isPresent());
+    }
+
+    @Test
+    public void testCollapse() {
+        Trajectory trajectory = sitting("one", 3600, 0, 0, 0.05, new Random(3));
+        DwellIntervals dwells = DwellIntervals.of(trajectory, 0.5, 60_000);
+
+        // An order of magnitude fewer intervals than samples
+        Assert.assertTrue(dwells.size() * 10 < trajectory.size());
+        Assert.assertEquals(0, dwells.from(0));
+        Assert.assertEquals(trajectory.size(), dwells.to(dwells.size() - 1));
+
+        for (int k = 0; k < dwells.size(); k++) {
+            Assert.assertEquals(trajectory.getTimestamps()[dwells.from(k)], dwells.getStarts()[k]);
+            Assert.assertEquals(trajectory.getTimestamps()[dwells.to(k) - 1], dwells.getEnds()[k]);
+            if (k > 0) Assert.assertTrue(dwells.getEnds()[k - 1] < dwells.getStarts()[k]);
+
+            for (int i = dwells.from(k); i < dwells.to(k); i++) {
+                Assert.assertEquals(dwells.getFloors()[k], trajectory.getFloors()[i]);
+                double distance = Math.hypot(trajectory.getXs()[i] - dwells.getXs()[k],
+                        trajectory.getYs()[i] - dwells.getYs()[k]);
+                Assert.assertTrue(distance <= dwells.getSpatialError());
+                if (i > dwells.from(k)) {
+                    long gap = trajectory.getTimestamps()[i] - trajectory.getTimestamps()[i - 1];
+                    Assert.assertTrue(gap <= 60_000);
+                    Assert.assertTrue((gap + 1) / 2 <= dwells.getTemporalError());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNeverMisses() throws Exception {
+        Random random = new Random(7);
+        int found = 0;
+        for (int query = 0; query < 40; query++) {
+            Trajectory one = sitting("one", 2000, 0, 0, 0.05, random);
+            Trajectory two = sitting("two", 2000, random.nextInt(600), 0, 0.05, random);
+            Trajectory dwellsOne = one.withDwells(DwellIntervals.of(one, 0.5, 60_000));
+            Trajectory dwellsTwo = two.withDwells(DwellIntervals.of(two, 0.5, 60_000));
+
+            for (double spatialEpsilon : new double[]{0.5, 2}) {
+                Optional<Intersection> expected = brute.identify(one, two, spatialEpsilon, 10);
+                Optional<Intersection> intersection = identifier.identify(dwellsOne, dwellsTwo, spatialEpsilon, 10);
+                if (expected.isPresent()) {
+                    found++;
+                    Assert.assertTrue(intersection.isPresent());
+                }
+                // Never further apart than the epsilons widened by the errors of both UIDs
+                DwellIntervals intervalsOne = dwellsOne.getDwells().get();
+                DwellIntervals intervalsTwo = dwellsTwo.getDwells().get();
+                intersection.ifPresent(i -> {
+                    double errors = intervalsOne.getSpatialError() + intervalsTwo.getSpatialError();
+                    long temporalErrors = intervalsOne.getTemporalError() + intervalsTwo.getTemporalError();
+                    Assert.assertTrue(i.getEuclideanDistance() <= spatialEpsilon + errors + 1e-9);
+                    Assert.assertTrue(Math.abs(ChronoUnit.MILLIS.between(i.getPointOne().getTimestamp(),
+                            i.getPointTwo().getTimestamp())) <= 10_999 + temporalErrors);
+                    Assert.assertEquals(i.getPointOne().getFloor(), i.getPointTwo().getFloor());
+                });
+
+                // Jittering samples are never at identical positions, so collapsing for the query introduces no error
+                Assert.assertEquals(expected.isPresent(), identifier.identify(one, two, spatialEpsilon, 10).isPresent());
+            }
+        }
+        Assert.assertTrue(found > 0);
+    }
+
+    @Test
+    public void testAgreesWithParallel() {
+        Random random = new Random(11);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int found = 0;
+            for (int query = 0; query < 10; query++) {
+                Trajectory one = sitting("one", 20_000, 0, 0, 0.05, random);
+                Trajectory two = sitting("two", 20_000, random.nextInt(600), 0, 0.05, random);
+                Trajectory dwellsOne = one.withDwells(DwellIntervals.of(one, 0.5, 60_000));
+                Trajectory dwellsTwo = two.withDwells(DwellIntervals.of(two, 0.5, 60_000));
+
+                for (double spatialEpsilon : new double[]{0.1, 0.5}) {
+                    Optional<Intersection> expected = identifier.identify(dwellsOne, dwellsTwo, spatialEpsilon, 10);
+                    if (expected.isPresent()) found++;
+                    Assert.assertEquals(expected, identifier.identifyParallel(dwellsOne, dwellsTwo, spatialEpsilon, 10, pool));
+                    // Intervals collapsed for the query
+                    Assert.assertEquals(identifier.identify(one, two, spatialEpsilon, 10),
+                            identifier.identifyParallel(one, two, spatialEpsilon, 10, pool));
+                }
+            }
+            Assert.assertTrue(found > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSliceKeepsDwells() {
+        Trajectory trajectory = sitting("one", 2000, 0, 0, 0.05, new Random(13));
+        DwellIntervals dwells = DwellIntervals.of(trajectory, 0.5, 60_000);
+        Trajectory slice = trajectory.withDwells(dwells).slice(150, 1700);
+
+        DwellIntervals sliced = slice.getDwells().get();
+        Assert.assertEquals(dwells.getSpatialError(), sliced.getSpatialError(), 0);
+        Assert.assertEquals(dwells.getTemporalError(), sliced.getTemporalError());
+        Assert.assertEquals(0, sliced.from(0));
+        Assert.assertEquals(slice.size(), sliced.to(sliced.size() - 1));
+        for (int k = 0; k < sliced.size(); k++) {
+            for (int i = sliced.from(k); i < sliced.to(k); i++) {
+                Assert.assertTrue(slice.getTimestamps()[i] >= sliced.getStarts()[k]);
+                Assert.assertTrue(slice.getTimestamps()[i] <= sliced.getEnds()[k]);
+                Assert.assertEquals(sliced.getFloors()[k], slice.getFloors()[i]);
+                Assert.assertTrue(Math.hypot(slice.getXs()[i] - sliced.getXs()[k], slice.getYs()[i] - sliced.getYs()[k])
+                        <= sliced.getSpatialError());
+            }
+        }
+        Assert.assertFalse(trajectory.slice(150, 1700).getDwells().isPresent());
+    }
+}
@@ -0,0 +1,19 @@
+package io.collaboration.service;
+
+import io.collaboration.base.AbstractExactTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.GridTrajectoryIntersectionIdentifier;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Asserting appropriate behavior of {@link GridTrajectoryIntersectionIdentifier} implementation.
+ */
+public class GridTrajectoryIntersectionIdentifierTest extends AbstractExactTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private GridTrajectoryIntersectionIdentifier identifier;
+
+    @Override
+    protected AbstractTrajectoryIntersectionIdentifier identifier() {
+        return identifier;
+    }
+}
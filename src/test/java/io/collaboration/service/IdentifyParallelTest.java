@@ -0,0 +1,109 @@
+package io.collaboration.service;
+
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.GridTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static io.collaboration.base.RandomTrajectories.START;
+import static io.collaboration.base.RandomTrajectories.walk;
+
+/**
+ * Asserting that {@link AbstractTrajectoryIntersectionIdentifier#identifyParallel} answers a single query spread over
+ * several workers the same way as the sequential identification.
+ */
+public class IdentifyParallelTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Autowired
+    private BruteTrajectoryIntersectionIdentifier brute;
+
+    @Autowired
+    private GridTrajectoryIntersectionIdentifier grid;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testAgreesWithSequential() throws Exception {
+        Random random = new Random(5);
+        Trajectory one = walk("one", 20_000, 1000, 30, random);
+        Trajectory two = walk("two", 20_000, 1000, 30, random);
+
+        for (double spatialEpsilon : new double[]{0.005, 0.05, 0.5}) {
+            for (int temporalEpsilon : new int[]{0, 30}) {
+                Optional<Intersection> expected = sweep.identify(one, two, spatialEpsilon, temporalEpsilon);
+                Assert.assertEquals(expected, sweep.identifyParallel(one, two, spatialEpsilon, temporalEpsilon, pool));
+                Assert.assertEquals(expected.isPresent(),
+                        grid.identifyParallel(one, two, spatialEpsilon, temporalEpsilon, pool).isPresent());
+            }
+        }
+
+        Assert.assertEquals(brute.identify(one, two, 0.05, 30), brute.identifyParallel(one, two, 0.05, 30, pool));
+    }
+
+    @Test
+    public void testAcrossRanges() throws Exception {
+        // Far apart but for a single meeting at the end of a range of the first UID, with a sample of the second UID
+        // recorded after the last sample of the range or before the first sample of the next, whichever the number of
+        // ranges
+        int size = 20_000;
+        Trajectory one = line("one", size, 0, -1, 0);
+        for (int ranges = 2; ranges <= 16; ranges++) {
+            int first = size / ranges;
+            for (Trajectory two : new Trajectory[]{line("two", size, 100, first - 1, 2500), line("two", size, 100, first, -2500)}) {
+                Optional<Intersection> intersection = sweep.identifyParallel(one, two, 0.5, 2, pool);
+                Assert.assertTrue(intersection.isPresent());
+                Assert.assertEquals(sweep.identify(one, two, 0.5, 2), intersection);
+                Assert.assertFalse(sweep.identifyParallel(one, two, 0.5, 1, pool).isPresent());
+            }
+        }
+    }
+
+    @Test
+    public void testShortTrajectories() throws Exception {
+        Random random = new Random(3);
+        Trajectory one = walk("one", 500, 1000, 30, random);
+        Trajectory two = walk("two", 500, 1000, 30, random);
+
+        Assert.assertEquals(sweep.identify(one, two, 0.5, 30), sweep.identifyParallel(one, two, 0.5, 30, pool));
+        Assert.assertEquals(sweep.identify(one, two, 0.5, 30), sweep.identifyParallel(one, two, 0.5, 30));
+    }
+
+    /**
+     * Samples every five seconds and metres along the x axis at the given ordinate, but for the sample at the given
+     * position which is moved onto the x axis and delayed by the given millis
+     */
+    private static Trajectory line(String uid, int size, double y, int meeting, long delay) {
+        long[] times = new long[size];
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        short[] floors = new short[size];
+        for (int k = 0; k < size; k++) {
+            times[k] = START + k * 5000L;
+            xs[k] = 5 * k;
+            ys[k] = y;
+        }
+        if (meeting >= 0) {
+            times[meeting] += delay;
+            ys[meeting] = 0;
+        }
+        return Trajectory.of(uid, -1, times, xs, ys, floors);
+    }
+}
@@ -0,0 +1,182 @@
+package io.collaboration.service;
+
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.cache.IntersectionCache;
+import io.collaboration.service.impl.AutoTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.DwellTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.GabrielDelaunayTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.GridTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asserting that {@link IntersectionCache} answers tighter queries out of the candidates of wider ones, and every other
+ * query through the identifier chosen.
+ */
+public class IntersectionCacheTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Autowired
+    private BruteTrajectoryIntersectionIdentifier brute;
+
+    @Autowired
+    private GridTrajectoryIntersectionIdentifier grid;
+
+    @Autowired
+    private DwellTrajectoryIntersectionIdentifier dwell;
+
+    @Autowired
+    private GabrielDelaunayTrajectoryIntersectionIdentifier gabriel;
+
+    @Autowired
+    private AutoTrajectoryIntersectionIdentifier auto;
+
+    @Test
+    public void testMatchesIdentifier() throws Exception {
+        TrajectoryStore store = TrajectoryStore.of(dataLoader.load(this.getClass().getResource("/intersecting.csv").getPath()));
+        Trajectory one = store.get("de0a13a8");
+        Trajectory two = store.get("2f442867");
+
+        IntersectionCache cache = new IntersectionCache(16, 1_000_000);
+        // Widest query first, twice so that its candidates are collected, every later one is answered out of them
+        Assert.assertEquals(sweep.identify(one, two, 6.0, 60), identify(cache, sweep, one, two, 6.0, 60));
+        Assert.assertEquals(sweep.identify(one, two, 6.0, 60), identify(cache, sweep, one, two, 6.0, 60));
+
+        for (double spatialEpsilon = 0.25; spatialEpsilon <= 6; spatialEpsilon += 0.25) {
+            for (int temporalEpsilon = 0; temporalEpsilon <= 60; temporalEpsilon += 5) {
+                Assert.assertEquals(sweep.identify(one, two, spatialEpsilon, temporalEpsilon),
+                        cache.identify(one, two, spatialEpsilon, temporalEpsilon, sweep, () -> null));
+                Assert.assertEquals(sweep.identify(two, one, spatialEpsilon, temporalEpsilon),
+                        cache.identify(two, one, spatialEpsilon, temporalEpsilon, sweep, () -> null));
+            }
+        }
+
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(2 * 24 * 13, cache.getHits());
+    }
+
+    @Test
+    public void testWidening() throws Exception {
+        TrajectoryStore store = TrajectoryStore.of(dataLoader.load(this.getClass().getResource("/intersecting.csv").getPath()));
+        Trajectory one = store.get("de0a13a8");
+        Trajectory two = store.get("2f442867");
+
+        IntersectionCache cache = new IntersectionCache(16, 1_000_000);
+        // The first query only records the pair, the second one collects the candidates under the widest epsilons
+        identify(cache, sweep, one, two, 1.0, 5);
+        identify(cache, sweep, two, one, 0.5, 5);
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(sweep.identify(two, one, 0.5, 5), identify(cache, sweep, two, one, 0.5, 5));
+        Assert.assertEquals(sweep.identify(one, two, 1.0, 5), identify(cache, sweep, one, two, 1.0, 5));
+        Assert.assertEquals(2, cache.getHits());
+
+        // Widening either epsilon recollects the candidates under the widest epsilons of both
+        Assert.assertEquals(sweep.identify(one, two, 3.7, 5), identify(cache, sweep, one, two, 3.7, 5));
+        Assert.assertEquals(sweep.identify(one, two, 1.0, 30), identify(cache, sweep, one, two, 1.0, 30));
+        Assert.assertEquals(4, cache.getMisses());
+        Assert.assertEquals(sweep.identify(one, two, 3.7, 30), identify(cache, sweep, one, two, 3.7, 30));
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        TrajectoryStore store = TrajectoryStore.of(dataLoader.load(this.getClass().getResource("/intersecting.csv").getPath()));
+        Trajectory one = store.get("de0a13a8");
+        Trajectory two = store.get("2f442867");
+        // Another pair of UIDs meeting just like the first one
+        Trajectory three = Trajectory.of("three", -1, one.getTimestamps(), one.getXs(), one.getYs(), one.getFloors());
+        Trajectory four = Trajectory.of("four", -1, two.getTimestamps(), two.getXs(), two.getYs(), two.getFloors());
+
+        IntersectionCache cache = new IntersectionCache(1, 1_000_000);
+        identify(cache, sweep, one, two, 3.7, 30);
+        identify(cache, sweep, three, four, 3.7, 30);
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(1, cache.size());
+
+        identify(cache, sweep, one, two, 3.7, 30);
+        Assert.assertEquals(3, cache.getMisses());
+        Assert.assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    public void testBypass() throws Exception {
+        TrajectoryStore store = TrajectoryStore.of(dataLoader.load(this.getClass().getResource("/intersecting.csv").getPath()));
+        Trajectory one = store.get("de0a13a8");
+        Trajectory two = store.get("2f442867");
+
+        // Too small to hold the candidates of the pair, queries fall through to the identifier
+        IntersectionCache cache = new IntersectionCache(16, 0);
+        AtomicInteger calls = new AtomicInteger();
+        for (int query = 0; query < 3; query++) {
+            Optional<Intersection> intersection = cache.identify(one, two, 3.7, 30, sweep, () -> {
+                calls.incrementAndGet();
+                return sweep.identify(one, two, 3.7, 30);
+            });
+            Assert.assertTrue(intersection.isPresent());
+        }
+
+        Assert.assertEquals(3, calls.get());
+        // The second query found too many candidates, the third one did not try collecting them again
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(2, cache.getBypasses());
+        Assert.assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testInvokesIdentifier() throws Exception {
+        TrajectoryStore store = TrajectoryStore.of(dataLoader.load(this.getClass().getResource("/intersecting.csv").getPath()));
+        Trajectory one = store.get("de0a13a8");
+        Trajectory two = store.get("2f442867");
+
+        IntersectionCache cache = new IntersectionCache(16, 1_000_000);
+        // Misses are answered by the chosen identifier, hits out of the candidates
+        AtomicInteger calls = new AtomicInteger();
+        for (int query = 0; query < 4; query++) {
+            Optional<Intersection> intersection = cache.identify(one, two, 3.7, 30, brute, () -> {
+                calls.incrementAndGet();
+                return brute.identify(one, two, 3.7, 30);
+            });
+            Assert.assertEquals(sweep.identify(one, two, 3.7, 30), intersection);
+        }
+        Assert.assertEquals(2, calls.get());
+        Assert.assertEquals(2, cache.getHits());
+
+        // Identifiers which may report another intersection than the earliest one always run
+        calls.set(0);
+        AbstractTrajectoryIntersectionIdentifier[] identifiers = {grid, dwell, gabriel, auto};
+        for (AbstractTrajectoryIntersectionIdentifier identifier : identifiers) {
+            for (int query = 0; query < 3; query++) {
+                Optional<Intersection> intersection = cache.identify(one, two, 3.7, 30, identifier, () -> {
+                    calls.incrementAndGet();
+                    return identifier.identify(one, two, 3.7, 30);
+                });
+                Assert.assertTrue(intersection.isPresent());
+            }
+        }
+        Assert.assertEquals(identifiers.length * 3, calls.get());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(identifiers.length * 3, cache.getBypasses());
+    }
+
+    private static Optional<Intersection> identify(IntersectionCache cache,
+                                                   AbstractTrajectoryIntersectionIdentifier identifier,
+                                                   Trajectory one,
+                                                   Trajectory two,
+                                                   double spatialEpsilon,
+                                                   int temporalEpsilon) {
+        return cache.identify(one, two, spatialEpsilon, temporalEpsilon, identifier,
+                () -> identifier.identify(one, two, spatialEpsilon, temporalEpsilon));
+    }
+}
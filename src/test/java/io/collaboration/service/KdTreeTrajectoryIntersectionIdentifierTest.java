@@ -0,0 +1,124 @@
+package io.collaboration.service;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.Trajectory;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.KdTreeTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.net.URL;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static io.collaboration.base.RandomTrajectories.sitting;
+import static io.collaboration.base.RandomTrajectories.walk;
+
+/**
+ * Asserting appropriate behavior of {@link KdTreeTrajectoryIntersectionIdentifier} implementation.
+ */
+public class KdTreeTrajectoryIntersectionIdentifierTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private KdTreeTrajectoryIntersectionIdentifier identifier;
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Test
+    public void testIntersecting() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = identifier.identify(data.get("de0a13a8"),
+                data.get("2f442867"),
+                3.7,
+                30);
+
+        Assert.assertTrue(intersection.isPresent());
+
+        Intersection result = intersection.get();
+        Assert.assertTrue(result.getEuclideanDistance() <= 3.7);
+        Assert.assertTrue(Math.abs(ChronoUnit.SECONDS.between(result.getPointOne().getTimestamp(), result.getPointTwo().getTimestamp())) <= 30);
+        Assert.assertEquals(result.getPointOne().getFloor(), result.getPointTwo().getFloor());
+    }
+
+    @Test
+    public void testNonIntersecting() throws Exception {
+
+        URL csv = this.getClass().getResource("/non-intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = identifier.identify(data.get("287279d1"),
+                data.get("8f719572"),
+                3.4,
+                30);
+
+        Assert.assertFalse(intersection.isPresent());
+    }
+
+    @Test
+    public void testAgreesWithSweep() {
+        Random random = new Random(5);
+        int found = 0;
+        for (int query = 0; query < 30; query++) {
+            // Uniformly spread samples, and samples clustered at a few desks, many of them at identical positions
+            Trajectory one = query % 2 == 0 ? walk("one", 3000, 1500, 30, random) : sitting("one", 3000, 0, 4, 0, random);
+            Trajectory two = query % 3 == 0 ? walk("two", 3000, 1500, 30, random) : sitting("two", 3000, 0, 4, 0, random);
+
+            for (double spatialEpsilon : new double[]{0.1, 1, 5}) {
+                Optional<Intersection> expected = sweep.identify(one, two, spatialEpsilon, 10);
+                if (expected.isPresent()) found++;
+                Assert.assertEquals(expected, identifier.identify(one, two, spatialEpsilon, 10));
+            }
+        }
+        Assert.assertTrue(found > 0);
+    }
+
+    @Test
+    public void testNearestApproach() {
+        Random random = new Random(9);
+        for (int query = 0; query < 20; query++) {
+            Trajectory one = query % 2 == 0 ? walk("one", 800, 1500, 30, random) : sitting("one", 800, 0, 4, 0, random);
+            Trajectory two = sitting("two", 800, 0, 4, 0, random);
+
+            Optional<Intersection> nearest = identifier.nearestApproach(one, two, 5);
+            double expected = bruteNearest(one, two, 5_999);
+            if (Double.isInfinite(expected)) {
+                Assert.assertFalse(nearest.isPresent());
+                continue;
+            }
+
+            Intersection result = nearest.get();
+            Assert.assertEquals(expected, result.getEuclideanDistance(), 1e-9);
+            Assert.assertTrue(Math.abs(ChronoUnit.MILLIS.between(result.getPointOne().getTimestamp(),
+                    result.getPointTwo().getTimestamp())) <= 5_999);
+            Assert.assertEquals(result.getPointOne().getFloor(), result.getPointTwo().getFloor());
+        }
+    }
+
+    /**
+     * Smallest distance between samples on the same floor at most maxInterval millis apart, straight from the
+     * definition
+     */
+    private static double bruteNearest(Trajectory one, Trajectory two, long maxInterval) {
+        double nearest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < one.size(); i++) {
+            for (int j = 0; j < two.size(); j++) {
+                if (one.getFloors()[i] != two.getFloors()[j]) continue;
+                if (Math.abs(one.getTimestamps()[i] - two.getTimestamps()[j]) > maxInterval) continue;
+                nearest = Math.min(nearest, Math.hypot(one.getXs()[i] - two.getXs()[j],
+                        one.getYs()[i] - two.getYs()[j]));
+            }
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,107 @@
+package io.collaboration.service;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.MeetingEpisode;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.BruteTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.net.URL;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Asserting appropriate behavior of {@link AbstractTrajectoryIntersectionIdentifier#episodes}.
+ */
+public class MeetingEpisodeTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Autowired
+    private BruteTrajectoryIntersectionIdentifier brute;
+
+    @Test
+    public void testEpisodesCoverEveryMeetingSample() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+        List<EnhancedCoordinate> one = data.get("de0a13a8");
+        List<EnhancedCoordinate> two = data.get("2f442867");
+        one.sort(Comparator.comparing(EnhancedCoordinate::getTimestamp));
+
+        List<MeetingEpisode> episodes = brute.episodes(one, two, 3.7, 30).collect(toList());
+        Assert.assertFalse(episodes.isEmpty());
+
+        // Every sample of the first UID meeting the second one belongs to exactly one episode
+        int meetingSamples = 0;
+        for (EnhancedCoordinate co : one) if (meets(co, two, 3.7, 30)) meetingSamples++;
+        Assert.assertEquals(meetingSamples, episodes.stream().mapToInt(MeetingEpisode::getSamples).sum());
+
+        for (int i = 0; i < episodes.size(); i++) {
+            MeetingEpisode episode = episodes.get(i);
+            assertMeeting(episode.getFirst(), 3.7, 30);
+            assertMeeting(episode.getClosest(), 3.7, 30);
+            Assert.assertTrue(episode.getClosest().getEuclideanDistance() <= episode.getFirst().getEuclideanDistance());
+            Assert.assertEquals(episode.getFloor(), episode.getFirst().getPointOne().getFloor());
+            Assert.assertFalse(episode.getEnd().isBefore(episode.getStart()));
+            if (i > 0) Assert.assertTrue(episodes.get(i - 1).getStart().isBefore(episode.getStart()));
+        }
+    }
+
+    @Test
+    public void testFirstEpisodeStartsAtFirstIntersection() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Optional<Intersection> intersection = sweep.identify(data.get("de0a13a8"), data.get("2f442867"), 3.7, 30);
+        Iterator<MeetingEpisode> episodes = sweep.episodes(data.get("de0a13a8"), data.get("2f442867"), 3.7, 30).iterator();
+
+        Assert.assertTrue(intersection.isPresent());
+        Assert.assertTrue(episodes.hasNext());
+        Assert.assertEquals(intersection.get().getPointOne(), episodes.next().getFirst().getPointOne());
+    }
+
+    @Test
+    public void testNonIntersecting() throws Exception {
+        URL csv = this.getClass().getResource("/non-intersecting.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Assert.assertEquals(0, sweep.episodes(data.get("287279d1"), data.get("8f719572"), 3.4, 30).count());
+    }
+
+    @Test
+    public void testDifferentFloors() throws Exception {
+        URL csv = this.getClass().getResource("/different-floors.csv");
+
+        Map<String, List<EnhancedCoordinate>> data = dataLoader.load(csv.getPath());
+
+        Assert.assertEquals(0, sweep.episodes(data.get("de0a13a8"), data.get("2f442867"), 3.4, 30).count());
+        Assert.assertEquals(0, sweep.episodes(data.get("2f442867"), data.get("2f442867"), 3.4, 30).count());
+    }
+
+    private static boolean meets(EnhancedCoordinate co, List<EnhancedCoordinate> other, double spatialEpsilon, int temporalEpsilon) {
+        return other.stream().anyMatch(ct -> co.getFloor().equals(ct.getFloor())
+                && Math.hypot(co.getX() - ct.getX(), co.getY() - ct.getY()) <= spatialEpsilon
+                && Math.abs(ChronoUnit.SECONDS.between(co.getTimestamp(), ct.getTimestamp())) <= temporalEpsilon);
+    }
+
+    private static void assertMeeting(Intersection intersection, double spatialEpsilon, int temporalEpsilon) {
+        Assert.assertTrue(intersection.getEuclideanDistance() <= spatialEpsilon);
+        Assert.assertEquals(intersection.getPointOne().getFloor(), intersection.getPointTwo().getFloor());
+        Assert.assertTrue(Math.abs(ChronoUnit.SECONDS.between(intersection.getPointOne().getTimestamp(),
+                intersection.getPointTwo().getTimestamp())) <= temporalEpsilon);
+    }
+}
@@ -0,0 +1,119 @@
+package io.collaboration.service;
+
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.batch.QueryServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Asserting that {@link QueryServer} answers queries over HTTP like batch mode does.
+ */
+public class QueryServerTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private QueryServer queryServer;
+
+    @After
+    public void stop() {
+        queryServer.stop();
+    }
+
+    @Test
+    public void testIdentify() throws Exception {
+        int port = start();
+
+        Response met = get(port, "/identify?algorithm=sweep&spatialEpsilon=3.7&temporalEpsilon=30&uidOne=de0a13a8&uidTwo=2f442867");
+        Assert.assertEquals(200, met.status);
+        Assert.assertTrue(met.body.contains("\"intersection\":{\"floor\":"));
+        Assert.assertTrue(met.body.contains("\"error\":null"));
+
+        Response missed = get(port, "/identify?algorithm=grid&spatialEpsilon=0.1&temporalEpsilon=0&uidOne=de0a13a8&uidTwo=2f442867");
+        Assert.assertEquals(200, missed.status);
+        Assert.assertTrue(missed.body.contains("\"intersection\":null"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        int port = start();
+
+        Response unknown = get(port, "/identify?algorithm=sweep&spatialEpsilon=3.7&temporalEpsilon=30&uidOne=de0a13a8&uidTwo=unknown");
+        Assert.assertEquals(400, unknown.status);
+        Assert.assertTrue(unknown.body.contains("\"error\":\"Unknown UID unknown\""));
+
+        Response missing = get(port, "/identify?algorithm=sweep&spatialEpsilon=3.7&uidOne=de0a13a8&uidTwo=2f442867");
+        Assert.assertEquals(400, missing.status);
+        Assert.assertEquals("{\"error\":\"Missing parameter temporalEpsilon\"}", missing.body);
+
+        // Turned down either by the HTTP server parsing the URI or by the handler decoding the parameters
+        Response malformed = get(port, "/identify?algorithm=sweep&spatialEpsilon=3.7&temporalEpsilon=30&uidOne=de0a13a8&uidTwo=%zz");
+        Assert.assertEquals(400, malformed.status);
+
+        Response health = get(port, "/health");
+        Assert.assertEquals(200, health.status);
+        Assert.assertTrue(health.body.startsWith("{\"uids\":2,"));
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        int port = start();
+
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Response>> responses = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String algorithm = i % 2 == 0 ? "sweep" : "brute";
+                responses.add(clients.submit(() -> get(port, "/identify?algorithm=" + algorithm
+                        + "&spatialEpsilon=3.7&temporalEpsilon=30&uidOne=de0a13a8&uidTwo=2f442867")));
+            }
+            for (Future<Response> response : responses) {
+                Assert.assertEquals(200, response.get().status);
+                Assert.assertTrue(response.get().body.contains("\"intersection\":{"));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private int start() throws IOException {
+        TrajectoryStore store = dataLoader.loadTrajectories(this.getClass().getResource("/intersecting.csv").getPath());
+        return queryServer.start(store, 0);
+    }
+
+    private static Response get(int port, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) > 0; ) body.write(buffer, 0, read);
+            return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static final class Response {
+
+        private final int status;
+
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
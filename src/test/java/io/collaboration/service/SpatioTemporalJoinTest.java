@@ -0,0 +1,75 @@
+package io.collaboration.service;
+
+import io.collaboration.api.Intersection;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import io.collaboration.service.join.SpatioTemporalJoin;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.net.URL;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Asserting appropriate behavior of {@link SpatioTemporalJoin}.
+ */
+public class SpatioTemporalJoinTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private SpatioTemporalJoin join;
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Test
+    public void testIntersecting() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.getPath());
+
+        List<Intersection> meetings = join.join(store, 3.7, 30);
+
+        Assert.assertEquals(1, meetings.size());
+
+        Intersection result = meetings.get(0);
+        Assert.assertEquals("2f442867", result.getPointOne().getUid());
+        Assert.assertEquals("de0a13a8", result.getPointTwo().getUid());
+        Assert.assertTrue(result.getEuclideanDistance() <= 3.7);
+        Assert.assertTrue(Math.abs(ChronoUnit.SECONDS.between(result.getPointOne().getTimestamp(), result.getPointTwo().getTimestamp())) <= 30);
+    }
+
+    @Test
+    public void testAgreesWithSweep() throws Exception {
+        URL csv = this.getClass().getResource("/intersecting.csv");
+
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.getPath());
+
+        for (double spatialEpsilon = 0.5; spatialEpsilon < 10; spatialEpsilon += 0.5) {
+            for (int temporalEpsilon = 0; temporalEpsilon <= 60; temporalEpsilon += 10) {
+                Assert.assertEquals(sweep.identify(store.get("de0a13a8"), store.get("2f442867"), spatialEpsilon, temporalEpsilon).isPresent(),
+                        !join.join(store, spatialEpsilon, temporalEpsilon).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testNonIntersecting() throws Exception {
+        URL csv = this.getClass().getResource("/non-intersecting.csv");
+
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.getPath());
+
+        Assert.assertTrue(join.join(store, 3.4, 30).isEmpty());
+    }
+
+    @Test
+    public void testDifferentFloors() throws Exception {
+        URL csv = this.getClass().getResource("/different-floors.csv");
+
+        TrajectoryStore store = dataLoader.loadTrajectories(csv.getPath());
+
+        Assert.assertTrue(join.join(store, 3.4, 30).isEmpty());
+    }
+}
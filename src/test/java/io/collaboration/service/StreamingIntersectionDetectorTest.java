@@ -0,0 +1,195 @@
+package io.collaboration.service;
+
+import io.collaboration.api.EnhancedCoordinate;
+import io.collaboration.api.GeneratorProperties;
+import io.collaboration.api.Intersection;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.helper.MappedCsvParser;
+import io.collaboration.helper.TrajectoryGenerator;
+import io.collaboration.service.join.SpatioTemporalJoin;
+import io.collaboration.service.stream.StreamingIntersectionDetector;
+import io.collaboration.service.stream.StreamingService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Asserting that {@link StreamingIntersectionDetector} detects the meetings of a feed as they happen, while holding
+ * only the coordinates of the temporal window.
+ */
+public class StreamingIntersectionDetectorTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private TrajectoryGenerator generator;
+
+    @Autowired
+    private SpatioTemporalJoin join;
+
+    @Autowired
+    private StreamingService streamingService;
+
+    @Test
+    public void testAgreesWithJoin() throws Exception {
+        TrajectoryStore store = generate();
+
+        Set<String> met = ConcurrentHashMap.newKeySet();
+        StreamingIntersectionDetector detector = new StreamingIntersectionDetector(2.0, 10, Collections.emptyList(),
+                (meeting, latency) -> met.add(pair(meeting)));
+
+        int maxWindow = 0;
+        for (EnhancedCoordinate coordinate : feed(store)) {
+            Assert.assertTrue(detector.offer(coordinate, System.nanoTime()));
+            maxWindow = Math.max(maxWindow, detector.windowSize());
+        }
+
+        Set<String> expected = join.join(store, 2.0, 10).stream().map(this::pair).collect(toSet());
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, met);
+        Assert.assertEquals(store.samples(), detector.getIngested());
+        // 40 UIDs sampled every second over a window of 11 seconds
+        Assert.assertTrue(maxWindow <= 40 * 12);
+    }
+
+    @Test
+    public void testWatched() throws Exception {
+        TrajectoryStore store = generate();
+        List<Intersection> meetings = join.join(store, 2.0, 10);
+        Intersection watched = meetings.get(meetings.size() / 2);
+
+        List<Intersection> met = new ArrayList<>();
+        StreamingIntersectionDetector detector = new StreamingIntersectionDetector(2.0, 10,
+                Collections.singletonList(new String[]{watched.getPointTwo().getUid(), watched.getPointOne().getUid()}),
+                (meeting, latency) -> met.add(meeting));
+        for (EnhancedCoordinate coordinate : feed(store)) detector.offer(coordinate, System.nanoTime());
+
+        Assert.assertFalse(met.isEmpty());
+        for (Intersection meeting : met) Assert.assertEquals(pair(watched), pair(meeting));
+        Assert.assertEquals(met.size(), detector.getMeetings());
+    }
+
+    @Test
+    public void testLate() throws Exception {
+        TrajectoryStore store = generate();
+        List<EnhancedCoordinate> feed = feed(store);
+
+        StreamingIntersectionDetector detector = new StreamingIntersectionDetector(2.0, 10, Collections.emptyList(),
+                (meeting, latency) -> {
+                });
+        Assert.assertTrue(detector.offer(feed.get(feed.size() - 1), System.nanoTime()));
+        Assert.assertFalse(detector.offer(feed.get(0), System.nanoTime()));
+        Assert.assertEquals(1, detector.getLate());
+        Assert.assertEquals(1, detector.windowSize());
+    }
+
+    @Test
+    public void testSocket() throws Exception {
+        TrajectoryStore store = dataLoader.loadTrajectories(this.getClass().getResource("/intersecting.csv").getPath());
+
+        CountDownLatch met = new CountDownLatch(1);
+        StreamingIntersectionDetector detector = new StreamingIntersectionDetector(3.7, 30, Collections.emptyList(),
+                (meeting, latency) -> met.countDown());
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Thread listener = new Thread(() -> {
+                try {
+                    streamingService.listen(server, detector);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            listener.setDaemon(true);
+            listener.start();
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+                 Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("timestamp,x,y,floor,uid\n");
+                for (EnhancedCoordinate coordinate : feed(store)) {
+                    writer.write(coordinate.getTimestamp() + "," + coordinate.getX() + "," + coordinate.getY() + ","
+                            + coordinate.getFloor() + "," + coordinate.getUid() + "\n");
+                }
+                writer.flush();
+                Assert.assertTrue(met.await(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void testTail() throws Exception {
+        TrajectoryStore store = dataLoader.loadTrajectories(this.getClass().getResource("/intersecting.csv").getPath());
+        File file = File.createTempFile("feed", ".csv");
+        file.deleteOnExit();
+        Path path = file.toPath();
+
+        CountDownLatch met = new CountDownLatch(1);
+        StreamingIntersectionDetector detector = new StreamingIntersectionDetector(3.7, 30, Collections.emptyList(),
+                (meeting, latency) -> met.countDown());
+
+        Thread follower = new Thread(() -> {
+            try {
+                streamingService.tail(path, detector);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        follower.setDaemon(true);
+        follower.start();
+
+        // Appended in two halves, the second after the follower reached the end of the file
+        List<String> lines = feed(store).stream()
+                .map(c -> c.getTimestamp() + "," + c.getX() + "," + c.getY() + "," + c.getFloor() + "," + c.getUid())
+                .collect(toList());
+        Files.write(path, lines.subList(0, lines.size() / 2), StandardCharsets.UTF_8);
+        Thread.sleep(100);
+        Files.write(path, lines.subList(lines.size() / 2, lines.size()), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        Assert.assertTrue(met.await(10, TimeUnit.SECONDS));
+        for (int wait = 0; wait < 100 && detector.getIngested() < lines.size(); wait++) Thread.sleep(100);
+        follower.interrupt();
+        follower.join(10_000);
+        Assert.assertEquals(lines.size(), detector.getIngested());
+        Assert.assertFalse(follower.isAlive());
+    }
+
+    private String pair(Intersection intersection) {
+        return intersection.getPointOne().getUid() + "," + intersection.getPointTwo().getUid();
+    }
+
+    private static List<EnhancedCoordinate> feed(TrajectoryStore store) {
+        List<EnhancedCoordinate> feed = new ArrayList<>();
+        for (int id = 0; id < store.size(); id++) feed.addAll(store.get(id).toCoordinates());
+        feed.sort(Comparator.comparing(EnhancedCoordinate::getTimestamp));
+        return feed;
+    }
+
+    private TrajectoryStore generate() throws Exception {
+        File file = File.createTempFile("stream", ".csv");
+        file.deleteOnExit();
+        Path csv = file.toPath();
+        generator.generate(GeneratorProperties.of("rows=20000", "uids=40", "floors=2", "width=60", "height=40",
+                "samplingSeconds=1", "seed=9"), csv);
+        return MappedCsvParser.parse(csv).get();
+    }
+}
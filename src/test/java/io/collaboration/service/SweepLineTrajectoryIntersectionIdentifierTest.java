@@ -0,0 +1,19 @@
+package io.collaboration.service;
+
+import io.collaboration.base.AbstractExactTrajectoryIntersectionIdentifierTest;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Asserting appropriate behavior of {@link SweepLineTrajectoryIntersectionIdentifier} implementation.
+ */
+public class SweepLineTrajectoryIntersectionIdentifierTest extends AbstractExactTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier identifier;
+
+    @Override
+    protected AbstractTrajectoryIntersectionIdentifier identifier() {
+        return identifier;
+    }
+}
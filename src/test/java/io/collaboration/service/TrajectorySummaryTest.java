@@ -0,0 +1,162 @@
+package io.collaboration.service;
+
+import io.collaboration.api.Trajectory;
+import io.collaboration.api.TrajectoryStore;
+import io.collaboration.api.TrajectorySummary;
+import io.collaboration.base.AbstractTrajectoryIntersectionIdentifierTest;
+import io.collaboration.helper.TemporalDistance;
+import io.collaboration.service.impl.GridTrajectoryIntersectionIdentifier;
+import io.collaboration.service.impl.SweepLineTrajectoryIntersectionIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Asserting that {@link TrajectorySummary} only rules out pairs of UIDs which cannot meet.
+ */
+public class TrajectorySummaryTest extends AbstractTrajectoryIntersectionIdentifierTest {
+
+    @Autowired
+    private SweepLineTrajectoryIntersectionIdentifier sweep;
+
+    @Autowired
+    private GridTrajectoryIntersectionIdentifier grid;
+
+    @Test
+    public void testSummary() throws Exception {
+        TrajectoryStore store = TrajectoryStore.of(dataLoader.load(this.getClass().getResource("/intersecting.csv").getPath()));
+        Trajectory one = store.get("de0a13a8");
+        TrajectorySummary summary = one.getSummary();
+
+        Assert.assertEquals(one.getTimestamps()[0], summary.getStart());
+        Assert.assertEquals(one.getTimestamps()[one.size() - 1], summary.getEnd());
+
+        int[] floors = new int[one.size()];
+        for (int i = 0; i < one.size(); i++) floors[i] = one.getFloors()[i];
+        Assert.assertArrayEquals(Arrays.stream(floors).distinct().sorted().toArray(), toInts(summary.getFloors()));
+        for (short floor : summary.getFloors()) {
+            Assert.assertTrue((summary.getFloorMask() & (1L << (floor & 63))) != 0);
+        }
+    }
+
+    @Test
+    public void testRejectsDistantPairs() throws Exception {
+        TrajectoryStore store = TrajectoryStore.of(dataLoader.load(this.getClass().getResource("/intersecting.csv").getPath()));
+        Trajectory one = store.get("de0a13a8");
+        Trajectory two = store.get("2f442867");
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(30);
+
+        Assert.assertTrue(one.getSummary().mayMeet(two.getSummary(), 3.7, maxInterval));
+
+        // The second UID a day later, far away or upstairs
+        Assert.assertFalse(one.getSummary().mayMeet(shift(two, 86_400_000L, 0, 0).getSummary(), 3.7, maxInterval));
+        Assert.assertFalse(one.getSummary().mayMeet(shift(two, 0, 10_000, 0).getSummary(), 3.7, maxInterval));
+        Assert.assertFalse(one.getSummary().mayMeet(shift(two, 0, 0, 100).getSummary(), 3.7, maxInterval));
+        Assert.assertFalse(grid.validate(one, shift(two, 0, 0, 100), 3.7, 30));
+    }
+
+    @Test
+    public void testNeverRejectsMeetingPairs() {
+        Random random = new Random(11);
+        for (int run = 0; run < 2000; run++) {
+            Trajectory one = random(random, "one");
+            Trajectory two = random(random, "two");
+            double spatialEpsilon = random.nextDouble() * 5;
+            int temporalEpsilon = random.nextInt(60);
+
+            boolean met = sweep.identify(one, two, spatialEpsilon, temporalEpsilon).isPresent();
+            boolean mayMeet = one.getSummary().mayMeet(two.getSummary(), spatialEpsilon,
+                    TemporalDistance.getMaxIntervalMillis(temporalEpsilon));
+            if (met) Assert.assertTrue(mayMeet);
+        }
+    }
+
+    @Test
+    public void testExpectedPairs() {
+        Random random = new Random(13);
+        long maxInterval = TemporalDistance.getMaxIntervalMillis(10);
+        for (int run = 0; run < 20; run++) {
+            Trajectory one = uniform(random, "one", 2000);
+            Trajectory two = uniform(random, "two", 1000);
+
+            long temporalPairs = 0;
+            long nearPairs = 0;
+            for (int i = 0; i < one.size(); i++) {
+                for (int j = 0; j < two.size(); j++) {
+                    if (one.getFloors()[i] != two.getFloors()[j]) continue;
+                    if (Math.abs(one.getTimestamps()[i] - two.getTimestamps()[j]) > maxInterval) continue;
+                    temporalPairs++;
+                    if (Math.hypot(one.getXs()[i] - two.getXs()[j], one.getYs()[i] - two.getYs()[j]) <= 4) nearPairs++;
+                }
+            }
+
+            // Within a factor of two of the actual counts on evenly spread samples
+            double expectedTemporalPairs = one.getSummary().expectedPairs(two.getSummary(), Double.POSITIVE_INFINITY, maxInterval);
+            double expectedNearPairs = one.getSummary().expectedPairs(two.getSummary(), 4, maxInterval);
+            Assert.assertTrue(expectedTemporalPairs > temporalPairs / 2.0 && expectedTemporalPairs < temporalPairs * 2.0);
+            Assert.assertTrue(expectedNearPairs > nearPairs / 2.0 && expectedNearPairs < nearPairs * 2.0);
+        }
+
+        // Never more than the pairs of samples on common floors, none for UIDs which cannot meet
+        Trajectory one = uniform(random, "one", 100);
+        Trajectory two = uniform(random, "two", 100);
+        Assert.assertTrue(one.getSummary().expectedPairs(two.getSummary(), Double.POSITIVE_INFINITY, Long.MAX_VALUE / 4) <= 100 * 100);
+        Assert.assertEquals(0, one.getSummary().expectedPairs(shift(two, 0, 0, 100).getSummary(), 4, maxInterval), 0);
+        Assert.assertEquals(0, one.getSummary().expectedPairs(shift(two, 0, 10_000, 0).getSummary(), 4, maxInterval), 0);
+    }
+
+    private static Trajectory random(Random random, String uid) {
+        int size = 1 + random.nextInt(20);
+        long[] timestamps = new long[size];
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        short[] floors = new short[size];
+        long time = random.nextInt(600_000);
+        for (int i = 0; i < size; i++) {
+            time += random.nextInt(60_000);
+            timestamps[i] = time;
+            xs[i] = random.nextDouble() * 40;
+            ys[i] = random.nextDouble() * 40;
+            floors[i] = (short) (random.nextInt(3) + (random.nextBoolean() ? 0 : 64));
+        }
+        return Trajectory.of(uid, -1, timestamps, xs, ys, floors);
+    }
+
+    /**
+     * Samples spread evenly over an hour, a 100 metre square and two floors
+     */
+    private static Trajectory uniform(Random random, String uid, int size) {
+        long[] timestamps = new long[size];
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        short[] floors = new short[size];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = (long) i * 3_600_000 / size;
+            xs[i] = random.nextDouble() * 100;
+            ys[i] = random.nextDouble() * 100;
+            floors[i] = (short) random.nextInt(2);
+        }
+        return Trajectory.of(uid, -1, timestamps, xs, ys, floors);
+    }
+
+    private static Trajectory shift(Trajectory trajectory, long millis, double x, int floors) {
+        long[] timestamps = trajectory.getTimestamps().clone();
+        double[] xs = trajectory.getXs().clone();
+        short[] shifted = trajectory.getFloors().clone();
+        for (int i = 0; i < trajectory.size(); i++) {
+            timestamps[i] += millis;
+            xs[i] += x;
+            shifted[i] += floors;
+        }
+        return Trajectory.of(trajectory.getUid(), -1, timestamps, xs, trajectory.getYs(), shifted);
+    }
+
+    private static int[] toInts(short[] values) {
+        int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++) ints[i] = values[i];
+        return ints;
+    }
+}